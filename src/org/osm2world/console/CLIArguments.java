@@ -10,7 +10,7 @@ import uk.co.flamingpenguin.jewel.cli.Option;
 
 public interface CLIArguments {
 	
-	public static final String OUTPUT_PATTERN = "(.*)\\.(?:obj|pov|png|ppm|sdf)";
+	public static final String OUTPUT_PATTERN = "(.*)\\.(?:obj|pov|png|ppm|sdf|glb)";
 	
 	/* input and output */
 	
@@ -73,6 +73,32 @@ public interface CLIArguments {
 	double getPviewAspect();
 	boolean isPviewAspect();
 	
+	/* tiled conversion */
+	
+	@Option(description="zoom level of tiles that the input is split into;"
+			+ " each tile is converted and written separately",
+			longName="tiles.zoom")
+	int getTilesZoom();
+	boolean isTilesZoom();
+	
+	@Option(description="margin added to each side of a tile, relative to the tile size",
+			longName="tiles.overlap", defaultValue="0.05")
+	double getTilesOverlap();
+	boolean isTilesOverlap();
+	
+	/* tile pyramids */
+	
+	@Option(description="lowest zoom level of an image tile pyramid;"
+			+ " the tiles cover oview.bbox or the entire input",
+			longName="pyramid.minZoom")
+	int getPyramidMinZoom();
+	boolean isPyramidMinZoom();
+	
+	@Option(description="highest zoom level of an image tile pyramid",
+			longName="pyramid.maxZoom")
+	int getPyramidMaxZoom();
+	boolean isPyramidMaxZoom();
+	
 	/* logging */
 	
 	@Option(description="writes execution times to the command line")
@@ -63,6 +63,11 @@ public class CLIArgumentsGroup {
 		return CLIArgumentsUtil.getProgramMode(args1) == CONVERT
 			&& CLIArgumentsUtil.getProgramMode(args2) == CONVERT
 			&& args1.getInput().equals(args2.getInput())
+			&& args1.isTilesZoom() == args2.isTilesZoom()
+			&& (!args1.isTilesZoom()
+					|| (args1.getTilesZoom() == args2.getTilesZoom()
+						&& args1.getTilesOverlap() == args2.getTilesOverlap()))
+			&& args1.isPyramidMinZoom() == args2.isPyramidMinZoom()
 			&& ((args1.isConfig() && args1.getConfig().equals(args2.getConfig()))
 					|| (!args1.isConfig() && !args2.isConfig()));
 				
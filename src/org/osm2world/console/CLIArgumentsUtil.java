@@ -14,7 +14,7 @@ import java.util.regex.Pattern;
 public final class CLIArgumentsUtil {
 	
 	public static enum ProgramMode {GUI, CONVERT, HELP, VERSION, PARAMFILE};
-	public static enum OutputMode {OBJ, POV, PNG, PPM, SDF};
+	public static enum OutputMode {OBJ, POV, PNG, PPM, SDF, GLB};
 	
 	private CLIArgumentsUtil() { }
 	
@@ -52,6 +52,49 @@ public final class CLIArgumentsUtil {
 				}
 			}
 			
+			if (args.isTilesZoom()) {
+				
+				for (File outputFile : args.getOutput()) {
+					OutputMode outputMode = getOutputMode(outputFile);
+					if (outputMode == OutputMode.PNG || outputMode == OutputMode.PPM) {
+						return "image output is not supported for tiled conversions";
+					}
+				}
+				
+				if (args.getTilesOverlap() < 0 || args.getTilesOverlap() >= 0.5) {
+					return "tile overlap must be at least 0 and less than 0.5";
+				}
+				
+			}
+			
+			if (args.isPyramidMinZoom() || args.isPyramidMaxZoom()) {
+				
+				if (!args.isPyramidMinZoom() || !args.isPyramidMaxZoom()) {
+					return "minimum and maximum zoom of a tile pyramid "
+						+ "cannot be used separately, both must be defined";
+				}
+				
+				if (args.getPyramidMinZoom() < 0
+						|| args.getPyramidMinZoom() > args.getPyramidMaxZoom()) {
+					return "minimum zoom of a tile pyramid must be at least 0"
+						+ " and not greater than the maximum zoom";
+				}
+				
+				for (File outputFile : args.getOutput()) {
+					OutputMode outputMode = getOutputMode(outputFile);
+					if (outputMode != OutputMode.PNG && outputMode != OutputMode.PPM) {
+						return "tile pyramids only support image output";
+					}
+				}
+				
+				if (args.isTilesZoom() || args.isOviewTiles()
+						|| hasPerspectiveArg(args)) {
+					return "tile pyramids cannot be combined with tiled conversion,"
+						+ " tiles for orthographic view or perspective view";
+				}
+				
+			}
+			
 			if ((args.isPviewPos() && !args.isPviewLookat())
 					|| (args.isPviewLookat() && !args.isPviewPos())) {
 				return "camera position and look-at for perspective view "
@@ -98,6 +141,8 @@ public final class CLIArgumentsUtil {
 			return OutputMode.PPM;
 		} else if (outputFile.getName().toLowerCase().endsWith(".sdf")) {
 			return OutputMode.SDF;
+		} else if (outputFile.getName().toLowerCase().endsWith(".glb")) {
+			return OutputMode.GLB;
 		} else {
 			return null;
 		}
@@ -5,6 +5,7 @@ import static org.osm2world.core.target.jogl.JOGLRenderingParameters.Winding.CCW
 import static org.osm2world.core.util.ConfigUtil.*;
 
 import java.awt.Color;
+import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferInt;
@@ -14,10 +15,13 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
 
+import javax.imageio.ImageIO;
 import javax.media.opengl.GL2;
 import javax.media.opengl.GLCapabilities;
 import javax.media.opengl.GLDrawableFactory;
+import javax.media.opengl.GLException;
 import javax.media.opengl.GLPbuffer;
 import javax.media.opengl.GLProfile;
 
@@ -31,6 +35,9 @@ import org.osm2world.core.target.common.rendering.Projection;
 import org.osm2world.core.target.jogl.JOGLRenderingParameters;
 import org.osm2world.core.target.jogl.JOGLTarget;
 import org.osm2world.core.target.jogl.JOGLTextureManager;
+import org.osm2world.core.target.jogl.PrimitiveBuffer;
+import org.osm2world.core.target.software.SoftwareRenderer;
+import org.osm2world.core.util.ParallelIterationUtil;
 
 import ar.com.hjg.pngj.ImageInfo;
 import ar.com.hjg.pngj.ImageLineByte;
@@ -65,6 +72,15 @@ public class ImageExporter {
 	/** target prepared in the constructor; null for unbuffered rendering */
 	private JOGLTarget bufferTarget = null;
 	
+	/**
+	 * renderer used instead of OpenGL if software rendering has been
+	 * configured or no GLPbuffer is available; null otherwise
+	 */
+	private SoftwareRenderer softwareRenderer = null;
+	private ForkJoinPool softwareRenderingPool = null;
+	private Color softwareClearColor;
+	private BufferedImage softwareBackgroundImage;
+	
 	
 	/**
 	 * Creates an {@link ImageExporter} for later use.
@@ -128,26 +144,48 @@ public class ImageExporter {
 			
 		}
 		
-		/* create GL canvas and set rendering parameters */
-
-		GLProfile profile = GLProfile.getDefault();
-		GLDrawableFactory factory = GLDrawableFactory.getFactory(profile);
+		pBufferSizeX = min(canvasLimit, expectedMaxSizeX);
+		pBufferSizeY = min(canvasLimit, expectedMaxSizeY);
 		
-		if (! factory.canCreateGLPbuffer(null, profile)) {
-			throw new Error("Cannot create GLPbuffer for OpenGL output!");
+		/* create GL canvas, fall back to software rendering if that fails */
+		
+		if (!config.getBoolean(SOFTWARE_RENDERING_KEY, false)) {
+			
+			try {
+				createPBuffer();
+			} catch (GLException e) {
+				System.err.println("OpenGL is not available: " + e.getMessage());
+			} catch (UnsatisfiedLinkError e) {
+				System.err.println("OpenGL is not available: " + e.getMessage());
+			}
+			
+			if (pBuffer == null) {
+				System.err.println("Cannot create GLPbuffer for OpenGL output,"
+						+ " using software rendering instead");
+			}
+			
 		}
 		
-		GLCapabilities cap = new GLCapabilities(profile);
-		cap.setDoubleBuffered(false);
-				
-		pBufferSizeX = min(canvasLimit, expectedMaxSizeX);
-		pBufferSizeY = min(canvasLimit, expectedMaxSizeY);
-				
-		pBuffer = factory.createGLPbuffer(null,
-				cap, null, pBufferSizeX, pBufferSizeY, null);
+		if (pBuffer == null) {
+			
+			softwareClearColor = clearColor;
+			
+			if (backgroundImage != null) {
+				try {
+					softwareBackgroundImage = ImageIO.read(backgroundImage);
+				} catch (IOException e) {
+					System.err.println("cannot read background image: " + e);
+				}
+			}
+			
+			softwareRenderingPool = ParallelIterationUtil.createPool(config);
+			softwareRenderer = createSoftwareRenderer(results, config);
+			
+			return;
+			
+		}
 		
-		pBuffer.getContext().makeCurrent();
-		gl = pBuffer.getGL().getGL2();
+		/* set rendering parameters */
 		
 		JOGLTarget.clearGL(gl, clearColor);
 		
@@ -168,6 +206,29 @@ public class ImageExporter {
 		
 	}
 	
+	/**
+	 * creates the GLPbuffer, which remains null if this isn't supported
+	 */
+	private void createPBuffer() {
+		
+		GLProfile profile = GLProfile.getDefault();
+		GLDrawableFactory factory = GLDrawableFactory.getFactory(profile);
+		
+		if (! factory.canCreateGLPbuffer(null, profile)) {
+			return;
+		}
+		
+		GLCapabilities cap = new GLCapabilities(profile);
+		cap.setDoubleBuffered(false);
+		
+		pBuffer = factory.createGLPbuffer(null,
+				cap, null, pBufferSizeX, pBufferSizeY, null);
+		
+		pBuffer.getContext().makeCurrent();
+		gl = pBuffer.getGL().getGL2();
+		
+	}
+	
 	protected void finalize() throws Throwable {
 		freeResources();
 	};
@@ -197,6 +258,13 @@ public class ImageExporter {
 	        gl = null;
 		}
 		
+		if (softwareRenderingPool != null) {
+			softwareRenderingPool.shutdown();
+			softwareRenderingPool = null;
+		}
+		
+		softwareRenderer = null;
+		
 	}
 	
 	/**
@@ -253,6 +321,28 @@ public class ImageExporter {
 				int xEnd   = (xPart+1 < xParts) ? (xStart + (pBufferSizeX-1)) : (x-1);
 				int xSize  = (xEnd - xStart) + 1;
 							
+				/* render with the software renderer if OpenGL isn't used */
+				
+				if (softwareRenderer != null) {
+					
+					BufferedImage imagePart = new BufferedImage(
+							xSize, ySize, BufferedImage.TYPE_INT_RGB);
+					
+					drawSoftwareBackground(imagePart, xStart, yStart,
+							softwareClearColor, softwareBackgroundImage);
+					
+					softwareRenderer.renderPart(camera, projection,
+							xStart / (double)(x-1), xEnd / (double)(x-1),
+							yStart / (double)(y-1), yEnd / (double)(y-1),
+							imagePart, softwareRenderingPool);
+					
+					image.getGraphics().drawImage(imagePart,
+							xStart, 0, xSize, ySize, null);
+					
+					continue;
+					
+				}
+				
 				/* configure rendering */
 			
 				JOGLTarget.clearGL(gl, null);
@@ -311,6 +401,65 @@ public class ImageExporter {
 	}
 	
 	
+	static SoftwareRenderer createSoftwareRenderer(Results results,
+			Configuration config) {
+		
+		PrimitiveBuffer primitiveBuffer = new PrimitiveBuffer();
+		
+		primitiveBuffer.setConfiguration(config);
+		
+		boolean underground = config.getBoolean("renderUnderground", true);
+		
+		TargetUtil.renderWorldObjects(primitiveBuffer, results.getMapData(), underground);
+		
+		return new SoftwareRenderer(primitiveBuffer,
+				GlobalLightingParameters.DEFAULT);
+		
+	}
+	
+	/**
+	 * fills an image part with the background color or image.
+	 * Like {@link JOGLTarget#drawBackgoundImage(GL2, File, int, int, int, int, JOGLTextureManager)},
+	 * the background image is repeated, starting at the lower left corner.
+	 * 
+	 * @param yStart  first row of the part, counted from the bottom
+	 * @param backgroundImage  the background image; null to use the color
+	 */
+	static void drawSoftwareBackground(BufferedImage imagePart,
+			long xStart, long yStart,
+			Color clearColor, BufferedImage backgroundImage) {
+		
+		int partWidth = imagePart.getWidth();
+		int partHeight = imagePart.getHeight();
+		
+		if (backgroundImage == null) {
+			
+			Graphics graphics = imagePart.getGraphics();
+			graphics.setColor(clearColor);
+			graphics.fillRect(0, 0, partWidth, partHeight);
+			graphics.dispose();
+			
+		} else {
+			
+			int bgWidth = backgroundImage.getWidth();
+			int bgHeight = backgroundImage.getHeight();
+			
+			for (int row = 0; row < partHeight; row++) {
+				
+				long rowFromBottom = yStart + partHeight - 1 - row;
+				int bgRow = bgHeight - 1 - (int)(rowFromBottom % bgHeight);
+				
+				for (int column = 0; column < partWidth; column++) {
+					imagePart.setRGB(column, row, backgroundImage.getRGB(
+							(int)((xStart + column) % bgWidth), bgRow));
+				}
+				
+			}
+			
+		}
+		
+	}
+	
 	/**
 	 * interface ImageWriter is used to abstract the underlaying image
 	 * format. It can be used for incremental image writes of huge images
@@ -324,7 +473,7 @@ public class ImageExporter {
 	/**
 	 * Implementation of an ImageWriter to write png files
 	 */
-	public class PNGWriter implements ImageWriter {
+	public static class PNGWriter implements ImageWriter {
 
 		private ImageInfo imgInfo;
 		private PngWriter writer;
@@ -375,7 +524,7 @@ public class ImageExporter {
 	/**
 	 * Implementation of an ImageWriter to write raw ppm files
 	 */
-	public class PPMWriter implements ImageWriter {
+	public static class PPMWriter implements ImageWriter {
 
 		private FileOutputStream out;
 		private FileChannel fc;
@@ -7,6 +7,7 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.configuration.Configuration;
@@ -15,12 +16,16 @@ import org.osm2world.core.ConversionFacade;
 import org.osm2world.core.ConversionFacade.Phase;
 import org.osm2world.core.ConversionFacade.ProgressListener;
 import org.osm2world.core.ConversionFacade.Results;
+import org.osm2world.core.TiledConversion;
+import org.osm2world.core.TiledConversion.TileOutput;
 import org.osm2world.core.map_data.creation.MapProjection;
 import org.osm2world.core.map_elevation.creation.EleConstraintEnforcer;
+import org.osm2world.core.map_elevation.creation.IterativeEleConstraintEnforcer;
 import org.osm2world.core.map_elevation.creation.LPEleConstraintEnforcer;
 import org.osm2world.core.map_elevation.creation.LeastSquaresInterpolator;
 import org.osm2world.core.map_elevation.creation.NaturalNeighborInterpolator;
 import org.osm2world.core.map_elevation.creation.NoneEleConstraintEnforcer;
+import org.osm2world.core.map_elevation.creation.RasterInterpolator;
 import org.osm2world.core.map_elevation.creation.SimpleEleConstraintEnforcer;
 import org.osm2world.core.map_elevation.creation.TerrainInterpolator;
 import org.osm2world.core.map_elevation.creation.ZeroInterpolator;
@@ -31,10 +36,13 @@ import org.osm2world.core.target.common.rendering.Camera;
 import org.osm2world.core.target.common.rendering.OrthoTilesUtil;
 import org.osm2world.core.target.common.rendering.OrthoTilesUtil.CardinalDirection;
 import org.osm2world.core.target.common.rendering.Projection;
+import org.osm2world.core.target.common.rendering.TileNumber;
+import org.osm2world.core.target.gltf.GltfWriter;
 import org.osm2world.core.target.obj.ObjWriter;
 import org.osm2world.core.target.povray.POVRayWriter;
 import org.osm2world.core.target.sdf.SdfWriter;
 import org.osm2world.core.util.functions.DefaultFactory;
+import org.osm2world.core.util.functions.Factory;
 
 public final class Output {
 
@@ -44,36 +52,22 @@ public final class Output {
 			CLIArgumentsGroup argumentsGroup)
 		throws IOException {
 		
+		if (argumentsGroup.getRepresentative().isTilesZoom()) {
+			outputTiled(config, argumentsGroup);
+			return;
+		}
+		
+		if (argumentsGroup.getRepresentative().isPyramidMinZoom()) {
+			outputTilePyramid(config, argumentsGroup);
+			return;
+		}
+		
 		long start = System.currentTimeMillis();
 		
-		ConversionFacade cf = new ConversionFacade();
+		ConversionFacade cf = createConversionFacade(config);
 		PerformanceListener perfListener =
 			new PerformanceListener(argumentsGroup.getRepresentative());
 		cf.addProgressListener(perfListener);
-				
-		String interpolatorType = config.getString("terrainInterpolator");
-		if ("ZeroInterpolator".equals(interpolatorType)) {
-			cf.setTerrainEleInterpolatorFactory(
-					new DefaultFactory<TerrainInterpolator>(ZeroInterpolator.class));
-		} else if ("LeastSquaresInterpolator".equals(interpolatorType)) {
-			cf.setTerrainEleInterpolatorFactory(
-					new DefaultFactory<TerrainInterpolator>(LeastSquaresInterpolator.class));
-		} else if ("NaturalNeighborInterpolator".equals(interpolatorType)) {
-			cf.setTerrainEleInterpolatorFactory(
-					new DefaultFactory<TerrainInterpolator>(NaturalNeighborInterpolator.class));
-		}
-		
-		String enforcerType = config.getString("eleConstraintEnforcer");
-		if ("NoneEleConstraintEnforcer".equals(enforcerType)) {
-			cf.setEleConstraintEnforcerFactory(
-					new DefaultFactory<EleConstraintEnforcer>(NoneEleConstraintEnforcer.class));
-		} else if ("SimpleEleConstraintEnforcer".equals(enforcerType)) {
-			cf.setEleConstraintEnforcerFactory(
-					new DefaultFactory<EleConstraintEnforcer>(SimpleEleConstraintEnforcer.class));
-		} else if ("LPEleConstraintEnforcer".equals(enforcerType)) {
-			cf.setEleConstraintEnforcerFactory(
-					new DefaultFactory<EleConstraintEnforcer>(LPEleConstraintEnforcer.class));
-		}
 		
 		Results results = cf.createRepresentations(
 				argumentsGroup.getRepresentative().getInput(), null, config, null);
@@ -147,11 +141,11 @@ public final class Output {
 					if (primitiveThresholdOBJ == null) {
 						ObjWriter.writeObjFile(outputFile,
 								results.getMapData(), results.getMapProjection(),
-								camera, projection);
+								camera, projection, config);
 					} else {
 						ObjWriter.writeObjFiles(outputFile,
 								results.getMapData(), results.getMapProjection(),
-								camera, projection, primitiveThresholdOBJ);
+								camera, projection, config, primitiveThresholdOBJ);
 					}
 					break;
 
@@ -169,6 +163,11 @@ public final class Output {
 					}
 					break;
 					
+				case GLB:
+					GltfWriter.writeGlbFile(outputFile, results.getMapData(),
+							results.getMapProjection(), config);
+					break;
+					
 				case POV:
 					POVRayWriter.writePOVInstructionFile(outputFile,
 							results.getMapData(), camera, projection);
@@ -218,6 +217,244 @@ public final class Output {
 
 	}
 	
+	/**
+	 * creates a {@link ConversionFacade} using the terrain interpolator
+	 * and elevation constraint enforcer selected in the configuration
+	 */
+	private static ConversionFacade createConversionFacade(Configuration config) {
+		
+		ConversionFacade cf = new ConversionFacade();
+		
+		String interpolatorType = config.getString("terrainInterpolator");
+		if ("ZeroInterpolator".equals(interpolatorType)) {
+			cf.setTerrainEleInterpolatorFactory(
+					new DefaultFactory<TerrainInterpolator>(ZeroInterpolator.class));
+		} else if ("LeastSquaresInterpolator".equals(interpolatorType)) {
+			cf.setTerrainEleInterpolatorFactory(
+					new DefaultFactory<TerrainInterpolator>(LeastSquaresInterpolator.class));
+		} else if ("NaturalNeighborInterpolator".equals(interpolatorType)) {
+			cf.setTerrainEleInterpolatorFactory(
+					new DefaultFactory<TerrainInterpolator>(NaturalNeighborInterpolator.class));
+		} else if ("RasterInterpolator".equals(interpolatorType)) {
+			String methodName = config.getString("rasterInterpolationMethod", "BICUBIC");
+			RasterInterpolator.Method method = RasterInterpolator.Method.BICUBIC;
+			try {
+				method = RasterInterpolator.Method.valueOf(methodName.toUpperCase());
+			} catch (IllegalArgumentException e) {
+				System.err.println("unknown raster interpolation method "
+						+ methodName + ", using " + method);
+			}
+			cf.setRasterInterpolationMethod(method);
+		}
+		
+		String enforcerType = config.getString("eleConstraintEnforcer");
+		if ("NoneEleConstraintEnforcer".equals(enforcerType)) {
+			cf.setEleConstraintEnforcerFactory(
+					new DefaultFactory<EleConstraintEnforcer>(NoneEleConstraintEnforcer.class));
+		} else if ("SimpleEleConstraintEnforcer".equals(enforcerType)) {
+			cf.setEleConstraintEnforcerFactory(
+					new DefaultFactory<EleConstraintEnforcer>(SimpleEleConstraintEnforcer.class));
+		} else if ("LPEleConstraintEnforcer".equals(enforcerType)) {
+			cf.setEleConstraintEnforcerFactory(
+					new DefaultFactory<EleConstraintEnforcer>(LPEleConstraintEnforcer.class));
+		} else if ("IterativeEleConstraintEnforcer".equals(enforcerType)) {
+			final double tolerance = config.getDouble("eleConstraintTolerance",
+					IterativeEleConstraintEnforcer.DEFAULT_TOLERANCE);
+			final int maxIterations = config.getInt("eleConstraintMaxIterations",
+					IterativeEleConstraintEnforcer.DEFAULT_MAX_ITERATIONS);
+			cf.setEleConstraintEnforcerFactory(new Factory<EleConstraintEnforcer>() {
+				@Override public EleConstraintEnforcer make() {
+					return new IterativeEleConstraintEnforcer(tolerance, maxIterations);
+				}
+			});
+		}
+		
+		return cf;
+		
+	}
+	
+	/**
+	 * splits the input into tiles and writes separate output files
+	 * for each tile. The tile number is appended to the file names.
+	 */
+	private static void outputTiled(final Configuration config,
+			CLIArgumentsGroup argumentsGroup) throws IOException {
+		
+		long start = System.currentTimeMillis();
+		
+		final List<File> outputFiles = new ArrayList<File>();
+		for (CLIArguments args : argumentsGroup.getCLIArgumentsList()) {
+			outputFiles.addAll(args.getOutput());
+		}
+		
+		CLIArguments representativeArgs = argumentsGroup.getRepresentative();
+		
+		Factory<ConversionFacade> conversionFacadeFactory =
+				new Factory<ConversionFacade>() {
+			@Override public ConversionFacade make() {
+				return createConversionFacade(config);
+			}
+		};
+		
+		TiledConversion tiledConversion = new TiledConversion(
+				conversionFacadeFactory, config,
+				representativeArgs.getTilesZoom(),
+				representativeArgs.getTilesOverlap());
+		
+		tiledConversion.convert(representativeArgs.getInput(), new TileOutput() {
+			
+			@Override
+			public void writeTile(TileNumber tile, Results results)
+					throws IOException {
+				
+				for (File outputFile : outputFiles) {
+					
+					File tileFile = fileForTile(outputFile, tile);
+					
+					switch (CLIArgumentsUtil.getOutputMode(outputFile)) {
+					
+					case OBJ:
+						ObjWriter.writeObjFile(tileFile, results.getMapData(),
+								results.getMapProjection(), null, null, config);
+						break;
+						
+					case SDF:
+						SdfWriter.writeSdfFile(tileFile, results.getMapData(),
+								results.getMapProjection(), null, null);
+						break;
+						
+					case GLB:
+						GltfWriter.writeGlbFile(tileFile, results.getMapData(),
+								results.getMapProjection(), config);
+						break;
+						
+					case POV:
+						POVRayWriter.writePOVInstructionFile(tileFile,
+								results.getMapData(), null, null);
+						break;
+						
+					default:
+						throw new IllegalArgumentException(
+								"unsupported output for tiles: " + outputFile);
+						
+					}
+					
+				}
+				
+				System.out.println("finished tile " + tile);
+				
+			}
+			
+		});
+		
+		if (representativeArgs.getPerformancePrint()) {
+			long timeSec = (System.currentTimeMillis() - start) / 1000;
+			System.out.println("finished after " + timeSec + " s");
+		}
+		
+	}
+	
+	/**
+	 * converts the input once and writes image tiles
+	 * for a range of zoom levels
+	 */
+	private static void outputTilePyramid(Configuration config,
+			CLIArgumentsGroup argumentsGroup) throws IOException {
+		
+		long start = System.currentTimeMillis();
+		
+		CLIArguments representativeArgs = argumentsGroup.getRepresentative();
+		
+		ConversionFacade cf = createConversionFacade(config);
+		cf.addProgressListener(new PerformanceListener(representativeArgs));
+		
+		Results results = cf.createRepresentations(
+				representativeArgs.getInput(), null, config, null);
+		
+		MapProjection mapProjection = results.getMapProjection();
+		
+		TilePyramidExporter exporter = new TilePyramidExporter(config, results);
+		
+		try {
+			
+			for (CLIArguments args : argumentsGroup.getCLIArgumentsList()) {
+				
+				/* determine the area covered by the tiles */
+				
+				double minLat, minLon, maxLat, maxLon;
+				
+				if (args.isOviewBoundingBox()) {
+					
+					minLat = minLon = Double.POSITIVE_INFINITY;
+					maxLat = maxLon = Double.NEGATIVE_INFINITY;
+					
+					for (LatLonEle l : args.getOviewBoundingBox()) {
+						minLat = Math.min(minLat, l.lat);
+						minLon = Math.min(minLon, l.lon);
+						maxLat = Math.max(maxLat, l.lat);
+						maxLon = Math.max(maxLon, l.lon);
+					}
+					
+				} else {
+					
+					AxisAlignedBoundingBoxXZ bounds =
+							results.getMapData().getDataBoundary();
+					
+					VectorXZ min = new VectorXZ(bounds.minX, bounds.minZ);
+					VectorXZ max = new VectorXZ(bounds.maxX, bounds.maxZ);
+					
+					minLat = mapProjection.calcLat(min);
+					minLon = mapProjection.calcLon(min);
+					maxLat = mapProjection.calcLat(max);
+					maxLon = mapProjection.calcLon(max);
+					
+				}
+				
+				for (File outputFile : args.getOutput()) {
+					
+					exporter.writeTiles(outputFile,
+							CLIArgumentsUtil.getOutputMode(outputFile),
+							args.getPyramidMinZoom(), args.getPyramidMaxZoom(),
+							minLat, minLon, maxLat, maxLon,
+							args.getResolution().x, args.getResolution().y,
+							args.getOviewAngle(), args.getOviewFrom());
+					
+				}
+				
+			}
+			
+		} finally {
+			exporter.freeResources();
+		}
+		
+		if (representativeArgs.getPerformancePrint()) {
+			long timeSec = (System.currentTimeMillis() - start) / 1000;
+			System.out.println("finished after " + timeSec + " s");
+		}
+		
+	}
+	
+	/**
+	 * inserts zoom, x and y of a tile before the file's extension,
+	 * or appends them to names without an extension
+	 */
+	static File fileForTile(File file, TileNumber tile) {
+		
+		String name = file.getName();
+		int extensionStart = name.lastIndexOf('.');
+		
+		if (extensionStart < 0) {
+			extensionStart = name.length();
+		}
+		
+		String tileName = name.substring(0, extensionStart)
+				+ "_" + tile.zoom + "_" + tile.x + "_" + tile.y
+				+ name.substring(extensionStart);
+		
+		return new File(file.getAbsoluteFile().getParentFile(), tileName);
+		
+	}
+	
 	private static class PerformanceListener implements ProgressListener {
 		
 		private final CLIArguments args;
@@ -0,0 +1,167 @@
+package org.osm2world.console;
+
+import static org.osm2world.core.util.ConfigUtil.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.configuration.Configuration;
+import org.osm2world.console.CLIArgumentsUtil.OutputMode;
+import org.osm2world.console.ImageExporter.ImageWriter;
+import org.osm2world.console.ImageExporter.PNGWriter;
+import org.osm2world.console.ImageExporter.PPMWriter;
+import org.osm2world.core.ConversionFacade.Results;
+import org.osm2world.core.map_data.creation.MapProjection;
+import org.osm2world.core.target.common.rendering.OrthoTilesUtil;
+import org.osm2world.core.target.common.rendering.OrthoTilesUtil.CardinalDirection;
+import org.osm2world.core.target.common.rendering.TileNumber;
+import org.osm2world.core.target.software.SoftwareRenderer;
+import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
+
+/**
+ * writes orthographic image tiles for a range of zoom levels.
+ * The results of a single conversion are prepared for rendering once
+ * and then used for all tiles. Tiles are rendered in parallel
+ * with a {@link SoftwareRenderer}, and tiles that wouldn't contain
+ * any part of the scene are not written at all.
+ */
+public class TilePyramidExporter {
+	
+	private final MapProjection mapProjection;
+	
+	private final SoftwareRenderer renderer;
+	private final ForkJoinPool pool;
+	
+	private final Color clearColor;
+	private BufferedImage backgroundImage = null;
+	
+	public TilePyramidExporter(Configuration config, Results results) {
+		
+		mapProjection = results.getMapProjection();
+		
+		/* parse background color/image */
+		
+		Color color = Color.BLACK;
+		
+		if (config.containsKey(BG_COLOR_KEY)) {
+			Color confClearColor = parseColor(config.getString(BG_COLOR_KEY));
+			if (confClearColor != null) {
+				color = confClearColor;
+			} else {
+				System.err.println("incorrect color value: "
+						+ config.getString(BG_COLOR_KEY));
+			}
+		}
+		
+		clearColor = color;
+		
+		if (config.containsKey(BG_IMAGE_KEY)) {
+			File file = new File(config.getString(BG_IMAGE_KEY));
+			try {
+				backgroundImage = ImageIO.read(file);
+			} catch (IOException e) {
+				System.err.println("cannot read background image: " + e);
+			}
+		}
+		
+		/* prepare the scene */
+		
+		renderer = ImageExporter.createSoftwareRenderer(results, config);
+		pool = ParallelIterationUtil.createPool(config);
+		
+	}
+	
+	/**
+	 * renders all tiles within a range of zoom levels that overlap
+	 * a bounding box. The tile number is appended to the file names.
+	 */
+	public void writeTiles(final File outputFile, final OutputMode outputMode,
+			int minZoom, int maxZoom,
+			double minLat, double minLon, double maxLat, double maxLon,
+			final int width, final int height,
+			final double angle, final CardinalDirection from) {
+		
+		long start = System.currentTimeMillis();
+		
+		List<TileNumber> tiles = new ArrayList<TileNumber>();
+		
+		for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+			
+			TileNumber topLeft = TileNumber.tileForLatLon(zoom, maxLat, minLon);
+			TileNumber bottomRight = TileNumber.tileForLatLon(zoom, minLat, maxLon);
+			
+			for (int x = topLeft.x; x <= bottomRight.x; x++) {
+				for (int y = topLeft.y; y <= bottomRight.y; y++) {
+					tiles.add(new TileNumber(zoom, x, y));
+				}
+			}
+			
+		}
+		
+		final AtomicInteger renderedTiles = new AtomicInteger();
+		final AtomicInteger emptyTiles = new AtomicInteger();
+		
+		ParallelIterationUtil.iterate(pool, tiles, new Operation<TileNumber>() {
+			@Override
+			public void perform(TileNumber tile) {
+				
+				BufferedImage image = new BufferedImage(
+						width, height, BufferedImage.TYPE_INT_RGB);
+				
+				ImageExporter.drawSoftwareBackground(image,
+						(long)tile.x * width,
+						((1L << tile.zoom) - 1 - tile.y) * height,
+						clearColor, backgroundImage);
+				
+				boolean visible = renderer.render(
+						OrthoTilesUtil.cameraForTile(mapProjection, tile, angle, from),
+						OrthoTilesUtil.projectionForTile(mapProjection, tile, angle, from),
+						image, null);
+				
+				if (!visible) {
+					emptyTiles.incrementAndGet();
+					return;
+				}
+				
+				File tileFile = Output.fileForTile(outputFile, tile);
+				
+				ImageWriter imageWriter = (outputMode == OutputMode.PPM)
+						? new PPMWriter(tileFile, width, height)
+						: new PNGWriter(tileFile, width, height);
+				
+				try {
+					imageWriter.append(image);
+					imageWriter.close();
+				} catch (IOException e) {
+					System.err.println("cannot write tile " + tile + ": " + e);
+					return;
+				}
+				
+				renderedTiles.incrementAndGet();
+				
+			}
+		});
+		
+		double seconds = Math.max(System.currentTimeMillis() - start, 1) / 1000.0;
+		
+		System.out.printf("rendered %d tiles, skipped %d empty tiles, %.1f tiles/s\n",
+				renderedTiles.get(), emptyTiles.get(), tiles.size() / seconds);
+		
+	}
+	
+	public void freeResources() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+}
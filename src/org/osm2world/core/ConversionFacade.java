@@ -7,7 +7,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.configuration.BaseConfiguration;
 import org.apache.commons.configuration.Configuration;
@@ -20,15 +22,21 @@ import org.osm2world.core.map_data.creation.OriginMapProjection;
 import org.osm2world.core.map_data.data.MapData;
 import org.osm2world.core.map_elevation.creation.EleConstraintEnforcer;
 import org.osm2world.core.map_elevation.creation.EleConstraintValidator;
+import org.osm2world.core.map_elevation.creation.EleInterpolator;
 import org.osm2world.core.map_elevation.creation.LeastSquaresInterpolator;
 import org.osm2world.core.map_elevation.creation.NoneEleConstraintEnforcer;
+import org.osm2world.core.map_elevation.creation.RasterInterpolator;
+import org.osm2world.core.map_elevation.creation.RasterTerrainElevationData;
 import org.osm2world.core.map_elevation.creation.SRTMData;
+import org.osm2world.core.map_elevation.creation.SRTMTileCache;
 import org.osm2world.core.map_elevation.creation.TerrainElevationData;
 import org.osm2world.core.map_elevation.creation.TerrainInterpolator;
 import org.osm2world.core.map_elevation.creation.ZeroInterpolator;
 import org.osm2world.core.map_elevation.data.EleConnector;
 import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.osm.creation.JOSMFileHack;
+import org.osm2world.core.osm.creation.CompactOsmosisReader;
 import org.osm2world.core.osm.creation.OsmosisReader;
 import org.osm2world.core.osm.data.OSMData;
 import org.osm2world.core.target.Renderable;
@@ -37,6 +45,7 @@ import org.osm2world.core.target.TargetUtil;
 import org.osm2world.core.target.common.material.Materials;
 import org.osm2world.core.util.FaultTolerantIterationUtil;
 import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
 import org.osm2world.core.util.functions.DefaultFactory;
 import org.osm2world.core.util.functions.Factory;
 import org.osm2world.core.world.creation.WorldCreator;
@@ -160,6 +169,10 @@ public class ConversionFacade {
 	private Factory<? extends EleConstraintEnforcer> eleConstraintEnforcerFactory =
 		new DefaultFactory<NoneEleConstraintEnforcer>(NoneEleConstraintEnforcer.class);
 	
+	private RasterInterpolator.Method rasterInterpolationMethod = null;
+	
+	private boolean configureMaterials = true;
+	
 	/**
 	 * sets the factory that will make {@link MapProjection}
 	 * instances during subsequent calls to
@@ -196,6 +209,32 @@ public class ConversionFacade {
 		this.terrainEleInterpolatorFactory = enforcerFactory;
 	}
 	
+	/**
+	 * enables interpolation directly from raster elevation data
+	 * with a {@link RasterInterpolator} during subsequent calls to
+	 * {@link #createRepresentations(OSMData, List, Configuration, List)}.
+	 * The {@link TerrainInterpolator} is only used if the elevation data
+	 * is not a raster.
+	 * 
+	 * @param method  interpolation method; null to always use
+	 *                the {@link TerrainInterpolator}
+	 */
+	public void setRasterInterpolationMethod(RasterInterpolator.Method method) {
+		this.rasterInterpolationMethod = method;
+	}
+	
+	/**
+	 * sets whether subsequent calls to
+	 * {@link #createRepresentations(OSMData, List, Configuration, List)}
+	 * apply their configuration to the global {@link Materials}.
+	 * Should be disabled if several conversions run at the same time,
+	 * with the materials configured once before starting them.
+	 * Enabled by default.
+	 */
+	public void setConfigureMaterials(boolean configureMaterials) {
+		this.configureMaterials = configureMaterials;
+	}
+	
 	
 	/**
 	 * performs all necessary steps to go from
@@ -219,6 +258,27 @@ public class ConversionFacade {
 			throw new IllegalArgumentException("osmFile must not be null");
 		}
 		
+		OSMData osmData = readOSMFile(osmFile, config);
+		
+		return createRepresentations(osmData, worldModules, config, targets);
+		
+	}
+	
+	
+	/**
+	 * reads an OSM file, using a workaround for files created by JOSM
+	 * if they cannot be read directly
+	 * 
+	 * @param config  controls the choice of reader implementation;
+	 *                null to use defaults
+	 */
+	static OSMData readOSMFile(File osmFile, Configuration config)
+			throws IOException {
+		
+		boolean compactReader = config != null
+				&& config.getBoolean("compactOSMReader", false);
+		
+		
 		OSMData osmData = null;
 		boolean useJOSMHack = false;
 		
@@ -229,7 +289,7 @@ public class ConversionFacade {
 			/* try to read file using Osmosis */
 			
 			try {
-				osmData = new OsmosisReader(osmFile).getData();
+				osmData = readOSMFile(osmFile, compactReader);
 			} catch (IOException e) {
 				
 				System.out.println("could not read file," +
@@ -253,14 +313,24 @@ public class ConversionFacade {
 						" (not even with workaround for JOSM files)", e2);
 			}
 			
-			osmData = new OsmosisReader(tempFile).getData();
+			osmData = readOSMFile(tempFile, compactReader);
 			
 		}
 		
-		return createRepresentations(osmData, worldModules, config, targets);
+		return osmData;
 		
 	}
 	
+	private static OSMData readOSMFile(File osmFile, boolean compactReader)
+			throws IOException {
+		
+		if (compactReader) {
+			return new CompactOsmosisReader(osmFile).getData();
+		} else {
+			return new OsmosisReader(osmFile).getData();
+		}
+		
+	}
 	
 	/**
 	 * variant of
@@ -275,7 +345,12 @@ public class ConversionFacade {
 	 * @param config        set of parameters that controls various aspects
 	 *                      of the modules' behavior; null to use defaults
 	 * @param targets       receivers of the conversion results; can be null if
-	 *                      you want to handle the returned results yourself
+	 *                      you want to handle the returned results yourself.
+	 *                      All targets receive the world objects in a single
+	 *                      pass over the map data. If the releaseWorldObjects
+	 *                      config property is set, the world objects are
+	 *                      discarded while rendering, and the returned results
+	 *                      will no longer contain them.
 	 * 
 	 * @throws BoundingBoxSizeException  for oversized bounding boxes
 	 */
@@ -320,9 +395,11 @@ public class ConversionFacade {
 			worldModules = createDefaultModuleList();
 		}
 		
-		Materials.configureMaterials(config);
-			//this will cause problems if multiple conversions are run
-			//at the same time, because global variables are being modified
+		if (configureMaterials) {
+			Materials.configureMaterials(config);
+				//this will cause problems if multiple conversions are run
+				//at the same time, because global variables are being modified
+		}
 		
 		WorldCreator moduleManager =
 			new WorldCreator(config, worldModules);
@@ -335,10 +412,15 @@ public class ConversionFacade {
 		TerrainElevationData eleData = null;
 				
 		if (srtmDir != null) {
+			
+			SRTMTileCache.getSharedInstance().setCapacity(config.getInt(
+					"srtmTileCacheSize", SRTMTileCache.DEFAULT_CAPACITY));
+			
 			eleData = new SRTMData(new File(srtmDir), mapProjection);
+			
 		}
 		
-		calculateElevations(mapData, eleData, config);
+		calculateElevations(mapData, eleData, mapProjection, config);
 		
 		/* create terrain */
 		updatePhase(Phase.TERRAIN); //TODO this phase may be obsolete
@@ -349,35 +431,154 @@ public class ConversionFacade {
 		boolean underground = config.getBoolean("renderUnderground", true);
 		
 		if (targets != null) {
+			
+			boolean releaseWorldObjects =
+					config.getBoolean("releaseWorldObjects", false);
+			
+			TargetUtil.renderWorldObjects(targets, mapData,
+					underground, releaseWorldObjects);
+			
 			for (Target<?> target : targets) {
-				TargetUtil.renderWorldObjects(target, mapData, underground);
 				target.finish();
 			}
+			
 		}
 		
 		return new Results(mapProjection, mapData, eleData);
 		
 	}
 	
+	/**
+	 * sets the elevations for a batch of connectors.
+	 * If the batch cannot be interpolated as a whole, each connector
+	 * is interpolated individually, and connectors causing exceptions
+	 * are left without elevation.
+	 */
+	private static void interpolateEle(EleInterpolator interpolator,
+			List<EleConnector> connectors) {
+		
+		List<VectorXZ> positions = new ArrayList<VectorXZ>(connectors.size());
+		
+		for (EleConnector conn : connectors) {
+			positions.add(conn.pos);
+		}
+		
+		try {
+			
+			List<VectorXYZ> results = interpolator.interpolateEle(positions);
+			
+			for (int i = 0; i < connectors.size(); i++) {
+				connectors.get(i).setPosXYZ(results.get(i));
+			}
+			
+		} catch (Exception batchException) {
+			
+			for (EleConnector conn : connectors) {
+				try {
+					conn.setPosXYZ(interpolator.interpolateEle(conn.pos));
+				} catch (Exception e) {
+					System.err.println("ignored exception:");
+					//TODO proper logging
+					e.printStackTrace();
+					System.err.println("this exception occurred for the following input:\n"
+							+ conn.pos);
+				}
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * creates the terrain interpolator for {@link #calculateElevations(MapData,
+	 * TerrainElevationData, MapProjection, Configuration)}
+	 */
+	private TerrainInterpolator createTerrainInterpolator(
+			TerrainElevationData eleData) {
+		
+		if (eleData == null) {
+			return new ZeroInterpolator();
+		} else {
+			return terrainEleInterpolatorFactory.make();
+		}
+		
+	}
+	
+	/**
+	 * creates the raster interpolator for {@link #calculateElevations(MapData,
+	 * TerrainElevationData, MapProjection, Configuration)}
+	 * 
+	 * @return  the interpolator; null if raster interpolation is not used
+	 */
+	private RasterInterpolator createRasterInterpolator(
+			TerrainElevationData eleData, MapProjection mapProjection) {
+		
+		if (eleData == null || rasterInterpolationMethod == null) {
+			return null;
+		}
+		
+		if (!(eleData instanceof RasterTerrainElevationData)) {
+			System.err.println("warning: elevation data is not a raster,"
+					+ " using the terrain interpolator");
+			return null;
+		}
+		
+		return new RasterInterpolator((RasterTerrainElevationData)eleData,
+				mapProjection, rasterInterpolationMethod);
+		
+	}
+	
 	/**
 	 * uses OSM data and an terrain elevation data (usually from an external
 	 * source) to calculate elevations for all {@link EleConnector}s of the
 	 * {@link WorldObject}s
 	 */
 	private void calculateElevations(MapData mapData,
-			TerrainElevationData eleData, Configuration config) {
+			TerrainElevationData eleData, MapProjection mapProjection,
+			Configuration config) {
+		
+		ForkJoinPool pool = ParallelIterationUtil.createPool(config);
+		
+		try {
+			calculateElevations(mapData, eleData, mapProjection, config, pool);
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+		
+	}
+	
+	/**
+	 * implementation of {@link #calculateElevations(MapData,
+	 * TerrainElevationData, MapProjection, Configuration)}
+	 *
+	 * @param pool  pool for the parallelizable steps; may be null
+	 */
+	private void calculateElevations(MapData mapData,
+			TerrainElevationData eleData, MapProjection mapProjection,
+			Configuration config, ForkJoinPool pool) {
 				
-		final TerrainInterpolator interpolator =
-				(eleData != null)
-				? terrainEleInterpolatorFactory.make()
-				: new ZeroInterpolator();
+		final EleInterpolator interpolator;
+		TerrainInterpolator terrainInterpolator = null;
+		
+		RasterInterpolator rasterInterpolator =
+				createRasterInterpolator(eleData, mapProjection);
+		
+		if (rasterInterpolator != null) {
+			interpolator = rasterInterpolator;
+		} else {
+			terrainInterpolator = createTerrainInterpolator(eleData);
+			interpolator = terrainInterpolator;
+		}
 		
 		/* provide known elevations from eleData to the interpolator */
 		
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
-				
-		if (!(interpolator instanceof ZeroInterpolator)) {
+		
+		if (terrainInterpolator != null
+				&& !(terrainInterpolator instanceof ZeroInterpolator)) {
 		
 			Collection<VectorXYZ> sites = emptyList();
 			
@@ -393,7 +594,7 @@ public class ConversionFacade {
 				e.printStackTrace();
 			}
 			
-			interpolator.setKnownSites(sites);
+			terrainInterpolator.setKnownSites(sites, pool);
 			
 			System.out.println("time setKnownSites: " + stopWatch);
 			stopWatch.reset();
@@ -401,7 +602,7 @@ public class ConversionFacade {
 			
 		}
 		
-		/* interpolate connectors' elevations */
+		/* collect connectors */
 		
 		final List<EleConnector> connectors = new ArrayList<EleConnector>();
 		
@@ -410,13 +611,32 @@ public class ConversionFacade {
 			@Override public void perform(WorldObject worldObject) {
 				
 				for (EleConnector conn : worldObject.getEleConnectors()) {
-					conn.setPosXYZ(interpolator.interpolateEle(conn.pos));
 					connectors.add(conn);
 				}
 				
 			}
 		});
 		
+		/* interpolate connectors' elevations.
+		 * Interpolators support concurrent calls once the known sites
+		 * have been set, so batches of connectors are handled in parallel. */
+		
+		ParallelIterationUtil.iterate(pool,
+				ParallelIterationUtil.partition(pool, connectors),
+				new Operation<List<EleConnector>>() {
+			@Override public void perform(List<EleConnector> batch) {
+				interpolateEle(interpolator, batch);
+			}
+		});
+		
+		/* connectors without elevation are excluded from further calculations */
+		
+		for (Iterator<EleConnector> it = connectors.iterator(); it.hasNext(); ) {
+			if (it.next().getPosXYZ() == null) {
+				it.remove();
+			}
+		}
+		
 		System.out.println("time terrain interpolation: " + stopWatch);
 		stopWatch.reset();
 		stopWatch.start();
@@ -449,7 +669,7 @@ public class ConversionFacade {
 		stopWatch.reset();
 		stopWatch.start();
 		
-		enforcer.enforceConstraints();
+		enforcer.enforceConstraints(pool);
 		
 		System.out.println("time enforce constraints: " + stopWatch);
 		stopWatch.reset();
@@ -0,0 +1,358 @@
+package org.osm2world.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.osm2world.core.ConversionFacade.Results;
+import org.osm2world.core.osm.data.OSMData;
+import org.osm2world.core.osm.data.OSMElement;
+import org.osm2world.core.osm.data.OSMMember;
+import org.osm2world.core.osm.data.OSMNode;
+import org.osm2world.core.osm.data.OSMRelation;
+import org.osm2world.core.osm.data.OSMWay;
+import org.osm2world.core.target.common.material.Materials;
+import org.osm2world.core.target.common.rendering.TileNumber;
+import org.osm2world.core.util.ConfigUtil;
+import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.util.functions.Factory;
+
+/**
+ * splits OSM data into tiles and performs an independent conversion
+ * for each of them. This limits the memory needed for each conversion
+ * and the size of the bounding box that a single conversion has to handle.
+ *
+ * Tiles are extended by an overlap margin. Ways and relations are
+ * included in their entirety in every tile they have a node in,
+ * so objects crossing tile boundaries appear in the output of each
+ * of these tiles.
+ *
+ * Tiles are converted in parallel if the
+ * {@link ConfigUtil#THREAD_COUNT_KEY} property is set. Each conversion
+ * then runs single-threaded, so the thread count is not multiplied.
+ * Every tile uses its own {@link ConversionFacade}, and the global
+ * {@link Materials} are configured once before the first tile.
+ */
+public class TiledConversion {
+	
+	/**
+	 * receives the results for each tile.
+	 * Will be called from multiple threads at the same time
+	 * if tiles are converted in parallel.
+	 */
+	public static interface TileOutput {
+		
+		public void writeTile(TileNumber tile, Results results)
+				throws IOException;
+		
+	}
+	
+	private final Factory<ConversionFacade> conversionFacadeFactory;
+	private final Configuration config;
+	private final int zoom;
+	private final double overlap;
+	
+	/**
+	 * @param conversionFacadeFactory  creates a new facade
+	 *                                 for each tile's conversion
+	 * @param config                   configuration used for each conversion
+	 * @param zoom                     zoom level of the tiles
+	 * @param overlap                  size of the margin that is added to
+	 *                                 each side of a tile, relative to
+	 *                                 the tile's size
+	 */
+	public TiledConversion(Factory<ConversionFacade> conversionFacadeFactory,
+			Configuration config, int zoom, double overlap) {
+		
+		if (overlap < 0 || overlap >= 0.5) {
+			throw new IllegalArgumentException("overlap must be in [0, 0.5)");
+		}
+		
+		this.conversionFacadeFactory = conversionFacadeFactory;
+		this.config = (config != null) ? config : new BaseConfiguration();
+		this.zoom = zoom;
+		this.overlap = overlap;
+		
+	}
+	
+	/**
+	 * reads an OSM file and converts each tile
+	 *
+	 * @see #convert(OSMData, TileOutput)
+	 */
+	public void convert(File osmFile, TileOutput output) throws IOException {
+		convert(ConversionFacade.readOSMFile(osmFile, config), output);
+	}
+	
+	/**
+	 * converts each tile containing OSM data
+	 * and supplies the results to the output.
+	 * Exceptions for a single tile are reported,
+	 * but don't prevent the conversion of other tiles.
+	 */
+	public void convert(OSMData osmData, final TileOutput output) {
+		
+		final Map<TileNumber, OSMData> tileMap = splitIntoTiles(osmData);
+		
+		/* use a single thread for each individual conversion */
+		
+		BaseConfiguration tileOverrides = new BaseConfiguration();
+		tileOverrides.setProperty(ConfigUtil.THREAD_COUNT_KEY, 1);
+		
+		final CompositeConfiguration tileConfig = new CompositeConfiguration();
+		tileConfig.addConfiguration(tileOverrides);
+		tileConfig.addConfiguration(config);
+		
+		/* materials are global, so they cannot be configured
+		 * by the conversions running at the same time */
+		
+		Materials.configureMaterials(tileConfig);
+		
+		/* convert tiles */
+		
+		ForkJoinPool pool = ParallelIterationUtil.createPool(config);
+		
+		try {
+			
+			ParallelIterationUtil.iterate(pool, tileMap.keySet(),
+					new Operation<TileNumber>() {
+				@Override public void perform(TileNumber tile) {
+					
+					try {
+						
+						ConversionFacade conversionFacade =
+								conversionFacadeFactory.make();
+						conversionFacade.setConfigureMaterials(false);
+						
+						Results results = conversionFacade.createRepresentations(
+								tileMap.get(tile), null, tileConfig, null);
+						
+						output.writeTile(tile, results);
+					
+					} catch (Exception e) {
+						System.err.println("conversion failed for tile " + tile + ":");
+						//TODO proper logging
+						e.printStackTrace();
+					}
+					
+				}
+			});
+		
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+		
+	}
+	
+	/**
+	 * distributes OSM data to the tiles covering it.
+	 * Each resulting data set uses the extended tile area as its bound.
+	 *
+	 * @return  data for each non-empty tile; tiles are ordered by x and y
+	 */
+	Map<TileNumber, OSMData> splitIntoTiles(OSMData osmData) {
+		
+		/* determine the tiles for each node */
+		
+		Map<OSMElement, Set<TileNumber>> tilesForElement =
+				new IdentityHashMap<OSMElement, Set<TileNumber>>();
+		
+		for (OSMNode node : osmData.getNodes()) {
+			tilesForElement.put(node, tilesForPosition(node.lat, node.lon));
+		}
+		
+		/* ways and relations belong to the tiles of their nodes and members */
+		
+		for (OSMWay way : osmData.getWays()) {
+			Set<TileNumber> tiles = new LinkedHashSet<TileNumber>();
+			for (OSMNode node : way.nodes) {
+				tiles.addAll(tilesForElement.get(node));
+			}
+			tilesForElement.put(way, tiles);
+		}
+		
+		for (OSMRelation relation : osmData.getRelations()) {
+			Set<TileNumber> tiles = new LinkedHashSet<TileNumber>();
+			for (OSMMember member : relation.relationMembers) {
+				Set<TileNumber> memberTiles = tilesForElement.get(member.member);
+				if (memberTiles != null) {
+					tiles.addAll(memberTiles);
+				}
+			}
+			tilesForElement.put(relation, tiles);
+		}
+		
+		/* collect the elements for each tile */
+		
+		Map<TileNumber, TileData> tileDataMap = new HashMap<TileNumber, TileData>();
+		
+		for (OSMWay way : osmData.getWays()) {
+			for (TileNumber tile : tilesForElement.get(way)) {
+				TileData tileData = getTileData(tileDataMap, tile);
+				tileData.ways.add(way);
+				tileData.nodes.addAll(way.nodes);
+			}
+		}
+		
+		for (OSMNode node : osmData.getNodes()) {
+			for (TileNumber tile : tilesForElement.get(node)) {
+				getTileData(tileDataMap, tile).nodes.add(node);
+			}
+		}
+		
+		for (OSMRelation relation : osmData.getRelations()) {
+			for (TileNumber tile : tilesForElement.get(relation)) {
+				getTileData(tileDataMap, tile).relations.add(relation);
+			}
+		}
+		
+		/* create OSMData instances with complete ways and relations */
+		
+		List<TileNumber> tiles = new ArrayList<TileNumber>(tileDataMap.keySet());
+		
+		Collections.sort(tiles, new Comparator<TileNumber>() {
+			@Override public int compare(TileNumber t1, TileNumber t2) {
+				return (t1.x != t2.x) ? t1.x - t2.x : t1.y - t2.y;
+			}
+		});
+		
+		Map<TileNumber, OSMData> result = new LinkedHashMap<TileNumber, OSMData>();
+		
+		for (TileNumber tile : tiles) {
+			
+			TileData tileData = tileDataMap.get(tile);
+			
+			List<OSMRelation> relations = new ArrayList<OSMRelation>();
+			
+			for (OSMRelation relation : tileData.relations) {
+				relations.add(relationForTile(relation, tileData));
+			}
+			
+			result.put(tile, new OSMData(
+					Collections.singletonList(boundForTile(tile)),
+					tileData.nodes, tileData.ways, relations));
+			
+		}
+		
+		return result;
+		
+	}
+	
+	/**
+	 * returns a copy of a relation without those relation members
+	 * that are relations not included in the tile. Node and way members
+	 * are always kept, they are added to the tile if necessary.
+	 */
+	private static OSMRelation relationForTile(OSMRelation relation,
+			TileData tileData) {
+		
+		OSMRelation result = new OSMRelation(relation.tags, relation.id,
+				relation.relationMembers.size());
+		
+		for (OSMMember member : relation.relationMembers) {
+			
+			if (member.member instanceof OSMRelation) {
+				if (!tileData.relations.contains(member.member)) continue;
+			} else if (member.member instanceof OSMWay) {
+				OSMWay way = (OSMWay) member.member;
+				if (tileData.ways.add(way)) {
+					tileData.nodes.addAll(way.nodes);
+				}
+			} else if (member.member instanceof OSMNode) {
+				tileData.nodes.add((OSMNode) member.member);
+			}
+			
+			result.relationMembers.add(member);
+			
+		}
+		
+		return result;
+		
+	}
+	
+	/**
+	 * returns all tiles whose area, extended by the overlap margin,
+	 * contains the position
+	 */
+	private Set<TileNumber> tilesForPosition(double lat, double lon) {
+		
+		double tileX = TileNumber.tileXForLon(lon, zoom);
+		double tileY = TileNumber.tileYForLat(lat, zoom);
+		
+		int minX = (int) Math.floor(tileX - overlap);
+		int maxX = (int) Math.floor(tileX + overlap);
+		int minY = (int) Math.floor(tileY - overlap);
+		int maxY = (int) Math.floor(tileY + overlap);
+		
+		int maxTile = (1 << zoom) - 1;
+		
+		Set<TileNumber> result = new LinkedHashSet<TileNumber>(4);
+		
+		for (int x = Math.max(0, minX); x <= Math.min(maxTile, maxX); x++) {
+			for (int y = Math.max(0, minY); y <= Math.min(maxTile, maxY); y++) {
+				result.add(new TileNumber(zoom, x, y));
+			}
+		}
+		
+		return result;
+		
+	}
+	
+	/**
+	 * returns the tile's bound, extended by the overlap margin
+	 */
+	private Bound boundForTile(TileNumber tile) {
+		
+		return new Bound(
+				TileNumber.lonForTileX(tile.x + 1 + overlap, zoom),
+				TileNumber.lonForTileX(tile.x - overlap, zoom),
+				TileNumber.latForTileY(tile.y - overlap, zoom),
+				TileNumber.latForTileY(tile.y + 1 + overlap, zoom),
+				"TiledConversion");
+		
+	}
+	
+	private static TileData getTileData(
+			Map<TileNumber, TileData> tileDataMap, TileNumber tile) {
+		
+		TileData tileData = tileDataMap.get(tile);
+		
+		if (tileData == null) {
+			tileData = new TileData();
+			tileDataMap.put(tile, tileData);
+		}
+		
+		return tileData;
+		
+	}
+	
+	/**
+	 * the OSM elements collected for a tile
+	 */
+	private static class TileData {
+		
+		final Collection<OSMNode> nodes = new LinkedHashSet<OSMNode>();
+		final Set<OSMWay> ways = new LinkedHashSet<OSMWay>();
+		final Set<OSMRelation> relations = new LinkedHashSet<OSMRelation>();
+		
+	}
+
+}
@@ -4,21 +4,24 @@ import static java.util.Collections.emptyList;
 import static org.osm2world.core.math.VectorXZ.distance;
 import static org.osm2world.core.util.FaultTolerantIterationUtil.iterate;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.configuration.Configuration;
 import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
 import org.openstreetmap.josm.plugins.graphview.core.data.osmosis.OSMFileDataSource;
 import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
-import org.osm2world.core.map_data.creation.index.MapDataIndex;
 import org.osm2world.core.map_data.creation.index.MapIntersectionGrid;
 import org.osm2world.core.map_data.data.MapArea;
 import org.osm2world.core.map_data.data.MapAreaSegment;
@@ -27,6 +30,7 @@ import org.osm2world.core.map_data.data.MapElement;
 import org.osm2world.core.map_data.data.MapNode;
 import org.osm2world.core.map_data.data.MapWaySegment;
 import org.osm2world.core.map_data.data.overlaps.MapIntersectionWW;
+import org.osm2world.core.map_data.data.overlaps.MapOverlap;
 import org.osm2world.core.map_data.data.overlaps.MapOverlapAA;
 import org.osm2world.core.map_data.data.overlaps.MapOverlapNA;
 import org.osm2world.core.map_data.data.overlaps.MapOverlapType;
@@ -35,8 +39,7 @@ import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
 import org.osm2world.core.math.GeometryUtil;
 import org.osm2world.core.math.InvalidGeometryException;
 import org.osm2world.core.math.LineSegmentXZ;
-import org.osm2world.core.math.PolygonWithHolesXZ;
-import org.osm2world.core.math.SimplePolygonXZ;
+import org.osm2world.core.math.PreparedPolygonXZ;
 import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.osm.data.OSMData;
 import org.osm2world.core.osm.data.OSMElement;
@@ -46,6 +49,7 @@ import org.osm2world.core.osm.data.OSMWay;
 import org.osm2world.core.osm.ruleset.HardcodedRuleset;
 import org.osm2world.core.osm.ruleset.Ruleset;
 import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
 
 /**
  * converts {@link OSMData} into the internal map data representation
@@ -76,7 +80,15 @@ public class OSMToMapDataConverter {
 		MapData mapData = new MapData(mapNodes, mapWaySegs, mapAreas,
 				calculateFileBoundary(osmData.getBounds()));
 		
-		calculateIntersectionsInMapData(mapData);
+		ForkJoinPool pool = ParallelIterationUtil.createPool(config);
+		
+		try {
+			calculateIntersectionsInMapData(mapData, pool);
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
 
 		return mapData;
 
@@ -228,95 +240,328 @@ public class OSMToMapDataConverter {
 	
 	/**
 	 * calculates intersections and adds the information to the
-	 * {@link MapElement}s
+	 * {@link MapElement}s.
+	 * 
+	 * All elements are inserted into an index structure first.
+	 * Afterwards, the pairs of elements within each leaf of the index
+	 * are tested for overlaps. If a pool is available, leaves are
+	 * processed in parallel. The overlaps are added to the elements
+	 * in a fixed order, so the result does not depend on the pool.
+	 * 
+	 * @param pool  pool for parallel processing; null for serial processing
 	 */
-	private static void calculateIntersectionsInMapData(MapData mapData) {
+	private static void calculateIntersectionsInMapData(MapData mapData,
+			ForkJoinPool pool) {
+		
+		/* number the elements and insert them into the index */
+		
+		int elementCount = mapData.getMapNodes().size()
+				+ mapData.getMapWaySegments().size()
+				+ mapData.getMapAreas().size();
+		
+		MapIntersectionGrid index = new MapIntersectionGrid(
+				mapData.getDataBoundary(), elementCount);
+		
+		final Map<MapElement, Integer> elementIndices =
+				new IdentityHashMap<MapElement, Integer>();
+		
+		for (MapElement element : mapData.getMapElements()) {
+			elementIndices.put(element, elementIndices.size());
+			index.insert(element);
+		}
+		
+		/* prepare the areas' geometry for repeated overlap tests.
+		 * This also calculates lazily initialized values
+		 * before concurrent access. */
 		
-		MapDataIndex index = new MapIntersectionGrid(mapData.getDataBoundary());
+		final Map<MapArea, PreparedArea> preparedAreas =
+				new IdentityHashMap<MapArea, PreparedArea>();
 		
-		for (MapElement e1 : mapData.getMapElements()) {
+		for (MapArea area : mapData.getMapAreas()) {
+			preparedAreas.put(area, new PreparedArea(area));
+		}
+		
+		/* number the leaves and remember the leaves of each element */
+		
+		final List<List<MapElement>> leaves = new ArrayList<List<MapElement>>();
+		final TIntArrayList[] leafIdsForElement =
+				new TIntArrayList[elementIndices.size()];
+		
+		for (Iterable<MapElement> leaf : index.getLeaves()) {
 			
-			/* collect all nearby elements */
+			int leafId = leaves.size();
+			List<MapElement> leafElements = new ArrayList<MapElement>();
 			
-			Collection<? extends Iterable<MapElement>> leaves
-					= index.insertAndProbe(e1);
+			for (MapElement element : leaf) {
+				
+				leafElements.add(element);
+				
+				int i = elementIndices.get(element);
+				if (leafIdsForElement[i] == null) {
+					leafIdsForElement[i] = new TIntArrayList(1);
+				}
+				leafIdsForElement[i].add(leafId);
+				
+			}
 			
-			Iterable<MapElement> nearbyElements;
+			leaves.add(leafElements);
 			
-			if (leaves.size() == 1) {
-				nearbyElements = leaves.iterator().next();
-			} else {
-				// collect and de-duplicate elements from all the leaves
-				Set<MapElement> elementSet = new HashSet<MapElement>();
-				for (Iterable<MapElement> leaf : leaves) {
-					for (MapElement e : leaf) {
-						elementSet.add(e);
+		}
+		
+		/* test all pairs of elements within each leaf.
+		 * Pairs that share more than one leaf are only tested
+		 * in the first of these leaves. */
+		
+		List<Integer> leafIds = new ArrayList<Integer>(leaves.size());
+		for (int leafId = 0; leafId < leaves.size(); leafId++) {
+			leafIds.add(leafId);
+		}
+		
+		final List<IndexedOverlap> overlaps =
+				Collections.synchronizedList(new ArrayList<IndexedOverlap>());
+		
+		ParallelIterationUtil.iterate(pool, leafIds, new Operation<Integer>() {
+			@Override public void perform(Integer leafId) {
+				
+				List<MapElement> leaf = leaves.get(leafId);
+				List<IndexedOverlap> leafOverlaps = new ArrayList<IndexedOverlap>();
+				
+				for (int a = 0; a < leaf.size(); a++) {
+					for (int b = a + 1; b < leaf.size(); b++) {
+						
+						int indexA = elementIndices.get(leaf.get(a));
+						int indexB = elementIndices.get(leaf.get(b));
+						
+						if (firstCommonValue(leafIdsForElement[indexA],
+								leafIdsForElement[indexB]) != leafId) {
+							continue;
+						}
+						
+						/* the element with the higher index is passed first */
+						
+						IndexedOverlap overlap;
+						
+						if (indexA > indexB) {
+							overlap = new IndexedOverlap(indexA, indexB,
+									calculateOverlap(leaf.get(a), leaf.get(b), preparedAreas));
+						} else {
+							overlap = new IndexedOverlap(indexB, indexA,
+									calculateOverlap(leaf.get(b), leaf.get(a), preparedAreas));
+						}
+						
+						if (overlap.overlap != null) {
+							leafOverlaps.add(overlap);
+						}
+						
 					}
 				}
-				nearbyElements = elementSet;
+				
+				overlaps.addAll(leafOverlaps);
+				
 			}
+		});
+		
+		/* add the overlaps to the elements */
+		
+		Collections.sort(overlaps);
+		
+		for (IndexedOverlap overlap : overlaps) {
+			addOverlap(overlap.overlap);
+		}
+		
+	}
+	
+	/**
+	 * returns the first value that appears in two ascending lists
+	 */
+	private static int firstCommonValue(TIntArrayList list1, TIntArrayList list2) {
+		
+		int i1 = 0, i2 = 0;
+		
+		while (i1 < list1.size() && i2 < list2.size()) {
 			
-			for (MapElement e2 : nearbyElements) {
+			int v1 = list1.get(i1);
+			int v2 = list2.get(i2);
 			
-				if (e1 == e2) { continue; }
-				
-				addOverlapBetween(e1, e2);
-				
+			if (v1 == v2) {
+				return v1;
+			} else if (v1 < v2) {
+				i1 ++;
+			} else {
+				i2 ++;
 			}
 			
 		}
 		
+		throw new IllegalArgumentException("lists have no common value");
+		
 	}
-
+	
+	/**
+	 * an overlap, along with the indices of the elements
+	 * in the order of {@link MapData#getMapElements()}.
+	 * Sorting these results in the order in which
+	 * a serial calculation would have found the overlaps.
+	 */
+	private static class IndexedOverlap implements Comparable<IndexedOverlap> {
+		
+		final int index1;
+		final int index2;
+		final MapOverlap<?, ?> overlap;
+		
+		IndexedOverlap(int index1, int index2, MapOverlap<?, ?> overlap) {
+			this.index1 = index1;
+			this.index2 = index2;
+			this.overlap = overlap;
+		}
+		
+		@Override
+		public int compareTo(IndexedOverlap other) {
+			if (index1 != other.index1) {
+				return index1 < other.index1 ? -1 : +1;
+			} else if (index2 != other.index2) {
+				return index2 < other.index2 ? -1 : +1;
+			} else {
+				return 0;
+			}
+		}
+		
+	}
+	
+	/**
+	 * an area with precalculated data for overlap tests
+	 */
+	private static class PreparedArea {
+		
+		final PreparedPolygonXZ polygon;
+		
+		/** the nodes connected to each node by one of the area's segments */
+		final Map<MapNode, Set<MapNode>> segmentNeighbors =
+				new IdentityHashMap<MapNode, Set<MapNode>>();
+		
+		PreparedArea(MapArea area) {
+			
+			polygon = new PreparedPolygonXZ(area.getPolygon());
+			
+			for (MapAreaSegment segment : area.getAreaSegments()) {
+				addSegmentNeighbor(segment.getStartNode(), segment.getEndNode());
+				addSegmentNeighbor(segment.getEndNode(), segment.getStartNode());
+			}
+			
+		}
+		
+		private void addSegmentNeighbor(MapNode node, MapNode neighbor) {
+			Set<MapNode> neighbors = segmentNeighbors.get(node);
+			if (neighbors == null) {
+				neighbors = new HashSet<MapNode>(4);
+				segmentNeighbors.put(node, neighbors);
+			}
+			neighbors.add(neighbor);
+		}
+		
+		/**
+		 * returns true if one of the area's segments connects the two nodes
+		 */
+		boolean hasSegment(MapNode node1, MapNode node2) {
+			Set<MapNode> neighbors = segmentNeighbors.get(node1);
+			return neighbors != null && neighbors.contains(node2);
+		}
+		
+	}
+	
 	/**
-	 * adds the overlap between two {@link MapElement}s
-	 * to both, if it exists. It calls the appropriate
-	 * subtype-specific addOverlapBetween method
+	 * adds an overlap to the elements that participate in it.
+	 * Nodes do not store their overlaps.
 	 */
-	private static void addOverlapBetween(MapElement e1, MapElement e2) {
+	private static void addOverlap(MapOverlap<?, ?> overlap) {
+		
+		if (overlap instanceof MapIntersectionWW) {
+			
+			((MapWaySegment) overlap.e1).addOverlap(overlap);
+			((MapWaySegment) overlap.e2).addOverlap(overlap);
+			
+		} else if (overlap instanceof MapOverlapWA) {
+			
+			((MapWaySegment) overlap.e1).addOverlap(overlap);
+			((MapArea) overlap.e2).addOverlap(overlap);
+			
+		} else if (overlap instanceof MapOverlapAA) {
+			
+			((MapArea) overlap.e1).addOverlap(overlap);
+			((MapArea) overlap.e2).addOverlap(overlap);
+			
+		} else if (overlap instanceof MapOverlapNA) {
+			
+			((MapArea) overlap.e2).addOverlap(overlap);
+			
+		}
+		
+	}
+	
+	/**
+	 * calculates the overlap between two {@link MapElement}s.
+	 * It calls the appropriate subtype-specific calculateOverlap method.
+	 * Does not modify the elements, and can therefore be called
+	 * for different pairs of elements at the same time.
+	 * 
+	 * @param preparedAreas  prepared geometry for each area
+	 * @return  the overlap; null if the elements don't overlap
+	 */
+	private static MapOverlap<?, ?> calculateOverlap(MapElement e1, MapElement e2,
+			Map<MapArea, PreparedArea> preparedAreas) {
 		
 		if (e1 instanceof MapWaySegment
 				&& e2 instanceof MapWaySegment) {
 			
-			addOverlapBetween((MapWaySegment) e1, (MapWaySegment) e2);
+			return calculateOverlap((MapWaySegment) e1, (MapWaySegment) e2);
 			
 		} else if (e1 instanceof MapWaySegment
 				&& e2 instanceof MapArea) {
 			
-			addOverlapBetween((MapWaySegment) e1, (MapArea) e2);
+			return calculateOverlap((MapWaySegment) e1, (MapArea) e2,
+					preparedAreas.get(e2));
 			
 		} else if (e1 instanceof MapArea
 				&& e2 instanceof MapWaySegment) {
 			
-			addOverlapBetween((MapWaySegment) e2, (MapArea) e1);
+			return calculateOverlap((MapWaySegment) e2, (MapArea) e1,
+					preparedAreas.get(e1));
 			
 		} else if (e1 instanceof MapArea
 				&& e2 instanceof MapArea) {
 			
-			addOverlapBetween((MapArea) e1, (MapArea) e2);
+			return calculateOverlap((MapArea) e1, (MapArea) e2,
+					preparedAreas.get(e1), preparedAreas.get(e2));
 			
 		} else if (e1 instanceof MapNode
 				&& e2 instanceof MapArea) {
 			
-			addOverlapBetween((MapNode) e1, (MapArea) e2);
+			return calculateOverlap((MapNode) e1, (MapArea) e2,
+					preparedAreas.get(e2));
 			
 		} else if (e1 instanceof MapArea
 				&& e2 instanceof MapNode) {
 			
-			addOverlapBetween((MapNode) e2, (MapArea) e1);
+			return calculateOverlap((MapNode) e2, (MapArea) e1,
+					preparedAreas.get(e1));
+			
+		} else {
+			
+			return null;
 			
 		}
 		
 	}
 
 	/**
-	 * adds the overlap between two {@link MapWaySegment}s
-	 * to both, if it exists
+	 * calculates the overlap between two {@link MapWaySegment}s
+	 * 
+	 * @return  the intersection; null if there is none
 	 */
-	private static void addOverlapBetween(
+	private static MapIntersectionWW calculateOverlap(
 			MapWaySegment line1, MapWaySegment line2) {
 		
-		if (line1.isConnectedTo(line2)) { return; }
+		if (line1.isConnectedTo(line2)) { return null; }
 		
 		VectorXZ intersection = GeometryUtil.getLineSegmentIntersection(
 				line1.getStartNode().getPos(),
@@ -325,44 +570,32 @@ public class OSMToMapDataConverter {
 				line2.getEndNode().getPos());
 		
 		if (intersection != null) {
-			
-			/* add the intersection */
-			
-			MapIntersectionWW newIntersection =
-				new MapIntersectionWW(line1, line2, intersection);
-			
-			line1.addOverlap(newIntersection);
-			line2.addOverlap(newIntersection);
-											
+			return new MapIntersectionWW(line1, line2, intersection);
+		} else {
+			return null;
 		}
 
 	}
 	
 	/**
-	 * adds the overlap between a {@link MapWaySegment}
-	 * and a {@link MapArea} to both, if it exists
+	 * calculates the overlap between a {@link MapWaySegment}
+	 * and a {@link MapArea}
+	 * 
+	 * @return  the overlap; null if there is none
 	 */
-	private static void addOverlapBetween(
-			MapWaySegment line, MapArea area) {
+	private static MapOverlapWA calculateOverlap(
+			MapWaySegment line, MapArea area, PreparedArea preparedArea) {
 		
 		final LineSegmentXZ segmentXZ = line.getLineSegment();
 		
 		/* check whether the line corresponds to one of the area segments */
 				
-		for (MapAreaSegment areaSegment : area.getAreaSegments()) {
-			if (areaSegment.sharesBothNodes(line)) {
-				
-				MapOverlapWA newOverlap =
-					new MapOverlapWA(line, area, MapOverlapType.SHARE_SEGMENT,
-							Collections.<VectorXZ>emptyList(),
-							Collections.<MapAreaSegment>emptyList());
-				
-				line.addOverlap(newOverlap);
-				area.addOverlap(newOverlap);
-				
-				return;
-				
-			}
+		if (preparedArea.hasSegment(line.getStartNode(), line.getEndNode())) {
+			
+			return new MapOverlapWA(line, area, MapOverlapType.SHARE_SEGMENT,
+					Collections.<VectorXZ>emptyList(),
+					Collections.<MapAreaSegment>emptyList());
+			
 		}
 		
 		/* calculate whether the line contains or intersects the area (or neither) */
@@ -371,7 +604,7 @@ public class OSMToMapDataConverter {
 		boolean intersects;
 		
 		{
-			final PolygonWithHolesXZ polygon = area.getPolygon();
+			final PreparedPolygonXZ polygon = preparedArea.polygon;
 			
 			if (!line.isConnectedTo(area)) {
 	
@@ -407,7 +640,7 @@ public class OSMToMapDataConverter {
 			
 		}
 		
-		/* add an overlap if detected */
+		/* create an overlap if detected */
 					
 		if (contains || intersects) {
 			
@@ -436,43 +669,45 @@ public class OSMToMapDataConverter {
 				
 			}
 			
-			/* add the overlap */
+			return new MapOverlapWA(line, area,
+					intersects ? MapOverlapType.INTERSECT : MapOverlapType.CONTAIN,
+					intersectionPositions, intersectingSegments);
 			
-			MapOverlapWA newOverlap = new MapOverlapWA(line, area,
-						intersects ? MapOverlapType.INTERSECT : MapOverlapType.CONTAIN,
-						intersectionPositions, intersectingSegments);
+		} else {
 			
-			line.addOverlap(newOverlap);
-			area.addOverlap(newOverlap);
+			return null;
 			
 		}
 		
 	}
 
 	/**
-	 * adds the overlap between two {@link MapArea}s
-	 * to both, if it exists
+	 * calculates the overlap between two {@link MapArea}s
+	 * 
+	 * @return  the overlap; null if there is none
 	 */
-	private static void addOverlapBetween(
-			MapArea area1, MapArea area2) {
+	private static MapOverlapAA calculateOverlap(
+			MapArea area1, MapArea area2,
+			PreparedArea preparedArea1, PreparedArea preparedArea2) {
+		
+		final PreparedPolygonXZ polygon1 = preparedArea1.polygon;
+		final PreparedPolygonXZ polygon2 = preparedArea2.polygon;
+		
+		/* areas with disjoint bounding boxes can share neither segments
+		 * nor any other part of their outlines, and don't contain each other */
+		
+		if (!polygon1.boundsOverlap(polygon2)) {
+			return null;
+		}
 		
 		/* check whether the areas have a shared segment */
-				
-		Collection<MapAreaSegment> area1Segments = area1.getAreaSegments();
-		Collection<MapAreaSegment> area2Segments = area2.getAreaSegments();
 		
-		for (MapAreaSegment area1Segment : area1Segments) {
-			for (MapAreaSegment area2Segment : area2Segments) {
-				if (area1Segment.sharesBothNodes(area2Segment)) {
-					
-					MapOverlapAA newOverlap =
-						new MapOverlapAA(area1, area2, MapOverlapType.SHARE_SEGMENT);
-					area1.addOverlap(newOverlap);
-					area2.addOverlap(newOverlap);
-					
-					return;
-					
-				}
+		for (MapAreaSegment area2Segment : area2.getAreaSegments()) {
+			if (preparedArea1.hasSegment(
+					area2Segment.getStartNode(), area2Segment.getEndNode())) {
+				
+				return new MapOverlapAA(area1, area2, MapOverlapType.SHARE_SEGMENT);
+				
 			}
 		}
 		
@@ -484,29 +719,22 @@ public class OSMToMapDataConverter {
 		boolean intersects = false;
 		
 		{
-			final PolygonWithHolesXZ polygon1 = area1.getPolygon();
-			final PolygonWithHolesXZ polygon2 = area2.getPolygon();
+			/* check whether the areas' outlines intersects somewhere
+			 * else than just at the common node(s).
+			 */
 			
-			/* determine common nodes */
+			List<VectorXZ> intersectionPositions =
+					polygon1.intersectionPositions(polygon2);
 			
-			Set<VectorXZ> commonNodes = new HashSet<VectorXZ>();
-			for (SimplePolygonXZ p : polygon1.getPolygons()) {
-				commonNodes.addAll(p.getVertices());
-			}
+			Set<VectorXZ> commonNodes = Collections.emptySet();
 			
-			Set<VectorXZ> nodes2 = new HashSet<VectorXZ>();
-			for (SimplePolygonXZ p : polygon2.getPolygons()) {
-				nodes2.addAll(p.getVertices());
+			if (!intersectionPositions.isEmpty()) {
+				commonNodes = new HashSet<VectorXZ>(polygon1.getVertexSet());
+				commonNodes.retainAll(polygon2.getVertexSet());
 			}
 			
-			commonNodes.retainAll(nodes2);
-			
-			/* check whether the areas' outlines intersects somewhere
-			 * else than just at the common node(s).
-			 */
-			
 			intersectionPosCheck:
-			for (VectorXZ pos : polygon1.intersectionPositions(polygon2)) {
+			for (VectorXZ pos : intersectionPositions) {
 				boolean trueIntersection = true;
 				for (VectorXZ commonNode : commonNodes) {
 					if (distance(pos, commonNode) < 0.01) {
@@ -521,48 +749,40 @@ public class OSMToMapDataConverter {
 
 			/* check whether one area contains the other */
 			
-			if (polygon1.contains(polygon2.getOuter())) {
+			if (polygon1.contains(polygon2.getPolygon().getOuter())) {
 				contains1 = true;
-			} else if (polygon2.contains(polygon1.getOuter())) {
+			} else if (polygon2.contains(polygon1.getPolygon().getOuter())) {
 				contains2 = true;
 			}
 									
 		}
 		
-		/* add an overlap if detected */
-					
-		if (contains1 || contains2 || intersects) {
-			
-			/* add the overlap */
-			
-			MapOverlapAA newOverlap = null;
-			
-			if (contains1) {
-				newOverlap = new MapOverlapAA(area2, area1, MapOverlapType.CONTAIN);
-			} else if (contains2) {
-				newOverlap = new MapOverlapAA(area1, area2, MapOverlapType.CONTAIN);
-			} else {
-				newOverlap = new MapOverlapAA(area1, area2, MapOverlapType.INTERSECT);
-			}
-			
-			area1.addOverlap(newOverlap);
-			area2.addOverlap(newOverlap);
-			
+		/* create an overlap if detected */
+		
+		if (contains1) {
+			return new MapOverlapAA(area2, area1, MapOverlapType.CONTAIN);
+		} else if (contains2) {
+			return new MapOverlapAA(area1, area2, MapOverlapType.CONTAIN);
+		} else if (intersects) {
+			return new MapOverlapAA(area1, area2, MapOverlapType.INTERSECT);
+		} else {
+			return null;
 		}
 		
 	}
 	
-	private static void addOverlapBetween(MapNode node, MapArea area) {
+	/**
+	 * calculates the overlap between a {@link MapNode} and a {@link MapArea}
+	 * 
+	 * @return  the overlap; null if there is none
+	 */
+	private static MapOverlapNA calculateOverlap(MapNode node, MapArea area,
+			PreparedArea preparedArea) {
 		
-		if (area.getPolygon().contains(node.getPos())) {
-			
-			/* add the overlap */
-			
-			MapOverlapNA newOverlap =
-					new MapOverlapNA(node, area, MapOverlapType.CONTAIN);
-			
-			area.addOverlap(newOverlap);
-			
+		if (preparedArea.polygon.contains(node.getPos())) {
+			return new MapOverlapNA(node, area, MapOverlapType.CONTAIN);
+		} else {
+			return null;
 		}
 		
 	}
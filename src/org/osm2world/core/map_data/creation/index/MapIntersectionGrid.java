@@ -1,5 +1,7 @@
 package org.osm2world.core.map_data.creation.index;
 
+import static java.lang.Math.*;
+
 import java.util.Collection;
 
 import org.osm2world.core.map_data.data.MapElement;
@@ -9,19 +11,65 @@ import org.osm2world.core.math.datastructures.IntersectionGrid;
 
 public class MapIntersectionGrid implements MapDataIndex {
 	
+	/** number of cells per dimension used if the element count is unknown */
+	private static final int DEFAULT_CELL_COUNT = 50;
+	
+	/** average number of elements per cell the cell size is chosen for */
+	private static final double TARGET_ELEMENTS_PER_CELL = 8;
+	
+	/**
+	 * lower limit for the cell size, in meters. Prevents large elements
+	 * from being inserted into huge numbers of tiny cells.
+	 */
+	private static final double MIN_CELL_SIZE = 20;
+	
+	/** upper limit for the number of cells per dimension */
+	private static final int MAX_CELL_COUNT = 1000;
+	
 	private final IntersectionGrid<MapElement> intersectionGrid;
-			
+	
+	/**
+	 * creates a grid with a fixed number of cells
+	 */
 	public MapIntersectionGrid(AxisAlignedBoundingBoxXZ dataBoundary) {
 		
 		AxisAlignedBoundingBoxXZ gridBounds = dataBoundary.pad(10);
 		
 		intersectionGrid = new IntersectionGrid<MapElement>(
 				gridBounds,
-				gridBounds.sizeX() / 50,
-				gridBounds.sizeZ() / 50);
+				gridBounds.sizeX() / DEFAULT_CELL_COUNT,
+				gridBounds.sizeZ() / DEFAULT_CELL_COUNT);
+		
+	}
+	
+	/**
+	 * creates a grid with square cells. The cell size is chosen
+	 * based on the number of elements and the extent of the data,
+	 * so dense data results in smaller cells.
+	 * 
+	 * @param elementCount  the number of elements that will be inserted
+	 */
+	public MapIntersectionGrid(AxisAlignedBoundingBoxXZ dataBoundary,
+			int elementCount) {
+		
+		AxisAlignedBoundingBoxXZ gridBounds = dataBoundary.pad(10);
+		
+		double cellSize = sqrt(gridBounds.sizeX() * gridBounds.sizeZ()
+				* TARGET_ELEMENTS_PER_CELL / max(1, elementCount));
+		
+		cellSize = max(cellSize, MIN_CELL_SIZE);
+		
+		intersectionGrid = new IntersectionGrid<MapElement>(
+				gridBounds,
+				cellCount(gridBounds.sizeX(), cellSize),
+				cellCount(gridBounds.sizeZ(), cellSize));
 		
 	}
 	
+	private static final int cellCount(double size, double cellSize) {
+		return min(MAX_CELL_COUNT, (int) ceil(size / cellSize));
+	}
+	
 	@Override
 	public void insert(MapElement e) {
 		intersectionGrid.insert(e);
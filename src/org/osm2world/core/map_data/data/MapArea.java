@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
 import org.osm2world.core.map_data.data.overlaps.MapOverlap;
@@ -29,8 +30,8 @@ public class MapArea implements MapElement {
 	@SuppressWarnings("unchecked") //is later checked for EMPTY_LIST using ==
 	private Collection<MapOverlap<?,?>> overlaps = Collections.EMPTY_LIST;
 	
-	private List<AreaWorldObject> representations =
-		new ArrayList<AreaWorldObject>(1);
+	private final List<AreaWorldObject> representations =
+		new CopyOnWriteArrayList<AreaWorldObject>();
 	
 	//TODO: contained / intersecting nodes/lines
 	
@@ -177,13 +178,18 @@ public class MapArea implements MapElement {
 		
 	}
 	
+	/**
+	 * returns the visual representations of this area.
+	 * The list can be iterated while other threads add representations,
+	 * the iteration will see the representations present at its start.
+	 */
 	@Override
 	public List<AreaWorldObject> getRepresentations() {
 		return representations;
 	}
 	
 	@Override
-	public AreaWorldObject getPrimaryRepresentation() {
+	public synchronized AreaWorldObject getPrimaryRepresentation() {
 		if (representations.isEmpty()) {
 			return null;
 		} else {
@@ -192,12 +198,18 @@ public class MapArea implements MapElement {
 	}
 
 	/**
-	 * adds a visual representation for this area
+	 * adds a visual representation for this area.
+	 * Can safely be called from multiple threads.
 	 */
-	public void addRepresentation(AreaWorldObject representation) {
+	public synchronized void addRepresentation(AreaWorldObject representation) {
 		this.representations.add(representation);
 	}
 	
+	@Override
+	public synchronized void clearRepresentations() {
+		this.representations.clear();
+	}
+	
 	public void addOverlap(MapOverlap<?, ?> overlap) {
 		assert overlap.e1 == this || overlap.e2 == this;
 		if (overlaps == Collections.EMPTY_LIST) {
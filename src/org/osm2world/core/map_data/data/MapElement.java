@@ -31,6 +31,13 @@ public interface MapElement extends IntersectionTestObject {
 	 */
 	public WorldObject getPrimaryRepresentation();
 	
+	/**
+	 * removes all representations from this element.
+	 * Used to free memory once the representations have been rendered
+	 * and are no longer needed by other elements' representations.
+	 */
+	public void clearRepresentations();
+	
 	/**
 	 * returns all overlaps between this {@link MapElement}
 	 * and other {@link MapElement}s.
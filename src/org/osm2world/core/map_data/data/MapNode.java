@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
 import org.osm2world.core.map_data.data.overlaps.MapOverlap;
@@ -25,7 +26,8 @@ public class MapNode implements MapElement {
 	private final VectorXZ pos;
 	private final OSMNode osmNode;
 	
-	private List<NodeWorldObject> representations = new ArrayList<NodeWorldObject>(1);
+	private final List<NodeWorldObject> representations =
+		new CopyOnWriteArrayList<NodeWorldObject>();
 	
 	private List<MapWaySegment> connectedWaySegments = new ArrayList<MapWaySegment>();
 	private List<MapSegment> connectedSegments = new ArrayList<MapSegment>();
@@ -204,13 +206,18 @@ public class MapNode implements MapElement {
 		});
 	}
 	
+	/**
+	 * returns the visual representations of this node.
+	 * The list can be iterated while other threads add representations,
+	 * the iteration will see the representations present at its start.
+	 */
 	@Override
 	public List<NodeWorldObject> getRepresentations() {
 		return representations;
 	}
 	
 	@Override
-	public NodeWorldObject getPrimaryRepresentation() {
+	public synchronized NodeWorldObject getPrimaryRepresentation() {
 		if (representations.isEmpty()) {
 			return null;
 		} else {
@@ -219,11 +226,17 @@ public class MapNode implements MapElement {
 	}
 
 	/**
-	 * adds a visual representation for this node
+	 * adds a visual representation for this node.
+	 * Can safely be called from multiple threads.
 	 */
-	public void addRepresentation(NodeWorldObject representation) {
+	public synchronized void addRepresentation(NodeWorldObject representation) {
 		this.representations.add(representation);
 	}
+	
+	@Override
+	public synchronized void clearRepresentations() {
+		this.representations.clear();
+	}
 		
 	@Override
 	public String toString() {
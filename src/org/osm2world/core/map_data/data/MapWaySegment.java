@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
 import org.osm2world.core.map_data.data.overlaps.MapIntersectionWW;
@@ -22,7 +23,8 @@ public class MapWaySegment extends MapSegment implements MapElement {
 
 	private final OSMWay osmWay;
 	
-	private List<WaySegmentWorldObject> representations = new ArrayList<WaySegmentWorldObject>(1);
+	private final List<WaySegmentWorldObject> representations =
+		new CopyOnWriteArrayList<WaySegmentWorldObject>();
 	
 	@SuppressWarnings("unchecked") //is later checked for EMPTY_LIST using ==
 	private Collection<MapOverlap<?,?>> overlaps = Collections.EMPTY_LIST;
@@ -76,13 +78,18 @@ public class MapWaySegment extends MapSegment implements MapElement {
 				startNode.getPos(), endNode.getPos()));
 	}
 	
+	/**
+	 * returns the visual representations of this way segment.
+	 * The list can be iterated while other threads add representations,
+	 * the iteration will see the representations present at its start.
+	 */
 	@Override
 	public List<WaySegmentWorldObject> getRepresentations() {
 		return representations;
 	}
 	
 	@Override
-	public WaySegmentWorldObject getPrimaryRepresentation() {
+	public synchronized WaySegmentWorldObject getPrimaryRepresentation() {
 		if (representations.isEmpty()) {
 			return null;
 		} else {
@@ -91,12 +98,18 @@ public class MapWaySegment extends MapSegment implements MapElement {
 	}
 
 	/**
-	 * adds a visual representation for this way segment
+	 * adds a visual representation for this way segment.
+	 * Can safely be called from multiple threads.
 	 */
-	public void addRepresentation(WaySegmentWorldObject representation) {
+	public synchronized void addRepresentation(WaySegmentWorldObject representation) {
 		this.representations.add(representation);
 	}
 	
+	@Override
+	public synchronized void clearRepresentations() {
+		this.representations.clear();
+	}
+	
 	@Override
 	public String toString() {
 		return startNode + "->" + endNode;
@@ -0,0 +1,36 @@
+package org.osm2world.core.map_elevation.creation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+/**
+ * superclass for {@link TerrainInterpolator}s which provides
+ * a batch interpolation method that handles one position at a time,
+ * and sequential preparation of the known sites
+ */
+public abstract class AbstractTerrainInterpolator implements TerrainInterpolator {
+	
+	@Override
+	public void setKnownSites(Collection<VectorXYZ> sites, ForkJoinPool pool) {
+		setKnownSites(sites);
+	}
+	
+	@Override
+	public List<VectorXYZ> interpolateEle(List<VectorXZ> positions) {
+		
+		List<VectorXYZ> result = new ArrayList<VectorXYZ>(positions.size());
+		
+		for (VectorXZ pos : positions) {
+			result.add(interpolateEle(pos));
+		}
+		
+		return result;
+		
+	}
+	
+}
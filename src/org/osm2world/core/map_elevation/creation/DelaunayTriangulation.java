@@ -6,11 +6,16 @@ import static org.osm2world.core.math.GeometryUtil.isRightOf;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Random;
 import java.util.Set;
 import java.util.Stack;
 
@@ -21,11 +26,7 @@ import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.math.datastructures.IntersectionTestObject;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-
 //TODO: test performance effects of:
-// * starting point choice of the walk
 // * caching circumcircles
 // * only calculating area of triangles that are actually changed
 
@@ -34,6 +35,8 @@ import com.google.common.collect.Multimap;
  * Built to be used as a Voronoi Diagram dual for natural neighbor
  * interpolation of the y elevation values carried by each point.
  * The triangulation is constructed by incremental insertion.
+ * For large point sets, {@link #insertAll(Collection)} should be preferred
+ * over inserting points one by one in arbitrary order.
  */
 public class DelaunayTriangulation {
 	
@@ -490,6 +493,24 @@ public class DelaunayTriangulation {
 	 * for iterating/walking through the triangulation along neighborships
 	 */
 	public final DelaunayTriangle handleTriangle;
+	
+	/**
+	 * a triangle created by the most recent insertion, null if there hasn't
+	 * been any. Used as the start of the walk when locating the next point,
+	 * which is short if points are inserted in a spatially coherent order.
+	 */
+	private DelaunayTriangle lastTriangle = null;
+	
+	/**
+	 * minimum size of the first round of {@link #insertAll(Collection)}
+	 */
+	private static final int MIN_ROUND_SIZE = 64;
+	
+	/**
+	 * number of cells per dimension of the grid used for the Hilbert order;
+	 * must be a power of 2
+	 */
+	private static final int HILBERT_GRID_SIZE = 1 << 16;
 
 	public DelaunayTriangulation(AxisAlignedBoundingBoxXZ bounds) {
 				
@@ -519,6 +540,107 @@ public class DelaunayTriangulation {
 		return ITERABLE;
 	}
 
+	/**
+	 * inserts a collection of points. The points are inserted in
+	 * biased randomized insertion order (BRIO): they are shuffled,
+	 * split into rounds of increasing size, and each round is sorted
+	 * along a Hilbert curve. This keeps the walks that locate the points
+	 * short, while avoiding the worst cases of a purely spatial order.
+	 */
+	public void insertAll(Collection<VectorXYZ> points) {
+		
+		if (points.isEmpty()) return;
+		
+		List<VectorXYZ> pointList = new ArrayList<VectorXYZ>(points);
+		
+		/* shuffle with a fixed seed to make the result reproducible */
+		
+		Collections.shuffle(pointList, new Random(0));
+		
+		/* calculate Hilbert curve indices on a grid covering the points */
+		
+		AxisAlignedBoundingBoxXZ bounds = new AxisAlignedBoundingBoxXZ(pointList);
+		
+		double cellSize = max(bounds.sizeX(), bounds.sizeZ()) / (HILBERT_GRID_SIZE - 1);
+		if (cellSize == 0) cellSize = 1;
+		
+		final IdentityHashMap<VectorXYZ, Long> hilbertIndices =
+				new IdentityHashMap<VectorXYZ, Long>(pointList.size());
+		
+		for (VectorXYZ point : pointList) {
+			int x = (int)((point.x - bounds.minX) / cellSize);
+			int z = (int)((point.z - bounds.minZ) / cellSize);
+			hilbertIndices.put(point, hilbertIndex(x, z));
+		}
+		
+		Comparator<VectorXYZ> hilbertComparator = new Comparator<VectorXYZ>() {
+			@Override public int compare(VectorXYZ p1, VectorXYZ p2) {
+				return hilbertIndices.get(p1).compareTo(hilbertIndices.get(p2));
+			}
+		};
+		
+		/* split into rounds, each round is half the size of the next one */
+		
+		List<Integer> roundStarts = new ArrayList<Integer>();
+		
+		for (int start = pointList.size() / 2;
+				start >= MIN_ROUND_SIZE; start /= 2) {
+			roundStarts.add(0, start);
+		}
+		
+		roundStarts.add(0, 0);
+		roundStarts.add(pointList.size());
+		
+		/* sort and insert each round */
+		
+		for (int r = 0; r + 1 < roundStarts.size(); r++) {
+			
+			List<VectorXYZ> round = pointList.subList(
+					roundStarts.get(r), roundStarts.get(r + 1));
+			
+			Collections.sort(round, hilbertComparator);
+			
+			for (VectorXYZ point : round) {
+				insert(point);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * returns the position of a grid cell along a Hilbert curve
+	 * filling a grid of {@link #HILBERT_GRID_SIZE}^2 cells
+	 */
+	private static long hilbertIndex(int x, int z) {
+		
+		long index = 0;
+		
+		for (int s = HILBERT_GRID_SIZE / 2; s > 0; s /= 2) {
+			
+			int rx = (x & s) > 0 ? 1 : 0;
+			int rz = (z & s) > 0 ? 1 : 0;
+			
+			index += (long)s * s * ((3 * rx) ^ rz);
+			
+			/* rotate the quadrant */
+			
+			if (rz == 0) {
+				if (rx == 1) {
+					x = HILBERT_GRID_SIZE - 1 - x;
+					z = HILBERT_GRID_SIZE - 1 - z;
+				}
+				int temp = x;
+				x = z;
+				z = temp;
+			}
+			
+		}
+		
+		return index;
+		
+	}
+	
 	public Stack<Flip> insert(VectorXYZ point) { //TODO: should use <T extends Has(Immutable)Position>
 		
 		DelaunayTriangle triangleEnclosingPoint = getEnlosingTriangle(point.xz());
@@ -563,109 +685,202 @@ public class DelaunayTriangulation {
 			
 		}
 		
+		/* the triangles created by the last flip are not removed
+		 * by any other flip, so they are part of the triangulation */
+		
+		lastTriangle = flipStack.peek().getCreatedTriangles()[0];
+		
 		return flipStack;
 		
 	}
 	
 	/**
-	 * temporarily inserts a point to calculate its natural neighbors,
-	 * then undoes the insertion
+	 * calculates the natural neighbors of a point and their Sibson weights,
+	 * i.e. the share of the point's Voronoi cell that each neighbor's cell
+	 * would lose if the point was inserted.
+	 * 
+	 * The triangulation is not modified. Instead, the cavity of triangles
+	 * that an insertion would replace (those with the point inside their
+	 * circumcircle) is determined, and the Voronoi cell areas are derived
+	 * from the circumcircle centers of the cavity's triangles and of the
+	 * triangles that would replace them. Therefore, this method can be
+	 * called from multiple threads at the same time, as long as no points
+	 * are being inserted.
+	 * 
+	 * @param point  must lie within the triangulation's bounds
 	 */
 	public NaturalNeighbors probe(VectorXZ point) {
-
-		VectorXYZ probePoint = point.xyz(0);
-		
-		/* insert the point */
-		
-		Stack<Flip> flipStack = insert(probePoint);
 		
-		/* identify neighbors and modified triangles */
+		DelaunayTriangle enclosingTriangle = getEnlosingTriangle(point);
 		
-		Set<VectorXYZ> neighbors = new HashSet<VectorXYZ>();
-		Multimap<VectorXYZ, DelaunayTriangle> oldTriangles = HashMultimap.create();
-		Multimap<VectorXYZ, DelaunayTriangle> newTriangles = HashMultimap.create();
+		/* handle points which coincide with an existing point */
 		
-		// first loop, identifies neighbors and newly created triangles
-		for (Flip flip : flipStack) {
-			for (DelaunayTriangle triangle : flip.getCreatedTriangles()) {
-				newTriangles.put(triangle.p0, triangle);
-				newTriangles.put(triangle.p1, triangle);
-				newTriangles.put(triangle.p2, triangle);
-				neighbors.add(triangle.p0);
-				neighbors.add(triangle.p1);
-				neighbors.add(triangle.p2);
+		for (int i = 0; i <= 2; i++) {
+			VectorXYZ p = enclosingTriangle.getPoint(i);
+			if (p.x == point.x && p.z == point.z) {
+				NaturalNeighbors result = new NaturalNeighbors(
+						Collections.singletonList(p));
+				result.relativeWeights[0] = 1;
+				return result;
 			}
 		}
 		
-		// second loop, removes some newTriangles and identifies oldTriangles
-		for (Flip flip : flipStack) {
-			for (DelaunayTriangle triangle : flip.getRemovedTriangles()) {
-				oldTriangles.put(triangle.p0, triangle);
-				oldTriangles.put(triangle.p1, triangle);
-				oldTriangles.put(triangle.p2, triangle);
-				newTriangles.remove(triangle.p0, triangle);
-				newTriangles.remove(triangle.p1, triangle);
-				newTriangles.remove(triangle.p2, triangle);
+		/* find the cavity by searching outwards from the enclosing triangle */
+		
+		Set<DelaunayTriangle> cavity = new LinkedHashSet<DelaunayTriangle>();
+		Stack<DelaunayTriangle> uncheckedTriangles = new Stack<DelaunayTriangle>();
+		
+		cavity.add(enclosingTriangle);
+		uncheckedTriangles.push(enclosingTriangle);
+		
+		while (!uncheckedTriangles.isEmpty()) {
+			
+			DelaunayTriangle triangle = uncheckedTriangles.pop();
+			
+			for (int i = 0; i <= 2; i++) {
+				
+				DelaunayTriangle neighbor = triangle.getNeighbor(i);
+				
+				if (neighbor != null && neighbor != handleTriangle
+						&& !cavity.contains(neighbor)
+						&& isInCircumcircle(point, neighbor)) {
+					cavity.add(neighbor);
+					uncheckedTriangles.push(neighbor);
+				}
+				
 			}
+			
 		}
 		
-		// third loop, removes some oldTriangles
-		for (Flip flip : flipStack) {
-			for (DelaunayTriangle triangle : flip.getCreatedTriangles()) {
-				oldTriangles.remove(triangle.p0, triangle);
-				oldTriangles.remove(triangle.p1, triangle);
-				oldTriangles.remove(triangle.p2, triangle);
+		/* find the cavity's boundary edges. The cavity is star-shaped
+		 * around the point, so each boundary point has exactly one
+		 * successor along the counterclockwise boundary. */
+		
+		List<VectorXYZ> neighbors = new ArrayList<VectorXYZ>();
+		Map<VectorXYZ, VectorXYZ> nextBoundaryPoint =
+				new IdentityHashMap<VectorXYZ, VectorXYZ>();
+		Map<VectorXYZ, DelaunayTriangle> boundaryEdgeTriangle =
+				new IdentityHashMap<VectorXYZ, DelaunayTriangle>();
+		
+		for (DelaunayTriangle triangle : cavity) {
+			for (int i = 0; i <= 2; i++) {
+				if (!cavity.contains(triangle.getNeighbor(i))) {
+					VectorXYZ p = triangle.getPoint(i);
+					neighbors.add(p);
+					nextBoundaryPoint.put(p, triangle.getPoint((i + 1) % 3));
+					boundaryEdgeTriangle.put(p, triangle);
+				}
 			}
 		}
 		
-		// FIXME: cannot use any oldTriangle as starting point, may have been newly created before
-		
-		neighbors.remove(probePoint);
+		/* the boundary points are the natural neighbors */
 		
 		NaturalNeighbors result = new NaturalNeighbors(neighbors);
 		
-		/* calculate size of voronoi cells with the point */
+		Map<VectorXYZ, VectorXZ> newCenterAfter =
+				new IdentityHashMap<VectorXYZ, VectorXZ>();
 		
-		for (int i = 0; i < result.neighbors.length; i++) {
-			result.relativeWeights[i] = getVoronoiCellSize(result.neighbors[i],
-					newTriangles.get(result.neighbors[i]));
+		for (VectorXYZ p : neighbors) {
+			newCenterAfter.put(p, getCircumcircleCenter(
+					p.xz(), nextBoundaryPoint.get(p).xz(), point));
 		}
 		
-		/* undo insertion */
+		/* the area that the cell of neighbor v loses is bounded by the
+		 * new Voronoi edge between v and the point, and by the old Voronoi
+		 * edges between the circumcircle centers of cavity triangles at v */
 		
-		while (!flipStack.isEmpty()) {
-			flipStack.pop().undo();
+		Map<VectorXYZ, VectorXYZ> previousBoundaryPoint =
+				new IdentityHashMap<VectorXYZ, VectorXYZ>();
+		
+		for (VectorXYZ p : neighbors) {
+			previousBoundaryPoint.put(nextBoundaryPoint.get(p), p);
 		}
-
-		/* calculate difference of voronoi cell size with and without the point */
 		
-		double areaDifferenceSum = 0;
+		double areaSum = 0;
 		
 		for (int i = 0; i < result.neighbors.length; i++) {
 			
-			double area = getVoronoiCellSize(result.neighbors[i],
-					oldTriangles.get(result.neighbors[i]));
+			VectorXYZ v = result.neighbors[i];
+			VectorXYZ u = previousBoundaryPoint.get(v);
+			
+			List<VectorXZ> polygon = new ArrayList<VectorXZ>();
+			
+			polygon.add(newCenterAfter.get(u));
+			
+			/* rotate around v from the triangle with the boundary edge (u, v)
+			 * to the one with the boundary edge (v, next) */
+			
+			DelaunayTriangle triangle = boundaryEdgeTriangle.get(u);
+			
+			while (triangle != null && cavity.contains(triangle)) {
+				polygon.add(triangle.getCircumcircleCenter());
+				triangle = triangle.getRightNeighbor(v);
+			}
+			
+			polygon.add(newCenterAfter.get(v));
 			
-			result.relativeWeights[i] = area - result.relativeWeights[i];
+			result.relativeWeights[i] = abs(signedArea(polygon));
+			areaSum += result.relativeWeights[i];
 			
-			areaDifferenceSum += result.relativeWeights[i];
 		}
 		
 		/* calculate relative weights of neighbors */
 		
 		for (int i = 0; i < result.neighbors.length; i++) {
-			result.relativeWeights[i] /= areaDifferenceSum;
-			
-			if (result.relativeWeights[i] > 1) {
-				System.out.println(result.relativeWeights[i]);
-			}
-			
+			result.relativeWeights[i] /= areaSum;
 		}
 		
 		return result;
 		
 	}
 	
+	/**
+	 * checks whether a point is strictly inside a triangle's circumcircle
+	 */
+	private static boolean isInCircumcircle(VectorXZ point,
+			DelaunayTriangle triangle) {
+		
+		VectorXZ center = triangle.getCircumcircleCenter();
+		
+		double radiusSquared = triangle.p0.xz().subtract(center).lengthSquared();
+		
+		return point.subtract(center).lengthSquared() < radiusSquared;
+		
+	}
+	
+	private static VectorXZ getCircumcircleCenter(
+			VectorXZ p0, VectorXZ p1, VectorXZ p2) {
+		
+		VectorXZ b = p1.subtract(p0);
+		VectorXZ c = p2.subtract(p0);
+		
+		double d = 2 * (b.x * c.z - b.z * c.x);
+		
+		double rX = (c.z * (b.x * b.x + b.z * b.z) - b.z * (c.x * c.x + c.z * c.z)) / d;
+		double rZ = (b.x * (c.x * c.x + c.z * c.z) - c.x * (b.x * b.x + b.z * b.z)) / d;
+		
+		return new VectorXZ(rX, rZ).add(p0);
+		
+	}
+	
+	/**
+	 * calculates the signed area of a polygon given as a vertex loop
+	 * without the repeated first vertex
+	 */
+	private static double signedArea(List<VectorXZ> vertices) {
+		
+		double sum = 0;
+		
+		for (int i = 0; i < vertices.size(); i++) {
+			VectorXZ v1 = vertices.get(i);
+			VectorXZ v2 = vertices.get((i + 1) % vertices.size());
+			sum += v1.x * v2.z - v2.x * v1.z;
+		}
+		
+		return sum / 2;
+		
+	}
+	
 	public List<DelaunayTriangle> getIncidentTriangles(final VectorXYZ point) {
 
 		List<DelaunayTriangle> result = new ArrayList<DelaunayTriangle>();
@@ -810,9 +1025,10 @@ public class DelaunayTriangulation {
 	public DelaunayTriangle getEnlosingTriangle(VectorXZ point) {
 		
 		/* use a 'visibility walk' through the triangulation,
-		 * starting at the handleTriangle */
+		 * starting at the most recently created triangle */
 		
-		DelaunayTriangle currentTriangle = handleTriangle;
+		DelaunayTriangle currentTriangle =
+				(lastTriangle != null) ? lastTriangle : handleTriangle;
 		
 		boolean triangleContainsPoint = false;
 		
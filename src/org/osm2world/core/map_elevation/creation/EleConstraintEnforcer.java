@@ -1,6 +1,7 @@
 package org.osm2world.core.map_elevation.creation;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.osm2world.core.map_elevation.data.EleConnector;
 
@@ -67,5 +68,14 @@ public interface EleConstraintEnforcer {
 	 * {@link #addConnectors(Iterable)}
 	 */
 	void enforceConstraints();
+	
+	/**
+	 * variant of {@link #enforceConstraints()} which may use
+	 * the threads of a pool. Implementations that cannot work in parallel
+	 * simply call {@link #enforceConstraints()}.
+	 * 
+	 * @param pool  pool to use; null to work in the current thread
+	 */
+	void enforceConstraints(ForkJoinPool pool);
 
 }
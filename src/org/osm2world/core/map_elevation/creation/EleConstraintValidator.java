@@ -6,6 +6,7 @@ import static org.osm2world.core.map_elevation.creation.EleConstraintEnforcer.Co
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.osm2world.core.map_data.data.MapData;
 import org.osm2world.core.map_elevation.data.EleConnector;
@@ -138,8 +139,13 @@ public class EleConstraintValidator implements EleConstraintEnforcer {
 
 	@Override
 	public void enforceConstraints() {
+		enforceConstraints(null);
+	}
+	
+	@Override
+	public void enforceConstraints(ForkJoinPool pool) {
 		
-		enforcer.enforceConstraints();
+		enforcer.enforceConstraints(pool);
 		
 		printSmoothnessLog();
 		
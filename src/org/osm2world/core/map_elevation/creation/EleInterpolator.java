@@ -0,0 +1,30 @@
+package org.osm2world.core.map_elevation.creation;
+
+import java.util.List;
+
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+/**
+ * calculates terrain elevations for arbitrary positions.
+ * 
+ * The interpolateEle methods must not modify the interpolator's state
+ * in a way that is visible to other threads. This allows them to be
+ * called from multiple threads at the same time.
+ * 
+ * @see TerrainInterpolator
+ */
+public interface EleInterpolator {
+	
+	VectorXYZ interpolateEle(VectorXZ pos);
+	
+	/**
+	 * interpolates the elevations for multiple positions.
+	 * Implementations can use this to re-use temporary data
+	 * for all positions of the batch.
+	 * 
+	 * @return  the results for all positions, in the same order
+	 */
+	List<VectorXYZ> interpolateEle(List<VectorXZ> positions);
+	
+}
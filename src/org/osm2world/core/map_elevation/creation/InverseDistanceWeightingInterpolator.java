@@ -10,7 +10,7 @@ import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.math.datastructures.IntersectionGrid;
 
 
-public class InverseDistanceWeightingInterpolator implements TerrainInterpolator {
+public class InverseDistanceWeightingInterpolator extends AbstractTerrainInterpolator {
 	
 	private static final double CUTOFF = 300;
 	
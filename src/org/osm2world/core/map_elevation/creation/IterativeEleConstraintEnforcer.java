@@ -0,0 +1,447 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.lang.Math.*;
+import static org.osm2world.core.map_elevation.data.GroundState.ON;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.osm2world.core.map_elevation.data.EleConnector;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.math.datastructures.UnionFind;
+
+/**
+ * enforces constraints with an iterative method that does not require
+ * an external solver.
+ *
+ * Like {@link LPEleConstraintEnforcer}, it tries to keep the connectors
+ * close to the terrain elevation while fulfilling the constraints.
+ * Instead of a linear program, it calculates the weighted least squares
+ * projection of the terrain elevations onto the set of elevations that
+ * fulfill all constraints. This is done with Hildreth's method, which
+ * performs Gauss-Seidel sweeps over the constraints, correcting the
+ * elevations for one constraint at a time.
+ *
+ * The iteration stops when no elevation changes by more than a tolerance
+ * during a sweep, or after a maximum number of sweeps.
+ */
+public class IterativeEleConstraintEnforcer implements EleConstraintEnforcer {
+	
+	public static final double DEFAULT_TOLERANCE = 0.001;
+	public static final int DEFAULT_MAX_ITERATIONS = 1000;
+	
+	/**
+	 * weight of the deviation from terrain elevation for connectors which
+	 * are not on the ground, relative to those on the ground.
+	 * This makes it preferable to move these connectors.
+	 */
+	private static final double NON_GROUND_WEIGHT = 0.01;
+	
+	private final double tolerance;
+	private final int maxIterations;
+	
+	/*
+	 * connectors which are joined (because they are at the same position
+	 * and connect to each other) share a single elevation variable.
+	 * This is tracked with a union-find structure of connector indices.
+	 */
+	
+	private final List<EleConnector> connectors = new ArrayList<EleConnector>();
+	
+	private final TObjectIntHashMap<EleConnector> connectorIndexMap =
+			new TObjectIntHashMap<EleConnector>(10, 0.5f, -1);
+	
+	private final Map<VectorXZ, TIntArrayList> connectorPositionMap =
+			new HashMap<VectorXZ, TIntArrayList>();
+	
+	private final UnionFind joinedConnectors = new UnionFind();
+	
+	/*
+	 * the constraints, each of the form
+	 * sum(factor * ele of connector) <= limit (or = limit).
+	 * Terms of constraint i are found at the positions
+	 * constraintStart[i] to constraintStart[i+1] - 1.
+	 */
+	
+	private final TIntArrayList constraintStart = new TIntArrayList();
+	private final TIntArrayList termConnectors = new TIntArrayList();
+	private final TDoubleArrayList termFactors = new TDoubleArrayList();
+	private final TDoubleArrayList limits = new TDoubleArrayList();
+	private final BitSet equalities = new BitSet();
+	
+	public IterativeEleConstraintEnforcer() {
+		this(DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+	}
+	
+	/**
+	 * @param tolerance      largest change of an elevation during an
+	 *                       iteration that is considered converged
+	 * @param maxIterations  maximum number of iterations
+	 */
+	public IterativeEleConstraintEnforcer(double tolerance, int maxIterations) {
+		
+		this.tolerance = tolerance;
+		this.maxIterations = maxIterations;
+		
+		constraintStart.add(0);
+		
+	}
+	
+	@Override
+	public void addConnectors(Iterable<EleConnector> newConnectors) {
+		
+		for (EleConnector c : newConnectors) {
+			
+			int index = joinedConnectors.add();
+			connectors.add(c);
+			connectorIndexMap.put(c, index);
+			
+			/* join with the connectors at the same position */
+			
+			TIntArrayList connectorsAtPos = connectorPositionMap.get(c.pos);
+			
+			if (connectorsAtPos == null) {
+				connectorsAtPos = new TIntArrayList(2);
+				connectorPositionMap.put(c.pos, connectorsAtPos);
+			}
+			
+			for (int i = 0; i < connectorsAtPos.size(); i++) {
+				
+				int otherIndex = connectorsAtPos.get(i);
+				
+				if (c.connectsTo(connectors.get(otherIndex))) {
+					joinedConnectors.union(index, otherIndex);
+				}
+				
+			}
+			
+			connectorsAtPos.add(index);
+			
+		}
+		
+	}
+	
+	@Override
+	public void requireSameEle(EleConnector c1, EleConnector c2) {
+		
+		addConstraint(
+				 1, c1,
+				-1, c2,
+				ConstraintType.EXACT, 0);
+		
+	}
+	
+	@Override
+	public void requireSameEle(Iterable<EleConnector> cs) {
+		
+		Iterator<EleConnector> csIterator = cs.iterator();
+		
+		if (csIterator.hasNext()) {
+			
+			EleConnector c = csIterator.next();
+			
+			while (csIterator.hasNext()) {
+				requireSameEle(c, csIterator.next());
+			}
+			
+		}
+		
+	}
+	
+	@Override
+	public void requireVerticalDistance(ConstraintType type, double distance,
+			EleConnector upper, EleConnector lower) {
+		
+		addConstraint(
+				 1, upper,
+				-1, lower,
+				type, distance);
+		
+	}
+	
+	@Override
+	public void requireVerticalDistance(ConstraintType type, double distance,
+			EleConnector upper, EleConnector base1, EleConnector base2) {
+		
+		double dist1 = base1.pos.distanceTo(upper.pos);
+		double dist2 = base2.pos.distanceTo(upper.pos);
+		
+		addConstraint(
+				 1, upper,
+				-(dist2 / (dist1 + dist2)), base1,
+				-(dist1 / (dist1 + dist2)), base2,
+				type, distance);
+		
+	}
+	
+	@Override
+	public void requireIncline(ConstraintType type, double incline,
+			List<EleConnector> cs) {
+		
+		for (int i = 0; i+1 < cs.size(); i++) {
+			
+			addConstraint(
+					 1, cs.get(i+1),
+					-1, cs.get(i),
+					type, incline * cs.get(i).pos.distanceTo(cs.get(i+1).pos));
+			
+		}
+		
+	}
+	
+	@Override
+	public void requireSmoothness(EleConnector from,
+			EleConnector via, EleConnector to) {
+		// TODO implement (not supported by LPEleConstraintEnforcer either)
+	}
+	
+	private void addConstraint(
+			double factor1, EleConnector c1,
+			double factor2, EleConnector c2,
+			ConstraintType type, double limit) {
+		
+		addConstraint(
+				factor1, c1,
+				factor2, c2,
+				0, null,
+				type, limit);
+		
+	}
+	
+	private void addConstraint(
+			double factor1, EleConnector c1,
+			double factor2, EleConnector c2,
+			double factor3, EleConnector c3,
+			ConstraintType type, double limit) {
+		
+		/* MIN constraints are turned into MAX constraints by negation */
+		
+		double sign = (type == ConstraintType.MIN) ? -1 : 1;
+		
+		addTerm(sign * factor1, c1);
+		addTerm(sign * factor2, c2);
+		
+		if (c3 != null) {
+			addTerm(sign * factor3, c3);
+		}
+		
+		limits.add(sign * limit);
+		equalities.set(limits.size() - 1, type == ConstraintType.EXACT);
+		constraintStart.add(termConnectors.size());
+		
+	}
+	
+	private void addTerm(double factor, EleConnector c) {
+		
+		int index = connectorIndexMap.get(c);
+		
+		if (index == -1) {
+			
+			/* remove the terms of the incomplete constraint */
+			
+			int start = constraintStart.get(constraintStart.size() - 1);
+			termConnectors.remove(start, termConnectors.size() - start);
+			termFactors.remove(start, termFactors.size() - start);
+			
+			throw new IllegalArgumentException("unknown connector " + c);
+			
+		}
+		
+		termConnectors.add(index);
+		termFactors.add(factor);
+		
+	}
+	
+	@Override
+	public void enforceConstraints(ForkJoinPool pool) {
+		enforceConstraints();
+	}
+	
+	@Override
+	public void enforceConstraints() {
+		
+		/* assign a variable to each set of joined connectors */
+		
+		int connectorCount = connectors.size();
+		
+		int[] variableOfConnector = new int[connectorCount];
+		TIntArrayList firstConnectorOfVariable = new TIntArrayList();
+		
+		int[] variableOfRoot = new int[connectorCount];
+		Arrays.fill(variableOfRoot, -1);
+		
+		for (int i = 0; i < connectorCount; i++) {
+			
+			int root = joinedConnectors.find(i);
+			
+			if (variableOfRoot[root] == -1) {
+				variableOfRoot[root] = firstConnectorOfVariable.size();
+				firstConnectorOfVariable.add(i);
+			}
+			
+			variableOfConnector[i] = variableOfRoot[root];
+			
+		}
+		
+		int variableCount = firstConnectorOfVariable.size();
+		
+		double[] eles = new double[variableCount];
+		double[] inverseWeights = new double[variableCount];
+		
+		for (int v = 0; v < variableCount; v++) {
+			
+			EleConnector c = connectors.get(firstConnectorOfVariable.get(v));
+			
+			eles[v] = c.getPosXYZ().y;
+			inverseWeights[v] = (c.groundState == ON) ? 1 : 1 / NON_GROUND_WEIGHT;
+			
+		}
+		
+		/* convert the constraints to variables, merging duplicate variables
+		 * and dropping constraints without any non-zero factors */
+		
+		int constraintCount = limits.size();
+		
+		TIntArrayList rowStart = new TIntArrayList(constraintCount + 1);
+		TIntArrayList rowVariables = new TIntArrayList(termConnectors.size());
+		TDoubleArrayList rowFactors = new TDoubleArrayList(termConnectors.size());
+		TDoubleArrayList rowLimits = new TDoubleArrayList(constraintCount);
+		TDoubleArrayList rowNorms = new TDoubleArrayList(constraintCount);
+		BitSet rowEqualities = new BitSet(constraintCount);
+		
+		rowStart.add(0);
+		
+		for (int i = 0; i < constraintCount; i++) {
+			
+			int start = rowVariables.size();
+			
+			for (int t = constraintStart.get(i); t < constraintStart.get(i + 1); t++) {
+				
+				int variable = variableOfConnector[termConnectors.get(t)];
+				double factor = termFactors.get(t);
+				
+				int existing = rowVariables.indexOf(start, variable);
+				
+				if (existing >= 0) {
+					rowFactors.set(existing, rowFactors.get(existing) + factor);
+				} else {
+					rowVariables.add(variable);
+					rowFactors.add(factor);
+				}
+				
+			}
+			
+			double norm = 0;
+			
+			for (int t = start; t < rowVariables.size(); t++) {
+				norm += rowFactors.get(t) * rowFactors.get(t)
+						* inverseWeights[rowVariables.get(t)];
+			}
+			
+			if (norm > 0) {
+				rowLimits.add(limits.get(i));
+				rowNorms.add(norm);
+				rowEqualities.set(rowLimits.size() - 1, equalities.get(i));
+				rowStart.add(rowVariables.size());
+			} else {
+				rowVariables.remove(start, rowVariables.size() - start);
+				rowFactors.remove(start, rowFactors.size() - start);
+			}
+			
+		}
+		
+		/* perform the iteration */
+		
+		int iterations = solve(eles, inverseWeights,
+				rowStart.toArray(), rowVariables.toArray(), rowFactors.toArray(),
+				rowLimits.toArray(), rowNorms.toArray(), rowEqualities);
+		
+		if (iterations > maxIterations) {
+			System.out.println("[WARNING]: constraint enforcement did not converge"
+					+ " after " + maxIterations + " iterations");
+		}
+		
+		/* apply elevation values */
+		
+		for (int i = 0; i < connectorCount; i++) {
+			EleConnector c = connectors.get(i);
+			c.setPosXYZ(c.pos.xyz(eles[variableOfConnector[i]]));
+		}
+		
+	}
+	
+	/**
+	 * calculates the weighted least squares projection of the elevations
+	 * onto the constraints with Hildreth's method. Each constraint has a
+	 * multiplier, which is kept non-negative for inequality constraints.
+	 *
+	 * @param eles  initial elevations; will be replaced with the result
+	 * @return  number of iterations;
+	 *          maxIterations + 1 if the iteration did not converge
+	 */
+	private int solve(double[] eles, double[] inverseWeights,
+			int[] rowStart, int[] rowVariables, double[] rowFactors,
+			double[] rowLimits, double[] rowNorms, BitSet rowEqualities) {
+		
+		int rowCount = rowLimits.length;
+		
+		double[] multipliers = new double[rowCount];
+		
+		for (int iteration = 1; iteration <= maxIterations; iteration++) {
+			
+			double maxChange = 0;
+			
+			for (int row = 0; row < rowCount; row++) {
+				
+				double value = 0;
+				
+				for (int t = rowStart[row]; t < rowStart[row + 1]; t++) {
+					value += rowFactors[t] * eles[rowVariables[t]];
+				}
+				
+				double step = (value - rowLimits[row]) / rowNorms[row];
+				
+				if (!rowEqualities.get(row)) {
+					// multipliers of inequality constraints cannot be negative
+					step = max(step, -multipliers[row]);
+				}
+				
+				if (step != 0) {
+					
+					multipliers[row] += step;
+					
+					for (int t = rowStart[row]; t < rowStart[row + 1]; t++) {
+						
+						int variable = rowVariables[t];
+						double change = step * rowFactors[t] * inverseWeights[variable];
+						
+						eles[variable] -= change;
+						maxChange = max(maxChange, abs(change));
+						
+					}
+					
+				}
+				
+			}
+			
+			if (maxChange <= tolerance) {
+				return iteration;
+			}
+			
+		}
+		
+		return maxIterations + 1;
+		
+	}
+
+}
@@ -2,12 +2,16 @@ package org.osm2world.core.map_elevation.creation;
 
 import static org.osm2world.core.map_elevation.data.GroundState.ON;
 
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import net.sf.javailp.Linear;
 import net.sf.javailp.OptType;
@@ -21,30 +25,36 @@ import org.osm2world.core.map_elevation.data.EleConnector;
 import org.osm2world.core.map_elevation.data.LPVariablePair;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.math.datastructures.UnionFind;
 import org.osm2world.core.util.FaultTolerantIterationUtil;
 import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
 /**
- * enforces constraints using linear programming
+ * enforces constraints using linear programming.
+ *
+ * Variables are only related to each other through constraints,
+ * so the constraints are split into connected components
+ * that are solved as independent linear programs.
+ * Variables without any constraints keep their elevation.
  */
 public class LPEleConstraintEnforcer implements EleConstraintEnforcer {
-
-	private final Problem problem;
 	
 	private final List<LPVariablePair> variables;
 	private final Map<EleConnector, LPVariablePair> variableMap;
-
+	
+	private final List<LPConstraint> constraints;
 	
 	public LPEleConstraintEnforcer() {
 		
-		problem = new Problem();
-		
 		variables = new ArrayList<LPVariablePair>();
 		variableMap = new HashMap<EleConnector, LPVariablePair>();
 		
+		constraints = new ArrayList<LPConstraint>();
+		
 	}
 	
 	@Override
@@ -300,6 +310,8 @@ public class LPEleConstraintEnforcer implements EleConstraintEnforcer {
 		
 		Linear linear = new Linear();
 		
+		List<LPVariablePair> constraintVariables = new ArrayList<LPVariablePair>(3);
+		
 		double limitCorrection = 0;
 		
 		if (var1 != null) {
@@ -307,6 +319,7 @@ public class LPEleConstraintEnforcer implements EleConstraintEnforcer {
 			linear.add(factor1, c1.posVar());
 			linear.add(-factor1, c1.negVar());
 			limitCorrection += factor1 * var1.getPosXYZ().y;
+			constraintVariables.add(c1);
 		}
 		
 		if (var2 != null) {
@@ -314,6 +327,7 @@ public class LPEleConstraintEnforcer implements EleConstraintEnforcer {
 			linear.add(factor2, c2.posVar());
 			linear.add(-factor2, c2.negVar());
 			limitCorrection += factor2 * var2.getPosXYZ().y;
+			constraintVariables.add(c2);
 		}
 		
 		if (var3 != null) {
@@ -321,9 +335,11 @@ public class LPEleConstraintEnforcer implements EleConstraintEnforcer {
 			linear.add(factor3, c3.posVar());
 			linear.add(-factor3, c3.negVar());
 			limitCorrection += factor3 * var3.getPosXYZ().y;
+			constraintVariables.add(c3);
 		}
 		
-		problem.add(linear, op, limit - limitCorrection);
+		constraints.add(new LPConstraint(linear, op, limit - limitCorrection,
+				constraintVariables));
 		
 	}
 	
@@ -340,55 +356,177 @@ public class LPEleConstraintEnforcer implements EleConstraintEnforcer {
 	
 	@Override
 	public void enforceConstraints() {
+		enforceConstraints(null);
+	}
+	
+	/**
+	 * variant of {@link #enforceConstraints()} which solves the
+	 * independent linear programs in parallel
+	 *
+	 * @param pool  the pool used for solving; null to solve sequentially
+	 *              in the current thread
+	 */
+	@Override
+	public void enforceConstraints(ForkJoinPool pool) {
 		
-		SolverFactory factory = new SolverFactoryLpSolve();
+		final SolverFactory factory = new SolverFactoryLpSolve();
 		factory.setParameter(Solver.VERBOSE, 0);
 		
-		problem.setObjective(constructObjective(), OptType.MIN);
+		/* variables without constraints keep their elevation,
+		 * the others are changed below */
 		
-		//TODO Relaxations relax = new Relaxations();
+		for (LPVariablePair v : variables) {
+			v.setPosXYZ(v.getPosXYZ());
+		}
 		
-		final Solver solver = factory.get();
-		final Result result = solver.solve(problem);
+		List<LPComponent> components = createComponents();
 		
-		if (result == null) {
-			System.out.println("[ERROR]: cannot enforce constraints, no result for LP");
-		} else {
-			
-			/* apply elevation values */
-			
-			FaultTolerantIterationUtil.iterate(variables, new Operation<LPVariablePair>() {
-				@Override public void perform(LPVariablePair v) {
+		ParallelIterationUtil.iterate(pool, components, new Operation<LPComponent>() {
+			@Override public void perform(LPComponent component) {
+				
+				//TODO Relaxations relax = new Relaxations();
+				
+				Solver solver = factory.get();
+				final Result result = solver.solve(component.problem);
+				
+				if (result == null) {
+					System.out.println("[ERROR]: cannot enforce constraints, no result for LP");
+				} else {
 					
-					VectorXYZ posXYZ = v.getPosXYZ().addY(
-							+ result.get(v.posVar()).doubleValue()
-							- result.get(v.negVar()).doubleValue());
+					/* apply elevation values */
 					
-					v.setPosXYZ(posXYZ);
+					FaultTolerantIterationUtil.iterate(component.variables,
+							new Operation<LPVariablePair>() {
+						@Override public void perform(LPVariablePair v) {
+							
+							VectorXYZ posXYZ = v.getPosXYZ().addY(
+									+ result.get(v.posVar()).doubleValue()
+									- result.get(v.negVar()).doubleValue());
+							
+							v.setPosXYZ(posXYZ);
+							
+						}
+					});
 					
 				}
-			});
-						
-		}
+				
+			}
+		});
 		
 	}
 	
-	private Linear constructObjective() {
-	
-		Linear objectiveLinear = new Linear();
+	/**
+	 * splits the constraints into connected components, i.e. groups of
+	 * constraints that share variables, and creates a linear program
+	 * for each component
+	 */
+	private List<LPComponent> createComponents() {
+		
+		/* find the components using a union-find structure of the variables */
+		
+		TObjectIntHashMap<LPVariablePair> variableIndexMap =
+				new TObjectIntHashMap<LPVariablePair>(
+						variables.size(), 0.5f, -1);
+		
+		UnionFind unionFind = new UnionFind();
+		
+		for (LPVariablePair v : variables) {
+			variableIndexMap.put(v, unionFind.add());
+		}
+		
+		for (LPConstraint constraint : constraints) {
+			
+			int firstIndex = variableIndexMap.get(constraint.variables.get(0));
+			
+			for (int i = 1; i < constraint.variables.size(); i++) {
+				unionFind.union(firstIndex,
+						variableIndexMap.get(constraint.variables.get(i)));
+			}
+			
+		}
+		
+		/* create the components with constraints,
+		 * in the order of their first constraint */
+		
+		TIntObjectHashMap<LPComponent> componentMap =
+				new TIntObjectHashMap<LPComponent>();
+		List<LPComponent> components = new ArrayList<LPComponent>();
+		
+		for (LPConstraint constraint : constraints) {
+			
+			int root = unionFind.find(
+					variableIndexMap.get(constraint.variables.get(0)));
+			
+			LPComponent component = componentMap.get(root);
+			
+			if (component == null) {
+				component = new LPComponent();
+				componentMap.put(root, component);
+				components.add(component);
+			}
+			
+			component.problem.add(constraint.linear, constraint.op, constraint.limit);
+			
+		}
+		
+		/* add the variables to the components and objectives */
 		
 		for (LPVariablePair v : variables) {
 			
-			if (v.getConnectors().get(0).groundState == ON) {
+			LPComponent component = componentMap.get(
+					unionFind.find(variableIndexMap.get(v)));
+			
+			if (component != null) {
 				
-				objectiveLinear.add(1, v.posVar());
-				objectiveLinear.add(1, v.negVar());
+				component.variables.add(v);
+				
+				if (v.getConnectors().get(0).groundState == ON) {
+					component.problem.getObjective().add(1, v.posVar());
+					component.problem.getObjective().add(1, v.negVar());
+				}
 				
 			}
 			
 		}
 		
-		return objectiveLinear;
+		return components;
+		
+	}
+	
+	/**
+	 * an independent part of the linear program:
+	 * a set of constraints and the variables they refer to
+	 */
+	private static final class LPComponent {
+		
+		final Problem problem = new Problem();
+		final List<LPVariablePair> variables = new ArrayList<LPVariablePair>();
+		
+		LPComponent() {
+			problem.setObjective(new Linear(), OptType.MIN);
+		}
+		
+	}
+	
+	/**
+	 * a constraint of the linear program,
+	 * along with the variable pairs it refers to
+	 */
+	private static final class LPConstraint {
+		
+		final Linear linear;
+		final String op;
+		final double limit;
+		
+		final List<LPVariablePair> variables;
+		
+		LPConstraint(Linear linear, String op, double limit,
+				List<LPVariablePair> variables) {
+			this.linear = linear;
+			this.op = op;
+			this.limit = limit;
+			this.variables = variables;
+		}
 		
 	}
 	
@@ -3,14 +3,11 @@ package org.osm2world.core.map_elevation.creation;
 import static java.lang.Math.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.lang.time.StopWatch;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
@@ -18,120 +15,171 @@ import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.QRDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.SingularMatrixException;
 import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
-import org.osm2world.core.math.datastructures.IntersectionGrid;
 import org.osm2world.core.math.datastructures.IntersectionTestObject;
+import org.osm2world.core.math.datastructures.NearestNeighborGrid;
+import org.osm2world.core.math.datastructures.NearestNeighborGrid.Query;
+import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
 
 /**
  * uses least squares method to approximate a polynomial at each site,
  * and calculates elevations based on the polynomials at the nearest sites.
  */
-public class LeastSquaresInterpolator implements TerrainInterpolator {
+public class LeastSquaresInterpolator extends AbstractTerrainInterpolator {
 	
-	private static final double CELL_SIZE = 50; //should only affect performance
 	private static final int SITES_FOR_APPROX = 9;
 	private static final int SITES_FOR_INTERPOL = 29;
 	
-	private Collection<SiteWithPolynomial> sites;
-	private IntersectionGrid<SiteWithPolynomial> siteGrid; //TODO: rename IntersectionGrid to something more generic
+	/** query buffers for {@link #interpolateEle(VectorXZ)}, one per thread */
+	private static final ThreadLocal<Query> INTERPOL_QUERY =
+			new ThreadLocal<Query>() {
+		@Override protected Query initialValue() {
+			return new Query(SITES_FOR_INTERPOL);
+		}
+	};
+	
+	private List<SiteWithPolynomial> sites;
+	
+	/*
+	 * packed data of the sites which have a polynomial:
+	 * positions, and the polynomials' coefficients
+	 * (NUM_COEFFS consecutive values for each site)
+	 */
+	
+	private double[] polynomialXs;
+	private double[] polynomialZs;
+	private double[] polynomialCoeffs;
+	private NearestNeighborGrid polynomialIndex;
 	
 	@Override
 	public void setKnownSites(Collection<VectorXYZ> siteVectors) {
+		setKnownSites(siteVectors, null);
+	}
+	
+	/**
+	 * variant of {@link #setKnownSites(Collection)} which approximates
+	 * the sites' polynomials in parallel
+	 *
+	 * @param pool  the pool used for approximating the polynomials;
+	 *              null to do it sequentially in the current thread
+	 */
+	@Override
+	public void setKnownSites(Collection<VectorXYZ> siteVectors,
+			ForkJoinPool pool) {
 		
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 		
-		sites = new ArrayList<SiteWithPolynomial>(siteVectors.size());
+		int siteCount = siteVectors.size();
+		
+		sites = new ArrayList<SiteWithPolynomial>(siteCount);
 		
-		siteGrid = new IntersectionGrid<SiteWithPolynomial>(
-				new AxisAlignedBoundingBoxXZ(siteVectors).pad(CELL_SIZE/2),
-				CELL_SIZE, CELL_SIZE);
+		double[] xs = new double[siteCount];
+		double[] zs = new double[siteCount];
+		final double[] eles = new double[siteCount];
 		
 		for (VectorXYZ siteVector : siteVectors) {
-			SiteWithPolynomial s = new SiteWithPolynomial(siteVector);
-			sites.add(s);
-			siteGrid.insert(s);
+			int i = sites.size();
+			xs[i] = siteVector.x;
+			zs[i] = siteVector.z;
+			eles[i] = siteVector.y;
+			sites.add(new SiteWithPolynomial(siteVector));
 		}
 		
+		final NearestNeighborGrid siteIndex = new NearestNeighborGrid(xs, zs);
+		
 		System.out.println("  time grid: " + stopWatch);
 		stopWatch.reset();
 		stopWatch.start();
 		
 		/* approximate a polynomial at each site */
-
-		Map<SiteWithPolynomial, List<SiteWithPolynomial>> nearestSiteMap
-			= new HashMap<SiteWithPolynomial, List<SiteWithPolynomial>>();
-
-		for (SiteWithPolynomial site : sites) {
-			
-			List<SiteWithPolynomial> nearestSites =
-					findNearestSites(site.pos.xz(), SITES_FOR_APPROX, false);
-
-			nearestSiteMap.put(site, nearestSites);
-			
-		}
 		
-		System.out.println("  time nearest sites: " + stopWatch);
+		ParallelIterationUtil.iterate(pool,
+				ParallelIterationUtil.partition(pool, sites),
+				new Operation<List<SiteWithPolynomial>>() {
+			@Override public void perform(List<SiteWithPolynomial> batch) {
+				
+				PolynomialFitter fitter = new PolynomialFitter();
+				
+				for (SiteWithPolynomial site : batch) {
+					
+					double[] coeffs = fitter.fit(
+							siteIndex, eles, site.pos.x, site.pos.z);
+					
+					if (coeffs != null) {
+						site.setPolynomial(new DefaultPolynomial(coeffs));
+					}
+					
+				}
+				
+			}
+		});
+		
+		System.out.println("  time polyonmials: " + stopWatch);
 		stopWatch.reset();
 		stopWatch.start();
-
-		calculatePolynomials:
+		
+		/* build an index of the sites with polynomials */
+		
+		int polynomialCount = 0;
+		
 		for (SiteWithPolynomial site : sites) {
-			
-			List<SiteWithPolynomial> nearestSites =
-					nearestSiteMap.get(site);
-			
-			RealVector vector = new ArrayRealVector(SITES_FOR_APPROX);
-			RealMatrix matrix = new Array2DRowRealMatrix(
-					SITES_FOR_APPROX, DefaultPolynomial.NUM_COEFFS);
-			
-			for (int row = 0; row < SITES_FOR_APPROX; row++) {
-				SiteWithPolynomial nearSite = nearestSites.get(row);
-				DefaultPolynomial.populateMatrix(matrix, row, nearSite.pos.x, nearSite.pos.z);
-				vector.setEntry(row, nearSite.pos.y);
+			if (site.getPolynomial() != null) {
+				polynomialCount ++;
 			}
+		}
+		
+		polynomialXs = new double[polynomialCount];
+		polynomialZs = new double[polynomialCount];
+		polynomialCoeffs = new double[polynomialCount * DefaultPolynomial.NUM_COEFFS];
+		
+		int p = 0;
+		
+		for (int i = 0; i < siteCount; i++) {
 			
-			QRDecomposition qr = new QRDecomposition(matrix);
-			RealVector solution = qr.getSolver().solve(vector);
-				
-			double[] coeffs = solution.toArray();
+			DefaultPolynomial polynomial =
+					(DefaultPolynomial) sites.get(i).getPolynomial();
 			
-			for (double coeff : coeffs) {
-				if (coeff > 10e3) {
-					continue calculatePolynomials;
-				}
+			if (polynomial != null) {
+				polynomialXs[p] = xs[i];
+				polynomialZs[p] = zs[i];
+				System.arraycopy(polynomial.coeffs, 0, polynomialCoeffs,
+						p * DefaultPolynomial.NUM_COEFFS, DefaultPolynomial.NUM_COEFFS);
+				p ++;
 			}
 			
-			site.setPolynomial(new DefaultPolynomial(coeffs));
-			
 		}
-
-		System.out.println("  time polyonmials: " + stopWatch);
-		stopWatch.reset();
-		stopWatch.start();
+		
+		polynomialIndex = new NearestNeighborGrid(polynomialXs, polynomialZs);
+		
+		System.out.println("  time polynomial grid: " + stopWatch);
 		
 	}
 	
 	@Override
 	public VectorXYZ interpolateEle(VectorXZ pos) {
 		
-		List<SiteWithPolynomial> nearestSites =
-				findNearestSites(pos, SITES_FOR_INTERPOL, true);
+		Query query = INTERPOL_QUERY.get();
+		
+		polynomialIndex.findNearest(pos.x, pos.z, SITES_FOR_INTERPOL, query);
 		
 		double eleSum = 0;
 		double weightSum = 0;
 		
-		for (SiteWithPolynomial site : nearestSites) {
+		for (int n = 0; n < query.size(); n++) {
 			
-			double distance = site.pos.distanceToXZ(pos);
+			double distance = sqrt(query.getDistanceSquared(n));
 			
 			double weight = max(1 - distance / 120, 0);
 			
 			weightSum += weight;
-						
-			eleSum += weight * site.getPolynomial().evaluateAt(pos.x, pos.z);
+			
+			eleSum += weight * DefaultPolynomial.evaluateAt(polynomialCoeffs,
+					query.getIndex(n) * DefaultPolynomial.NUM_COEFFS, pos.x, pos.z);
 			
 		}
 		
@@ -149,75 +197,194 @@ public class LeastSquaresInterpolator implements TerrainInterpolator {
 		return sites;
 	}
 	
-	private List<SiteWithPolynomial> findNearestSites(
-			final VectorXZ pos, int numberSites, boolean requirePolynomial) {
-
-		PriorityQueue<SiteWithPolynomial> result =
-				new PriorityQueue<SiteWithPolynomial>(numberSites,
-						new Comparator<SiteWithPolynomial>() {
-					@Override
-					public int compare(SiteWithPolynomial s1, SiteWithPolynomial s2) {
-						return - Double.compare(s1.pos.distanceToXZ(pos),
-								s2.pos.distanceToXZ(pos));
-					}
-				});
+	/**
+	 * approximates the polynomial for a site from its nearest neighbors.
+	 *
+	 * Solves the normal equations of the 9x6 least squares problem
+	 * with a Cholesky decomposition, using buffers that are re-used
+	 * for all sites. To keep the system well-conditioned, it is set up
+	 * in coordinates relative to the site and scaled by the neighbors'
+	 * distance, and only the result is converted to global coordinates.
+	 * If the system is still ill-conditioned, a QR decomposition
+	 * of the full matrix is used instead.
+	 *
+	 * Each instance must only be used by one thread at a time.
+	 */
+	private static final class PolynomialFitter {
+		
+		/**
+		 * smallest acceptable ratio between a pivot of the Cholesky
+		 * decomposition and the corresponding diagonal entry
+		 */
+		private static final double MIN_PIVOT_RATIO = 1e-8;
+		
+		private static final int N = DefaultPolynomial.NUM_COEFFS;
+		
+		private final Query query = new Query(SITES_FOR_APPROX);
 		
-		Collection<SiteWithPolynomial>[][] cellArray = siteGrid.getCellArray();
-		int cellX = siteGrid.cellXForCoord(pos.x, pos.z);
-		int cellZ = siteGrid.cellZForCoord(pos.x, pos.z);
+		private final double[] terms = new double[N];
+		
+		/** lower triangle of the normal matrix, replaced by its Cholesky factor */
+		private final double[] normalMatrix = new double[N * N];
+		
+		private final double[] rightSide = new double[N];
+		
+		/**
+		 * @return  the polynomial's coefficients in global coordinates;
+		 *          null if no reasonable polynomial could be approximated
+		 */
+		public double[] fit(NearestNeighborGrid siteIndex, double[] eles,
+				double x0, double z0) {
+			
+			siteIndex.findNearest(x0, z0, SITES_FOR_APPROX, query);
 			
-		int cellRange = 0;
+			if (query.size() < SITES_FOR_APPROX) {
+				return null;
+			}
+			
+			double scale = sqrt(query.getDistanceSquared(SITES_FOR_APPROX - 1));
+			
+			double[] coeffs = null;
+			
+			if (scale > 0) {
+				coeffs = fitCholesky(siteIndex, eles, x0, z0, scale);
+			}
+			
+			if (coeffs == null) {
+				try {
+					coeffs = fitQR(siteIndex, eles);
+				} catch (SingularMatrixException e) {
+					return null;
+				}
+			}
+			
+			for (double coeff : coeffs) {
+				if (coeff > 10e3) {
+					return null;
+				}
+			}
+			
+			return coeffs;
+			
+		}
+		
+		/**
+		 * @return  the coefficients; null if the system is ill-conditioned
+		 */
+		private double[] fitCholesky(NearestNeighborGrid siteIndex,
+				double[] eles, double x0, double z0, double scale) {
+			
+			/* set up the normal equations in local coordinates */
+			
+			Arrays.fill(normalMatrix, 0);
+			Arrays.fill(rightSide, 0);
+			
+			for (int n = 0; n < SITES_FOR_APPROX; n++) {
+				
+				int site = query.getIndex(n);
+				
+				double u = (siteIndex.getX(site) - x0) / scale;
+				double v = (siteIndex.getZ(site) - z0) / scale;
+				
+				terms[0] = 1;
+				terms[1] = u;
+				terms[2] = v;
+				terms[3] = u*u;
+				terms[4] = u*v;
+				terms[5] = v*v;
+				
+				for (int row = 0; row < N; row++) {
+					for (int col = 0; col <= row; col++) {
+						normalMatrix[row * N + col] += terms[row] * terms[col];
+					}
+					rightSide[row] += terms[row] * eles[site];
+				}
 				
-		do {
+			}
 			
-			for (int i = max(cellX-cellRange, 0); i < min(cellX+cellRange+1, cellArray.length); i++) {
-				for (int j = max(cellZ-cellRange, 0); j < min(cellZ+cellRange+1, cellArray[i].length); j++) {
-					
-					//needs to be on the outer ring of cells (others have been checked before)
-					if (i == cellX-cellRange || i == cellX+cellRange
-							|| j == cellZ-cellRange || j == cellZ+cellRange) {
-					
-						Collection<SiteWithPolynomial> sitesInCell = cellArray[i][j];
-
-						if (sitesInCell != null) {
-							for (SiteWithPolynomial site : sitesInCell) {
-								
-								if (requirePolynomial && site.polynomial == null) continue;
-								
-								if (result.size() < numberSites) {
-									
-									result.add(site);
-									
-								} else if (site.pos.distanceToXZ(pos) <
-										result.peek().pos.distanceToXZ(pos)) {
-									
-									result.remove();
-									result.add(site);
-									
-								}
-							}
-						}
-						
+			/* Cholesky decomposition (in place) */
+			
+			for (int col = 0; col < N; col++) {
+				
+				double diagonal = normalMatrix[col * N + col];
+				double pivot = diagonal;
+				
+				for (int k = 0; k < col; k++) {
+					pivot -= normalMatrix[col * N + k] * normalMatrix[col * N + k];
+				}
+				
+				if (!(pivot > MIN_PIVOT_RATIO * diagonal)) {
+					return null;
+				}
+				
+				double l = sqrt(pivot);
+				normalMatrix[col * N + col] = l;
+				
+				for (int row = col + 1; row < N; row++) {
+					double sum = normalMatrix[row * N + col];
+					for (int k = 0; k < col; k++) {
+						sum -= normalMatrix[row * N + k] * normalMatrix[col * N + k];
 					}
-					
+					normalMatrix[row * N + col] = sum / l;
 				}
+				
 			}
 			
-			cellRange ++;
+			/* forward and back substitution */
 			
-		} while (result.size() < numberSites
-				|| cellRange * CELL_SIZE < result.peek().pos.distanceToXZ(pos));
-
-		//TODO error handling (not enough sites)
-		
-		/* get the result as a list with ascending distance */
-		
-		List<SiteWithPolynomial> resultList =
-				new ArrayList<SiteWithPolynomial>(result);
-		
-		Collections.reverse(resultList);
+			for (int row = 0; row < N; row++) {
+				double sum = rightSide[row];
+				for (int k = 0; k < row; k++) {
+					sum -= normalMatrix[row * N + k] * rightSide[k];
+				}
+				rightSide[row] = sum / normalMatrix[row * N + row];
+			}
+			
+			for (int row = N - 1; row >= 0; row--) {
+				double sum = rightSide[row];
+				for (int k = row + 1; k < N; k++) {
+					sum -= normalMatrix[k * N + row] * rightSide[k];
+				}
+				rightSide[row] = sum / normalMatrix[row * N + row];
+			}
+			
+			/* convert the coefficients to global coordinates */
+			
+			double c1 = rightSide[1] / scale;
+			double c2 = rightSide[2] / scale;
+			double c3 = rightSide[3] / (scale * scale);
+			double c4 = rightSide[4] / (scale * scale);
+			double c5 = rightSide[5] / (scale * scale);
+			
+			return new double[] {
+					rightSide[0] - c1 * x0 - c2 * z0
+						+ c3 * x0*x0 + c4 * x0*z0 + c5 * z0*z0,
+					c1 - 2 * c3 * x0 - c4 * z0,
+					c2 - 2 * c5 * z0 - c4 * x0,
+					c3,
+					c4,
+					c5 };
+			
+		}
 		
-		return resultList;
+		private double[] fitQR(NearestNeighborGrid siteIndex, double[] eles) {
+			
+			RealVector vector = new ArrayRealVector(SITES_FOR_APPROX);
+			RealMatrix matrix = new Array2DRowRealMatrix(SITES_FOR_APPROX, N);
+			
+			for (int row = 0; row < SITES_FOR_APPROX; row++) {
+				int site = query.getIndex(row);
+				DefaultPolynomial.populateMatrix(matrix, row,
+						siteIndex.getX(site), siteIndex.getZ(site));
+				vector.setEntry(row, eles[site]);
+			}
+			
+			QRDecomposition qr = new QRDecomposition(matrix);
+			RealVector solution = qr.getSolver().solve(vector);
+			
+			return solution.toArray();
+			
+		}
 		
 	}
 	
@@ -240,12 +407,21 @@ public class LeastSquaresInterpolator implements TerrainInterpolator {
 		
 		@Override
 		public double evaluateAt(double x, double z) {
-			return coeffs[0]
-					+ coeffs[1] * x
-					+ coeffs[2] * z
-					+ coeffs[3] * x*x
-					+ coeffs[4] * x*z
-					+ coeffs[5] * z*z;
+			return evaluateAt(coeffs, 0, x, z);
+		}
+		
+		/**
+		 * evaluates the polynomial with the coefficients
+		 * coeffs[offset] to coeffs[offset + NUM_COEFFS - 1]
+		 */
+		static double evaluateAt(double[] coeffs, int offset,
+				double x, double z) {
+			return coeffs[offset]
+					+ coeffs[offset + 1] * x
+					+ coeffs[offset + 2] * z
+					+ coeffs[offset + 3] * x*x
+					+ coeffs[offset + 4] * x*z
+					+ coeffs[offset + 5] * z*z;
 		}
 		
 		public static void populateMatrix(RealMatrix matrix, int row,
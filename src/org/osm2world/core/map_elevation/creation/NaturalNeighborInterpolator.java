@@ -8,9 +8,12 @@ import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 
 /**
- * uses natural neighbor interpolation of heights
+ * uses natural neighbor interpolation of heights.
+ * 
+ * {@link #interpolateEle(VectorXZ)} doesn't modify the triangulation,
+ * so it can be called from multiple threads at the same time.
  */
-public class NaturalNeighborInterpolator implements TerrainInterpolator {
+public class NaturalNeighborInterpolator extends AbstractTerrainInterpolator {
 
 	private DelaunayTriangulation triangulation;
 	
@@ -21,17 +24,7 @@ public class NaturalNeighborInterpolator implements TerrainInterpolator {
 		boundingBox = boundingBox.pad(100);
 		
 		triangulation = new DelaunayTriangulation(boundingBox);
-		
-		int i = 0; //TODO remove
-		int total = sites.size();
-		long startTime = System.currentTimeMillis();
-		
-		for (VectorXYZ site : sites) {
-			if (++i % 1000 == 0) System.out.println("KS: " + i + "/" + total
-					+ " after " + ((System.currentTimeMillis() - startTime) / 1e3));
-			triangulation.insert(site);
-			
-		}
+		triangulation.insertAll(sites);
 		
 	}
 
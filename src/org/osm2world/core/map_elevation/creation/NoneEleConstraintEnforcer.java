@@ -1,6 +1,7 @@
 package org.osm2world.core.map_elevation.creation;
 
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.osm2world.core.map_elevation.data.EleConnector;
 
@@ -38,4 +39,7 @@ public class NoneEleConstraintEnforcer implements EleConstraintEnforcer {
 	@Override
 	public void enforceConstraints() {}
 	
+	@Override
+	public void enforceConstraints(ForkJoinPool pool) {}
+	
 }
@@ -0,0 +1,288 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.lang.Math.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.osm2world.core.map_data.creation.MapProjection;
+import org.osm2world.core.map_elevation.creation.RasterTerrainElevationData.RasterTile;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+/**
+ * interpolates elevations directly from {@link RasterTerrainElevationData}.
+ * Positions are converted to lat/lon using the {@link MapProjection},
+ * then the surrounding raster samples are interpolated.
+ *
+ * Unlike {@link TerrainInterpolator}s, this one does not use known sites.
+ * It is created for a raster instead, and therefore
+ * cannot be used as a general-purpose terrain interpolator.
+ */
+public class RasterInterpolator implements EleInterpolator {
+	
+	public static enum Method {
+		
+		/** linear interpolation between the four surrounding samples */
+		BILINEAR,
+		
+		/**
+		 * cubic convolution (Catmull-Rom) using the surrounding 4x4 samples.
+		 * Falls back to bilinear interpolation where samples are missing.
+		 */
+		BICUBIC
+		
+	}
+	
+	/** marks tiles which have been requested, but are not available */
+	private static final RasterTile MISSING_TILE = new RasterTile() {
+		@Override public int getSamples() { return 0; }
+		@Override public double getEle(int x, int y) { return Double.NaN; }
+	};
+	
+	private final Method method;
+	
+	private final RasterTerrainElevationData data;
+	private final MapProjection projection;
+	
+	/** tiles which have been used so far, identified by {@link #tileKey(int, int)} */
+	private final ConcurrentMap<Long, RasterTile> tiles =
+			new ConcurrentHashMap<Long, RasterTile>();
+	
+	/**
+	 * @param data        the raster that elevations will be interpolated from
+	 * @param projection  projection used to convert positions to lat/lon
+	 */
+	public RasterInterpolator(RasterTerrainElevationData data,
+			MapProjection projection, Method method) {
+		this.data = data;
+		this.projection = projection;
+		this.method = method;
+	}
+	
+	public Method getMethod() {
+		return method;
+	}
+	
+	@Override
+	public List<VectorXYZ> interpolateEle(List<VectorXZ> positions) {
+		
+		List<VectorXYZ> result = new ArrayList<VectorXYZ>(positions.size());
+		
+		for (VectorXZ pos : positions) {
+			result.add(interpolateEle(pos));
+		}
+		
+		return result;
+		
+	}
+	
+	@Override
+	public VectorXYZ interpolateEle(VectorXZ pos) {
+		
+		double lat = projection.calcLat(pos);
+		double lon = projection.calcLon(pos);
+		
+		int tileLon = (int)floor(lon);
+		int tileLat = (int)floor(lat);
+		
+		RasterTile tile = getTile(tileLon, tileLat);
+		
+		if (tile == MISSING_TILE) {
+			return pos.xyz(0);
+		}
+		
+		/* find the position within the tile's raster */
+		
+		int intervals = tile.getSamples() - 1;
+		
+		double fx = (lon - tileLon) * intervals;
+		double fy = (lat - tileLat) * intervals;
+		
+		int x = min(max((int)floor(fx), 0), intervals - 1);
+		int y = min(max((int)floor(fy), 0), intervals - 1);
+		
+		double tx = fx - x;
+		double ty = fy - y;
+		
+		double ele = Double.NaN;
+		
+		if (method == Method.BICUBIC) {
+			ele = interpolateBicubic(tileLon, tileLat, tile, x, y, tx, ty);
+		}
+		
+		if (Double.isNaN(ele)) {
+			ele = interpolateBilinear(tile, x, y, tx, ty);
+		}
+		
+		return pos.xyz(ele);
+		
+	}
+	
+	/**
+	 * interpolates linearly between the samples (x,y) to (x+1,y+1).
+	 * Missing samples are ignored.
+	 *
+	 * @return  the elevation; 0 if all samples are missing
+	 */
+	private static double interpolateBilinear(RasterTile tile,
+			int x, int y, double tx, double ty) {
+		
+		double weightSum = 0;
+		double eleSum = 0;
+		
+		for (int dx = 0; dx <= 1; dx++) {
+			for (int dy = 0; dy <= 1; dy++) {
+				
+				double ele = tile.getEle(x + dx, y + dy);
+				
+				if (!Double.isNaN(ele)) {
+					double weight = (dx == 0 ? 1 - tx : tx) * (dy == 0 ? 1 - ty : ty);
+					weightSum += weight;
+					eleSum += weight * ele;
+				}
+				
+			}
+		}
+		
+		if (weightSum > 0) {
+			return eleSum / weightSum;
+		} else {
+			return 0;
+		}
+		
+	}
+	
+	/**
+	 * performs cubic convolution using the samples (x-1,y-1) to (x+2,y+2)
+	 *
+	 * @return  the elevation; NaN if any of the samples is missing
+	 */
+	private double interpolateBicubic(int tileLon, int tileLat,
+			RasterTile tile, int x, int y, double tx, double ty) {
+		
+		double result = 0;
+		
+		for (int dy = -1; dy <= 2; dy++) {
+			
+			double rowResult = 0;
+			
+			for (int dx = -1; dx <= 2; dx++) {
+				double ele = getEle(tileLon, tileLat, tile, x + dx, y + dy);
+				rowResult += cubicWeight(dx, tx) * ele;
+			}
+			
+			result += cubicWeight(dy, ty) * rowResult;
+			
+		}
+		
+		return result;
+		
+	}
+	
+	/**
+	 * returns the Catmull-Rom weight of the sample at offset i
+	 * for a position t between the samples 0 and 1
+	 */
+	private static double cubicWeight(int i, double t) {
+		
+		double t2 = t * t;
+		double t3 = t2 * t;
+		
+		switch (i) {
+			case -1: return (-t3 + 2 * t2 - t) / 2;
+			case 0: return (3 * t3 - 5 * t2 + 2) / 2;
+			case 1: return (-3 * t3 + 4 * t2 + t) / 2;
+			default: return (t3 - t2) / 2;
+		}
+		
+	}
+	
+	/**
+	 * returns a sample's elevation. Indices outside the tile refer to
+	 * samples of the adjacent tiles. If that tile is not available or has
+	 * a different resolution, the nearest sample within the tile is used.
+	 */
+	private double getEle(int tileLon, int tileLat, RasterTile tile,
+			int x, int y) {
+		
+		int samples = tile.getSamples();
+		
+		if (x >= 0 && x < samples && y >= 0 && y < samples) {
+			return tile.getEle(x, y);
+		}
+		
+		int intervals = samples - 1;
+		
+		int neighborLon = tileLon;
+		int neighborLat = tileLat;
+		int neighborX = x;
+		int neighborY = y;
+		
+		if (x < 0) {
+			neighborLon -= 1;
+			neighborX += intervals;
+		} else if (x >= samples) {
+			neighborLon += 1;
+			neighborX -= intervals;
+		}
+		
+		if (y < 0) {
+			neighborLat -= 1;
+			neighborY += intervals;
+		} else if (y >= samples) {
+			neighborLat += 1;
+			neighborY -= intervals;
+		}
+		
+		RasterTile neighbor = getTile(neighborLon, neighborLat);
+		
+		if (neighbor.getSamples() == samples) {
+			return neighbor.getEle(neighborX, neighborY);
+		} else {
+			return tile.getEle(
+					min(max(x, 0), intervals),
+					min(max(y, 0), intervals));
+		}
+		
+	}
+	
+	/**
+	 * returns a tile, requesting it from the data if it hasn't been used yet
+	 *
+	 * @return  the tile; {@link #MISSING_TILE} if it is not available
+	 */
+	private RasterTile getTile(int tileLon, int tileLat) {
+		
+		Long key = tileKey(tileLon, tileLat);
+		
+		RasterTile tile = tiles.get(key);
+		
+		if (tile == null) {
+			
+			try {
+				tile = data.getTile(tileLon, tileLat);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			
+			if (tile == null) {
+				tile = MISSING_TILE;
+			}
+			
+			tiles.putIfAbsent(key, tile);
+			
+		}
+		
+		return tile;
+		
+	}
+	
+	private static long tileKey(int tileLon, int tileLat) {
+		return ((long)tileLon << 32) | (tileLat & 0xFFFFFFFFL);
+	}
+
+}
@@ -0,0 +1,45 @@
+package org.osm2world.core.map_elevation.creation;
+
+import java.io.IOException;
+
+/**
+ * terrain elevation data which is available as a raster in lat/lon space,
+ * such as SRTM. Offers direct access to the raster, which avoids creating
+ * a site for each raster cell.
+ *
+ * The raster is organized in tiles of one by one degree.
+ * Each tile contains a square grid of samples. The first and last row and
+ * column of samples are located on the tile's borders, so they are identical
+ * to those of the adjacent tiles.
+ */
+public interface RasterTerrainElevationData extends TerrainElevationData {
+	
+	/**
+	 * a single tile of raster data
+	 */
+	public static interface RasterTile {
+		
+		/**
+		 * returns the number of samples in each row and column of the tile
+		 */
+		int getSamples();
+		
+		/**
+		 * returns a sample's elevation
+		 *
+		 * @param x  index of the sample in west-east direction
+		 * @param y  index of the sample in south-north direction
+		 * @return  the elevation; NaN if it is not known
+		 */
+		double getEle(int x, int y);
+		
+	}
+	
+	/**
+	 * returns the tile with the given south-west corner
+	 *
+	 * @return  the tile; null if it is not available
+	 */
+	RasterTile getTile(int tileLon, int tileLat) throws IOException;
+
+}
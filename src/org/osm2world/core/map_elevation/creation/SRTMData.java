@@ -15,18 +15,27 @@ import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 
 /**
- * SRTM data for a part of the planet
+ * SRTM data for a part of the planet.
+ * Tiles are obtained from a {@link SRTMTileCache}.
  */
-public class SRTMData implements TerrainElevationData {
+public class SRTMData implements RasterTerrainElevationData {
 	
 	private final File tileDirectory;
 	private final MapProjection projection;
-	private final SRTMTile[][] tiles;
+	private final SRTMTileCache tileCache;
 	
+	/**
+	 * creates an instance using the tile cache shared within the JVM
+	 */
 	public SRTMData(File tileDirectory, MapProjection projection) {
-		this.tileDirectory = tileDirectory;
+		this(tileDirectory, projection, SRTMTileCache.getSharedInstance());
+	}
+	
+	public SRTMData(File tileDirectory, MapProjection projection,
+			SRTMTileCache tileCache) {
+		this.tileDirectory = tileDirectory.getAbsoluteFile();
 		this.projection = projection;
-		this.tiles = new SRTMTile[360][180];
+		this.tileCache = tileCache;
 	}
 		
 	@Override
@@ -43,9 +52,9 @@ public class SRTMData implements TerrainElevationData {
 		for (int lon = minLonInt; lon < maxLonInt; lon++) {
 			for (int lat = minLatInt; lat < maxLatInt; lat++) {
 				
-				loadTileIfNecessary(lon, lat);
+				SRTMTile tile = getSRTMTile(lon, lat);
 				
-				addTileSites(result, lon, lat,
+				addTileSites(result, tile, lon, lat,
 						minLon, minLat, maxLon, maxLat);
 				
 			}
@@ -102,66 +111,74 @@ public class SRTMData implements TerrainElevationData {
 		
 	}
 
-	private void loadTileIfNecessary(int lon, int lat) throws IOException {
+	@Override
+	public RasterTile getTile(int tileLon, int tileLat) throws IOException {
+		return getSRTMTile(tileLon, tileLat);
+	}
+	
+	/**
+	 * returns the tile with the given south-west corner
+	 * 
+	 * @return  the tile; null if it is not available
+	 */
+	private SRTMTile getSRTMTile(int lon, int lat) throws IOException {
 		
-		if (getTile(lon, lat) == null) {
-			
-			String fileName = tileDirectory.getPath() + File.separator;
-			
-			if (lat >= 0) {
-				fileName += String.format("N%02d", lat);
-			} else {
-				fileName += String.format("S%02d", -lat);
-			}
+		String fileName = tileDirectory.getPath() + File.separator;
+		
+		if (lat >= 0) {
+			fileName += String.format("N%02d", lat);
+		} else {
+			fileName += String.format("S%02d", -lat);
+		}
 
-			if (lon >= 0) {
-				fileName += String.format("E%03d", lon);
-			} else {
-				fileName += String.format("W%03d", -lon);
-			}
-			
-			fileName += ".hgt";
-			
-			File file = new File(fileName);
-			
-			if (file.exists()) {
-				setTile(lon, lat, new SRTMTile(file));
-			} else {
-				System.err.println("warning: missing SRTM tile " + file.getName());
-			}
-			
+		if (lon >= 0) {
+			fileName += String.format("E%03d", lon);
+		} else {
+			fileName += String.format("W%03d", -lon);
+		}
+		
+		fileName += ".hgt";
+		
+		File file = new File(fileName);
+		
+		SRTMTile tile = tileCache.getTile(file);
+		
+		if (tile == null) {
+			System.err.println("warning: missing SRTM tile " + file.getName());
 		}
 		
+		return tile;
+		
 	}
 	
 	private void addTileSites(Collection<VectorXYZ> result,
-			int tileLon, int tileLat,
+			SRTMTile tile, int tileLon, int tileLat,
 			double minLon, double minLat, double maxLon, double maxLat) {
 		
-		SRTMTile tile = getTile(tileLon, tileLat);
-		
 		if (tile == null) return;
 		
+		final int pixels = tile.pixels;
+		
 		/* add a site for each SRTM pixel (except last line and column,
 		 * which is duplicated in adjacent tiles) */
 		
 		int minX = max(0,
-				(int)ceil(SRTMTile.PIXELS * (minLon - tileLon)));
-		int maxX = min(SRTMTile.PIXELS - 1,
-				(int)floor(SRTMTile.PIXELS * (maxLon - tileLon)));
+				(int)ceil(pixels * (minLon - tileLon)));
+		int maxX = min(pixels - 1,
+				(int)floor(pixels * (maxLon - tileLon)));
 
 		int minY = max(0,
-				(int)ceil(SRTMTile.PIXELS * (minLat - tileLat)));
-		int maxY = min(SRTMTile.PIXELS - 1,
-				(int)floor(SRTMTile.PIXELS * (maxLat - tileLat)));
+				(int)ceil(pixels * (minLat - tileLat)));
+		int maxY = min(pixels - 1,
+				(int)floor(pixels * (maxLat - tileLat)));
 		
 		for (int x = minX; x < maxX; x++) {
 			for (int y = minY; y < maxY; y++) {
 				
 				short value = tile.getData(x, y);
 				
-				double lat = tileLat + 1.0 / SRTMTile.PIXELS * (y + 0.5);
-				double lon = tileLon + 1.0 / SRTMTile.PIXELS * (x + 0.5);
+				double lat = tileLat + 1.0 / pixels * (y + 0.5);
+				double lon = tileLon + 1.0 / pixels * (x + 0.5);
 				
 				VectorXZ pos = projection.calcPos(lat, lon);
 				
@@ -175,12 +192,4 @@ public class SRTMData implements TerrainElevationData {
 				
 	}
 	
-	private SRTMTile getTile(int tileLon, int tileLat) {
-		return tiles[tileLon+180][tileLat+90];
-	}
-	
-	private void setTile(int tileLon, int tileLat, SRTMTile tile) {
-		tiles[tileLon+180][tileLat+90] = tile;
-	}
-	
 }
@@ -1,62 +1,111 @@
 package org.osm2world.core.map_elevation.creation;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
 import java.nio.ShortBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.osm2world.core.map_elevation.creation.RasterTerrainElevationData.RasterTile;
 
 /**
  * a single SRTM data tile.
- * 
+ *
  * Multiple such tiles are used by {@link SRTMData} to build coverage
  * for larger regions.
+ *
+ * The file is memory-mapped rather than read into memory,
+ * so only those parts of it which are actually accessed will be loaded.
+ * Both 3-arcsecond (1201 x 1201 pixels) and 1-arcsecond (3601 x 3601 pixels)
+ * tiles are supported, the resolution is derived from the file size.
  */
-class SRTMTile {
-
+class SRTMTile implements RasterTile {
+	
 	/** value indicating a lack of data */
 	public static final short BLANK_VALUE = -32768;
 	
-	/** length of each dimension of an SRTM tile in pixels */
+	/** length of each dimension of a 3-arcsecond SRTM tile in pixels */
 	static final int PIXELS = 1201;
-		
+	
+	/** length of each dimension of a 1-arcsecond SRTM tile in pixels */
+	static final int PIXELS_1_ARCSECOND = 3601;
+	
 	public final File file;
+	
+	/** length of each dimension of this tile in pixels */
+	public final int pixels;
+	
 	private final ShortBuffer data;
 	
 	public SRTMTile(File file) throws IOException {
 		
 		this.file = file;
 		
-		data = loadDataFromFile(file);
-				
+		data = mapDataFromFile(file);
+		
+		pixels = pixelsForValueCount(data.capacity());
+		
+		if (pixels < 0) {
+			throw new IOException("unsupported SRTM tile size: " + file);
+		}
+		
 	}
-
-	private static ShortBuffer loadDataFromFile(File file) throws IOException {
-
-		FileInputStream fis = new FileInputStream(file);
-		FileChannel fc = fis.getChannel();
-		ByteBuffer bb = ByteBuffer.allocateDirect((int) fc.size());
-		while (bb.remaining() > 0) fc.read(bb);
-		fc.close();
-		fis.close();
+	
+	private static ShortBuffer mapDataFromFile(File file) throws IOException {
 		
-		bb.flip();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
 		
-		// choose the right endianness
-		return bb.order(ByteOrder.BIG_ENDIAN).asShortBuffer();
+		try {
+			
+			FileChannel fc = raf.getChannel();
+			
+			// the mapping remains valid after the channel has been closed
+			return fc.map(MapMode.READ_ONLY, 0, fc.size())
+					.order(ByteOrder.BIG_ENDIAN).asShortBuffer();
+		
+		} finally {
+			raf.close();
+		}
+		
+	}
+	
+	/**
+	 * @return  the number of pixels per dimension for a tile with the given
+	 *          number of values; -1 if that is not a supported tile size
+	 */
+	static final int pixelsForValueCount(int valueCount) {
+		
+		for (int pixels : new int[] {PIXELS, PIXELS_1_ARCSECOND}) {
+			if (valueCount == pixels * pixels) {
+				return pixels;
+			}
+		}
+		
+		return -1;
 		
 	}
 	
 	public final short getData(int x, int y) {
-		assert 0 <= x && x < PIXELS && 0 <= y && y < PIXELS;
-		return data.get((1200 - y) * 1201 + x);
+		assert 0 <= x && x < pixels && 0 <= y && y < pixels;
+		return data.get((pixels - 1 - y) * pixels + x);
+	}
+	
+	@Override
+	public int getSamples() {
+		return pixels;
+	}
+	
+	@Override
+	public double getEle(int x, int y) {
+		short value = getData(x, y);
+		return (value == BLANK_VALUE) ? Double.NaN : value;
 	}
 	
 	@Override
 	public String toString() {
 		return file.getName();
 	}
-	
+
 }
@@ -0,0 +1,104 @@
+package org.osm2world.core.map_elevation.creation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * least-recently-used cache of {@link SRTMTile}s.
+ *
+ * A shared instance is used by all {@link SRTMData} objects by default,
+ * so that subsequent conversions within the same JVM can re-use tiles
+ * that have already been opened. The number of cached tiles is bounded,
+ * which keeps the memory consumption constant even for batch runs
+ * covering large regions.
+ *
+ * Instances are thread-safe.
+ */
+public class SRTMTileCache {
+	
+	/** default for the maximum number of tiles kept in the cache */
+	public static final int DEFAULT_CAPACITY = 16;
+	
+	private static final SRTMTileCache SHARED_INSTANCE =
+			new SRTMTileCache(DEFAULT_CAPACITY);
+	
+	/**
+	 * returns the cache that is shared within the JVM
+	 */
+	public static SRTMTileCache getSharedInstance() {
+		return SHARED_INSTANCE;
+	}
+	
+	private int capacity;
+	
+	private final Map<File, SRTMTile> tiles =
+			new LinkedHashMap<File, SRTMTile>(16, 0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, SRTMTile> eldest) {
+			return size() > capacity;
+		}
+	
+	};
+	
+	public SRTMTileCache(int capacity) {
+		setCapacity(capacity);
+	}
+	
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * sets the maximum number of tiles kept in the cache.
+	 * If necessary, the least recently used tiles are removed immediately.
+	 */
+	public synchronized void setCapacity(int capacity) {
+		
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		
+		this.capacity = capacity;
+		
+		while (tiles.size() > capacity) {
+			File eldest = tiles.keySet().iterator().next();
+			tiles.remove(eldest);
+		}
+		
+	}
+	
+	/**
+	 * returns the number of tiles currently in the cache
+	 */
+	public synchronized int size() {
+		return tiles.size();
+	}
+	
+	public synchronized void clear() {
+		tiles.clear();
+	}
+	
+	/**
+	 * returns the tile for a file, opening it if it isn't in the cache
+	 *
+	 * @return  the tile; null if the file doesn't exist
+	 */
+	synchronized SRTMTile getTile(File file) throws IOException {
+		
+		SRTMTile tile = tiles.get(file);
+		
+		if (tile == null && file.exists()) {
+			tile = new SRTMTile(file);
+			tiles.put(file, tile);
+		}
+		
+		return tile;
+		
+	}
+
+}
@@ -1,17 +1,19 @@
 package org.osm2world.core.map_elevation.creation;
 
-import static java.util.Arrays.asList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.osm2world.core.map_elevation.data.EleConnector;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.math.datastructures.UnionFind;
 
 /**
  * enforcer implementation that ignores many of the constraints,
@@ -26,101 +28,97 @@ public final class SimpleEleConstraintEnforcer implements EleConstraintEnforcer
 	private Collection<EleConnector> connectors = new ArrayList<EleConnector>();
 	
 	/**
-	 * associates each EleConnector with the {@link StiffConnectorSet}
-	 * it is part of (if any)
+	 * previously added connectors, grouped by position.
+	 * Contains indices as used by {@link #indexOf(EleConnector)}.
 	 */
-	private Map<EleConnector, StiffConnectorSet> stiffSetMap =
-			new HashMap<EleConnector, StiffConnectorSet>();
+	private Map<VectorXZ, TIntArrayList> connectorPositionMap =
+			new HashMap<VectorXZ, TIntArrayList>();
+	
+	/*
+	 * the sets of connectors that are required to have the same elevation
+	 * ("stiff sets") are represented by a union-find data structure.
+	 * Each connector involved in any set is assigned an element.
+	 */
+	
+	private final TObjectIntHashMap<EleConnector> connectorIndexMap =
+			new TObjectIntHashMap<EleConnector>(10, 0.5f, -1);
+	
+	private final List<EleConnector> indexedConnectors =
+			new ArrayList<EleConnector>();
+	
+	private final UnionFind stiffSets = new UnionFind();
 	
 	@Override
 	public void addConnectors(Iterable<EleConnector> newConnectors) {
 		
 		for (EleConnector c : newConnectors) {
+			
 			connectors.add(c);
-		}
-		
-		/* connect connectors */
-		
-		for (EleConnector c1 : newConnectors) {
-			for (EleConnector c2 : connectors) {
+			
+			/* connect to the connectors at the same position */
+			
+			TIntArrayList connectorsAtPos = connectorPositionMap.get(c.pos);
+			
+			if (connectorsAtPos == null) {
+				connectorsAtPos = new TIntArrayList(2);
+				connectorPositionMap.put(c.pos, connectorsAtPos);
+			}
+			
+			int index = indexOf(c);
+			
+			for (int i = 0; i < connectorsAtPos.size(); i++) {
 				
-				if (c1 != c2 && c1.connectsTo(c2)) {
-					requireSameEle(c1, c2);
+				int otherIndex = connectorsAtPos.get(i);
+				
+				if (c.connectsTo(indexedConnectors.get(otherIndex))) {
+					stiffSets.union(index, otherIndex);
 				}
 				
 			}
+			
+			connectorsAtPos.add(index);
+			
 		}
 		
 	}
 	
 	@Override
 	public void requireSameEle(EleConnector c1, EleConnector c2) {
-		
-		//SUGGEST (performance): a special case implementation would be faster
-		
-		requireSameEle(asList(c1, c2));
-		
+		stiffSets.union(indexOf(c1), indexOf(c2));
 	}
 	
 	@Override
 	public void requireSameEle(Iterable<EleConnector> cs) {
 		
-		/* find stiff sets containing any of the affected connectors */
-		
-		Set<EleConnector> looseConnectors = new HashSet<EleConnector>();
-		Set<StiffConnectorSet> existingStiffSets = new HashSet<StiffConnectorSet>();
+		int firstIndex = -1;
 		
 		for (EleConnector c : cs) {
 			
-			StiffConnectorSet stiffSet = stiffSetMap.get(c);
-			
-			if (stiffSet != null) {
-				existingStiffSets.add(stiffSet);
+			if (firstIndex == -1) {
+				firstIndex = indexOf(c);
 			} else {
-				looseConnectors.add(c);
+				stiffSets.union(firstIndex, indexOf(c));
 			}
 			
 		}
 		
-		/* return if the connectors are already in a set together */
-		
-		if (existingStiffSets.size() == 1 && looseConnectors.isEmpty()) return;
-		
-		/* merge existing sets (if any) into a single set */
+	}
+	
+	/**
+	 * returns the index of a connector in the union-find structure.
+	 * Connectors without an index yet are added as a set of their own.
+	 */
+	private int indexOf(EleConnector c) {
 		
-		StiffConnectorSet commonStiffSet = null;
+		int index = connectorIndexMap.get(c);
 		
-		if (existingStiffSets.isEmpty()) {
-			commonStiffSet = new StiffConnectorSet();
-		} else {
-			
-			for (StiffConnectorSet stiffSet : existingStiffSets) {
-				
-				if (commonStiffSet == null) {
-					commonStiffSet = stiffSet;
-				} else {
-					
-					for (EleConnector c : stiffSet) {
-						stiffSetMap.put(c, commonStiffSet);
-					}
-					
-					commonStiffSet.mergeFrom(stiffSet);
-					
-				}
-				
-			}
-			
+		if (index == -1) {
+			index = stiffSets.add();
+			connectorIndexMap.put(c, index);
+			indexedConnectors.add(c);
 		}
 		
-		/* add remaining (loose) connectors into the common set */
-		
-		for (EleConnector c : looseConnectors) {
-			
-			commonStiffSet.add(c);
-			
-			stiffSetMap.put(c, commonStiffSet);
-			
-		}
+		return index;
 		
 	}
 	
@@ -150,23 +148,41 @@ public final class SimpleEleConstraintEnforcer implements EleConstraintEnforcer
 		
 	}
 	
+	@Override
+	public void enforceConstraints(ForkJoinPool pool) {
+		enforceConstraints();
+	}
+	
 	@Override
 	public void enforceConstraints() {
 		
 		/* assign elevation to stiff sets by averaging terrain elevation */
 		//TODO what for stiff sets above the ground?
 		
-		for (StiffConnectorSet stiffSet : stiffSetMap.values()) {
+		int indexCount = indexedConnectors.size();
+		
+		double[] eleSums = new double[indexCount];
+		int[] eleCounts = new int[indexCount];
+		
+		for (int i = 0; i < indexCount; i++) {
 			
-			double averageEle = 0;
+			VectorXYZ posXYZ = indexedConnectors.get(i).getPosXYZ();
 			
-			for (EleConnector connector : stiffSet) {
-				averageEle += connector.getPosXYZ().y;
+			if (posXYZ != null) {
+				int root = stiffSets.find(i);
+				eleSums[root] += posXYZ.y;
+				eleCounts[root] ++;
 			}
 			
-			averageEle /= stiffSet.size();
+		}
+		
+		for (int i = 0; i < indexCount; i++) {
+			
+			EleConnector connector = indexedConnectors.get(i);
+			int root = stiffSets.find(i);
 			
-			for (EleConnector connector : stiffSet) {
+			if (connector.getPosXYZ() != null && stiffSets.getSetSize(root) > 1) {
+				double averageEle = eleSums[root] / eleCounts[root];
 				connector.setPosXYZ(connector.pos.xyz(averageEle));
 			}
 			
@@ -191,46 +207,4 @@ public final class SimpleEleConstraintEnforcer implements EleConstraintEnforcer
 		
 	}
 	
-	/**
-	 * a set of connectors that are required to have the same elevation
-	 * TODO or a precise vertical offset
-	 */
-	private static class StiffConnectorSet implements Iterable<EleConnector> {
-		
-		//TODO maybe look for a more efficient set implementation
-		private Set<EleConnector> connectors = new HashSet<EleConnector>();
-		
-		/**
-		 * adds a connector to this set, requiring it to be at the set's
-		 * reference elevation
-		 */
-		public void add(EleConnector connector) {
-			connectors.add(connector);
-		}
-		
-		/**
-		 * combines this set with another, and makes the other set unusable.
-		 * This set will contain all {@link EleConnector}s from the other set
-		 * afterwards.
-		 */
-		public void mergeFrom(StiffConnectorSet otherSet) {
-			
-			connectors.addAll(otherSet.connectors);
-			
-			// make sure that the other set cannot be used anymore
-			otherSet.connectors = null;
-			
-		}
-		
-		public double size() {
-			return connectors.size();
-		}
-		
-		@Override
-		public Iterator<EleConnector> iterator() {
-			return connectors.iterator();
-		}
-		
-	}
-	
 }
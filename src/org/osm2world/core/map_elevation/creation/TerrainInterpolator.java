@@ -1,17 +1,30 @@
 package org.osm2world.core.map_elevation.creation;
 
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 
 import org.osm2world.core.math.VectorXYZ;
-import org.osm2world.core.math.VectorXZ;
 
 /**
- * strategy for elevation interpolation from a set of known points
+ * strategy for elevation interpolation from a set of known points.
+ * 
+ * Once {@link #setKnownSites(Collection)} has returned, the interpolateEle
+ * methods must not modify the interpolator's state in a way that is visible
+ * to other threads. This allows them to be called from multiple threads
+ * at the same time.
  */
-public interface TerrainInterpolator {
+public interface TerrainInterpolator extends EleInterpolator {
 
 	void setKnownSites(Collection<VectorXYZ> sites);
 	
-	VectorXYZ interpolateEle(VectorXZ pos);
+	/**
+	 * variant of {@link #setKnownSites(Collection)} which may use
+	 * the threads of a pool for its preparations.
+	 * Implementations without parallel preparations
+	 * simply call {@link #setKnownSites(Collection)}.
+	 * 
+	 * @param pool  pool to use; null to work in the current thread
+	 */
+	void setKnownSites(Collection<VectorXYZ> sites, ForkJoinPool pool);
 	
 }
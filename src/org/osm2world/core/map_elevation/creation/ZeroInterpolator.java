@@ -8,7 +8,7 @@ import org.osm2world.core.math.VectorXZ;
 /**
  * sets every point's elevation to 0
  */
-public class ZeroInterpolator implements TerrainInterpolator {
+public class ZeroInterpolator extends AbstractTerrainInterpolator {
 	
 	@Override
 	public void setKnownSites(Collection<VectorXYZ> sites) {
@@ -515,6 +515,8 @@ public final class GeometryUtil {
 
 		Random rand = new Random(seed);
 		
+		PreparedPolygonXZ polygon = new PreparedPolygonXZ(polygonWithHolesXZ);
+		
 		AxisAlignedBoundingBoxXZ outerBox = new AxisAlignedBoundingBoxXZ(
 				polygonWithHolesXZ.getOuter().getVertices());
 		
@@ -533,8 +535,10 @@ public final class GeometryUtil {
 					continue;
 				}
 				
-				if (!polygonWithHolesXZ.contains(box.polygonXZ())
-						&& !polygonWithHolesXZ.intersects(box.polygonXZ())) {
+				SimplePolygonXZ boxPolygon = box.polygonXZ();
+				
+				if (!polygon.contains(boxPolygon)
+						&& !polygon.intersects(boxPolygon)) {
 					continue;
 				}
 				
@@ -545,7 +549,7 @@ public final class GeometryUtil {
 					
 					VectorXZ v = new VectorXZ(x, z);
 					
-					if (polygonWithHolesXZ.contains(v)) {
+					if (polygon.contains(v)) {
 						
 						//TODO: check minimumDistance
 						
@@ -0,0 +1,436 @@
+package org.osm2world.core.math;
+
+import static java.lang.Math.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.osm2world.core.math.datastructures.IntersectionTestObject;
+
+/**
+ * a {@link PolygonWithHolesXZ} with precalculated data structures
+ * that speed up repeated intersection and containment tests.
+ *
+ * Each ring's edges are sorted into buckets along the z axis,
+ * so a test only needs to look at the edges near the relevant z range.
+ * The results are the same as those of the corresponding methods
+ * of {@link PolygonWithHolesXZ} and {@link SimplePolygonXZ}.
+ *
+ * Instances are not modified after construction and can be used
+ * from multiple threads at the same time.
+ */
+public class PreparedPolygonXZ implements IntersectionTestObject {
+	
+	/**
+	 * tolerance for bounding box tests, ensures that bounding boxes
+	 * are never considered disjoint because of rounding errors
+	 */
+	private static final double BOUNDS_TOLERANCE = 1e-6;
+	
+	/** average number of edges per bucket */
+	private static final int EDGES_PER_BUCKET = 4;
+	
+	/** upper limit for the number of buckets per ring */
+	private static final int MAX_BUCKET_COUNT = 1024;
+	
+	private final PolygonWithHolesXZ polygon;
+	
+	private final Ring outer;
+	private final List<Ring> holes;
+	
+	private final Set<VectorXZ> vertexSet;
+	
+	public PreparedPolygonXZ(PolygonWithHolesXZ polygon) {
+		
+		this.polygon = polygon;
+		
+		outer = new Ring(polygon.getOuter());
+		
+		holes = new ArrayList<Ring>(polygon.getHoles().size());
+		for (SimplePolygonXZ hole : polygon.getHoles()) {
+			holes.add(new Ring(hole));
+		}
+		
+		vertexSet = new HashSet<VectorXZ>(outer.vertexSet);
+		for (Ring hole : holes) {
+			vertexSet.addAll(hole.vertexSet);
+		}
+		
+	}
+	
+	public PreparedPolygonXZ(SimplePolygonXZ polygon) {
+		this(polygon.asPolygonWithHolesXZ());
+	}
+	
+	public PolygonWithHolesXZ getPolygon() {
+		return polygon;
+	}
+	
+	/**
+	 * returns the bounding box of the outer polygon
+	 */
+	@Override
+	public AxisAlignedBoundingBoxXZ getAxisAlignedBoundingBoxXZ() {
+		return new AxisAlignedBoundingBoxXZ(
+				outer.minX, outer.minZ, outer.maxX, outer.maxZ);
+	}
+	
+	/**
+	 * returns all vertices of the outer polygon and the holes
+	 */
+	public Set<VectorXZ> getVertexSet() {
+		return vertexSet;
+	}
+	
+	/**
+	 * returns false if the bounding boxes of this and the other polygon
+	 * are disjoint. If this is the case, the polygons' outlines
+	 * cannot intersect, and neither polygon can contain the other.
+	 */
+	public boolean boundsOverlap(PreparedPolygonXZ other) {
+		return outer.boundsOverlap(other.outer.minX, other.outer.minZ,
+				other.outer.maxX, other.outer.maxZ);
+	}
+	
+	/**
+	 * @see PolygonWithHolesXZ#contains(VectorXZ)
+	 */
+	public boolean contains(VectorXZ v) {
+		if (!outer.contains(v)) {
+			return false;
+		} else {
+			for (Ring hole : holes) {
+				if (hole.contains(v)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * @see PolygonWithHolesXZ#contains(SimplePolygonXZ)
+	 */
+	public boolean contains(SimplePolygonXZ boundary) {
+		if (!outer.contains(boundary)) {
+			return false;
+		} else {
+			for (Ring hole : holes) {
+				if (hole.contains(boundary)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * @see PolygonWithHolesXZ#contains(LineSegmentXZ)
+	 */
+	public boolean contains(LineSegmentXZ lineSegment) {
+		if (!this.contains(lineSegment.p1)
+				|| !this.contains(lineSegment.p2)) {
+			return false;
+		} else {
+			for (Ring hole : holes) {
+				if (hole.intersects(lineSegment.p1, lineSegment.p2)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @see PolygonWithHolesXZ#intersects(LineSegmentXZ)
+	 */
+	public boolean intersects(LineSegmentXZ lineSegment) {
+		for (Ring hole : holes) {
+			if (hole.intersects(lineSegment.p1, lineSegment.p2)) {
+				return true;
+			}
+		}
+		return outer.intersects(lineSegment.p1, lineSegment.p2);
+	}
+	
+	/**
+	 * @see PolygonWithHolesXZ#intersects(SimplePolygonXZ)
+	 */
+	public boolean intersects(PolygonXZ other) {
+		for (Ring hole : holes) {
+			if (hole.intersects(other)) {
+				return true;
+			}
+		}
+		return outer.intersects(other);
+	}
+	
+	/**
+	 * returns the positions where the line segment
+	 * intersects the outlines of this polygon
+	 * 
+	 * @see PolygonWithHolesXZ#intersectionPositions(LineSegmentXZ)
+	 */
+	public List<VectorXZ> intersectionPositions(LineSegmentXZ lineSegment) {
+		
+		List<VectorXZ> result = new ArrayList<VectorXZ>();
+		
+		for (Ring hole : holes) {
+			hole.addIntersectionPositions(lineSegment.p1, lineSegment.p2,
+					result, false);
+		}
+		
+		outer.addIntersectionPositions(lineSegment.p1, lineSegment.p2,
+				result, false);
+		
+		return result;
+		
+	}
+	
+	/**
+	 * returns the positions where the outlines of the other polygon
+	 * intersect the outlines of this polygon.
+	 *
+	 * @see PolygonWithHolesXZ#intersectionPositions(PolygonWithHolesXZ)
+	 */
+	public List<VectorXZ> intersectionPositions(PreparedPolygonXZ other) {
+		
+		List<VectorXZ> result = new ArrayList<VectorXZ>();
+		
+		if (!boundsOverlap(other)) {
+			return result;
+		}
+		
+		List<Ring> otherRings = new ArrayList<Ring>(other.holes.size() + 1);
+		otherRings.add(other.outer);
+		otherRings.addAll(other.holes);
+		
+		for (Ring otherRing : otherRings) {
+			
+			List<VectorXZ> loop = otherRing.vertexLoop;
+			
+			for (int i = 0; i + 1 < loop.size(); i++) {
+				
+				VectorXZ p1 = loop.get(i);
+				VectorXZ p2 = loop.get(i+1);
+				
+				for (Ring hole : holes) {
+					hole.addIntersectionPositions(p1, p2, result, false);
+				}
+				
+				outer.addIntersectionPositions(p1, p2, result, false);
+				
+			}
+			
+		}
+		
+		return result;
+		
+	}
+	
+	/**
+	 * a single closed outline with its edges sorted into buckets
+	 * that divide the outline's z range into intervals of equal size.
+	 * Edge i connects vertex i and i+1 of the vertex loop, and is
+	 * stored in all buckets that overlap the edge's z range.
+	 */
+	private static final class Ring {
+		
+		final List<VectorXZ> vertexLoop;
+		final Set<VectorXZ> vertexSet;
+		
+		final double minX, minZ, maxX, maxZ;
+		
+		final int bucketCount;
+		final double bucketSizeZ;
+		final int[][] buckets;
+		
+		Ring(SimplePolygonXZ polygon) {
+			
+			vertexLoop = polygon.getVertexLoop();
+			vertexSet = new HashSet<VectorXZ>(vertexLoop);
+			
+			AxisAlignedBoundingBoxXZ bounds =
+					new AxisAlignedBoundingBoxXZ(vertexLoop);
+			
+			minX = bounds.minX;
+			minZ = bounds.minZ;
+			maxX = bounds.maxX;
+			maxZ = bounds.maxZ;
+			
+			int edgeCount = vertexLoop.size() - 1;
+			
+			bucketCount = max(1, min(MAX_BUCKET_COUNT,
+					edgeCount / EDGES_PER_BUCKET));
+			
+			bucketSizeZ = max(maxZ - minZ, BOUNDS_TOLERANCE) / bucketCount;
+			
+			/* count the edges per bucket, then fill the buckets */
+			
+			int[] bucketSizes = new int[bucketCount];
+			
+			for (int e = 0; e < edgeCount; e++) {
+				for (int b = firstBucket(e); b <= lastBucket(e); b++) {
+					bucketSizes[b] ++;
+				}
+			}
+			
+			buckets = new int[bucketCount][];
+			
+			for (int b = 0; b < bucketCount; b++) {
+				buckets[b] = new int[bucketSizes[b]];
+				bucketSizes[b] = 0;
+			}
+			
+			for (int e = 0; e < edgeCount; e++) {
+				for (int b = firstBucket(e); b <= lastBucket(e); b++) {
+					buckets[b][bucketSizes[b]++] = e;
+				}
+			}
+			
+		}
+		
+		private int bucket(double z) {
+			int b = (int) ((z - minZ) / bucketSizeZ);
+			return max(0, min(bucketCount - 1, b));
+		}
+		
+		private int firstBucket(int edge) {
+			return bucket(min(vertexLoop.get(edge).z, vertexLoop.get(edge+1).z));
+		}
+		
+		private int lastBucket(int edge) {
+			return bucket(max(vertexLoop.get(edge).z, vertexLoop.get(edge+1).z));
+		}
+		
+		boolean boundsOverlap(double otherMinX, double otherMinZ,
+				double otherMaxX, double otherMaxZ) {
+			return otherMinX <= maxX + BOUNDS_TOLERANCE
+					&& otherMaxX >= minX - BOUNDS_TOLERANCE
+					&& otherMinZ <= maxZ + BOUNDS_TOLERANCE
+					&& otherMaxZ >= minZ - BOUNDS_TOLERANCE;
+		}
+		
+		/**
+		 * @see SimplePolygonXZ#contains(VectorXZ)
+		 */
+		boolean contains(VectorXZ test) {
+			
+			/* only edges that cross the horizontal line through the
+			 * test point can change the result, and these are always
+			 * within the ring's z range */
+			
+			if (test.z < minZ || test.z >= maxZ) {
+				return false;
+			}
+			
+			boolean c = false;
+			
+			for (int e : buckets[bucket(test.z)]) {
+				
+				VectorXZ vi = vertexLoop.get(e + 1);
+				VectorXZ vj = vertexLoop.get(e);
+				
+				if (((vi.z > test.z) != (vj.z > test.z))
+						&& (test.x < (vj.x - vi.x) * (test.z - vi.z)
+								/ (vj.z - vi.z) + vi.x)) {
+					c = !c;
+				}
+				
+			}
+			
+			return c;
+			
+		}
+		
+		/**
+		 * @see SimplePolygonXZ#contains(PolygonXZ)
+		 */
+		boolean contains(PolygonXZ p) {
+			for (VectorXZ v : p.getVertices()) {
+				if (!vertexSet.contains(v) && !this.contains(v)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * @see PolygonXZ#intersects(VectorXZ, VectorXZ)
+		 */
+		boolean intersects(VectorXZ p1, VectorXZ p2) {
+			List<VectorXZ> positions = new ArrayList<VectorXZ>(1);
+			addIntersectionPositions(p1, p2, positions, true);
+			return !positions.isEmpty();
+		}
+		
+		/**
+		 * @see PolygonXZ#intersects(PolygonXZ)
+		 */
+		boolean intersects(PolygonXZ other) {
+			List<VectorXZ> otherLoop = other.getVertexLoop();
+			for (int i = 0; i + 1 < otherLoop.size(); i++) {
+				if (intersects(otherLoop.get(i), otherLoop.get(i+1))) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		/**
+		 * adds the positions where the line segment between p1 and p2
+		 * intersects this ring's edges to a list. Uses
+		 * {@link GeometryUtil#getTrueLineSegmentIntersection(VectorXZ, VectorXZ, VectorXZ, VectorXZ)}
+		 * with the segment as the first argument.
+		 *
+		 * @param stopAtFirst  stop after one intersection has been found
+		 */
+		void addIntersectionPositions(VectorXZ p1, VectorXZ p2,
+				List<VectorXZ> result, boolean stopAtFirst) {
+			
+			double segMinX = min(p1.x, p2.x) - BOUNDS_TOLERANCE;
+			double segMaxX = max(p1.x, p2.x) + BOUNDS_TOLERANCE;
+			double segMinZ = min(p1.z, p2.z) - BOUNDS_TOLERANCE;
+			double segMaxZ = max(p1.z, p2.z) + BOUNDS_TOLERANCE;
+			
+			if (!boundsOverlap(segMinX, segMinZ, segMaxX, segMaxZ)) {
+				return;
+			}
+			
+			int firstSegBucket = bucket(segMinZ);
+			int lastSegBucket = bucket(segMaxZ);
+			
+			for (int b = firstSegBucket; b <= lastSegBucket; b++) {
+				for (int e : buckets[b]) {
+					
+					/* test edges in several buckets only once,
+					 * in the first bucket shared with the segment */
+					
+					if (b != max(firstSegBucket, firstBucket(e))) continue;
+					
+					VectorXZ e1 = vertexLoop.get(e);
+					VectorXZ e2 = vertexLoop.get(e+1);
+					
+					if (max(e1.x, e2.x) < segMinX || min(e1.x, e2.x) > segMaxX
+							|| max(e1.z, e2.z) < segMinZ || min(e1.z, e2.z) > segMaxZ) {
+						continue;
+					}
+					
+					VectorXZ intersection = GeometryUtil.getTrueLineSegmentIntersection(
+							p1, p2, e1, e2);
+					
+					if (intersection != null) {
+						result.add(intersection);
+						if (stopAtFirst) return;
+					}
+					
+				}
+			}
+			
+		}
+		
+	}
+
+}
@@ -56,7 +56,15 @@ public class IntersectionGrid<T extends IntersectionTestObject> {
 	public Collection<T>[][] getCellArray() {
 		return cells;
 	}
-
+	
+	public int getCellCountX() {
+		return cellCountX;
+	}
+	
+	public int getCellCountZ() {
+		return cellCountZ;
+	}
+	
 	/**
 	 * returns the content object collections for all non-empty cells
 	 */
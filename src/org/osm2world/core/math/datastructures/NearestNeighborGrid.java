@@ -0,0 +1,376 @@
+package org.osm2world.core.math.datastructures;
+
+import static java.lang.Math.*;
+
+/**
+ * an index for k-nearest-neighbor queries on a static set of points.
+ *
+ * The points are stored in a grid with packed arrays: the coordinates
+ * are sorted by cell, and each cell is a range within these arrays.
+ * Queries use squared distances and write their results into
+ * a reusable {@link Query} object, so they don't allocate memory.
+ *
+ * After construction, the index is never modified,
+ * so queries can be performed by multiple threads at the same time
+ * (each using its own {@link Query} object).
+ */
+public class NearestNeighborGrid {
+	
+	/** average number of points per cell the grid aims for */
+	private static final double POINTS_PER_CELL = 4;
+	
+	private final int size;
+	
+	private final double minX, minZ;
+	private final double cellSize;
+	private final int cellCountX, cellCountZ;
+	
+	/**
+	 * the points of cell (i, j) are found at the positions
+	 * cellStart[i * cellCountZ + j] (inclusive)
+	 * to cellStart[i * cellCountZ + j + 1] (exclusive)
+	 * of the following arrays
+	 */
+	private final int[] cellStart;
+	
+	private final double[] packedXs;
+	private final double[] packedZs;
+	private final int[] packedIndices;
+	
+	/** the points' coordinates in their original order */
+	private final double[] xs, zs;
+	
+	/**
+	 * the result of a query: indices of the nearest points and their
+	 * squared distances, sorted by ascending distance.
+	 * Can be re-used for any number of queries, but not concurrently.
+	 */
+	public static final class Query {
+		
+		private final int[] indices;
+		private final double[] distancesSquared;
+		private int size;
+		
+		/**
+		 * @param maxK  the largest number of neighbors
+		 *              that will be requested with this object
+		 */
+		public Query(int maxK) {
+			indices = new int[maxK];
+			distancesSquared = new double[maxK];
+		}
+		
+		/** returns the number of neighbors found */
+		public int size() {
+			return size;
+		}
+		
+		/** returns the index of the i-th nearest point */
+		public int getIndex(int i) {
+			return indices[i];
+		}
+		
+		/** returns the squared distance of the i-th nearest point */
+		public double getDistanceSquared(int i) {
+			return distancesSquared[i];
+		}
+		
+	}
+	
+	/**
+	 * creates an index for the points (xs[i], zs[i]).
+	 * The indices returned by queries refer to positions in these arrays.
+	 * The arrays are not copied and must not be modified afterwards.
+	 */
+	public NearestNeighborGrid(double[] xs, double[] zs) {
+		
+		if (xs.length != zs.length) {
+			throw new IllegalArgumentException("different array lengths");
+		}
+		
+		size = xs.length;
+		
+		this.xs = xs;
+		this.zs = zs;
+		
+		/* determine the grid's dimensions */
+		
+		double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+		double minZ = Double.POSITIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		
+		for (int i = 0; i < size; i++) {
+			minX = min(minX, xs[i]);
+			maxX = max(maxX, xs[i]);
+			minZ = min(minZ, zs[i]);
+			maxZ = max(maxZ, zs[i]);
+		}
+		
+		if (size == 0) {
+			minX = maxX = minZ = maxZ = 0;
+		}
+		
+		double sizeX = maxX - minX;
+		double sizeZ = maxZ - minZ;
+		
+		double cellSize = sqrt(sizeX * sizeZ * POINTS_PER_CELL / max(size, 1));
+		
+		if (!(cellSize > 0)) {
+			// points are on a line or at a single position
+			cellSize = max(max(sizeX, sizeZ) * POINTS_PER_CELL / max(size, 1), 1);
+		}
+		
+		this.minX = minX;
+		this.minZ = minZ;
+		this.cellSize = cellSize;
+		this.cellCountX = (int)min(size, floor(sizeX / cellSize)) + 1;
+		this.cellCountZ = (int)min(size, floor(sizeZ / cellSize)) + 1;
+		
+		/* sort the points into the cells (counting sort) */
+		
+		int[] cellOfPoint = new int[size];
+		cellStart = new int[cellCountX * cellCountZ + 1];
+		
+		for (int i = 0; i < size; i++) {
+			int cell = cellX(xs[i]) * cellCountZ + cellZ(zs[i]);
+			cellOfPoint[i] = cell;
+			cellStart[cell + 1] ++;
+		}
+		
+		for (int cell = 0; cell < cellCountX * cellCountZ; cell++) {
+			cellStart[cell + 1] += cellStart[cell];
+		}
+		
+		packedXs = new double[size];
+		packedZs = new double[size];
+		packedIndices = new int[size];
+		
+		int[] nextPosition = new int[cellCountX * cellCountZ];
+		System.arraycopy(cellStart, 0, nextPosition, 0, nextPosition.length);
+		
+		for (int i = 0; i < size; i++) {
+			int position = nextPosition[cellOfPoint[i]] ++;
+			packedXs[position] = xs[i];
+			packedZs[position] = zs[i];
+			packedIndices[position] = i;
+		}
+		
+	}
+	
+	/**
+	 * returns the number of points in the index
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * returns the x coordinate of the point with the given index
+	 */
+	public double getX(int index) {
+		return xs[index];
+	}
+	
+	/**
+	 * returns the z coordinate of the point with the given index
+	 */
+	public double getZ(int index) {
+		return zs[index];
+	}
+	
+	private int cellX(double x) {
+		return min(max((int)floor((x - minX) / cellSize), 0), cellCountX - 1);
+	}
+	
+	private int cellZ(double z) {
+		return min(max((int)floor((z - minZ) / cellSize), 0), cellCountZ - 1);
+	}
+	
+	/**
+	 * finds the k points nearest to a position.
+	 * Fewer points are returned if the index doesn't contain k points.
+	 * Points at the same distance are ordered by their index.
+	 *
+	 * @param result  object that receives the result; must have been
+	 *                created for at least k neighbors
+	 */
+	public void findNearest(double x, double z, int k, Query result) {
+		
+		if (k > result.indices.length) {
+			throw new IllegalArgumentException("query object too small for k=" + k);
+		}
+		
+		result.size = 0;
+		
+		if (k == 0 || size == 0) return;
+		
+		int cx = cellX(x);
+		int cz = cellZ(z);
+		
+		/* check rings of cells around the position's cell until the
+		 * nearest points can no longer be outside the checked block */
+		
+		for (int r = 0; ; r++) {
+			
+			int minI = cx - r, maxI = cx + r;
+			int minJ = cz - r, maxJ = cz + r;
+			
+			for (int i = max(minI, 0); i <= min(maxI, cellCountX - 1); i++) {
+				
+				if (i == minI || i == maxI) {
+					
+					// first or last column of the ring: check all cells
+					
+					for (int j = max(minJ, 0); j <= min(maxJ, cellCountZ - 1); j++) {
+						addCandidates(i * cellCountZ + j, x, z, k, result);
+					}
+				
+				} else {
+					
+					// other columns: only check the first and last cell
+					
+					if (minJ >= 0) {
+						addCandidates(i * cellCountZ + minJ, x, z, k, result);
+					}
+					
+					if (maxJ < cellCountZ) {
+						addCandidates(i * cellCountZ + maxJ, x, z, k, result);
+					}
+					
+				}
+				
+			}
+			
+			/* calculate the distance up to which all points have been checked.
+			 * Sides of the block that reach the grid's border are ignored. */
+			
+			boolean coversGrid = true;
+			double checkedDistance = Double.POSITIVE_INFINITY;
+			
+			if (minI > 0) {
+				coversGrid = false;
+				checkedDistance = min(checkedDistance, x - (minX + minI * cellSize));
+			}
+			if (maxI < cellCountX - 1) {
+				coversGrid = false;
+				checkedDistance = min(checkedDistance, minX + (maxI + 1) * cellSize - x);
+			}
+			if (minJ > 0) {
+				coversGrid = false;
+				checkedDistance = min(checkedDistance, z - (minZ + minJ * cellSize));
+			}
+			if (maxJ < cellCountZ - 1) {
+				coversGrid = false;
+				checkedDistance = min(checkedDistance, minZ + (maxJ + 1) * cellSize - z);
+			}
+			
+			if (coversGrid) break;
+			
+			if (result.size == k && checkedDistance > 0
+					&& checkedDistance * checkedDistance >= result.distancesSquared[0]) {
+				break;
+			}
+			
+		}
+		
+		/* sort by ascending distance (heap sort of the max heap) */
+		
+		for (int end = result.size - 1; end > 0; end--) {
+			swap(result, 0, end);
+			siftDown(result, 0, end);
+		}
+		
+	}
+	
+	/**
+	 * adds the points of a cell to the heap of the k nearest points
+	 */
+	private void addCandidates(int cell, double x, double z, int k,
+			Query result) {
+		
+		for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+			
+			double dx = packedXs[p] - x;
+			double dz = packedZs[p] - z;
+			double distanceSquared = dx * dx + dz * dz;
+			
+			if (result.size < k) {
+				
+				/* append and restore the heap property */
+				
+				int i = result.size ++;
+				result.indices[i] = packedIndices[p];
+				result.distancesSquared[i] = distanceSquared;
+				
+				while (i > 0 && isFarther(result, i, (i - 1) / 2)) {
+					swap(result, i, (i - 1) / 2);
+					i = (i - 1) / 2;
+				}
+			
+			} else if (distanceSquared < result.distancesSquared[0]
+					|| (distanceSquared == result.distancesSquared[0]
+						&& packedIndices[p] < result.indices[0])) {
+				
+				/* replace the farthest point */
+				
+				result.indices[0] = packedIndices[p];
+				result.distancesSquared[0] = distanceSquared;
+				
+				siftDown(result, 0, k);
+				
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * restores the max heap property for the first heapSize entries,
+	 * assuming that it is only violated by entry i
+	 */
+	private static void siftDown(Query result, int i, int heapSize) {
+		
+		while (true) {
+			
+			int largest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			
+			if (left < heapSize && isFarther(result, left, largest)) {
+				largest = left;
+			}
+			
+			if (right < heapSize && isFarther(result, right, largest)) {
+				largest = right;
+			}
+			
+			if (largest == i) return;
+			
+			swap(result, i, largest);
+			i = largest;
+			
+		}
+		
+	}
+	
+	/**
+	 * compares entries by distance, with the point index as tie-breaker
+	 */
+	private static boolean isFarther(Query result, int i, int j) {
+		double di = result.distancesSquared[i];
+		double dj = result.distancesSquared[j];
+		return di > dj || (di == dj && result.indices[i] > result.indices[j]);
+	}
+	
+	private static void swap(Query result, int i, int j) {
+		
+		int tempIndex = result.indices[i];
+		result.indices[i] = result.indices[j];
+		result.indices[j] = tempIndex;
+		
+		double tempDistance = result.distancesSquared[i];
+		result.distancesSquared[i] = result.distancesSquared[j];
+		result.distancesSquared[j] = tempDistance;
+		
+	}
+
+}
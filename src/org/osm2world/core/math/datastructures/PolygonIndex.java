@@ -0,0 +1,108 @@
+package org.osm2world.core.math.datastructures;
+
+import static java.lang.Math.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
+import org.osm2world.core.math.PreparedPolygonXZ;
+import org.osm2world.core.math.SimplePolygonXZ;
+import org.osm2world.core.math.VectorXZ;
+
+/**
+ * a collection of polygons that supports fast tests whether
+ * a position is contained in any of them.
+ * 
+ * The polygons are inserted into an {@link IntersectionGrid},
+ * so a test only involves the polygons whose bounding boxes
+ * share the position's grid cell.
+ */
+public class PolygonIndex {
+	
+	/** lower limit for the cell size */
+	private static final double MIN_CELL_SIZE = 1;
+	
+	/** upper limit for the number of cells per dimension */
+	private static final int MAX_CELL_COUNT = 500;
+	
+	private final AxisAlignedBoundingBoxXZ gridBounds;
+	private final IntersectionGrid<PreparedPolygonXZ> grid;
+	
+	public PolygonIndex(Collection<? extends SimplePolygonXZ> polygons) {
+		
+		if (polygons.isEmpty()) {
+			
+			gridBounds = null;
+			grid = null;
+		
+		} else {
+			
+			List<PreparedPolygonXZ> preparedPolygons =
+					new ArrayList<PreparedPolygonXZ>(polygons.size());
+			
+			AxisAlignedBoundingBoxXZ bounds = null;
+			
+			for (SimplePolygonXZ polygon : polygons) {
+				
+				PreparedPolygonXZ preparedPolygon = new PreparedPolygonXZ(polygon);
+				preparedPolygons.add(preparedPolygon);
+				
+				AxisAlignedBoundingBoxXZ polygonBounds =
+						preparedPolygon.getAxisAlignedBoundingBoxXZ();
+				bounds = (bounds == null) ? polygonBounds
+						: AxisAlignedBoundingBoxXZ.union(bounds, polygonBounds);
+				
+			}
+			
+			gridBounds = bounds.pad(MIN_CELL_SIZE);
+			
+			/* aim for about one polygon per cell */
+			
+			double cellSize = max(MIN_CELL_SIZE, sqrt(
+					gridBounds.sizeX() * gridBounds.sizeZ() / polygons.size()));
+			
+			grid = new IntersectionGrid<PreparedPolygonXZ>(gridBounds,
+					min(MAX_CELL_COUNT, (int) ceil(gridBounds.sizeX() / cellSize)),
+					min(MAX_CELL_COUNT, (int) ceil(gridBounds.sizeZ() / cellSize)));
+			
+			for (PreparedPolygonXZ preparedPolygon : preparedPolygons) {
+				grid.insert(preparedPolygon);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * returns true if at least one of the polygons contains the position
+	 * 
+	 * @see SimplePolygonXZ#contains(VectorXZ)
+	 */
+	public boolean anyPolygonContains(VectorXZ v) {
+		
+		if (grid == null
+				|| v.x <= gridBounds.minX || v.x >= gridBounds.maxX
+				|| v.z <= gridBounds.minZ || v.z >= gridBounds.maxZ) {
+			return false;
+		}
+		
+		int cellX = min(grid.getCellCountX() - 1, grid.cellXForCoord(v.x, v.z));
+		int cellZ = min(grid.getCellCountZ() - 1, grid.cellZForCoord(v.x, v.z));
+		
+		Collection<PreparedPolygonXZ> cell = grid.getCellArray()[cellX][cellZ];
+		
+		if (cell != null) {
+			for (PreparedPolygonXZ polygon : cell) {
+				if (polygon.contains(v)) {
+					return true;
+				}
+			}
+		}
+		
+		return false;
+		
+	}
+
+}
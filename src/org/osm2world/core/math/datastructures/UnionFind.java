@@ -0,0 +1,90 @@
+package org.osm2world.core.math.datastructures;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * a union-find (disjoint set) structure for the elements 0 to size()-1.
+ * Elements are added one at a time, each starting in a set of its own.
+ * Uses union by size and path halving.
+ */
+public class UnionFind {
+	
+	/** the parent of each element; roots are their own parent */
+	private final TIntArrayList parents = new TIntArrayList();
+	
+	/** the number of elements in the set, only valid for roots */
+	private final TIntArrayList setSizes = new TIntArrayList();
+	
+	/**
+	 * returns the number of elements
+	 */
+	public int size() {
+		return parents.size();
+	}
+	
+	/**
+	 * adds a new element in a set of its own
+	 *
+	 * @return  the new element
+	 */
+	public int add() {
+		int element = parents.size();
+		parents.add(element);
+		setSizes.add(1);
+		return element;
+	}
+	
+	/**
+	 * returns the root element of the set that contains an element
+	 */
+	public int find(int element) {
+		
+		while (parents.get(element) != element) {
+			
+			// path halving: skip one level for each visited element
+			int grandparent = parents.get(parents.get(element));
+			parents.set(element, grandparent);
+			
+			element = grandparent;
+			
+		}
+		
+		return element;
+		
+	}
+	
+	/**
+	 * merges the sets containing two elements
+	 *
+	 * @return  true if the elements were in different sets before
+	 */
+	public boolean union(int element1, int element2) {
+		
+		int root1 = find(element1);
+		int root2 = find(element2);
+		
+		if (root1 == root2) return false;
+		
+		/* attach the smaller set to the larger one */
+		
+		if (setSizes.get(root1) < setSizes.get(root2)) {
+			int temp = root1;
+			root1 = root2;
+			root2 = temp;
+		}
+		
+		parents.set(root2, root1);
+		setSizes.set(root1, setSizes.get(root1) + setSizes.get(root2));
+		
+		return true;
+		
+	}
+	
+	/**
+	 * returns the number of elements in the set that contains an element
+	 */
+	public int getSetSize(int element) {
+		return setSizes.get(find(element));
+	}
+	
+}
@@ -0,0 +1,344 @@
+package org.osm2world.core.osm.creation;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.osm2world.core.osm.data.OSMData;
+import org.osm2world.core.osm.data.OSMElement;
+import org.osm2world.core.osm.data.OSMMember;
+import org.osm2world.core.osm.data.OSMNode;
+import org.osm2world.core.osm.data.OSMRelation;
+import org.osm2world.core.osm.data.OSMWay;
+
+/**
+ * alternative to {@link OsmosisReader} with lower memory requirements.
+ *
+ * Osmosis entities are not kept after they have been received.
+ * Instead, coordinates, ids and references are stored in packed primitive
+ * arrays, with ids mapped to array indices by primitive hash maps.
+ * The {@link OSMElement}s are created from these arrays
+ * once the whole file has been read.
+ *
+ * Unlike {@link OsmosisReader}, this preserves the order of the elements
+ * within the file.
+ */
+public class CompactOsmosisReader implements OSMDataReader {
+	
+	private static final int NO_INDEX = -1;
+	
+	private boolean complete = false;
+	
+	private synchronized boolean isComplete() {
+		return complete;
+	}
+	
+	private synchronized void setCompleteTrue() {
+		this.complete = true;
+	}
+	
+	private final List<Bound> bounds = new ArrayList<Bound>();
+	
+	/* nodes */
+	
+	private TLongIntHashMap nodeIndexById = createIndexMap();
+	private TLongArrayList nodeIds = new TLongArrayList();
+	private TDoubleArrayList nodeLats = new TDoubleArrayList();
+	private TDoubleArrayList nodeLons = new TDoubleArrayList();
+	private List<TagGroup> nodeTags = new ArrayList<TagGroup>();
+	
+	/* ways; the node ids of way i are wayNodeIds[wayNodeOffsets[i]]
+	 * up to (excluding) wayNodeIds[wayNodeOffsets[i+1]] */
+	
+	private TLongIntHashMap wayIndexById = createIndexMap();
+	private TLongArrayList wayIds = new TLongArrayList();
+	private List<TagGroup> wayTags = new ArrayList<TagGroup>();
+	private TIntArrayList wayNodeOffsets = new TIntArrayList();
+	private TLongArrayList wayNodeIds = new TLongArrayList();
+	
+	/* relations; members are stored like way nodes */
+	
+	private TLongIntHashMap relationIndexById = createIndexMap();
+	private TLongArrayList relationIds = new TLongArrayList();
+	private List<TagGroup> relationTags = new ArrayList<TagGroup>();
+	private TIntArrayList relationMemberOffsets = new TIntArrayList();
+	private TLongArrayList memberIds = new TLongArrayList();
+	private List<EntityType> memberTypes = new ArrayList<EntityType>();
+	private List<String> memberRoles = new ArrayList<String>();
+	
+	private OSMData data;
+	
+	private final Sink sinkImplementation = new Sink() {
+		public void initialize(Map<String, Object> arg0) {
+			/* do nothing */
+		}
+		public void release() {
+			/* do nothing */
+		}
+		public void complete() {
+			setCompleteTrue();
+		}
+		public void process(EntityContainer entityContainer) {
+			Entity entity = entityContainer.getEntity();
+			if (entity instanceof Node) {
+				addNode((Node) entity);
+			} else if (entity instanceof Way) {
+				addWay((Way) entity);
+			} else if (entity instanceof Relation) {
+				addRelation((Relation) entity);
+			} else if (entity instanceof Bound) {
+				bounds.add((Bound) entity);
+			}
+		}
+	};
+	
+	public CompactOsmosisReader(File file) throws IOException {
+		
+		RunnableSource reader = OsmosisReader.createReaderForFile(file);
+		
+		reader.setSink(sinkImplementation);
+		
+		Thread readerThread = new Thread(reader);
+		readerThread.start();
+		
+		while (readerThread.isAlive()) {
+			try {
+				readerThread.join();
+			} catch (InterruptedException e) { /* do nothing */
+			}
+		}
+		
+		if (!isComplete()) {
+			throw new IOException("couldn't read from file");
+		}
+		
+		convertToOwnRepresentation();
+		
+	}
+	
+	private void addNode(Node node) {
+		
+		nodeIndexById.put(node.getId(), nodeIds.size());
+		
+		nodeIds.add(node.getId());
+		nodeLats.add(node.getLatitude());
+		nodeLons.add(node.getLongitude());
+		nodeTags.add(OsmosisReader.tagGroupForEntity(node));
+		
+	}
+	
+	private void addWay(Way way) {
+		
+		wayIndexById.put(way.getId(), wayIds.size());
+		
+		wayIds.add(way.getId());
+		wayTags.add(OsmosisReader.tagGroupForEntity(way));
+		wayNodeOffsets.add(wayNodeIds.size());
+		
+		for (WayNode wayNode : way.getWayNodes()) {
+			wayNodeIds.add(wayNode.getNodeId());
+		}
+		
+	}
+	
+	private void addRelation(Relation relation) {
+		
+		relationIndexById.put(relation.getId(), relationIds.size());
+		
+		relationIds.add(relation.getId());
+		relationTags.add(OsmosisReader.tagGroupForEntity(relation));
+		relationMemberOffsets.add(memberIds.size());
+		
+		for (RelationMember member : relation.getMembers()) {
+			memberIds.add(member.getMemberId());
+			memberTypes.add(member.getMemberType());
+			memberRoles.add(member.getMemberRole());
+		}
+		
+	}
+	
+	private void convertToOwnRepresentation() {
+		
+		/* create nodes.
+		 * If an id appears multiple times, the last occurrence is used. */
+		
+		OSMNode[] ownNodes = new OSMNode[nodeIds.size()];
+		
+		for (int i = 0; i < nodeIds.size(); i++) {
+			long id = nodeIds.get(i);
+			if (nodeIndexById.get(id) == i) {
+				ownNodes[i] = new OSMNode(nodeLats.get(i), nodeLons.get(i),
+						nodeTags.get(i), id);
+			}
+		}
+		
+		nodeLats = null;
+		nodeLons = null;
+		nodeTags = null;
+		
+		/* create ways */
+		
+		wayNodeOffsets.add(wayNodeIds.size());
+		
+		OSMWay[] ownWays = new OSMWay[wayIds.size()];
+		
+		for (int i = 0; i < wayIds.size(); i++) {
+			
+			long id = wayIds.get(i);
+			if (wayIndexById.get(id) != i) continue;
+			
+			int start = wayNodeOffsets.get(i);
+			int end = wayNodeOffsets.get(i+1);
+			
+			List<OSMNode> wayNodes = new ArrayList<OSMNode>(end - start);
+			
+			for (int j = start; j < end; j++) {
+				int nodeIndex = nodeIndexById.get(wayNodeIds.get(j));
+				if (nodeIndex != NO_INDEX) {
+					wayNodes.add(ownNodes[nodeIndex]);
+				}
+			}
+			
+			ownWays[i] = new OSMWay(wayTags.get(i), id, wayNodes);
+			
+		}
+		
+		wayTags = null;
+		wayNodeOffsets = null;
+		wayNodeIds = null;
+		
+		/* create relations.
+		 * Members are added after all relations have been created
+		 * because relations can be members of other relations. */
+		
+		relationMemberOffsets.add(memberIds.size());
+		
+		OSMRelation[] ownRelations = new OSMRelation[relationIds.size()];
+		
+		for (int i = 0; i < relationIds.size(); i++) {
+			
+			long id = relationIds.get(i);
+			if (relationIndexById.get(id) != i) continue;
+			
+			ownRelations[i] = new OSMRelation(relationTags.get(i), id,
+					relationMemberOffsets.get(i+1) - relationMemberOffsets.get(i));
+			
+		}
+		
+		for (int i = 0; i < ownRelations.length; i++) {
+			
+			if (ownRelations[i] == null) continue;
+			
+			int start = relationMemberOffsets.get(i);
+			int end = relationMemberOffsets.get(i+1);
+			
+			for (int j = start; j < end; j++) {
+				
+				long memberId = memberIds.get(j);
+				OSMElement memberObject = null;
+				
+				switch (memberTypes.get(j)) {
+				
+				case Node:
+					int nodeIndex = nodeIndexById.get(memberId);
+					if (nodeIndex != NO_INDEX) {
+						memberObject = ownNodes[nodeIndex];
+					}
+					break;
+				
+				case Way:
+					int wayIndex = wayIndexById.get(memberId);
+					if (wayIndex != NO_INDEX) {
+						memberObject = ownWays[wayIndex];
+					}
+					break;
+				
+				case Relation:
+					int relationIndex = relationIndexById.get(memberId);
+					if (relationIndex != NO_INDEX) {
+						memberObject = ownRelations[relationIndex];
+					}
+					break;
+				
+				default:
+					break;
+					
+				}
+				
+				if (memberObject != null) {
+					ownRelations[i].relationMembers.add(
+							new OSMMember(memberRoles.get(j), memberObject));
+				}
+				
+			}
+			
+		}
+		
+		data = new OSMData(bounds,
+				withoutNulls(ownNodes),
+				withoutNulls(ownWays),
+				withoutNulls(ownRelations));
+		
+		// give up references to the packed data
+		
+		nodeIndexById = null;
+		nodeIds = null;
+		wayIndexById = null;
+		wayIds = null;
+		relationIndexById = null;
+		relationIds = null;
+		relationTags = null;
+		relationMemberOffsets = null;
+		memberIds = null;
+		memberTypes = null;
+		memberRoles = null;
+		
+	}
+	
+	private static final TLongIntHashMap createIndexMap() {
+		return new TLongIntHashMap(10, 0.5f, 0, NO_INDEX);
+	}
+	
+	/**
+	 * returns the non-null elements of an array. The array entries
+	 * are null for elements with duplicate ids that have been replaced.
+	 */
+	private static final <T> List<T> withoutNulls(T[] array) {
+		
+		List<T> result = new ArrayList<T>(array.length);
+		
+		for (T element : array) {
+			if (element != null) {
+				result.add(element);
+			}
+		}
+		
+		return result;
+		
+	}
+	
+	@Override
+	public OSMData getData() {
+		return data;
+	}
+
+}
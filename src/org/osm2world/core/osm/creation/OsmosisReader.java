@@ -231,7 +231,7 @@ public class OsmosisReader implements OSMDataReader {
 		
 	}
 	
-	private TagGroup tagGroupForEntity(Entity entity) {
+	static final TagGroup tagGroupForEntity(Entity entity) {
 		if (entity.getTags().isEmpty()) {
 			return EMPTY_TAG_GROUP;
 		} else {
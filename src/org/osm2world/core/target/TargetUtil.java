@@ -3,11 +3,23 @@ package org.osm2world.core.target;
 import static org.osm2world.core.target.statistics.StatisticsTarget.Stat.PRIMITIVE_COUNT;
 import static org.osm2world.core.util.FaultTolerantIterationUtil.iterate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
+import org.osm2world.core.map_data.data.MapArea;
 import org.osm2world.core.map_data.data.MapData;
 import org.osm2world.core.map_data.data.MapElement;
+import org.osm2world.core.map_data.data.MapNode;
+import org.osm2world.core.map_data.data.MapWaySegment;
+import org.osm2world.core.map_data.data.overlaps.MapOverlap;
 import org.osm2world.core.map_elevation.data.GroundState;
+import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
 import org.osm2world.core.target.common.RenderableToPrimitiveTarget;
 import org.osm2world.core.target.statistics.StatisticsTarget;
 import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
@@ -44,6 +56,204 @@ public final class TargetUtil {
 		}
 	}
 
+	/**
+	 * render all world objects to multiple target instances in a single pass.
+	 * All representations of an element are rendered to each of the targets
+	 * before moving on to the next element.
+	 * 
+	 * @param releaseRepresentations  if true, the representations of each
+	 *  element are removed from it as soon as they have been rendered and
+	 *  no other element's representations can depend on them anymore.
+	 *  This allows them to be garbage collected while rendering continues.
+	 *  Elements are rendered in a spatially sorted order in this case.
+	 */
+	public static void renderWorldObjects(
+			final List<? extends Target<?>> targets, final MapData mapData,
+			final boolean renderUnderground, boolean releaseRepresentations) {
+		
+		if (!releaseRepresentations) {
+			
+			for (MapElement mapElement : mapData.getMapElements()) {
+				renderElement(targets, mapElement, renderUnderground);
+			}
+			
+		} else {
+			
+			/* sort elements by the minimum x coordinate of their bbox */
+			
+			final List<MapElement> elements = new ArrayList<MapElement>();
+			for (MapElement mapElement : mapData.getMapElements()) {
+				elements.add(mapElement);
+			}
+			
+			final double[] minX = new double[elements.size()];
+			for (int i = 0; i < elements.size(); i++) {
+				minX[i] = elements.get(i).getAxisAlignedBoundingBoxXZ().minX;
+			}
+			
+			final double[] reachX = calculateReachX(elements);
+			
+			Integer[] renderOrder = sortedIndices(minX);
+			Integer[] releaseOrder = sortedIndices(reachX);
+			
+			/* render elements, release those which all elements they
+			 * might depend on (or might depend on them) have been rendered */
+			
+			int releaseIndex = 0;
+			
+			for (int i = 0; i < renderOrder.length; i++) {
+				
+				renderElement(targets, elements.get(renderOrder[i]), renderUnderground);
+				
+				double sweepX = (i + 1 < renderOrder.length)
+						? minX[renderOrder[i + 1]]
+						: Double.POSITIVE_INFINITY;
+				
+				while (releaseIndex < releaseOrder.length
+						&& reachX[releaseOrder[releaseIndex]] < sweepX) {
+					elements.get(releaseOrder[releaseIndex]).clearRepresentations();
+					releaseIndex ++;
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+	private static void renderElement(List<? extends Target<?>> targets,
+			MapElement mapElement, boolean renderUnderground) {
+		
+		for (WorldObject r : mapElement.getRepresentations()) {
+			if (renderUnderground || r.getGroundState() != GroundState.BELOW) {
+				for (Target<?> target : targets) {
+					
+					try {
+						renderObject(target, r);
+					} catch (Exception e) {
+						System.err.println("ignored exception:");
+						//TODO proper logging
+						e.printStackTrace();
+						System.err.println("this exception occurred for the following input:\n"
+								+ mapElement);
+					}
+					
+				}
+			}
+		}
+		
+	}
+	
+	/**
+	 * number of steps along connections and overlaps between elements that
+	 * representations are assumed to follow when accessing other elements'
+	 * representations during rendering (e.g. way segment -> node -> way segment).
+	 */
+	private static final int RENDERING_DEPENDENCY_DEPTH = 3;
+	
+	/**
+	 * calculates, for each element, the maximum x coordinate of all elements
+	 * that can be reached from it within {@link #RENDERING_DEPENDENCY_DEPTH}
+	 * steps along connections and overlaps.
+	 */
+	private static double[] calculateReachX(List<MapElement> elements) {
+		
+		Map<MapElement, Integer> indexMap =
+				new IdentityHashMap<MapElement, Integer>(elements.size());
+		
+		for (int i = 0; i < elements.size(); i++) {
+			indexMap.put(elements.get(i), i);
+		}
+		
+		int[][] neighbors = new int[elements.size()][];
+		double[] reachX = new double[elements.size()];
+		
+		for (int i = 0; i < elements.size(); i++) {
+			
+			MapElement element = elements.get(i);
+			
+			AxisAlignedBoundingBoxXZ bbox = element.getAxisAlignedBoundingBoxXZ();
+			reachX[i] = bbox.maxX;
+			
+			List<MapElement> neighborElements = getNeighbors(element);
+			neighbors[i] = new int[neighborElements.size()];
+			for (int n = 0; n < neighborElements.size(); n++) {
+				Integer index = indexMap.get(neighborElements.get(n));
+				neighbors[i][n] = (index != null) ? index : i;
+			}
+			
+		}
+		
+		for (int step = 0; step < RENDERING_DEPENDENCY_DEPTH; step++) {
+			
+			double[] newReachX = reachX.clone();
+			
+			for (int i = 0; i < elements.size(); i++) {
+				for (int n : neighbors[i]) {
+					newReachX[i] = Math.max(newReachX[i], reachX[n]);
+				}
+			}
+			
+			reachX = newReachX;
+			
+		}
+		
+		return reachX;
+		
+	}
+	
+	/**
+	 * returns the elements that are directly connected to an element
+	 * or overlap with it
+	 */
+	private static List<MapElement> getNeighbors(MapElement element) {
+		
+		List<MapElement> result = new ArrayList<MapElement>();
+		
+		for (MapOverlap<?, ?> overlap : element.getOverlaps()) {
+			result.add(overlap.getOther(element));
+		}
+		
+		if (element instanceof MapNode) {
+			MapNode node = (MapNode) element;
+			result.addAll(node.getConnectedWaySegments());
+			result.addAll(node.getAdjacentAreas());
+		} else if (element instanceof MapWaySegment) {
+			MapWaySegment segment = (MapWaySegment) element;
+			result.add(segment.getStartNode());
+			result.add(segment.getEndNode());
+		} else if (element instanceof MapArea) {
+			MapArea area = (MapArea) element;
+			result.addAll(area.getBoundaryNodes());
+			for (Collection<MapNode> hole : area.getHoles()) {
+				result.addAll(hole);
+			}
+		}
+		
+		return result;
+		
+	}
+	
+	/**
+	 * returns the indices of an array, sorted by ascending value
+	 */
+	private static Integer[] sortedIndices(final double[] values) {
+		
+		Integer[] indices = new Integer[values.length];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = i;
+		}
+		
+		Arrays.sort(indices, new Comparator<Integer>() {
+			@Override public int compare(Integer i1, Integer i2) {
+				return Double.compare(values[i1], values[i2]);
+			}
+		});
+		
+		return indices;
+		
+	}
+	
 	/**
 	 * render all world objects to a target instances
 	 * that are compatible with that target type.
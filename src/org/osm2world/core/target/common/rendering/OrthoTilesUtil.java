@@ -146,10 +146,12 @@ public final class OrthoTilesUtil {
 			MapProjection mapProjection, TileNumber tile) {
 		
 		VectorXZ tilePos1 = mapProjection.calcPos(
-				tile2lat(tile.y, tile.zoom), tile2lon(tile.x, tile.zoom));
+				TileNumber.latForTileY(tile.y, tile.zoom),
+				TileNumber.lonForTileX(tile.x, tile.zoom));
 	
 		VectorXZ tilePos2 = mapProjection.calcPos(
-				tile2lat(tile.y+1, tile.zoom), tile2lon(tile.x+1, tile.zoom));
+				TileNumber.latForTileY(tile.y+1, tile.zoom),
+				TileNumber.lonForTileX(tile.x+1, tile.zoom));
 		
 		return new AxisAlignedBoundingBoxXZ(Arrays.asList(tilePos1, tilePos2));
 		
@@ -169,13 +171,4 @@ public final class OrthoTilesUtil {
 		
 	}
 	
-	private static final double tile2lon(int x, int z) {
-		return x / Math.pow(2.0, z) * 360.0 - 180;
-	}
-	
-	private static final double tile2lat(int y, int z) {
-		double n = Math.PI - (2.0 * Math.PI * y) / Math.pow(2.0, z);
-		return Math.toDegrees(Math.atan(Math.sinh(n)));
-	}
-	
 }
@@ -48,15 +48,75 @@ public class TileNumber {
 	 * @throws IllegalArgumentException  for incorrect field values
 	 */
 	private void validateValues() {
-		if (zoom <= 0 || x <= 0 || y <= 0) {
+		if (zoom < 0 || x < 0 || y < 0) {
 			//TODO (robustness): more validation
-			throw new IllegalArgumentException("not positive: " + x + ", " + y);
+			throw new IllegalArgumentException("negative: " + x + ", " + y);
 		}
 	}
 	
+	/**
+	 * returns the tile with the given zoom level
+	 * that contains a lat/lon position
+	 */
+	public static final TileNumber tileForLatLon(int zoom, double lat, double lon) {
+		int maxTile = (1 << zoom) - 1;
+		return new TileNumber(zoom,
+				Math.max(0, Math.min(maxTile, (int)Math.floor(tileXForLon(lon, zoom)))),
+				Math.max(0, Math.min(maxTile, (int)Math.floor(tileYForLat(lat, zoom)))));
+	}
+	
+	/**
+	 * returns the longitude of a tile's western edge
+	 * (or of the eastern edge of the tile with number x-1)
+	 */
+	public static final double lonForTileX(double x, int zoom) {
+		return x / Math.pow(2.0, zoom) * 360.0 - 180;
+	}
+	
+	/**
+	 * returns the latitude of a tile's northern edge
+	 * (or of the southern edge of the tile with number y-1)
+	 */
+	public static final double latForTileY(double y, int zoom) {
+		double n = Math.PI - (2.0 * Math.PI * y) / Math.pow(2.0, zoom);
+		return Math.toDegrees(Math.atan(Math.sinh(n)));
+	}
+	
+	/**
+	 * inverse of {@link #lonForTileX(double, int)},
+	 * the fractional part is the relative position within the tile
+	 */
+	public static final double tileXForLon(double lon, int zoom) {
+		return (lon + 180) / 360.0 * Math.pow(2.0, zoom);
+	}
+	
+	/**
+	 * inverse of {@link #latForTileY(double, int)},
+	 * the fractional part is the relative position within the tile
+	 */
+	public static final double tileYForLat(double lat, int zoom) {
+		double latRad = Math.toRadians(lat);
+		return (1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI)
+				/ 2 * Math.pow(2.0, zoom);
+	}
+	
 	@Override
 	public String toString() {		
 		return zoom + "," + x + "," + y;
 	}
 	
+	@Override
+	public int hashCode() {
+		return (31 * zoom + x) * 31 + y;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof TileNumber)) {
+			return false;
+		}
+		TileNumber other = (TileNumber) obj;
+		return zoom == other.zoom && x == other.x && y == other.y;
+	}
+	
 }
@@ -0,0 +1,126 @@
+package org.osm2world.core.target.gltf;
+
+import static org.osm2world.core.math.GeometryUtil.*;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.common.Primitive.Type;
+import org.osm2world.core.target.common.PrimitiveTarget;
+import org.osm2world.core.target.common.RenderableToPrimitiveTarget;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.Material.Lighting;
+
+/**
+ * target collecting indexed triangle geometry for glTF output,
+ * see {@link GltfWriter}. Triangles are grouped by material,
+ * and vertices with identical position, normal and texture coordinate
+ * are shared between the triangles of a material.
+ *
+ * Like the OBJ output, coordinates are converted to a right-handed
+ * coordinate system by negating z. Only the first texture layer is used.
+ */
+public class GltfTarget extends PrimitiveTarget<RenderableToPrimitiveTarget> {
+	
+	private final Map<Material, MaterialMesh> meshes =
+			new LinkedHashMap<Material, MaterialMesh>();
+	
+	@Override
+	public Class<RenderableToPrimitiveTarget> getRenderableType() {
+		return RenderableToPrimitiveTarget.class;
+	}
+	
+	@Override
+	public void render(RenderableToPrimitiveTarget renderable) {
+		renderable.renderTo(this);
+	}
+	
+	@Override
+	protected void drawPrimitive(Type type, Material material,
+			List<VectorXYZ> vs, List<VectorXYZ> normals,
+			List<List<VectorXZ>> texCoordLists) {
+		
+		boolean smooth = material.getLighting() == Lighting.SMOOTH;
+		
+		List<VectorXZ> texCoords = null;
+		
+		if (material.getNumTextureLayers() > 0
+				&& texCoordLists != null && !texCoordLists.isEmpty()) {
+			texCoords = texCoordLists.get(0);
+		}
+		
+		/* convert the primitive to separate triangles */
+		
+		switch (type) {
+		
+		case TRIANGLE_STRIP:
+			vs = triangleVertexListFromTriangleStrip(vs);
+			normals = smooth
+					? triangleVertexListFromTriangleStrip(normals)
+					: triangleNormalListFromTriangleStrip(normals);
+			if (texCoords != null) {
+				texCoords = triangleVertexListFromTriangleStrip(texCoords);
+			}
+			break;
+			
+		case TRIANGLE_FAN:
+		case CONVEX_POLYGON:
+			vs = triangleVertexListFromTriangleFan(vs);
+			normals = triangleVertexListFromTriangleFan(normals);
+			if (texCoords != null) {
+				texCoords = triangleVertexListFromTriangleFan(texCoords);
+			}
+			break;
+			
+		case TRIANGLES:
+			break;
+			
+		}
+		
+		MaterialMesh mesh = meshes.get(material);
+		
+		if (mesh == null) {
+			mesh = new MaterialMesh(material.getNumTextureLayers() > 0);
+			meshes.put(material, mesh);
+		}
+		
+		/* flat shading uses the last vertex's normal for the entire
+		 * triangle, like OpenGL does */
+		
+		for (int v = 0; v + 2 < vs.size(); v += 3) {
+			for (int k = 0; k < 3; k++) {
+				
+				VectorXYZ position = vs.get(v + k);
+				VectorXYZ normal = normals.get(smooth ? v + k : v + 2);
+				
+				float s = 0, t = 0;
+				
+				if (texCoords != null) {
+					// glTF texture coordinates start at the top of the image
+					s = (float)texCoords.get(v + k).x;
+					t = (float)(1 - texCoords.get(v + k).z);
+				}
+				
+				mesh.addVertex(
+						(float)position.x, (float)position.y, (float)-position.z,
+						(float)normal.x, (float)normal.y, (float)-normal.z,
+						s, t);
+				
+			}
+		}
+		
+	}
+	
+	Collection<Material> getMaterials() {
+		return meshes.keySet();
+	}
+	
+	MaterialMesh getMesh(Material material) {
+		return meshes.get(material);
+	}
+	
+}
@@ -0,0 +1,506 @@
+package org.osm2world.core.target.gltf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.configuration.Configuration;
+import org.osm2world.core.GlobalValues;
+import org.osm2world.core.map_data.creation.MapProjection;
+import org.osm2world.core.map_data.data.MapData;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.TargetUtil;
+import org.osm2world.core.target.common.TextureData;
+import org.osm2world.core.target.common.TextureData.Wrap;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.Material.Transparency;
+import org.osm2world.core.target.common.material.Materials;
+
+/**
+ * utility class for creating a binary glTF 2.0 (.glb) file.
+ *
+ * The file contains a single mesh with one primitive per material.
+ * Each primitive has an interleaved vertex buffer (float positions,
+ * normals and, for textured materials, texture coordinates) and
+ * an index buffer. Texture images are referenced by their paths.
+ */
+public final class GltfWriter {
+	
+	/** prevents instantiation */
+	private GltfWriter() { }
+	
+	private static final int GLB_MAGIC = 0x46546C67; // "glTF"
+	private static final int GLB_VERSION = 2;
+	private static final int CHUNK_TYPE_JSON = 0x4E4F534A; // "JSON"
+	private static final int CHUNK_TYPE_BIN = 0x004E4942; // "BIN\0"
+	
+	private static final int COMPONENT_TYPE_UNSIGNED_SHORT = 5123;
+	private static final int COMPONENT_TYPE_UNSIGNED_INT = 5125;
+	private static final int COMPONENT_TYPE_FLOAT = 5126;
+	
+	private static final int TARGET_ARRAY_BUFFER = 34962;
+	private static final int TARGET_ELEMENT_ARRAY_BUFFER = 34963;
+	
+	private static final int WRAP_REPEAT = 10497;
+	private static final int WRAP_CLAMP_TO_EDGE = 33071;
+	
+	private static final int BUFFER_SIZE = 1 << 20;
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/**
+	 * @param config  configuration for the output; null for defaults
+	 */
+	public static final void writeGlbFile(
+			File glbFile, MapData mapData,
+			MapProjection mapProjection,
+			Configuration config)
+			throws IOException {
+		
+		GltfTarget target = new GltfTarget();
+		target.setConfiguration(config);
+		
+		TargetUtil.renderWorldObjects(target, mapData, true);
+		
+		target.finish();
+		
+		/* determine the layout of the binary buffer */
+		
+		List<MaterialMesh> meshes = new ArrayList<MaterialMesh>();
+		List<Material> materials = new ArrayList<Material>();
+		
+		for (Material material : target.getMaterials()) {
+			MaterialMesh mesh = target.getMesh(material);
+			if (mesh.getVertexCount() > 0) {
+				meshes.add(mesh);
+				materials.add(material);
+			}
+		}
+		
+		long binLength = 0;
+		
+		for (MaterialMesh mesh : meshes) {
+			binLength += vertexBufferLength(mesh);
+			binLength += padding(indexBufferLength(mesh));
+		}
+		
+		if (binLength > Integer.MAX_VALUE) {
+			throw new IOException("too much geometry for a .glb file");
+		}
+		
+		/* write the file */
+		
+		byte[] json = padWithSpaces(
+				createJson(meshes, materials, mapProjection, binLength).getBytes(UTF_8));
+		
+		long totalLength = 12 + 8 + json.length + (binLength > 0 ? 8 + binLength : 0);
+		
+		FileOutputStream stream = new FileOutputStream(glbFile);
+		
+		try {
+			
+			FileChannel channel = stream.getChannel();
+			
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			
+			buffer.putInt(GLB_MAGIC);
+			buffer.putInt(GLB_VERSION);
+			buffer.putInt((int)totalLength);
+			
+			buffer.putInt(json.length);
+			buffer.putInt(CHUNK_TYPE_JSON);
+			buffer = write(channel, buffer, json);
+			
+			if (binLength > 0) {
+				
+				if (buffer.remaining() < 8) {
+					flush(channel, buffer);
+				}
+				
+				buffer.putInt((int)binLength);
+				buffer.putInt(CHUNK_TYPE_BIN);
+				
+				for (MaterialMesh mesh : meshes) {
+					
+					int floatsPerVertex = floatsPerVertex(mesh);
+					
+					for (int v = 0; v < mesh.getVertexCount(); v++) {
+						
+						if (buffer.remaining() < 4 * floatsPerVertex) {
+							flush(channel, buffer);
+						}
+						
+						for (int i = 0; i < floatsPerVertex; i++) {
+							buffer.putFloat(mesh.vertexData.getQuick(
+									v * MaterialMesh.STRIDE + i));
+						}
+						
+					}
+					
+					boolean shortIndices = useShortIndices(mesh);
+					
+					for (int i = 0; i < mesh.indices.size(); i++) {
+						
+						if (buffer.remaining() < 4) {
+							flush(channel, buffer);
+						}
+						
+						if (shortIndices) {
+							buffer.putShort((short)mesh.indices.getQuick(i));
+						} else {
+							buffer.putInt(mesh.indices.getQuick(i));
+						}
+						
+					}
+					
+					if (buffer.remaining() < 4) {
+						flush(channel, buffer);
+					}
+					
+					for (long i = indexBufferLength(mesh);
+							i < padding(indexBufferLength(mesh)); i++) {
+						buffer.put((byte)0);
+					}
+					
+				}
+				
+			}
+			
+			flush(channel, buffer);
+		
+		} finally {
+			stream.close();
+		}
+		
+	}
+	
+	private static final String createJson(List<MaterialMesh> meshes,
+			List<Material> materials, MapProjection mapProjection,
+			long binLength) {
+		
+		StringBuilder primitives = new StringBuilder();
+		StringBuilder accessors = new StringBuilder();
+		StringBuilder bufferViews = new StringBuilder();
+		StringBuilder materialsJson = new StringBuilder();
+		StringBuilder textures = new StringBuilder();
+		StringBuilder images = new StringBuilder();
+		StringBuilder samplers = new StringBuilder();
+		
+		Map<File, Integer> imageIndexMap = new HashMap<File, Integer>();
+		int textureCount = 0;
+		int accessorCount = 0;
+		int anonymousMaterialCounter = 0;
+		
+		long offset = 0;
+		
+		for (int m = 0; m < meshes.size(); m++) {
+			
+			MaterialMesh mesh = meshes.get(m);
+			Material material = materials.get(m);
+			
+			/* buffer views for the vertices and indices */
+			
+			int vertexView = 2 * m;
+			int indexView = 2 * m + 1;
+			
+			separate(bufferViews);
+			bufferViews.append("{\"buffer\":0,\"byteOffset\":").append(offset)
+				.append(",\"byteLength\":").append(vertexBufferLength(mesh))
+				.append(",\"byteStride\":").append(4 * floatsPerVertex(mesh))
+				.append(",\"target\":").append(TARGET_ARRAY_BUFFER).append("}");
+			
+			offset += vertexBufferLength(mesh);
+			
+			bufferViews.append(",{\"buffer\":0,\"byteOffset\":").append(offset)
+				.append(",\"byteLength\":").append(indexBufferLength(mesh))
+				.append(",\"target\":").append(TARGET_ELEMENT_ARRAY_BUFFER).append("}");
+			
+			offset += padding(indexBufferLength(mesh));
+			
+			/* accessors */
+			
+			float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+			float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+			
+			for (int v = 0; v < mesh.getVertexCount(); v++) {
+				for (int i = 0; i < 3; i++) {
+					float value = mesh.vertexData.getQuick(v * MaterialMesh.STRIDE + i);
+					min[i] = Math.min(min[i], value);
+					max[i] = Math.max(max[i], value);
+				}
+			}
+			
+			int positionAccessor = accessorCount;
+			int normalAccessor = accessorCount + 1;
+			int texCoordAccessor = mesh.textured ? accessorCount + 2 : -1;
+			int indexAccessor = accessorCount + (mesh.textured ? 3 : 2);
+			
+			accessorCount = indexAccessor + 1;
+			
+			separate(accessors);
+			accessors.append("{\"bufferView\":").append(vertexView)
+				.append(",\"byteOffset\":0,\"componentType\":").append(COMPONENT_TYPE_FLOAT)
+				.append(",\"count\":").append(mesh.getVertexCount())
+				.append(",\"type\":\"VEC3\",\"min\":[").append(min[0]).append(',')
+				.append(min[1]).append(',').append(min[2]).append("],\"max\":[")
+				.append(max[0]).append(',').append(max[1]).append(',').append(max[2])
+				.append("]}");
+			
+			accessors.append(",{\"bufferView\":").append(vertexView)
+				.append(",\"byteOffset\":12,\"componentType\":").append(COMPONENT_TYPE_FLOAT)
+				.append(",\"count\":").append(mesh.getVertexCount())
+				.append(",\"type\":\"VEC3\"}");
+			
+			if (mesh.textured) {
+				accessors.append(",{\"bufferView\":").append(vertexView)
+					.append(",\"byteOffset\":24,\"componentType\":").append(COMPONENT_TYPE_FLOAT)
+					.append(",\"count\":").append(mesh.getVertexCount())
+					.append(",\"type\":\"VEC2\"}");
+			}
+			
+			accessors.append(",{\"bufferView\":").append(indexView)
+				.append(",\"byteOffset\":0,\"componentType\":")
+				.append(useShortIndices(mesh)
+						? COMPONENT_TYPE_UNSIGNED_SHORT : COMPONENT_TYPE_UNSIGNED_INT)
+				.append(",\"count\":").append(mesh.indices.size())
+				.append(",\"type\":\"SCALAR\"}");
+			
+			/* the primitive */
+			
+			separate(primitives);
+			primitives.append("{\"attributes\":{\"POSITION\":").append(positionAccessor)
+				.append(",\"NORMAL\":").append(normalAccessor);
+			if (mesh.textured) {
+				primitives.append(",\"TEXCOORD_0\":").append(texCoordAccessor);
+			}
+			primitives.append("},\"indices\":").append(indexAccessor)
+				.append(",\"material\":").append(m).append("}");
+			
+			/* the material */
+			
+			String name = Materials.getUniqueName(material);
+			if (name == null) {
+				name = "MAT_" + anonymousMaterialCounter;
+				anonymousMaterialCounter += 1;
+			}
+			
+			TextureData textureData = null;
+			if (material.getNumTextureLayers() > 0) {
+				textureData = material.getTextureDataList().get(0);
+			}
+			
+			float[] color = {1, 1, 1};
+			if (textureData == null || textureData.colorable) {
+				material.getColor().getRGBColorComponents(color);
+			}
+			
+			separate(materialsJson);
+			materialsJson.append("{\"name\":").append(quote(name))
+				.append(",\"pbrMetallicRoughness\":{\"baseColorFactor\":[")
+				.append(color[0]).append(',').append(color[1]).append(',')
+				.append(color[2]).append(",1.0]");
+			
+			if (textureData != null && textureData.file != null) {
+				
+				Integer imageIndex = imageIndexMap.get(textureData.file);
+				
+				if (imageIndex == null) {
+					imageIndex = imageIndexMap.size();
+					imageIndexMap.put(textureData.file, imageIndex);
+					separate(images);
+					images.append("{\"uri\":").append(quote(toUri(textureData.file))).append("}");
+				}
+				
+				int wrap = (textureData.wrap == Wrap.REPEAT)
+						? WRAP_REPEAT : WRAP_CLAMP_TO_EDGE;
+				
+				separate(samplers);
+				samplers.append("{\"wrapS\":").append(wrap)
+					.append(",\"wrapT\":").append(wrap).append("}");
+				
+				separate(textures);
+				textures.append("{\"source\":").append(imageIndex)
+					.append(",\"sampler\":").append(textureCount).append("}");
+				
+				materialsJson.append(",\"baseColorTexture\":{\"index\":")
+					.append(textureCount).append("}");
+				
+				textureCount ++;
+				
+			}
+			
+			materialsJson.append(",\"metallicFactor\":0.0,\"roughnessFactor\":1.0}");
+			
+			if (textureData != null) {
+				if (material.getTransparency() == Transparency.TRUE) {
+					materialsJson.append(",\"alphaMode\":\"BLEND\"");
+				} else if (material.getTransparency() == Transparency.BINARY) {
+					materialsJson.append(",\"alphaMode\":\"MASK\",\"alphaCutoff\":0.5");
+				}
+			}
+			
+			materialsJson.append("}");
+			
+		}
+		
+		/* combine everything */
+		
+		StringBuilder json = new StringBuilder();
+		
+		json.append("{\"asset\":{\"version\":\"2.0\",\"generator\":")
+			.append(quote("OSM2World " + GlobalValues.VERSION_STRING))
+			.append(",\"extras\":{\"origin\":{\"lat\":")
+			.append(mapProjection.calcLat(VectorXZ.NULL_VECTOR))
+			.append(",\"lon\":").append(mapProjection.calcLon(VectorXZ.NULL_VECTOR))
+			.append("}}}");
+		
+		json.append(",\"scene\":0");
+		
+		if (meshes.isEmpty()) {
+			json.append(",\"scenes\":[{\"nodes\":[]}]");
+		} else {
+			
+			json.append(",\"scenes\":[{\"nodes\":[0]}]");
+			json.append(",\"nodes\":[{\"name\":\"OSM2World\",\"mesh\":0}]");
+			json.append(",\"meshes\":[{\"primitives\":[").append(primitives).append("]}]");
+			json.append(",\"accessors\":[").append(accessors).append("]");
+			json.append(",\"bufferViews\":[").append(bufferViews).append("]");
+			json.append(",\"buffers\":[{\"byteLength\":").append(binLength).append("}]");
+			json.append(",\"materials\":[").append(materialsJson).append("]");
+			
+			if (textureCount > 0) {
+				json.append(",\"textures\":[").append(textures).append("]");
+				json.append(",\"images\":[").append(images).append("]");
+				json.append(",\"samplers\":[").append(samplers).append("]");
+			}
+			
+		}
+		
+		json.append("}");
+		
+		return json.toString();
+		
+	}
+	
+	private static final int floatsPerVertex(MaterialMesh mesh) {
+		return mesh.textured ? 8 : 6;
+	}
+	
+	private static final long vertexBufferLength(MaterialMesh mesh) {
+		return 4L * floatsPerVertex(mesh) * mesh.getVertexCount();
+	}
+	
+	private static final long indexBufferLength(MaterialMesh mesh) {
+		return (useShortIndices(mesh) ? 2L : 4L) * mesh.indices.size();
+	}
+	
+	private static final boolean useShortIndices(MaterialMesh mesh) {
+		return mesh.getVertexCount() <= 0xFFFF;
+	}
+	
+	/** rounds a length up to a multiple of 4 */
+	private static final long padding(long length) {
+		return (length + 3) / 4 * 4;
+	}
+	
+	private static final byte[] padWithSpaces(byte[] bytes) {
+		
+		byte[] result = new byte[(int)padding(bytes.length)];
+		
+		System.arraycopy(bytes, 0, result, 0, bytes.length);
+		
+		for (int i = bytes.length; i < result.length; i++) {
+			result[i] = ' ';
+		}
+		
+		return result;
+		
+	}
+	
+	/** adds a comma unless the string builder is empty */
+	private static final void separate(StringBuilder builder) {
+		if (builder.length() > 0) {
+			builder.append(',');
+		}
+	}
+	
+	/** returns a JSON string literal */
+	private static final String quote(String string) {
+		
+		StringBuilder result = new StringBuilder("\"");
+		
+		for (char c : string.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				result.append('\\').append(c);
+			} else if (c < 0x20) {
+				result.append(String.format("\\u%04x", (int)c));
+			} else {
+				result.append(c);
+			}
+		}
+		
+		return result.append('"').toString();
+		
+	}
+	
+	/** returns a relative URI for a file path */
+	private static final String toUri(File file) {
+		try {
+			String path = file.getPath().replace(File.separatorChar, '/');
+			return new URI(null, null, path, null).toASCIIString();
+		} catch (URISyntaxException e) {
+			return file.getPath();
+		}
+	}
+	
+	/**
+	 * writes an array through the buffer
+	 *
+	 * @return  the buffer, which might have been flushed
+	 */
+	private static final ByteBuffer write(FileChannel channel,
+			ByteBuffer buffer, byte[] bytes) throws IOException {
+		
+		int offset = 0;
+		
+		while (offset < bytes.length) {
+			
+			if (!buffer.hasRemaining()) {
+				flush(channel, buffer);
+			}
+			
+			int length = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, length);
+			offset += length;
+			
+		}
+		
+		return buffer;
+		
+	}
+	
+	private static final void flush(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		
+		buffer.flip();
+		
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		
+		buffer.clear();
+		
+	}
+
+}
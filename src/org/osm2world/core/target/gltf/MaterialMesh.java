@@ -0,0 +1,135 @@
+package org.osm2world.core.target.gltf;
+
+import static java.lang.Float.floatToIntBits;
+
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.Arrays;
+
+/**
+ * indexed triangles with a single material, collected by {@link GltfTarget}
+ */
+final class MaterialMesh {
+	
+	/** number of values per vertex: position, normal and texture coordinate */
+	static final int STRIDE = 8;
+	
+	private static final int INITIAL_TABLE_SIZE = 1024;
+	
+	/** whether the texture coordinates are used */
+	final boolean textured;
+	
+	/** the values of each distinct vertex, see {@link #STRIDE} */
+	final TFloatArrayList vertexData = new TFloatArrayList();
+	
+	/** three vertex indices for each triangle */
+	final TIntArrayList indices = new TIntArrayList();
+	
+	private int vertexCount = 0;
+	
+	/**
+	 * open addressing hash table containing the index of each vertex,
+	 * -1 for empty slots. The vertex values are compared using
+	 * {@link #vertexData}, so they are not stored a second time.
+	 */
+	private int[] table = new int[INITIAL_TABLE_SIZE];
+	
+	MaterialMesh(boolean textured) {
+		this.textured = textured;
+		Arrays.fill(table, -1);
+	}
+	
+	int getVertexCount() {
+		return vertexCount;
+	}
+	
+	/**
+	 * adds the index of a vertex to {@link #indices},
+	 * adding the vertex first if it doesn't exist yet
+	 */
+	void addVertex(float px, float py, float pz,
+			float nx, float ny, float nz, float s, float t) {
+		
+		int hash = floatToIntBits(px);
+		hash = 31 * hash + floatToIntBits(py);
+		hash = 31 * hash + floatToIntBits(pz);
+		hash = 31 * hash + floatToIntBits(nx);
+		hash = 31 * hash + floatToIntBits(ny);
+		hash = 31 * hash + floatToIntBits(nz);
+		hash = 31 * hash + floatToIntBits(s);
+		hash = 31 * hash + floatToIntBits(t);
+		hash ^= hash >>> 16;
+		
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		
+		while (table[slot] >= 0) {
+			
+			int o = table[slot] * STRIDE;
+			
+			if (floatToIntBits(vertexData.getQuick(o)) == floatToIntBits(px)
+					&& floatToIntBits(vertexData.getQuick(o + 1)) == floatToIntBits(py)
+					&& floatToIntBits(vertexData.getQuick(o + 2)) == floatToIntBits(pz)
+					&& floatToIntBits(vertexData.getQuick(o + 3)) == floatToIntBits(nx)
+					&& floatToIntBits(vertexData.getQuick(o + 4)) == floatToIntBits(ny)
+					&& floatToIntBits(vertexData.getQuick(o + 5)) == floatToIntBits(nz)
+					&& floatToIntBits(vertexData.getQuick(o + 6)) == floatToIntBits(s)
+					&& floatToIntBits(vertexData.getQuick(o + 7)) == floatToIntBits(t)) {
+				indices.add(table[slot]);
+				return;
+			}
+			
+			slot = (slot + 1) & mask;
+			
+		}
+		
+		vertexData.add(px);
+		vertexData.add(py);
+		vertexData.add(pz);
+		vertexData.add(nx);
+		vertexData.add(ny);
+		vertexData.add(nz);
+		vertexData.add(s);
+		vertexData.add(t);
+		table[slot] = vertexCount;
+		indices.add(vertexCount);
+		
+		vertexCount ++;
+		
+		if (2 * vertexCount > table.length) {
+			rehash();
+		}
+		
+	}
+	
+	private void rehash() {
+		
+		table = new int[2 * table.length];
+		Arrays.fill(table, -1);
+		
+		int mask = table.length - 1;
+		
+		for (int v = 0; v < vertexCount; v++) {
+			
+			int o = v * STRIDE;
+			
+			int hash = floatToIntBits(vertexData.getQuick(o));
+			for (int i = 1; i < STRIDE; i++) {
+				hash = 31 * hash + floatToIntBits(vertexData.getQuick(o + i));
+			}
+			hash ^= hash >>> 16;
+			
+			int slot = hash & mask;
+			
+			while (table[slot] >= 0) {
+				slot = (slot + 1) & mask;
+			}
+			
+			table[slot] = v;
+			
+		}
+		
+	}
+	
+}
@@ -19,6 +19,7 @@ import org.osm2world.core.target.common.material.Material.Transparency;
 import org.osm2world.core.target.common.rendering.Camera;
 import org.osm2world.core.target.common.rendering.OrthoTilesUtil.CardinalDirection;
 import org.osm2world.core.target.common.rendering.Projection;
+import org.osm2world.core.target.jogl.PackedPrimitiveBuffer.PackedPrimitives;
 
 /**
  * renders the contents of a {@link PrimitiveBuffer} using JOGL.
@@ -60,15 +61,18 @@ class JOGLRendererDisplayList extends JOGLRenderer {
 		
 		super(gl, textureManager);
 		
+		PackedPrimitiveBuffer packedBuffer =
+				PackedPrimitiveBuffer.pack(primitiveBuffer);
+		
 		displayListPointer = gl.glGenLists(1);
 		
 		gl.glNewList(displayListPointer, GL_COMPILE);
 
-		for (Material material : primitiveBuffer.getMaterials()) {
+		for (Material material : packedBuffer.getMaterials()) {
 			
 			if (material.getTransparency() == Transparency.TRUE) {
 				
-				for (Primitive primitive : primitiveBuffer.getPrimitives(material)) {
+				for (Primitive primitive : packedBuffer.getPrimitives(material)) {
 					transparentPrimitives.add(
 							new PrimitiveWithMaterial(primitive, material));
 				}
@@ -76,11 +80,11 @@ class JOGLRendererDisplayList extends JOGLRenderer {
 			} else {
 				
 				JOGLTarget.setMaterial(gl, material, textureManager);
-	
-				for (Primitive primitive : primitiveBuffer.getPrimitives(material)) {
-					drawPrimitive(gl, getGLConstant(primitive.type),
-							primitive.vertices, primitive.normals,
-							primitive.texCoordLists);
+				
+				PackedPrimitives primitives = packedBuffer.getPackedPrimitives(material);
+				
+				for (int p = 0; p < primitives.getPrimitiveCount(); p++) {
+					drawPackedPrimitive(gl, primitives, p);
 				}
 				
 			}
@@ -91,6 +95,44 @@ class JOGLRendererDisplayList extends JOGLRenderer {
 		
 	}
 
+	/**
+	 * draws a primitive directly from the packed values,
+	 * same as {@link JOGLTarget#drawPrimitive(GL2, int, List, List, List)}
+	 */
+	private static void drawPackedPrimitive(GL2 gl,
+			PackedPrimitives primitives, int primitive) {
+		
+		int first = primitives.getFirstVertex(primitive);
+		int count = primitives.getVertexCount(primitive);
+		int numTextureLayers = primitives.getNumTextureLayers();
+		int normalOffset = primitives.getNormalOffset();
+		int positionOffset = primitives.getPositionOffset();
+		
+		gl.glBegin(getGLConstant(primitives.getType(primitive)));
+		
+		for (int v = first; v < first + count; v++) {
+			
+			for (int texLayer = 0; texLayer < numTextureLayers; texLayer++) {
+				int offset = primitives.getTexCoordOffset(texLayer);
+				gl.glMultiTexCoord2f(getGLTextureConstant(texLayer),
+						primitives.getValue(v, offset),
+						primitives.getValue(v, offset + 1));
+			}
+			
+			gl.glNormal3f(primitives.getValue(v, normalOffset),
+					primitives.getValue(v, normalOffset + 1),
+					-primitives.getValue(v, normalOffset + 2));
+			
+			gl.glVertex3f(primitives.getValue(v, positionOffset),
+					primitives.getValue(v, positionOffset + 1),
+					-primitives.getValue(v, positionOffset + 2));
+			
+		}
+		
+		gl.glEnd();
+		
+	}
+	
 	@Override
 	public void render(final Camera camera, final Projection projection) {
 		
@@ -4,7 +4,6 @@ import static java.lang.Math.*;
 import static javax.media.opengl.GL.*;
 import static javax.media.opengl.GL2GL3.GL_DOUBLE;
 import static javax.media.opengl.fixedfunc.GLPointerFunc.*;
-import static org.osm2world.core.math.GeometryUtil.*;
 import static org.osm2world.core.target.common.rendering.OrthoTilesUtil.CardinalDirection.closestCardinal;
 import static org.osm2world.core.target.jogl.JOGLTarget.*;
 
@@ -12,7 +11,6 @@ import java.nio.Buffer;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -20,7 +18,6 @@ import java.util.List;
 import javax.media.opengl.GL2;
 
 import org.osm2world.core.math.VectorXYZ;
-import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.target.common.Primitive;
 import org.osm2world.core.target.common.Primitive.Type;
 import org.osm2world.core.target.common.material.Material;
@@ -28,6 +25,7 @@ import org.osm2world.core.target.common.material.Material.Transparency;
 import org.osm2world.core.target.common.rendering.Camera;
 import org.osm2world.core.target.common.rendering.Projection;
 import org.osm2world.core.target.common.rendering.OrthoTilesUtil.CardinalDirection;
+import org.osm2world.core.target.jogl.PackedPrimitiveBuffer.PackedPrimitives;
 
 import com.jogamp.common.nio.Buffers;
 
@@ -78,13 +76,12 @@ public class JOGLRendererVBO extends JOGLRenderer {
 		
 		protected abstract BufferT createBuffer(int numValues);
 		
-		protected abstract void put(BufferT buffer, VectorXZ texCoord);
-		protected abstract void put(BufferT buffer, VectorXYZ v);
+		protected abstract void put(BufferT buffer, float value);
 		
 		protected abstract int valueTypeSize();
 		protected abstract int glValueType();
 		
-		public VBOData(Material material, Collection<Primitive> primitives) {
+		public VBOData(Material material, PackedPrimitives primitives) {
 			
 			this.material = material;
 			
@@ -103,8 +100,8 @@ public class JOGLRendererVBO extends JOGLRenderer {
 			BufferT valueBuffer = createBuffer(
 					vertexCount * getValuesPerVertex(material));
 						
-			for (Primitive primitive : primitives) {
-				addPrimitiveToValueBuffer(valueBuffer, primitive);
+			for (int p = 0; p < primitives.getPrimitiveCount(); p++) {
+				addPrimitiveToValueBuffer(valueBuffer, primitives, p);
 			}
 			
 			valueBuffer.rewind();
@@ -125,15 +122,15 @@ public class JOGLRendererVBO extends JOGLRenderer {
 		 * returns the number of vertices required to represent a collection
 		 * of primitives with individual triangles
 		 */
-		private int countVertices(Collection<Primitive> primitives) {
+		private int countVertices(PackedPrimitives primitives) {
 			
 			int vertexCount = 0;
 			
-			for (Primitive primitive : primitives) {
-				if (primitive.type == Type.TRIANGLES) {
-					vertexCount += primitive.vertices.size();
+			for (int p = 0; p < primitives.getPrimitiveCount(); p++) {
+				if (primitives.getType(p) == Type.TRIANGLES) {
+					vertexCount += primitives.getVertexCount(p);
 				} else {
-					vertexCount += 3 * (primitive.vertices.size() - 2);
+					vertexCount += 3 * (primitives.getVertexCount(p) - 2);
 				}
 			}
 			
@@ -142,72 +139,70 @@ public class JOGLRendererVBO extends JOGLRenderer {
 		}
 		
 		/**
-		 * put the values for a primitive's vertices into the buffer
+		 * put the values for a primitive's vertices into the buffer.
+		 * Triangle strips and triangle fans are turned into separate
+		 * triangles, in the same way as by the methods of GeometryUtil.
 		 */
 		private void addPrimitiveToValueBuffer(BufferT buffer,
-				Primitive primitive) {
-						
-			/*
-			 * rearrange the lists of vertices, normals and texture coordinates
-			 * to turn triangle strips and triangle fans into separate triangles
-			 */
-
-			List<VectorXYZ> primVertices = primitive.vertices;
-			List<VectorXYZ> primNormals = primitive.normals;
-			List<List<VectorXZ>> primTexCoordLists = primitive.texCoordLists;
+				PackedPrimitives primitives, int primitive) {
 			
-			if (primitive.type == Type.TRIANGLE_STRIP) {
-				
-				primVertices = triangleVertexListFromTriangleStrip(primVertices);
-				primNormals = triangleNormalListFromTriangleStrip(primNormals);
-				
-				if (primTexCoordLists != null) {
-					List<List<VectorXZ>> newPrimTexCoordLists = new ArrayList<List<VectorXZ>>();
-					for (List<VectorXZ> primTexCoordList : primTexCoordLists) {
-						newPrimTexCoordLists.add(triangleVertexListFromTriangleStrip(primTexCoordList));
-					}
-					primTexCoordLists = newPrimTexCoordLists;
+			int first = primitives.getFirstVertex(primitive);
+			int count = primitives.getVertexCount(primitive);
+			
+			switch (primitives.getType(primitive)) {
+			
+			case TRIANGLES:
+				for (int v = first; v < first + count; v++) {
+					putVertex(buffer, primitives, v, v);
 				}
+				break;
 				
-			} else if (primitive.type == Type.TRIANGLE_FAN) {
-				
-				primVertices = triangleVertexListFromTriangleFan(primVertices);
-				primNormals = triangleVertexListFromTriangleFan(primNormals);
+			case TRIANGLE_STRIP:
+				for (int t = first; t + 2 < first + count; t++) {
+					/* each triangle uses the normal of its last vertex */
+					boolean even = (t - first) % 2 == 0;
+					putVertex(buffer, primitives, t, t + 2);
+					putVertex(buffer, primitives, even ? t + 1 : t + 2, t + 2);
+					putVertex(buffer, primitives, even ? t + 2 : t + 1, t + 2);
+				}
+				break;
 				
-				if (primTexCoordLists != null) {
-					List<List<VectorXZ>> newPrimTexCoordLists = new ArrayList<List<VectorXZ>>();
-					for (List<VectorXZ> primTexCoordList : primTexCoordLists) {
-						newPrimTexCoordLists.add(triangleVertexListFromTriangleFan(primTexCoordList));
-					}
-					primTexCoordLists = newPrimTexCoordLists;
+			case TRIANGLE_FAN:
+			case CONVEX_POLYGON:
+				for (int t = first + 1; t + 1 < first + count; t++) {
+					putVertex(buffer, primitives, first, first);
+					putVertex(buffer, primitives, t, t);
+					putVertex(buffer, primitives, t + 1, t + 1);
 				}
+				break;
 				
 			}
 			
-			/* put the values into the buffer, in the right order */
+		}
+		
+		/**
+		 * put the values for a vertex into the buffer,
+		 * converting normal and position to OpenGL coordinates
+		 * 
+		 * @param normalVertex  vertex whose normal is used
+		 */
+		private void putVertex(BufferT buffer, PackedPrimitives primitives,
+				int vertex, int normalVertex) {
 			
-			for (int i = 0; i < primVertices.size(); i++) {
-				
-				assert (primTexCoordLists == null
-						&& material.getNumTextureLayers() == 0)
-					|| (primTexCoordLists != null
-						&& primTexCoordLists.size() == material.getNumTextureLayers())
-					: "WorldModules need to provide the correct number of tex coords";
-				
-				if (primTexCoordLists == null && material.getNumTextureLayers() > 0) {
-					System.out.println(material);
-				}
-					
-				for (int t = 0; t < material.getNumTextureLayers(); t++) {
-					VectorXZ textureCoord =	primTexCoordLists.get(t).get(i);
-					put(buffer, textureCoord);
-				}
-				
-				put(buffer, primNormals.get(i));
-				put(buffer, primVertices.get(i));
-				
+			for (int i = 0; i < primitives.getNormalOffset(); i++) {
+				put(buffer, primitives.getValue(vertex, i));
 			}
 			
+			int offset = primitives.getNormalOffset();
+			put(buffer, primitives.getValue(normalVertex, offset));
+			put(buffer, primitives.getValue(normalVertex, offset + 1));
+			put(buffer, -primitives.getValue(normalVertex, offset + 2));
+			
+			offset = primitives.getPositionOffset();
+			put(buffer, primitives.getValue(vertex, offset));
+			put(buffer, primitives.getValue(vertex, offset + 1));
+			put(buffer, -primitives.getValue(vertex, offset + 2));
+			
 		}
 		
 		public void render() {
@@ -271,7 +266,7 @@ public class JOGLRendererVBO extends JOGLRenderer {
 	
 	private final class VBODataDouble extends VBOData<DoubleBuffer> {
 
-		public VBODataDouble(Material material, Collection<Primitive> primitives) {
+		public VBODataDouble(Material material, PackedPrimitives primitives) {
 			super(material, primitives);
 		}
 		
@@ -281,16 +276,8 @@ public class JOGLRendererVBO extends JOGLRenderer {
 		}
 		
 		@Override
-		protected void put(DoubleBuffer buffer, VectorXZ texCoord) {
-			buffer.put(texCoord.x);
-			buffer.put(texCoord.z);
-		}
-		
-		@Override
-		protected void put(DoubleBuffer buffer, VectorXYZ v) {
-			buffer.put(v.x);
-			buffer.put(v.y);
-			buffer.put(-v.z);
+		protected void put(DoubleBuffer buffer, float value) {
+			buffer.put(value);
 		}
 		
 		@Override
@@ -307,7 +294,7 @@ public class JOGLRendererVBO extends JOGLRenderer {
 	
 	private final class VBODataFloat extends VBOData<FloatBuffer> {
 
-		public VBODataFloat(Material material, Collection<Primitive> primitives) {
+		public VBODataFloat(Material material, PackedPrimitives primitives) {
 			super(material, primitives);
 		}
 		
@@ -317,16 +304,8 @@ public class JOGLRendererVBO extends JOGLRenderer {
 		}
 		
 		@Override
-		protected void put(FloatBuffer buffer, VectorXZ texCoord) {
-			buffer.put((float)texCoord.x);
-			buffer.put((float)texCoord.z);
-		}
-		
-		@Override
-		protected void put(FloatBuffer buffer, VectorXYZ v) {
-			buffer.put((float)v.x);
-			buffer.put((float)v.y);
-			buffer.put((float)-v.z);
+		protected void put(FloatBuffer buffer, float value) {
+			buffer.put(value);
 		}
 		
 		@Override
@@ -374,18 +353,21 @@ public class JOGLRendererVBO extends JOGLRenderer {
 		
 		super(gl, textureManager);
 		
-		for (Material material : primitiveBuffer.getMaterials()) {
+		PackedPrimitiveBuffer packedBuffer =
+				PackedPrimitiveBuffer.pack(primitiveBuffer);
+		
+		for (Material material : packedBuffer.getMaterials()) {
 			
 			if (material.getTransparency() == Transparency.TRUE) {
 				
-				for (Primitive primitive : primitiveBuffer.getPrimitives(material)) {
+				for (Primitive primitive : packedBuffer.getPrimitives(material)) {
 					transparentPrimitives.add(
 							new PrimitiveWithMaterial(primitive, material));
 				}
 				
 			} else {
 				
-				Collection<Primitive> primitives = primitiveBuffer.getPrimitives(material);
+				PackedPrimitives primitives = packedBuffer.getPackedPrimitives(material);
 				vbos.add(DOUBLE_PRECISION_RENDERING
 						? new VBODataDouble(material, primitives)
 						: new VBODataFloat(material, primitives));
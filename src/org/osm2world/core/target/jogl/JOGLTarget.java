@@ -96,7 +96,7 @@ public final class JOGLTarget extends PrimitiveTarget<RenderableToJOGL> {
 		
 		this.nonAreaPrimitives = new ArrayList<NonAreaPrimitive>();
 		
-		this.primitiveBuffer = new PrimitiveBuffer();
+		this.primitiveBuffer = new PackedPrimitiveBuffer();
 		
 		if (renderer != null) {
 			renderer.freeResources();
@@ -209,6 +209,8 @@ public final class JOGLTarget extends PrimitiveTarget<RenderableToJOGL> {
 		
 		if (isFinished()) return;
 		
+		primitiveBuffer.finish();
+		
 		if ("DisplayList".equals(config.getString("joglImplementation"))) {
 			renderer = new JOGLRendererDisplayList(
 					gl, textureManager, primitiveBuffer);
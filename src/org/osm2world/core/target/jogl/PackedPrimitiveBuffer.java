@@ -0,0 +1,292 @@
+package org.osm2world.core.target.jogl;
+
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.common.Primitive;
+import org.osm2world.core.target.common.Primitive.Type;
+import org.osm2world.core.target.common.material.Material;
+
+/**
+ * {@link PrimitiveBuffer} that stores the vertices of all primitives
+ * with the same material in a single growable float array,
+ * instead of keeping the vector objects of each primitive.
+ *
+ * The values of each vertex are interleaved in the layout used by
+ * {@link JOGLRendererVBO}: texture coordinates for each texture layer,
+ * then the normal, then the position. Coordinates are not converted,
+ * i.e. z is not negated.
+ */
+public class PackedPrimitiveBuffer extends PrimitiveBuffer {
+	
+	/**
+	 * the primitives using one material
+	 */
+	public static final class PackedPrimitives {
+		
+		private static final Type[] TYPES = Type.values();
+		
+		private final int numTextureLayers;
+		private final int valuesPerVertex;
+		
+		/** interleaved vertex values, see {@link PackedPrimitiveBuffer} */
+		private final TFloatArrayList values = new TFloatArrayList();
+		
+		/** type ordinal, first vertex and vertex count of each primitive */
+		private final TIntArrayList ranges = new TIntArrayList();
+		
+		private PackedPrimitives(int numTextureLayers) {
+			this.numTextureLayers = numTextureLayers;
+			this.valuesPerVertex = 6 + 2 * numTextureLayers;
+		}
+		
+		public int getNumTextureLayers() {
+			return numTextureLayers;
+		}
+		
+		/**
+		 * returns the number of values for each vertex,
+		 * same as {@link JOGLRendererVBO#getValuesPerVertex(Material)}
+		 */
+		public int getValuesPerVertex() {
+			return valuesPerVertex;
+		}
+		
+		/**
+		 * returns the total number of vertices of all primitives
+		 */
+		public int getVertexCount() {
+			return values.size() / valuesPerVertex;
+		}
+		
+		public int getPrimitiveCount() {
+			return ranges.size() / 3;
+		}
+		
+		public Type getType(int primitive) {
+			return TYPES[ranges.getQuick(3 * primitive)];
+		}
+		
+		/**
+		 * returns the index of a primitive's first vertex
+		 */
+		public int getFirstVertex(int primitive) {
+			return ranges.getQuick(3 * primitive + 1);
+		}
+		
+		public int getVertexCount(int primitive) {
+			return ranges.getQuick(3 * primitive + 2);
+		}
+		
+		/**
+		 * returns a value of a vertex
+		 *
+		 * @param offset  position of the value within the vertex layout
+		 */
+		public float getValue(int vertex, int offset) {
+			return values.getQuick(vertex * valuesPerVertex + offset);
+		}
+		
+		/**
+		 * returns the offset of a vertex's texture coordinates
+		 * for a texture layer
+		 */
+		public int getTexCoordOffset(int layer) {
+			return 2 * layer;
+		}
+		
+		public int getNormalOffset() {
+			return 2 * numTextureLayers;
+		}
+		
+		public int getPositionOffset() {
+			return 2 * numTextureLayers + 3;
+		}
+		
+		private void add(Type type, List<VectorXYZ> vertices,
+				List<VectorXYZ> normals, List<List<VectorXZ>> texCoordLists) {
+			
+			ranges.add(type.ordinal());
+			ranges.add(getVertexCount());
+			ranges.add(vertices.size());
+			
+			values.ensureCapacity(values.size()
+					+ vertices.size() * valuesPerVertex);
+			
+			for (int i = 0; i < vertices.size(); i++) {
+				
+				for (int t = 0; t < numTextureLayers; t++) {
+					if (texCoordLists != null && t < texCoordLists.size()) {
+						VectorXZ texCoord = texCoordLists.get(t).get(i);
+						values.add((float)texCoord.x);
+						values.add((float)texCoord.z);
+					} else {
+						values.add(0);
+						values.add(0);
+					}
+				}
+				
+				VectorXYZ normal = normals.get(i);
+				
+				if (normal != null) {
+					values.add((float)normal.x);
+					values.add((float)normal.y);
+					values.add((float)normal.z);
+				} else {
+					values.add(0);
+					values.add(0);
+					values.add(0);
+				}
+				
+				VectorXYZ v = vertices.get(i);
+				
+				values.add((float)v.x);
+				values.add((float)v.y);
+				values.add((float)v.z);
+				
+			}
+			
+		}
+		
+		private Primitive getPrimitive(int primitive) {
+			
+			int first = getFirstVertex(primitive);
+			int count = getVertexCount(primitive);
+			
+			List<VectorXYZ> vertices = new ArrayList<VectorXYZ>(count);
+			List<VectorXYZ> normals = new ArrayList<VectorXYZ>(count);
+			List<List<VectorXZ>> texCoordLists = null;
+			
+			if (numTextureLayers > 0) {
+				texCoordLists = new ArrayList<List<VectorXZ>>(numTextureLayers);
+				for (int t = 0; t < numTextureLayers; t++) {
+					texCoordLists.add(new ArrayList<VectorXZ>(count));
+				}
+			}
+			
+			for (int v = first; v < first + count; v++) {
+				
+				for (int t = 0; t < numTextureLayers; t++) {
+					int offset = getTexCoordOffset(t);
+					texCoordLists.get(t).add(new VectorXZ(
+							getValue(v, offset), getValue(v, offset + 1)));
+				}
+				
+				int offset = getNormalOffset();
+				normals.add(new VectorXYZ(getValue(v, offset),
+						getValue(v, offset + 1), getValue(v, offset + 2)));
+				
+				offset = getPositionOffset();
+				vertices.add(new VectorXYZ(getValue(v, offset),
+						getValue(v, offset + 1), getValue(v, offset + 2)));
+				
+			}
+			
+			return new Primitive(getType(primitive),
+					vertices, normals, texCoordLists);
+			
+		}
+		
+	}
+	
+	private final Map<Material, PackedPrimitives> packedMap =
+			new HashMap<Material, PackedPrimitives>();
+	
+	@Override
+	protected void drawPrimitive(Type type, Material material,
+			List<VectorXYZ> vertices, List<VectorXYZ> normals,
+			List<List<VectorXZ>> texCoordLists) {
+		
+		PackedPrimitives packed = packedMap.get(material);
+		
+		if (packed == null) {
+			packed = new PackedPrimitives(material.getNumTextureLayers());
+			packedMap.put(material, packed);
+		}
+		
+		packed.add(type, vertices, normals, texCoordLists);
+		
+	}
+	
+	/**
+	 * releases unused capacity of the arrays.
+	 * Primitives can still be added afterwards.
+	 */
+	@Override
+	public void finish() {
+		for (PackedPrimitives packed : packedMap.values()) {
+			packed.values.trimToSize();
+			packed.ranges.trimToSize();
+		}
+	}
+	
+	@Override
+	public Set<Material> getMaterials() {
+		return packedMap.keySet();
+	}
+	
+	/**
+	 * returns the packed primitives that use a given material
+	 */
+	public PackedPrimitives getPackedPrimitives(Material material) {
+		return packedMap.get(material);
+	}
+	
+	/**
+	 * returns all primitives that use a given material.
+	 * The primitives are re-created from the packed values
+	 * with each call, so {@link #getPackedPrimitives(Material)}
+	 * should be preferred where possible.
+	 */
+	@Override
+	public Collection<Primitive> getPrimitives(Material material) {
+		
+		PackedPrimitives packed = packedMap.get(material);
+		
+		if (packed == null) {
+			return new ArrayList<Primitive>();
+		}
+		
+		List<Primitive> result =
+				new ArrayList<Primitive>(packed.getPrimitiveCount());
+		
+		for (int p = 0; p < packed.getPrimitiveCount(); p++) {
+			result.add(packed.getPrimitive(p));
+		}
+		
+		return result;
+		
+	}
+	
+	/**
+	 * returns the content of a {@link PrimitiveBuffer} as a packed buffer
+	 */
+	public static PackedPrimitiveBuffer pack(PrimitiveBuffer primitiveBuffer) {
+		
+		if (primitiveBuffer instanceof PackedPrimitiveBuffer) {
+			return (PackedPrimitiveBuffer) primitiveBuffer;
+		}
+		
+		PackedPrimitiveBuffer result = new PackedPrimitiveBuffer();
+		
+		for (Material material : primitiveBuffer.getMaterials()) {
+			for (Primitive p : primitiveBuffer.getPrimitives(material)) {
+				result.drawPrimitive(p.type, material,
+						p.vertices, p.normals, p.texCoordLists);
+			}
+		}
+		
+		return result;
+		
+	}
+
+}
@@ -1,6 +1,7 @@
 package org.osm2world.core.target.jogl;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -34,20 +35,33 @@ public class PrimitiveBuffer extends
 		renderable.renderTo(this);
 	}
 	
-	private Multimap<Material, Primitive> primitiveMap = HashMultimap.create();
+	/**
+	 * created when the first primitive is added,
+	 * so subclasses with their own storage don't allocate it
+	 */
+	private Multimap<Material, Primitive> primitiveMap = null;
 	
 	@Override
 	protected void drawPrimitive(Type type, Material material,
 			List<VectorXYZ> vertices, List<VectorXYZ> normals,
 			List<List<VectorXZ>> texCoordLists) {
+		
+		if (primitiveMap == null) {
+			primitiveMap = HashMultimap.create();
+		}
+		
 		primitiveMap.put(material,
 				new Primitive(type, vertices, normals, texCoordLists));
+		
 	}
 	
 	/**
 	 * returns all materials used in the buffer
 	 */
 	public Set<Material> getMaterials() {
+		if (primitiveMap == null) {
+			return Collections.emptySet();
+		}
 		return primitiveMap.keySet();
 	}
 	
@@ -55,6 +69,9 @@ public class PrimitiveBuffer extends
 	 * returns all primitives that use a given material
 	 */
 	public Collection<Primitive> getPrimitives(Material material) {
+		if (primitiveMap == null) {
+			return Collections.emptySet();
+		}
 		return primitiveMap.get(material);
 	}
 	
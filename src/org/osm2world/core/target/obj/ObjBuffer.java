@@ -0,0 +1,227 @@
+package org.osm2world.core.target.obj;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * buffered output of OBJ file content to a channel.
+ * Numbers are formatted directly into a reusable byte array,
+ * with coordinates written as fixed-point values
+ * with a configurable number of decimal places.
+ *
+ * Like a {@link java.io.PrintStream}, write methods do not throw
+ * {@link IOException}s. The first exception is stored instead,
+ * further output is discarded and {@link #close()} throws it.
+ */
+final class ObjBuffer {
+	
+	/** number of decimal places used if nothing else has been configured */
+	static final int DEFAULT_PRECISION = 6;
+	
+	static final int MAX_PRECISION = 9;
+	
+	private static final int BUFFER_SIZE = 1 << 20;
+	
+	/** maximum number of bytes written by appending a single number */
+	private static final int MAX_NUMBER_LENGTH = 32;
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final WritableByteChannel channel;
+	
+	private final int precision;
+	private final long scale;
+	
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0;
+	
+	private final byte[] digits = new byte[20];
+	
+	private IOException exception = null;
+	
+	/**
+	 * @param precision  number of decimal places of coordinates,
+	 *                   at most {@value #MAX_PRECISION}
+	 */
+	ObjBuffer(WritableByteChannel channel, int precision) {
+		
+		if (precision < 0 || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException("invalid precision " + precision);
+		}
+		
+		this.channel = channel;
+		this.precision = precision;
+		
+		long scale = 1;
+		for (int i = 0; i < precision; i++) {
+			scale *= 10;
+		}
+		this.scale = scale;
+		
+	}
+	
+	/**
+	 * converts a coordinate to the fixed-point representation
+	 * expected by {@link #appendQuantized(long)}.
+	 * Coordinates are written identically iff their quantized values are equal.
+	 */
+	long quantize(double value) {
+		return Math.round(value * scale);
+	}
+	
+	ObjBuffer append(String string) {
+		
+		byte[] bytes = string.getBytes(UTF_8);
+		
+		if (position + bytes.length > buffer.length) {
+			flush();
+		}
+		
+		if (bytes.length > buffer.length) {
+			write(ByteBuffer.wrap(bytes));
+		} else {
+			System.arraycopy(bytes, 0, buffer, position, bytes.length);
+			position += bytes.length;
+		}
+		
+		return this;
+		
+	}
+	
+	/**
+	 * appends a character from the ASCII range
+	 */
+	ObjBuffer append(char c) {
+		
+		if (position == buffer.length) {
+			flush();
+		}
+		
+		buffer[position++] = (byte)c;
+		
+		return this;
+		
+	}
+	
+	ObjBuffer append(long value) {
+		
+		if (position + MAX_NUMBER_LENGTH > buffer.length) {
+			flush();
+		}
+		
+		if (value < 0) {
+			buffer[position++] = '-';
+			value = -value;
+		}
+		
+		appendDigits(value, 1);
+		
+		return this;
+		
+	}
+	
+	/**
+	 * appends a fixed-point value returned by {@link #quantize(double)}.
+	 * Trailing zeros of the decimal places are omitted.
+	 */
+	ObjBuffer appendQuantized(long value) {
+		
+		if (position + MAX_NUMBER_LENGTH > buffer.length) {
+			flush();
+		}
+		
+		if (value < 0) {
+			buffer[position++] = '-';
+			value = -value;
+		}
+		
+		appendDigits(value / scale, 1);
+		
+		long fraction = value % scale;
+		
+		if (fraction != 0) {
+			
+			int decimalPlaces = precision;
+			while (fraction % 10 == 0) {
+				fraction /= 10;
+				decimalPlaces --;
+			}
+			
+			buffer[position++] = '.';
+			appendDigits(fraction, decimalPlaces);
+			
+		}
+		
+		return this;
+		
+	}
+	
+	/**
+	 * appends the digits of a non-negative number,
+	 * padded with leading zeros to a minimum length
+	 */
+	private void appendDigits(long value, int minLength) {
+		
+		int length = 0;
+		
+		do {
+			digits[length++] = (byte)('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		
+		while (length < minLength) {
+			digits[length++] = '0';
+		}
+		
+		while (length > 0) {
+			buffer[position++] = digits[--length];
+		}
+		
+	}
+	
+	ObjBuffer newLine() {
+		return append('\n');
+	}
+	
+	/**
+	 * writes the buffered content to the channel
+	 */
+	void flush() {
+		write(ByteBuffer.wrap(buffer, 0, position));
+		position = 0;
+	}
+	
+	private void write(ByteBuffer byteBuffer) {
+		
+		if (exception != null) return;
+		
+		try {
+			while (byteBuffer.hasRemaining()) {
+				channel.write(byteBuffer);
+			}
+		} catch (IOException e) {
+			exception = e;
+		}
+		
+	}
+	
+	/**
+	 * flushes the buffer and closes the channel
+	 *
+	 * @throws IOException  if this or any previous write has failed
+	 */
+	void close() throws IOException {
+		
+		flush();
+		
+		channel.close();
+		
+		if (exception != null) {
+			throw exception;
+		}
+		
+	}
+
+}
@@ -0,0 +1,96 @@
+package org.osm2world.core.target.obj;
+
+import static java.awt.Color.WHITE;
+import static java.lang.Math.max;
+import static org.osm2world.core.target.common.material.Material.multiplyColor;
+
+import java.awt.Color;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.osm2world.core.target.common.TextureData;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.Materials;
+
+/**
+ * writes the materials used by one or more {@link ObjTarget}s
+ * to a shared .mtl file. Each material is only written once.
+ * Can be used by several targets at the same time.
+ */
+final class ObjMaterialLibrary {
+	
+	private final PrintStream mtlStream;
+	
+	private final Map<Material, String> materialMap = new HashMap<Material, String>();
+	
+	private int anonymousMaterialCounter = 0;
+	
+	ObjMaterialLibrary(PrintStream mtlStream) {
+		this.mtlStream = mtlStream;
+	}
+	
+	/**
+	 * returns the name of a material, writing it to the .mtl file
+	 * when it is requested for the first time.
+	 * The name needs to be followed by "_" and the texture layer.
+	 */
+	synchronized String getName(Material material) {
+		
+		String name = materialMap.get(material);
+		
+		if (name == null) {
+			name = Materials.getUniqueName(material);
+			if (name == null) {
+				name = "MAT_" + anonymousMaterialCounter;
+				anonymousMaterialCounter += 1;
+			}
+			materialMap.put(material, name);
+			writeMaterial(material, name);
+		}
+		
+		return name;
+		
+	}
+	
+	private void writeMaterial(Material material, String name) {
+		
+		for (int i = 0; i < max(1, material.getNumTextureLayers()); i++) {
+			
+			TextureData textureData = null;
+			if (material.getNumTextureLayers() > 0) {
+				textureData = material.getTextureDataList().get(i);
+			}
+			
+			mtlStream.println("newmtl " + name + "_" + i);
+			
+			if (textureData == null || textureData.colorable) {
+				writeColorLine("Ka", material.ambientColor());
+				writeColorLine("Kd", material.diffuseColor());
+				//Ks
+				//Ns
+			} else {
+				writeColorLine("Ka", multiplyColor(WHITE, material.getAmbientFactor()));
+				writeColorLine("Kd", multiplyColor(WHITE, 1 - material.getAmbientFactor()));
+				//Ks
+				//Ns
+			}
+			
+			if (textureData != null) {
+				mtlStream.println("map_Ka " + textureData.file);
+				mtlStream.println("map_Kd " + textureData.file);
+			}
+			mtlStream.println();
+		}
+	}
+	
+	private void writeColorLine(String lineStart, Color color) {
+		
+		mtlStream.println(lineStart
+				+ " " + color.getRed() / 255f
+				+ " " + color.getGreen() / 255f
+				+ " " + color.getBlue() / 255f);
+		
+	}
+
+}
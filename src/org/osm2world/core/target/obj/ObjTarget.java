@@ -1,17 +1,13 @@
 package org.osm2world.core.target.obj;
 
-import static java.awt.Color.WHITE;
 import static java.lang.Math.max;
 import static java.util.Collections.nCopies;
-import static org.osm2world.core.target.common.material.Material.multiplyColor;
 
-import java.awt.Color;
 import java.io.PrintStream;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.osm2world.core.map_data.data.MapArea;
 import org.osm2world.core.map_data.data.MapElement;
@@ -23,38 +19,54 @@ import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.osm.data.OSMElement;
 import org.osm2world.core.target.common.FaceTarget;
-import org.osm2world.core.target.common.TextureData;
 import org.osm2world.core.target.common.material.Material;
-import org.osm2world.core.target.common.material.Materials;
 import org.osm2world.core.world.data.WorldObject;
 
 public class ObjTarget extends FaceTarget<RenderableToObj> {
 
-	private final PrintStream objStream;
-	private final PrintStream mtlStream;
+	private final ObjBuffer obj;
+	private final ObjMaterialLibrary materialLibrary;
 	
-	private final Map<VectorXYZ, Integer> vertexIndexMap = new HashMap<VectorXYZ, Integer>();
-	private final Map<VectorXYZ, Integer> normalsIndexMap = new HashMap<VectorXYZ, Integer>();
-	private final Map<VectorXZ, Integer> texCoordsIndexMap = new HashMap<VectorXZ, Integer>();
-	private final Map<Material, String> materialMap = new HashMap<Material, String>();
+	private final QuantizedIndexMap vertexIndexMap = new QuantizedIndexMap();
+	private final QuantizedIndexMap normalsIndexMap = new QuantizedIndexMap();
+	private final QuantizedIndexMap texCoordsIndexMap = new QuantizedIndexMap();
 	
 	private Class<? extends WorldObject> currentWOGroup = null;
 	private int anonymousWOCounter = 0;
 	
 	private Material currentMaterial = null;
 	private int currentMaterialLayer = 0;
-	private static int anonymousMaterialCounter = 0;
+	
+	/** number of faces written so far */
+	private int faceCount = 0;
 	
 	// this is approximatly one millimeter
 	private static final double SMALL_OFFSET = 1e-3;
 	
+	/**
+	 * creates a target writing to streams provided by the caller.
+	 * Buffered OBJ content is written to the objStream
+	 * when {@link #finish()} is called, the streams are not closed.
+	 */
 	public ObjTarget(PrintStream objStream, PrintStream mtlStream) {
 		
-		this.objStream = objStream;
-		this.mtlStream = mtlStream;
+		this(new ObjBuffer(Channels.newChannel(objStream),
+				ObjBuffer.DEFAULT_PRECISION),
+				new ObjMaterialLibrary(mtlStream));
+		
+	}
+	
+	ObjTarget(ObjBuffer obj, ObjMaterialLibrary materialLibrary) {
+		
+		this.obj = obj;
+		this.materialLibrary = materialLibrary;
 				
 	}
 	
+	public int getFaceCount() {
+		return faceCount;
+	}
+	
 	@Override
 	public Class<RenderableToObj> getRenderableType() {
 		return RenderableToObj.class;
@@ -70,14 +82,23 @@ public class ObjTarget extends FaceTarget<RenderableToObj> {
 		return config != null && config.getBoolean("reconstructFaces", false);
 	}
 
+	@Override
+	public void finish() {
+		
+		super.finish();
+		
+		obj.flush();
+		
+	}
+	
 	@Override
 	public void beginObject(WorldObject object) {
 		
 		if (object == null) {
 			
 			currentWOGroup = null;
-			objStream.println("g null");
-			objStream.println("o null");
+			obj.append("g null").newLine();
+			obj.append("o null").newLine();
 			
 		} else {
 			
@@ -85,7 +106,7 @@ public class ObjTarget extends FaceTarget<RenderableToObj> {
 			
 			if (!object.getClass().equals(currentWOGroup)) {
 				currentWOGroup = object.getClass();
-				objStream.println("g " + currentWOGroup.getSimpleName());
+				obj.append("g ").append(currentWOGroup.getSimpleName()).newLine();
 			}
 			
 			/* start an object with the object's class
@@ -103,14 +124,18 @@ public class ObjTarget extends FaceTarget<RenderableToObj> {
 				osmElement = null;
 			}
 			
+			obj.append("o ").append(object.getClass().getSimpleName());
+			
 			if (osmElement != null && osmElement.tags.containsKey("name")) {
-				objStream.println("o " + object.getClass().getSimpleName() + " " + osmElement.tags.getValue("name"));
+				obj.append(' ').append(osmElement.tags.getValue("name"));
 			} else if (osmElement != null && osmElement.tags.containsKey("ref")) {
-				objStream.println("o " + object.getClass().getSimpleName() + " " + osmElement.tags.getValue("ref"));
+				obj.append(' ').append(osmElement.tags.getValue("ref"));
 			} else {
-				objStream.println("o " + object.getClass().getSimpleName() + anonymousWOCounter ++);
+				obj.append(anonymousWOCounter ++);
 			}
 			
+			obj.newLine();
+			
 		}
 		
 	}
@@ -172,18 +197,9 @@ public class ObjTarget extends FaceTarget<RenderableToObj> {
 	private void useMaterial(Material material, int layer) {
 		if (!material.equals(currentMaterial) || (layer != currentMaterialLayer)) {
 			
-			String name = materialMap.get(material);
-			if (name == null) {
-				name = Materials.getUniqueName(material);
-				if (name == null) {
-					name = "MAT_" + anonymousMaterialCounter;
-					anonymousMaterialCounter += 1;
-				}
-				materialMap.put(material, name);
-				writeMaterial(material, name);
-			}
+			String name = materialLibrary.getName(material);
 			
-			objStream.println("usemtl " + name + "_" + layer);
+			obj.append("usemtl ").append(name).append('_').append(layer).newLine();
 			
 			currentMaterial = material;
 			currentMaterialLayer = layer;
@@ -208,41 +224,60 @@ public class ObjTarget extends FaceTarget<RenderableToObj> {
 	private int[] normalsToIndices(List<? extends VectorXYZ> normals) {
 		return vectorsToIndices(normalsIndexMap, "vn ", normals);
 	}
-
-	private int[] texCoordsToIndices(List<VectorXZ> texCoords) {
-		return vectorsToIndices(texCoordsIndexMap, "vt ", texCoords);
-	}
 	
-	private <V> int[] vectorsToIndices(Map<V, Integer> indexMap,
-			String objLineStart, List<? extends V> vectors) {
+	private <V extends VectorXYZ> int[] vectorsToIndices(QuantizedIndexMap indexMap,
+			String objLineStart, List<V> vectors) {
 		
 		int[] indices = new int[vectors.size()];
 		
 		for (int i=0; i<vectors.size(); i++) {
+			
 			final V v = vectors.get(i);
-			Integer index = indexMap.get(v);
-			if (index == null) {
-				index = indexMap.size();
-				objStream.println(objLineStart + " " + formatVector(v));
-				indexMap.put(v, index);
+			
+			long x = obj.quantize(v.x);
+			long y = obj.quantize(v.y);
+			long z = obj.quantize(-v.z);
+			
+			int oldSize = indexMap.size();
+			indices[i] = indexMap.getOrAdd(x, y, z);
+			
+			if (indexMap.size() > oldSize) {
+				obj.append(objLineStart);
+				obj.appendQuantized(x).append(' ');
+				obj.appendQuantized(y).append(' ');
+				obj.appendQuantized(z).newLine();
 			}
-			indices[i] = index;
+			
 		}
 		
 		return indices;
 		
 	}
 	
-	private String formatVector(Object v) {
+	private int[] texCoordsToIndices(List<VectorXZ> texCoords) {
 		
-		if (v instanceof VectorXYZ) {
-			VectorXYZ vXYZ = (VectorXYZ)v;
-			return vXYZ.x + " " + vXYZ.y + " " + (-vXYZ.z);
-		} else {
-			VectorXZ vXZ = (VectorXZ)v;
-			return vXZ.x + " " + vXZ.z;
+		int[] indices = new int[texCoords.size()];
+		
+		for (int i=0; i<texCoords.size(); i++) {
+			
+			final VectorXZ v = texCoords.get(i);
+			
+			long x = obj.quantize(v.x);
+			long z = obj.quantize(v.z);
+			
+			int oldSize = texCoordsIndexMap.size();
+			indices[i] = texCoordsIndexMap.getOrAdd(x, z, 0);
+			
+			if (texCoordsIndexMap.size() > oldSize) {
+				obj.append("vt ");
+				obj.appendQuantized(x).append(' ');
+				obj.appendQuantized(z).newLine();
+			}
+			
 		}
 		
+		return indices;
+		
 	}
 
 	private void writeFace(int[] vertexIndices, int[] normalIndices,
@@ -251,64 +286,26 @@ public class ObjTarget extends FaceTarget<RenderableToObj> {
 		assert normalIndices == null
 				|| vertexIndices.length == normalIndices.length;
 
-		objStream.print("f");
+		obj.append('f');
+		
+		faceCount ++;
 
 		for (int i = 0; i < vertexIndices.length; i++) {
 
-			objStream.print(" " + (vertexIndices[i]+1));
+			obj.append(' ').append(vertexIndices[i]+1);
 
 			if (texCoordIndices != null && normalIndices == null) {
-				objStream.print("/" + (texCoordIndices[i]+1));
+				obj.append('/').append(texCoordIndices[i]+1);
 			} else if (texCoordIndices == null && normalIndices != null) {
-				objStream.print("//" + (normalIndices[i]+1));
+				obj.append("//").append(normalIndices[i]+1);
 			} else if (texCoordIndices != null && normalIndices != null) {
-				objStream.print("/" + (texCoordIndices[i]+1)
-						+ "/" + (normalIndices[i]+1));
+				obj.append('/').append(texCoordIndices[i]+1)
+						.append('/').append(normalIndices[i]+1);
 			}
 
 		}
 
-		objStream.println();
-	}
-	
-	private void writeMaterial(Material material, String name) {
-
-		for (int i = 0; i < max(1, material.getNumTextureLayers()); i++) {
-			
-			TextureData textureData = null;
-			if (material.getNumTextureLayers() > 0) {
-				textureData = material.getTextureDataList().get(i);
-			}
-		
-			mtlStream.println("newmtl " + name + "_" + i);
-			
-			if (textureData == null || textureData.colorable) {
-				writeColorLine("Ka", material.ambientColor());
-				writeColorLine("Kd", material.diffuseColor());
-				//Ks
-				//Ns
-			} else {
-				writeColorLine("Ka", multiplyColor(WHITE, material.getAmbientFactor()));
-				writeColorLine("Kd", multiplyColor(WHITE, 1 - material.getAmbientFactor()));
-				//Ks
-				//Ns
-			}
-		
-			if (textureData != null) {
-				mtlStream.println("map_Ka " + textureData.file);
-				mtlStream.println("map_Kd " + textureData.file);
-			}
-			mtlStream.println();
-		}
-	}
-	
-	private void writeColorLine(String lineStart, Color color) {
-		
-		mtlStream.println(lineStart
-				+ " " + color.getRed() / 255f
-				+ " " + color.getGreen() / 255f
-				+ " " + color.getBlue() / 255f);
-		
+		obj.newLine();
 	}
 
 }
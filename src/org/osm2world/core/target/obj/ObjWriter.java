@@ -1,22 +1,37 @@
 package org.osm2world.core.target.obj;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.*;
 import static java.lang.String.format;
+import static java.util.Collections.singletonList;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.configuration.Configuration;
 import org.osm2world.core.GlobalValues;
 import org.osm2world.core.map_data.creation.MapProjection;
 import org.osm2world.core.map_data.data.MapData;
+import org.osm2world.core.map_data.data.MapElement;
+import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.target.TargetUtil;
 import org.osm2world.core.target.common.rendering.Camera;
 import org.osm2world.core.target.common.rendering.Projection;
+import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.world.data.WorldObject;
 
 /**
  * utility class for creating an Wavefront OBJ file
@@ -26,11 +41,29 @@ public final class ObjWriter {
 	/** prevents instantiation */
 	private ObjWriter() { }
 	
+	/** number of shards per worker thread for multi-file output */
+	private static final int SHARDS_PER_THREAD = 4;
+	
+	/** config key for the number of decimal places of coordinates */
+	public static final String PRECISION_KEY = "objPrecision";
+	
 	public static final void writeObjFile(
 			File objFile, MapData mapData,
 			MapProjection mapProjection,
 			Camera camera, Projection projection)
 			throws IOException {
+		writeObjFile(objFile, mapData, mapProjection, camera, projection, null);
+	}
+	
+	/**
+	 * @param config  configuration for the output; null for defaults
+	 */
+	public static final void writeObjFile(
+			File objFile, MapData mapData,
+			MapProjection mapProjection,
+			Camera camera, Projection projection,
+			Configuration config)
+			throws IOException {
 		
 		if (!objFile.exists()) {
 			objFile.createNewFile();
@@ -41,26 +74,28 @@ public final class ObjWriter {
 			mtlFile.createNewFile();
 		}
 		
-		PrintStream objStream = new PrintStream(objFile);
+		ObjBuffer objBuffer = createObjBuffer(objFile, config);
 		PrintStream mtlStream = new PrintStream(mtlFile);
 		
 		/* write comments at the beginning of both files */
 		
-		writeObjHeader(objStream, mapProjection);
+		writeObjHeader(objBuffer, mapProjection);
 		
 		writeMtlHeader(mtlStream);
 				
 		/* write path of mtl file to obj file */
 		
-		objStream.println("mtllib " + mtlFile.getName() + "\n");
+		objBuffer.append("mtllib " + mtlFile.getName() + "\n\n");
 		
 		/* write actual file content */
 		
-		ObjTarget target = new ObjTarget(objStream, mtlStream);
+		ObjTarget target = new ObjTarget(objBuffer, new ObjMaterialLibrary(mtlStream));
+		target.setConfiguration(config);
 		
 		TargetUtil.renderWorldObjects(target, mapData, true);
 		
-		objStream.close();
+		target.finish();
+		objBuffer.close();
 		mtlStream.close();
 		
 	}
@@ -71,6 +106,29 @@ public final class ObjWriter {
 			Camera camera, Projection projection,
 			int primitiveThresholdPerFile)
 			throws IOException {
+		writeObjFiles(objDirectory, mapData, mapProjection, camera, projection,
+				null, primitiveThresholdPerFile);
+	}
+	
+	/**
+	 * writes the map data to multiple .obj files in a directory,
+	 * which share a single materials.mtl file.
+	 *
+	 * The map elements are split into spatially compact shards.
+	 * If the configuration enables parallel processing, several shards
+	 * are rendered and written at the same time. Within a shard,
+	 * a new file is started whenever the current one has reached
+	 * the threshold number of faces.
+	 *
+	 * @param config  configuration for the output; null for defaults
+	 */
+	public static final void writeObjFiles(
+			final File objDirectory, MapData mapData,
+			final MapProjection mapProjection,
+			Camera camera, Projection projection,
+			final Configuration config,
+			final int primitiveThresholdPerFile)
+			throws IOException {
 					
 		if (!objDirectory.exists()) {
 			objDirectory.mkdir();
@@ -88,82 +146,241 @@ public final class ObjWriter {
 		
 		writeMtlHeader(mtlStream);
 		
-		/* create iterator which creates and wraps .obj files as needed */
-				
-		Iterator<ObjTarget> objIterator = new Iterator<ObjTarget>() {
-
-			private int fileCounter = 0;
-			PrintStream objStream = null;
-
-			@Override
-			public boolean hasNext() {
-				return true;
+		final ObjMaterialLibrary materialLibrary = new ObjMaterialLibrary(mtlStream);
+		
+		/* split the map elements into shards */
+		
+		ForkJoinPool pool = (config == null) ? null
+				: ParallelIterationUtil.createPool(config);
+		
+		List<MapElement> elements = new ArrayList<MapElement>();
+		for (MapElement element : mapData.getMapElements()) {
+			elements.add(element);
+		}
+		
+		List<List<MapElement>> shards = partitionSpatially(elements,
+				(pool == null) ? 1 : pool.getParallelism() * SHARDS_PER_THREAD);
+		
+		/* write the shards, numbering the files in the order they are started */
+		
+		final AtomicInteger fileCounter = new AtomicInteger();
+		final List<IOException> exceptions =
+				Collections.synchronizedList(new ArrayList<IOException>());
+		
+		try {
+			
+			ParallelIterationUtil.iterate(pool, shards, new Operation<List<MapElement>>() {
+				@Override public void perform(List<MapElement> shard) {
+					try {
+						writeShard(shard, objDirectory, mtlFile, mapProjection,
+								config, materialLibrary, fileCounter,
+								primitiveThresholdPerFile);
+					} catch (IOException e) {
+						exceptions.add(e);
+					}
+				}
+			});
+			
+		} finally {
+			
+			if (pool != null) {
+				pool.shutdown();
 			}
-
-			@Override
-			public ObjTarget next() {
-
-				try {
+			
+			mtlStream.close();
+			
+		}
+		
+		if (!exceptions.isEmpty()) {
+			throw exceptions.get(0);
+		}
+		
+	}
+	
+	/**
+	 * writes the representations of some map elements
+	 * to one or more .obj files
+	 */
+	private static final void writeShard(List<MapElement> shard,
+			File objDirectory, File mtlFile, MapProjection mapProjection,
+			Configuration config, ObjMaterialLibrary materialLibrary,
+			AtomicInteger fileCounter, int primitiveThresholdPerFile)
+			throws IOException {
+		
+		ObjBuffer objBuffer = null;
+		ObjTarget target = null;
+		
+		try {
+			
+			for (MapElement element : shard) {
+				for (WorldObject r : element.getRepresentations()) {
 					
-					if (objStream != null) {
-						objStream.close();
-						fileCounter ++;
+					if (target == null) {
+						
+						File objFile = new File(objDirectory.getPath() + File.separator
+								+ "part" + format("%04d", fileCounter.getAndIncrement()) + ".obj");
+						
+						objBuffer = createObjBuffer(objFile, config);
+						
+						writeObjHeader(objBuffer, mapProjection);
+						
+						objBuffer.append("mtllib " + mtlFile.getName() + "\n\n");
+						
+						target = new ObjTarget(objBuffer, materialLibrary);
+						target.setConfiguration(config);
+						
 					}
 					
-					File objFile = new File(objDirectory.getPath() + File.separator
-							+ "part" + format("%04d", fileCounter) + ".obj");
-					
-					if (!objFile.exists()) {
-						objFile.createNewFile();
+					try {
+						TargetUtil.renderObject(target, r);
+					} catch (Exception e) {
+						System.err.println("ignored exception:");
+						//TODO proper logging
+						e.printStackTrace();
+						System.err.println("this exception occurred for the following input:\n"
+								+ element);
 					}
 					
-					objStream = new PrintStream(objFile);
+					/* reconstructed faces are only counted once they are drawn */
 					
-					writeObjHeader(objStream, mapProjection);
-	
-					objStream.println("mtllib " + mtlFile.getName() + "\n");
+					target.flushReconstructedFaces();
 					
-					return new ObjTarget(objStream, mtlStream);
+					if (target.getFaceCount() >= primitiveThresholdPerFile) {
+						target.finish();
+						target = null;
+						objBuffer.close();
+						objBuffer = null;
+					}
 					
-				} catch (FileNotFoundException e) {
-					throw new RuntimeException(e);
+				}
+			}
+			
+			if (target != null) {
+				target.finish();
+				target = null;
+				objBuffer.close();
+				objBuffer = null;
+			}
+			
+		} finally {
+			
+			/* close the current file if writing has been aborted */
+			
+			if (objBuffer != null) {
+				try {
+					objBuffer.close();
 				} catch (IOException e) {
-					throw new RuntimeException(e);
+					// the exception that aborted the shard is reported instead
 				}
-				
 			}
-
-			@Override
-			public void remove() {
-				throw new UnsupportedOperationException();
+			
+		}
+		
+	}
+	
+	/**
+	 * splits map elements into parts of similar size that cover compact areas.
+	 * The elements are sorted into columns by the x coordinates
+	 * of their bounding boxes' centers, then each column is split
+	 * into parts by the z coordinates.
+	 */
+	private static final List<List<MapElement>> partitionSpatially(
+			List<MapElement> elements, int parts) {
+		
+		if (parts <= 1) {
+			return singletonList(elements);
+		}
+		
+		final double[] centerX = new double[elements.size()];
+		final double[] centerZ = new double[elements.size()];
+		
+		for (int i = 0; i < elements.size(); i++) {
+			AxisAlignedBoundingBoxXZ bbox = elements.get(i).getAxisAlignedBoundingBoxXZ();
+			centerX[i] = (bbox.minX + bbox.maxX) / 2;
+			centerZ[i] = (bbox.minZ + bbox.maxZ) / 2;
+		}
+		
+		Integer[] order = new Integer[elements.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override public int compare(Integer i1, Integer i2) {
+				return Double.compare(centerX[i1], centerX[i2]);
+			}
+		});
+		
+		int columns = (int)ceil(sqrt(parts));
+		int rows = (parts + columns - 1) / columns;
+		
+		List<List<MapElement>> result = new ArrayList<List<MapElement>>(parts);
+		
+		for (int column = 0; column < columns; column++) {
+			
+			int columnStart = (int)((long)order.length * column / columns);
+			int columnEnd = (int)((long)order.length * (column + 1) / columns);
+			
+			Arrays.sort(order, columnStart, columnEnd, new Comparator<Integer>() {
+				@Override public int compare(Integer i1, Integer i2) {
+					return Double.compare(centerZ[i1], centerZ[i2]);
+				}
+			});
+			
+			for (int row = 0; row < rows; row++) {
+				
+				int start = columnStart + (columnEnd - columnStart) * row / rows;
+				int end = columnStart + (columnEnd - columnStart) * (row + 1) / rows;
+				
+				if (start < end) {
+					List<MapElement> part = new ArrayList<MapElement>(end - start);
+					for (int i = start; i < end; i++) {
+						part.add(elements.get(order[i]));
+					}
+					result.add(part);
+				}
+				
 			}
 			
-		};
+		}
 		
-		/* write file content */
+		return result;
 		
-		TargetUtil.renderWorldObjects(objIterator, mapData, primitiveThresholdPerFile);
+	}
+	
+	/**
+	 * opens a file for writing with the precision from the configuration
+	 */
+	private static final ObjBuffer createObjBuffer(File objFile,
+			Configuration config) throws FileNotFoundException {
 		
-		mtlStream.close();
+		int precision = ObjBuffer.DEFAULT_PRECISION;
+		
+		if (config != null) {
+			precision = config.getInt(PRECISION_KEY, precision);
+		}
+		
+		return new ObjBuffer(new FileOutputStream(objFile).getChannel(),
+				precision);
 		
 	}
-
-	private static final void writeObjHeader(PrintStream objStream,
+	
+	private static final void writeObjHeader(ObjBuffer objBuffer,
 			MapProjection mapProjection) {
 		
-		objStream.println("# This file was created by OSM2World "
+		objBuffer.append("# This file was created by OSM2World "
 				+ GlobalValues.VERSION_STRING + " - "
-				+ GlobalValues.OSM2WORLD_URI + "\n");
-		objStream.println("# Projection information:");
-		objStream.println("# Coordinate origin (0,0,0): "
+				+ GlobalValues.OSM2WORLD_URI + "\n\n");
+		objBuffer.append("# Projection information:\n");
+		objBuffer.append("# Coordinate origin (0,0,0): "
 				+ "lat " + mapProjection.calcLat(VectorXZ.NULL_VECTOR) + ", "
 				+ "lon " + mapProjection.calcLon(VectorXZ.NULL_VECTOR) + ", "
-				+ "ele 0");
-		objStream.println("# North direction: " + new VectorXYZ(
+				+ "ele 0\n");
+		objBuffer.append("# North direction: " + new VectorXYZ(
 						mapProjection.getNorthUnit().x, 0,
-						- mapProjection.getNorthUnit().z));
-		objStream.println("# 1 coordinate unit corresponds to roughly "
-				+ "1 m in reality\n");
+						- mapProjection.getNorthUnit().z) + "\n");
+		objBuffer.append("# 1 coordinate unit corresponds to roughly "
+				+ "1 m in reality\n\n");
 		
 	}
 
@@ -0,0 +1,112 @@
+package org.osm2world.core.target.obj;
+
+import java.util.Arrays;
+
+/**
+ * assigns consecutive indices to distinct triples of quantized coordinates.
+ * Uses open addressing with linear probing on primitive arrays,
+ * so lookups do not create any objects.
+ */
+final class QuantizedIndexMap {
+	
+	private static final int INITIAL_CAPACITY = 1024;
+	
+	/** three coordinates per slot */
+	private long[] keys;
+	
+	/** index for each slot, -1 for empty slots */
+	private int[] values;
+	
+	private int size = 0;
+	
+	QuantizedIndexMap() {
+		keys = new long[3 * INITIAL_CAPACITY];
+		values = new int[INITIAL_CAPACITY];
+		Arrays.fill(values, -1);
+	}
+	
+	/**
+	 * returns the number of distinct keys, which is also
+	 * the index that will be assigned to the next new key
+	 */
+	int size() {
+		return size;
+	}
+	
+	/**
+	 * returns the index of a key.
+	 * If the key has not been added before,
+	 * it receives the index {@link #size()} (which then increases by one).
+	 */
+	int getOrAdd(long x, long y, long z) {
+		
+		int mask = values.length - 1;
+		int slot = hash(x, y, z) & mask;
+		
+		while (values[slot] >= 0) {
+			if (keys[3 * slot] == x && keys[3 * slot + 1] == y
+					&& keys[3 * slot + 2] == z) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		keys[3 * slot] = x;
+		keys[3 * slot + 1] = y;
+		keys[3 * slot + 2] = z;
+		values[slot] = size;
+		
+		size ++;
+		
+		if (2 * size > values.length) {
+			grow();
+		}
+		
+		return size - 1;
+		
+	}
+	
+	private void grow() {
+		
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		
+		keys = new long[2 * oldKeys.length];
+		values = new int[2 * oldValues.length];
+		Arrays.fill(values, -1);
+		
+		int mask = values.length - 1;
+		
+		for (int oldSlot = 0; oldSlot < oldValues.length; oldSlot++) {
+			
+			if (oldValues[oldSlot] < 0) continue;
+			
+			long x = oldKeys[3 * oldSlot];
+			long y = oldKeys[3 * oldSlot + 1];
+			long z = oldKeys[3 * oldSlot + 2];
+			
+			int slot = hash(x, y, z) & mask;
+			
+			while (values[slot] >= 0) {
+				slot = (slot + 1) & mask;
+			}
+			
+			keys[3 * slot] = x;
+			keys[3 * slot + 1] = y;
+			keys[3 * slot + 2] = z;
+			values[slot] = oldValues[oldSlot];
+			
+		}
+		
+	}
+	
+	private static int hash(long x, long y, long z) {
+		long h = x * 0x9E3779B97F4A7C15L
+				+ y * 0xC2B2AE3D27D4EB4FL
+				+ z * 0x165667B19E3779F9L;
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+}
@@ -0,0 +1,193 @@
+package org.osm2world.core.target.sdf;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * writes an indented XML document to a file while it is being created.
+ * Wraps an {@link XMLStreamWriter} and keeps track of the open elements,
+ * so only the current path through the document is kept in memory.
+ *
+ * Write methods do not throw exceptions. The first exception is stored
+ * instead, further output is discarded and {@link #close()} throws it.
+ *
+ * To use an {@link SdfTarget} without {@link SdfWriter}, start the
+ * sdf and world elements with this writer before creating the target.
+ */
+public final class SdfStreamWriter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static final String INDENT = "  ";
+
+	private final OutputStream stream;
+	private final XMLStreamWriter writer;
+
+	/** number of open elements */
+	private int depth = 0;
+
+	/** whether the innermost open element has no content yet */
+	private boolean emptyElement = false;
+
+	private XMLStreamException exception = null;
+
+	public SdfStreamWriter(File file) throws IOException {
+
+		stream = new BufferedOutputStream(
+				new FileOutputStream(file), BUFFER_SIZE);
+
+		try {
+			writer = XMLOutputFactory.newInstance()
+					.createXMLStreamWriter(stream, "UTF-8");
+			writer.writeStartDocument("UTF-8", "1.0");
+		} catch (XMLStreamException e) {
+			stream.close();
+			throw new IOException(e);
+		}
+
+	}
+
+	/**
+	 * returns the number of elements that have been started, but not ended
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	public void comment(String text) {
+
+		if (exception != null) return;
+
+		try {
+			newLine(depth);
+			writer.writeComment(text);
+			emptyElement = false;
+		} catch (XMLStreamException e) {
+			exception = e;
+		}
+
+	}
+
+	/**
+	 * starts an element. Attributes can be added until the next call
+	 * to any other method of this writer.
+	 */
+	public void startElement(String name) {
+
+		if (exception != null) return;
+
+		try {
+			newLine(depth);
+			writer.writeStartElement(name);
+			depth ++;
+			emptyElement = true;
+		} catch (XMLStreamException e) {
+			exception = e;
+		}
+
+	}
+
+	public void attribute(String name, String value) {
+
+		if (exception != null) return;
+
+		try {
+			writer.writeAttribute(name, value);
+		} catch (XMLStreamException e) {
+			exception = e;
+		}
+
+	}
+
+	/**
+	 * writes a complete element that contains only text
+	 */
+	public void textElement(String name, String text) {
+
+		if (exception != null) return;
+
+		try {
+			newLine(depth);
+			writer.writeStartElement(name);
+			writer.writeCharacters(text);
+			writer.writeEndElement();
+			emptyElement = false;
+		} catch (XMLStreamException e) {
+			exception = e;
+		}
+
+	}
+
+	public void endElement() {
+
+		if (exception != null) return;
+
+		try {
+			depth --;
+			if (!emptyElement) {
+				newLine(depth);
+			}
+			writer.writeEndElement();
+			emptyElement = false;
+		} catch (XMLStreamException e) {
+			exception = e;
+		}
+
+	}
+
+	/**
+	 * ends open elements until only the given number of elements is open
+	 */
+	public void endElements(int targetDepth) {
+		while (depth > targetDepth) {
+			endElement();
+		}
+	}
+
+	private void newLine(int indentation) throws XMLStreamException {
+
+		writer.writeCharacters("\n");
+
+		for (int i = 0; i < indentation; i++) {
+			writer.writeCharacters(INDENT);
+		}
+
+	}
+
+	/**
+	 * ends all open elements and closes the file
+	 *
+	 * @throws IOException  if this or any previous write has failed
+	 */
+	public void close() throws IOException {
+
+		endElements(0);
+
+		try {
+
+			if (exception == null) {
+				writer.writeCharacters("\n");
+				writer.writeEndDocument();
+				writer.close();
+			}
+
+		} catch (XMLStreamException e) {
+			exception = e;
+		} finally {
+			stream.close();
+		}
+
+		if (exception != null) {
+			throw new IOException(exception);
+		}
+
+	}
+
+}
@@ -40,17 +40,11 @@ import static java.lang.Math.*;
 import org.osm2world.core.math.PolygonWithHolesXZ;
 import org.osm2world.core.math.SimplePolygonXZ;
 
-import org.w3c.dom.Attr;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-
 public class SdfTarget extends FaceTarget<RenderableToSdf> {
 
-	private final Document sdfDoc;
-	private final Node world;
-    private Element elem;
-    private Element link;
+	private final SdfStreamWriter writer;
+	private final int worldDepth;
+    private String linkName;
     private int visualIdx;
     private int streetLampIdx;
 	private final PrintStream mtlStream;
@@ -69,10 +63,14 @@ public class SdfTarget extends FaceTarget<RenderableToSdf> {
 	// this is approximatly one millimeter
 	private static final double SMALL_OFFSET = 1e-3;
 
-	public SdfTarget(Document sdfDoc, PrintStream mtlStream) {
+	/**
+	 * @param writer  writer for the SDF file; the world element
+	 *                needs to be the innermost open element
+	 */
+	public SdfTarget(SdfStreamWriter writer, PrintStream mtlStream) {
 
-		this.sdfDoc = sdfDoc;
-		this.world = sdfDoc.getElementsByTagName("world").item(0);
+		this.writer = writer;
+		this.worldDepth = writer.getDepth();
 		this.mtlStream = mtlStream;
         this.streetLampIdx = 0;
 
@@ -96,6 +94,10 @@ public class SdfTarget extends FaceTarget<RenderableToSdf> {
 	@Override
 	public void beginObject(WorldObject object) {
 
+		/* draw reconstructed faces while the previous object's link is open */
+
+		super.beginObject(object);
+
 		if (object != null) {
 
 			/* start an object with the object's class
@@ -122,111 +124,74 @@ public class SdfTarget extends FaceTarget<RenderableToSdf> {
 				name += " " + anonymousWOCounter++;
 			}
 
-            link = null;
+            /* elements of the previous object are not needed anymore */
+
+            writer.endElements(worldDepth);
+
+            vertexIndexMap.clear();
+            normalsIndexMap.clear();
+            texCoordsIndexMap.clear();
+
+            linkName = null;
             if (object instanceof Road) {
                 Road road = (Road) object;
 
-                elem = sdfDoc.createElement("road");
-		        world.appendChild(elem);
+                writer.startElement("road");
+                writer.attribute("name", name);
 
-                Element width = sdfDoc.createElement("width");
-                width.appendChild(sdfDoc.createTextNode(Double.toString(road.getWidth())));
-		        elem.appendChild(width);
+                writer.textElement("width", Double.toString(road.getWidth()));
 
 				for (VectorXZ v : road.getCenterlineXZ()) {
-                    Element point = sdfDoc.createElement("point");
-                    point.appendChild(sdfDoc.createTextNode(formatVector3D(v)));
-		            elem.appendChild(point);
+                    writer.textElement("point", formatVector3D(v));
                 }
+
+                writer.endElement();
             } else if (object instanceof Tree) {
                 Tree tree = (Tree) object;
 
-                elem = sdfDoc.createElement("model");
-		        world.appendChild(elem);
-
-                Element staticElem = sdfDoc.createElement("static");
-                staticElem.appendChild(sdfDoc.createTextNode("true"));
-		        elem.appendChild(staticElem);
-
-                Element pose = sdfDoc.createElement("pose");
-                pose.appendChild(sdfDoc.createTextNode(formatVector3D(tree.getPos()) + " 0 0 0"));
-		        elem.appendChild(pose);
-
-                Element link = sdfDoc.createElement("link");
-		        elem.appendChild(link);
-
-		        Attr attr = sdfDoc.createAttribute("name");
-		        attr.setValue(name);
-		        link.setAttributeNode(attr);
-
-                Element visual = sdfDoc.createElement("visual");
-	            link.appendChild(visual);
+                writer.startElement("model");
+                writer.attribute("name", name);
 
-	            attr = sdfDoc.createAttribute("name");
-		        attr.setValue(name);
-	            visual.setAttributeNode(attr);
+                writer.textElement("static", "true");
+                writer.textElement("pose", formatVector3D(tree.getPos()) + " 0 0 0");
 
-                Element geometry = sdfDoc.createElement("geometry");
-	            visual.appendChild(geometry);
+                writer.startElement("link");
+                writer.attribute("name", name);
 
-                Element mesh = sdfDoc.createElement("mesh");
-	            geometry.appendChild(mesh);
+                writer.startElement("visual");
+                writer.attribute("name", name);
 
-                Element uri = sdfDoc.createElement("uri");
-                uri.appendChild(sdfDoc.createTextNode("file://media/models/tree.dae"));
-	            mesh.appendChild(uri);
+                writer.startElement("geometry");
+                writer.startElement("mesh");
+                writer.textElement("uri", "file://media/models/tree.dae");
 
+                writer.endElements(worldDepth);
             } else if (object instanceof StreetLamp) {
                 StreetLamp lamp = (StreetLamp) object;
 
-                Element include = sdfDoc.createElement("include");
-		        world.appendChild(include);
+                writer.startElement("include");
 
-                Element uri = sdfDoc.createElement("uri");
-                uri.appendChild(sdfDoc.createTextNode("model://lamp_post"));
-		        include.appendChild(uri);
+                writer.textElement("uri", "model://lamp_post");
+                writer.textElement("name", "Lamp Post " + streetLampIdx++);
+                writer.textElement("static", "true");
+                writer.textElement("pose", formatVector3D(lamp.getPos()) + " 0 0 0");
 
-                Element nameElem = sdfDoc.createElement("name");
-                nameElem.appendChild(sdfDoc.createTextNode("Lamp Post " + streetLampIdx++));
-		        include.appendChild(nameElem);
-
-                Element staticElem = sdfDoc.createElement("static");
-                staticElem.appendChild(sdfDoc.createTextNode("true"));
-		        include.appendChild(staticElem);
-
-                Element pose = sdfDoc.createElement("pose");
-                pose.appendChild(sdfDoc.createTextNode(formatVector3D(lamp.getPos()) + " 0 0 0"));
-		        include.appendChild(pose);
+                writer.endElement();
             } else if (object instanceof Building) {
-                Building building = (Building) object;
-
-                elem = sdfDoc.createElement("model");
-		        world.appendChild(elem);
 
-                Element staticElem = sdfDoc.createElement("static");
-                staticElem.appendChild(sdfDoc.createTextNode("true"));
-		        elem.appendChild(staticElem);
+                /* the model and link stay open for the building's visuals */
 
-                Element pose = sdfDoc.createElement("pose");
-                pose.appendChild(sdfDoc.createTextNode("0 0 0 0 0 0"));
-		        elem.appendChild(pose);
+                writer.startElement("model");
+                writer.attribute("name", name);
 
-                link = sdfDoc.createElement("link");
-		        elem.appendChild(link);
+                writer.textElement("static", "true");
+                writer.textElement("pose", "0 0 0 0 0 0");
 
-		        Attr attr = sdfDoc.createAttribute("name");
-		        attr.setValue(name);
-		        link.setAttributeNode(attr);
+                writer.startElement("link");
+                writer.attribute("name", name);
 
+                linkName = name;
                 visualIdx = 0;
-            } else {
-                elem = null;
-            }
-
-            if (elem != null) {
-		        Attr attr = sdfDoc.createAttribute("name");
-		        attr.setValue(name);
-		        elem.setAttributeNode(attr);
             }
 		}
 
@@ -240,39 +205,37 @@ public class SdfTarget extends FaceTarget<RenderableToSdf> {
     		performNaNCheck(vector);
     	}
 
-        if (link != null) {
-            Element visual = sdfDoc.createElement("visual");
-	        link.appendChild(visual);
-
-	        Attr attr = sdfDoc.createAttribute("name");
-		    attr.setValue(link.getAttributes().getNamedItem("name").getNodeValue() + " " + (visualIdx++));
-	        visual.setAttributeNode(attr);
+        if (linkName != null) {
+            writer.startElement("visual");
+            writer.attribute("name", linkName + " " + (visualIdx++));
 
-            Element pose = sdfDoc.createElement("pose");
-            pose.appendChild(sdfDoc.createTextNode("0 0 " + Double.toString(vs.get(1).y)));
-	        visual.appendChild(pose);
+            writer.textElement("pose", "0 0 " + Double.toString(vs.get(1).y));
 
-            Element geometry = sdfDoc.createElement("geometry");
-	        visual.appendChild(geometry);
+            writer.startElement("geometry");
+            writer.startElement("polyline");
 
-            Element polyline = sdfDoc.createElement("polyline");
-	        geometry.appendChild(polyline);
-
-            Element height = sdfDoc.createElement("height");
-            height.appendChild(sdfDoc.createTextNode(Double.toString(vs.get(0).y - vs.get(1).y)));
-	        polyline.appendChild(height);
+            writer.textElement("height", Double.toString(vs.get(0).y - vs.get(1).y));
 
             int i = 0;
     	    for (VectorXYZ vector : vs) {
                 if (i++ % 2 == 1)
                     continue;
-                Element point = sdfDoc.createElement("point");
-                point.appendChild(sdfDoc.createTextNode(formatVector2D(vector)));
-	            polyline.appendChild(point);
+                writer.textElement("point", formatVector2D(vector));
             }
+
+            writer.endElement();
+            writer.endElement();
+            writer.endElement();
         }
     }
 
+    @Override
+    public void finish() {
+        super.finish();
+        writer.endElements(worldDepth);
+        linkName = null;
+    }
+
 	private void performNaNCheck(VectorXYZ v) {
 		if (Double.isNaN(v.x) || Double.isNaN(v.y) || Double.isNaN(v.z)) {
 			throw new IllegalArgumentException("NaN vector " + v.x + ", " + v.y + ", " + v.z);
@@ -4,7 +4,6 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Iterator;
@@ -18,25 +17,10 @@ import org.osm2world.core.target.TargetUtil;
 import org.osm2world.core.target.common.rendering.Camera;
 import org.osm2world.core.target.common.rendering.Projection;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.OutputKeys;
-
-import org.w3c.dom.Attr;
-import org.w3c.dom.Comment;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.xml.sax.SAXException;
-
 /**
- * utility class for creating an Gazebo SDF file
+ * utility class for creating an Gazebo SDF file.
+ * The XML is written while the world objects are being rendered,
+ * so only the elements of the current object are kept in memory.
  */
 public final class SdfWriter {
 
@@ -49,47 +33,35 @@ public final class SdfWriter {
 			Camera camera, Projection projection)
 			throws IOException {
 
-		try {
-
-		    File mtlFile = new File(sdfFile.getAbsoluteFile() + ".material");
-		    if (!mtlFile.exists()) {
-		    	mtlFile.createNewFile();
-		    }
+		File mtlFile = new File(sdfFile.getAbsoluteFile() + ".material");
+		if (!mtlFile.exists()) {
+			mtlFile.createNewFile();
+		}
 
-		    DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-		    DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-            Document doc = docBuilder.newDocument();
+		SdfStreamWriter sdfWriter = new SdfStreamWriter(sdfFile);
+		PrintStream mtlStream = new PrintStream(mtlFile);
 
-		    PrintStream mtlStream = new PrintStream(mtlFile);
+		try {
 
-		    /* write comments at the beginning of both files */
+			/* write comments at the beginning of both files */
 
-		    writeSdfHeader(doc, mapProjection);
+			writeSdfHeader(sdfWriter, mapProjection);
 
-		    writeMtlHeader(mtlStream);
+			writeMtlHeader(mtlStream);
 
-		    /* write actual file content */
+			/* write actual file content */
 
-		    SdfTarget target = new SdfTarget(doc, mtlStream);
+			SdfTarget target = new SdfTarget(sdfWriter, mtlStream);
 
-		    TargetUtil.renderWorldObjects(target, mapData, true);
+			TargetUtil.renderWorldObjects(target, mapData, true);
 
-            /* write the content into xml file */
-		    TransformerFactory transformerFactory = TransformerFactory.newInstance();
-		    Transformer transformer = transformerFactory.newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-		    DOMSource source = new DOMSource(doc);
-		    StreamResult result = new StreamResult(sdfFile);
+			target.finish();
 
-            transformer.transform(source, result);
-		    mtlStream.close();
+		} finally {
+			mtlStream.close();
+			sdfWriter.close();
+		}
 
-		} catch (ParserConfigurationException e) {
-			throw new IOException(e);
-		} catch (TransformerException  e) {
-			throw new IOException(e);
-        }
 	}
 
 	public static final void writeSdfFiles(
@@ -99,158 +71,154 @@ public final class SdfWriter {
 			int primitiveThresholdPerFile)
 			throws IOException {
 
-        try {
-		    if (!sdfDirectory.exists()) {
-		    	sdfDirectory.mkdir();
-		    }
+		if (!sdfDirectory.exists()) {
+			sdfDirectory.mkdir();
+		}
 
-		    checkArgument(sdfDirectory.isDirectory());
+		checkArgument(sdfDirectory.isDirectory());
 
-		    final File mtlFile = new File(sdfDirectory.getPath()
-		    		+ File.separator + "materials.material");
-		    if (!mtlFile.exists()) {
-		    	mtlFile.createNewFile();
-		    }
+		final File mtlFile = new File(sdfDirectory.getPath()
+				+ File.separator + "materials.material");
+		if (!mtlFile.exists()) {
+			mtlFile.createNewFile();
+		}
 
-		    final PrintStream mtlStream = new PrintStream(mtlFile);
+		final PrintStream mtlStream = new PrintStream(mtlFile);
 
-		    writeMtlHeader(mtlStream);
+		writeMtlHeader(mtlStream);
 
-		    /* create iterator which creates and wraps .sdf files as needed */
+		/* create iterator which creates and wraps .sdf files as needed */
 
-		    Iterator<SdfTarget> sdfIterator = new Iterator<SdfTarget>() {
+		SdfTargetIterator sdfIterator = new SdfTargetIterator(
+				sdfDirectory, mapProjection, mtlStream);
+
+		/* write file content */
+
+		try {
+			TargetUtil.renderWorldObjects(sdfIterator, mapData, primitiveThresholdPerFile);
+		} finally {
+			mtlStream.close();
+			sdfIterator.close();
+		}
+
+	}
 
-		    	private int fileCounter = 0;
-		        private DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-		        private DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-		        private TransformerFactory transformerFactory = TransformerFactory.newInstance();
-		        private Transformer transformer = transformerFactory.newTransformer();
-                Document doc = null;
-		    	File sdfFile = null;
+	/**
+	 * creates a new .sdf file for each target,
+	 * and closes the previous file at the same time
+	 */
+	private static final class SdfTargetIterator implements Iterator<SdfTarget> {
 
-		    	@Override
-		    	public boolean hasNext() {
-		    		return true;
-		    	}
+		private final File sdfDirectory;
+		private final MapProjection mapProjection;
+		private final PrintStream mtlStream;
 
-		    	@Override
-		    	public SdfTarget next() {
+		private int fileCounter = 0;
+		private SdfTarget target = null;
+		private SdfStreamWriter sdfWriter = null;
 
-		    		try {
-		    			if (doc != null) {
-                            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-                            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-		                    DOMSource source = new DOMSource(doc);
-		                    StreamResult result = new StreamResult(sdfFile);
+		public SdfTargetIterator(File sdfDirectory,
+				MapProjection mapProjection, PrintStream mtlStream) {
+			this.sdfDirectory = sdfDirectory;
+			this.mapProjection = mapProjection;
+			this.mtlStream = mtlStream;
+		}
 
-                            transformer.transform(source, result);
-		                    mtlStream.close();
-		    				fileCounter ++;
-		    			}
+		@Override
+		public boolean hasNext() {
+			return true;
+		}
 
-		    			sdfFile = new File(sdfDirectory.getPath() + File.separator
-		    					+ "part" + format("%04d", fileCounter) + ".sdf");
+		@Override
+		public SdfTarget next() {
 
-                        doc = docBuilder.newDocument();
+			try {
 
-		                PrintStream mtlStream = new PrintStream(mtlFile);
+				if (sdfWriter != null) {
+					close();
+					fileCounter ++;
+				}
 
-		    			writeSdfHeader(doc, mapProjection);
+				File sdfFile = new File(sdfDirectory.getPath() + File.separator
+						+ "part" + format("%04d", fileCounter) + ".sdf");
 
-		    			return new SdfTarget(doc, mtlStream);
+				sdfWriter = new SdfStreamWriter(sdfFile);
 
-		    		} catch (FileNotFoundException e) {
-		    			throw new RuntimeException(e);
-		    		} catch (IOException e) {
-		    			throw new RuntimeException(e);
-		    		} catch (TransformerException  e) {
-		    			throw new RuntimeException(e);
-		    		}
+				writeSdfHeader(sdfWriter, mapProjection);
 
-		    	}
+				target = new SdfTarget(sdfWriter, mtlStream);
 
-		    	@Override
-		    	public void remove() {
-		    		throw new UnsupportedOperationException();
-		    	}
+				return target;
 
-		    };
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
 
-		    /* write file content */
+		}
 
-		    TargetUtil.renderWorldObjects(sdfIterator, mapData, primitiveThresholdPerFile);
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 
-		    mtlStream.close();
+		/**
+		 * finishes the current target and closes its file
+		 */
+		public void close() throws IOException {
+
+			if (sdfWriter != null) {
+				target.finish();
+				sdfWriter.close();
+				sdfWriter = null;
+				target = null;
+			}
+
+		}
 
-		} catch (ParserConfigurationException e) {
-			throw new IOException(e);
-		} catch (TransformerException  e) {
-			throw new IOException(e);
-        }
 	}
 
-	private static final void writeSdfHeader(Document doc,
+	/**
+	 * writes the beginning of an SDF file.
+	 * The sdf and world elements are left open.
+	 */
+	private static final void writeSdfHeader(SdfStreamWriter sdfWriter,
 			MapProjection mapProjection) {
 
-		Comment comment = doc.createComment("This file was created by OSM2World "
+		sdfWriter.comment("This file was created by OSM2World "
 				+ GlobalValues.VERSION_STRING + " - "
 				+ GlobalValues.OSM2WORLD_URI + "\n"
-		        + "Projection information:\n"
-		        + "Coordinate origin (0,0,0): "
+				+ "Projection information:\n"
+				+ "Coordinate origin (0,0,0): "
 				+ "lat " + mapProjection.calcLat(VectorXZ.NULL_VECTOR) + ", "
 				+ "lon " + mapProjection.calcLon(VectorXZ.NULL_VECTOR) + ", "
 				+ "ele 0\n"
-		        + "North direction: " + new VectorXYZ(
+				+ "North direction: " + new VectorXYZ(
 						mapProjection.getNorthUnit().x, 0,
 						- mapProjection.getNorthUnit().z) + "\n"
-		        + "1 coordinate unit corresponds to roughly "
+				+ "1 coordinate unit corresponds to roughly "
 				+ "1 m in reality\n");
-        doc.appendChild(comment);
-
-        Element sdf = doc.createElement("sdf");
-		doc.appendChild(sdf);
-
-		Attr attr = doc.createAttribute("version");
-		attr.setValue("1.5");
-		sdf.setAttributeNode(attr);
-
-        Element world = doc.createElement("world");
-		sdf.appendChild(world);
 
-		attr = doc.createAttribute("name");
-		attr.setValue("default");
-		world.setAttributeNode(attr);
+		sdfWriter.startElement("sdf");
+		sdfWriter.attribute("version", "1.5");
 
-        Element coords = doc.createElement("spherical_coordinates");
-		world.appendChild(coords);
+		sdfWriter.startElement("world");
+		sdfWriter.attribute("name", "default");
 
-        Element surfaceModel = doc.createElement("surface_model");
-        surfaceModel.appendChild(doc.createTextNode("EARTH_WGS84"));
-		coords.appendChild(surfaceModel);
+		sdfWriter.startElement("spherical_coordinates");
+		sdfWriter.textElement("surface_model", "EARTH_WGS84");
+		sdfWriter.textElement("latitude_deg",
+				Double.toString(mapProjection.calcLat(VectorXZ.NULL_VECTOR)));
+		sdfWriter.textElement("longitude_deg",
+				Double.toString(mapProjection.calcLon(VectorXZ.NULL_VECTOR)));
+		sdfWriter.textElement("elevation", "0.0");
+		sdfWriter.textElement("heading_deg", "0");
+		sdfWriter.endElement();
 
-        Element latitude = doc.createElement("latitude_deg");
-        latitude.appendChild(doc.createTextNode(Double.toString(mapProjection.calcLat(VectorXZ.NULL_VECTOR))));
-		coords.appendChild(latitude);
+		sdfWriter.startElement("include");
+		sdfWriter.textElement("uri", "model://sun");
+		sdfWriter.endElement();
 
-        Element longitude = doc.createElement("longitude_deg");
-        longitude.appendChild(doc.createTextNode(Double.toString(mapProjection.calcLon(VectorXZ.NULL_VECTOR))));
-		coords.appendChild(longitude);
-
-        Element elevation = doc.createElement("elevation");
-        elevation.appendChild(doc.createTextNode("0.0"));
-		coords.appendChild(elevation);
-
-        Element headingDeg = doc.createElement("heading_deg");
-        headingDeg.appendChild(doc.createTextNode("0"));
-		coords.appendChild(headingDeg);
-
-        Element include = doc.createElement("include");
-		world.appendChild(include);
-
-        Element uri = doc.createElement("uri");
-        uri.appendChild(doc.createTextNode("model://sun"));
-		include.appendChild(uri);
-    }
+	}
 
 	private static final void writeMtlHeader(PrintStream mtlStream) {
 
@@ -0,0 +1,1230 @@
+package org.osm2world.core.target.software;
+
+import static java.lang.Math.*;
+import static org.osm2world.core.math.GeometryUtil.*;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.common.Primitive;
+import org.osm2world.core.target.common.TextureData;
+import org.osm2world.core.target.common.TextureData.Wrap;
+import org.osm2world.core.target.common.lighting.GlobalLightingParameters;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.Material.Lighting;
+import org.osm2world.core.target.common.material.Material.Transparency;
+import org.osm2world.core.target.common.rendering.Camera;
+import org.osm2world.core.target.common.rendering.Projection;
+import org.osm2world.core.target.jogl.PrimitiveBuffer;
+import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
+
+/**
+ * renders the content of a {@link PrimitiveBuffer} into images without
+ * using OpenGL. Triangles are rasterized on the CPU using a z buffer.
+ *
+ * The results resemble those of the JOGLTarget used for image export:
+ * lighting, the combination of texture layers, transparency
+ * and backface culling (with counterclockwise front faces)
+ * follow the OpenGL settings of that target.
+ *
+ * All data is prepared in the constructor and not modified afterwards,
+ * so several images can be rendered at the same time. Rendering a single
+ * image can also use multiple threads, each drawing a band of rows.
+ */
+public class SoftwareRenderer {
+	
+	/** maximum number of triangles in a {@link TriangleBlock} */
+	private static final int BLOCK_SIZE = 4096;
+	
+	/** average number of triangles per {@link Cell} the grid aims for */
+	private static final int TRIANGLES_PER_CELL = 4096;
+	
+	/** number of bands per worker thread that an image is split into */
+	private static final int BANDS_PER_THREAD = 4;
+	
+	/**
+	 * fragments of {@link Transparency#BINARY} materials are only drawn
+	 * if their alpha is greater than this value
+	 */
+	private static final float ALPHA_THRESHOLD = 0.5f;
+	
+	/** upper limit for the vertices of a triangle after clipping */
+	private static final int MAX_CLIPPED_VERTICES = 6;
+	
+	/** all blocks, each at the position given by its index */
+	private final List<TriangleBlock> blocks = new ArrayList<TriangleBlock>();
+	
+	/**
+	 * non-empty cells of a grid that the triangles are sorted into.
+	 * Cells and blocks outside the view can be skipped as a whole
+	 * based on their bounding boxes.
+	 */
+	private final List<Cell> cells = new ArrayList<Cell>();
+	
+	/**
+	 * prepares the primitives from a buffer for rendering
+	 *
+	 * @param lighting  the scene's lighting; null disables lighting
+	 */
+	public SoftwareRenderer(PrimitiveBuffer primitiveBuffer,
+			GlobalLightingParameters lighting) {
+		
+		/* determine the grid's dimensions */
+		
+		double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+		double minZ = Double.POSITIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		long vertexCount = 0;
+		
+		for (Material material : primitiveBuffer.getMaterials()) {
+			for (Primitive primitive : primitiveBuffer.getPrimitives(material)) {
+				for (VectorXYZ v : primitive.vertices) {
+					minX = min(minX, v.x);
+					maxX = max(maxX, v.x);
+					minZ = min(minZ, v.z);
+					maxZ = max(maxZ, v.z);
+				}
+				vertexCount += primitive.vertices.size();
+			}
+		}
+		
+		if (vertexCount == 0) return;
+		
+		double cellCount = max(1, vertexCount / 3.0 / TRIANGLES_PER_CELL);
+		double cellSize = sqrt((maxX - minX) * (maxZ - minZ) / cellCount);
+		
+		if (!(cellSize > 0)) {
+			cellSize = max(max(maxX - minX, maxZ - minZ) / cellCount, 1);
+		}
+		
+		Grid grid = new Grid(minX, minZ, cellSize,
+				(int)min(cellCount, floor((maxX - minX) / cellSize)) + 1,
+				(int)min(cellCount, floor((maxZ - minZ) / cellSize)) + 1);
+		
+		/* create the blocks */
+		
+		Map<File, SoftwareTexture> textures = new HashMap<File, SoftwareTexture>();
+		
+		for (Material material : primitiveBuffer.getMaterials()) {
+			
+			MaterialInfo materialInfo = new MaterialInfo(material, lighting, textures);
+			
+			addBlocks(materialInfo, primitiveBuffer.getPrimitives(material), grid);
+			
+		}
+		
+		for (Cell cell : grid.cells) {
+			if (cell != null) {
+				cells.add(cell);
+			}
+		}
+		
+	}
+	
+	/**
+	 * turns primitives into separate triangles, calculates their vertices'
+	 * lit colors and stores them in the blocks of the grid cells
+	 * containing the triangles' centers
+	 */
+	private void addBlocks(MaterialInfo material,
+			Collection<Primitive> primitives, Grid grid) {
+		
+		int layers = material.textures.length;
+		
+		TIntObjectMap<BlockBuilder> builders = new TIntObjectHashMap<BlockBuilder>();
+		
+		float[] color = new float[3];
+		
+		for (Primitive primitive : primitives) {
+			
+			List<VectorXYZ> vertices = primitive.vertices;
+			List<VectorXYZ> normals = primitive.normals;
+			List<List<VectorXZ>> texCoordLists = primitive.texCoordLists;
+			
+			switch (primitive.type) {
+			
+			case TRIANGLE_STRIP:
+				
+				vertices = triangleVertexListFromTriangleStrip(vertices);
+				normals = triangleNormalListFromTriangleStrip(normals);
+				
+				if (texCoordLists != null) {
+					List<List<VectorXZ>> newTexCoordLists = new ArrayList<List<VectorXZ>>();
+					for (List<VectorXZ> texCoordList : texCoordLists) {
+						newTexCoordLists.add(triangleVertexListFromTriangleStrip(texCoordList));
+					}
+					texCoordLists = newTexCoordLists;
+				}
+				
+				break;
+				
+			case TRIANGLE_FAN:
+			case CONVEX_POLYGON:
+				
+				vertices = triangleVertexListFromTriangleFan(vertices);
+				normals = triangleVertexListFromTriangleFan(normals);
+				
+				if (texCoordLists != null) {
+					List<List<VectorXZ>> newTexCoordLists = new ArrayList<List<VectorXZ>>();
+					for (List<VectorXZ> texCoordList : texCoordLists) {
+						newTexCoordLists.add(triangleVertexListFromTriangleFan(texCoordList));
+					}
+					texCoordLists = newTexCoordLists;
+				}
+				
+				break;
+				
+			case TRIANGLES:
+				break;
+				
+			}
+			
+			for (int v = 0; v + 2 < vertices.size(); v += 3) {
+				
+				int cellIndex = grid.cellIndex(
+						(vertices.get(v).x + vertices.get(v + 1).x + vertices.get(v + 2).x) / 3,
+						(vertices.get(v).z + vertices.get(v + 1).z + vertices.get(v + 2).z) / 3);
+				
+				BlockBuilder builder = builders.get(cellIndex);
+				
+				if (builder == null) {
+					builder = new BlockBuilder();
+					builders.put(cellIndex, builder);
+				}
+				
+				for (int k = 0; k < 3; k++) {
+					
+					VectorXYZ vertex = vertices.get(v + k);
+					builder.positions.add(vertex.x);
+					builder.positions.add(vertex.y);
+					builder.positions.add(vertex.z);
+					
+					/* flat shading uses the last vertex for the entire
+					 * triangle, like OpenGL does */
+					
+					material.calculateColor(
+							normals.get(material.smooth ? v + k : v + 2), color);
+					builder.colors.add(color);
+					
+					for (int layer = 0; layer < layers; layer++) {
+						
+						if (texCoordLists != null && layer < texCoordLists.size()) {
+							VectorXZ texCoord = texCoordLists.get(layer).get(v + k);
+							builder.texCoords.add((float)texCoord.x);
+							builder.texCoords.add((float)texCoord.z);
+						} else {
+							builder.texCoords.add(0);
+							builder.texCoords.add(0);
+						}
+						
+					}
+					
+				}
+				
+				if (builder.positions.size() == 9 * BLOCK_SIZE) {
+					addBlock(material, builder, grid.getCell(cellIndex));
+				}
+				
+			}
+			
+		}
+		
+		for (int cellIndex : builders.keys()) {
+			BlockBuilder builder = builders.get(cellIndex);
+			if (!builder.positions.isEmpty()) {
+				addBlock(material, builder, grid.getCell(cellIndex));
+			}
+		}
+		
+	}
+	
+	private void addBlock(MaterialInfo material, BlockBuilder builder, Cell cell) {
+		
+		TriangleBlock block = new TriangleBlock(blocks.size(), material,
+				builder.positions.toArray(), builder.colors.toArray(),
+				builder.texCoords.toArray());
+		
+		blocks.add(block);
+		cell.add(block);
+		
+		builder.positions.resetQuick();
+		builder.colors.resetQuick();
+		builder.texCoords.resetQuick();
+		
+	}
+	
+	/**
+	 * renders the entire view into an image
+	 *
+	 * @param image  an image of type {@link BufferedImage#TYPE_INT_RGB}
+	 *               or {@link BufferedImage#TYPE_INT_ARGB}.
+	 *               Its current content is used as the background.
+	 * @param pool   the pool that will render the image;
+	 *               null to render it in the current thread
+	 * @return  false if no triangle was visible, leaving the image unchanged
+	 */
+	public boolean render(Camera camera, Projection projection,
+			BufferedImage image, ForkJoinPool pool) {
+		return renderPart(camera, projection, 0, 1, 0, 1, image, pool);
+	}
+	
+	/**
+	 * similar to {@link #render(Camera, Projection, BufferedImage, ForkJoinPool)},
+	 * but only renders a part of the "normal" image into the image.
+	 * Like the renderPart method of JOGLTarget, the part is defined using
+	 * fractions of the view's width and height, starting at the lower left.
+	 * Unlike JOGLTarget, this also supports perspective projections.
+	 *
+	 * @return  false if no triangle was visible, leaving the image unchanged
+	 */
+	public boolean renderPart(Camera camera, Projection projection,
+			double xStart, double xEnd, double yStart, double yEnd,
+			BufferedImage image, ForkJoinPool pool) {
+		
+		if (image.getType() != BufferedImage.TYPE_INT_RGB
+				&& image.getType() != BufferedImage.TYPE_INT_ARGB) {
+			throw new IllegalArgumentException(
+					"unsupported image type " + image.getType());
+		}
+		
+		final int[] pixels =
+				((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		final int width = image.getWidth();
+		int height = image.getHeight();
+		
+		final ViewTransform transform = new ViewTransform(camera, projection,
+				xStart, xEnd, yStart, yEnd, width, height);
+		
+		/* skip cells and blocks outside the view */
+		
+		List<TriangleBlock> visibleBlocks = new ArrayList<TriangleBlock>();
+		
+		for (Cell cell : cells) {
+			if (transform.isVisible(cell.bounds)) {
+				for (TriangleBlock block : cell.blocks) {
+					if (cell.blocks.size() == 1 || transform.isVisible(block.bounds)) {
+						visibleBlocks.add(block);
+					}
+				}
+			}
+		}
+		
+		if (visibleBlocks.isEmpty()) return false;
+		
+		/* project the triangles to screen coordinates */
+		
+		final ScreenTriangles[] screenBlocks = new ScreenTriangles[blocks.size()];
+		
+		ParallelIterationUtil.iterate(pool, visibleBlocks, new Operation<TriangleBlock>() {
+			@Override
+			public void perform(TriangleBlock block) {
+				screenBlocks[block.index] = transform.project(block);
+			}
+		});
+		
+		/* sort alpha blended triangles back to front */
+		
+		final List<ScreenTriangles> opaqueBlocks = new ArrayList<ScreenTriangles>();
+		final List<BlendedTriangle> blendedTriangles = new ArrayList<BlendedTriangle>();
+		
+		for (ScreenTriangles screenBlock : screenBlocks) {
+			
+			if (screenBlock == null || screenBlock.size == 0) {
+				continue;
+			} else if (screenBlock.material.transparency == Transparency.TRUE) {
+				for (int t = 0; t < screenBlock.size; t++) {
+					blendedTriangles.add(new BlendedTriangle(screenBlock, t));
+				}
+			} else {
+				opaqueBlocks.add(screenBlock);
+			}
+			
+		}
+		
+		if (opaqueBlocks.isEmpty() && blendedTriangles.isEmpty()) return false;
+		
+		Collections.sort(blendedTriangles, new Comparator<BlendedTriangle>() {
+			@Override
+			public int compare(BlendedTriangle t1, BlendedTriangle t2) {
+				return Float.compare(t2.depth, t1.depth);
+			}
+		});
+		
+		/* rasterize the triangles, with one task for each band of rows */
+		
+		int bandCount = (pool == null) ? 1 : pool.getParallelism() * BANDS_PER_THREAD;
+		bandCount = max(1, min(bandCount, height));
+		
+		List<int[]> bands = new ArrayList<int[]>(bandCount);
+		
+		for (int i = 0; i < bandCount; i++) {
+			bands.add(new int[] {height * i / bandCount, height * (i + 1) / bandCount});
+		}
+		
+		ParallelIterationUtil.iterate(pool, bands, new Operation<int[]>() {
+			@Override
+			public void perform(int[] band) {
+				
+				Rasterizer rasterizer = new Rasterizer(pixels, width, band[0], band[1]);
+				
+				for (ScreenTriangles screenBlock : opaqueBlocks) {
+					for (int t = 0; t < screenBlock.size; t++) {
+						rasterizer.draw(screenBlock, t);
+					}
+				}
+				
+				for (BlendedTriangle triangle : blendedTriangles) {
+					rasterizer.draw(triangle.triangles, triangle.index);
+				}
+				
+			}
+		});
+		
+		return true;
+		
+	}
+	
+	/**
+	 * material properties needed during rasterization
+	 */
+	private static final class MaterialInfo {
+		
+		final boolean smooth;
+		
+		/**
+		 * the transparency used for rendering. As in JOGLTarget,
+		 * this only affects textured materials.
+		 */
+		final Transparency transparency;
+		
+		/** one texture per layer; null if the texture couldn't be loaded */
+		final SoftwareTexture[] textures;
+		final Wrap[] wraps;
+		
+		/** ambient color, multiplied with the global ambient light */
+		private final float[] ambient = new float[3];
+		
+		/** diffuse color, multiplied with the light's diffuse color */
+		private final float[] diffuse = new float[3];
+		
+		/** normalized direction towards the light; null if there is none */
+		private final VectorXYZ lightDirection;
+		
+		MaterialInfo(Material material, GlobalLightingParameters lighting,
+				Map<File, SoftwareTexture> textureMap) {
+			
+			List<TextureData> textureDataList = material.getTextureDataList();
+			int layers = (textureDataList == null) ? 0 : textureDataList.size();
+			
+			smooth = material.getLighting() == Lighting.SMOOTH;
+			transparency = (layers == 0) ? Transparency.FALSE : material.getTransparency();
+			
+			textures = new SoftwareTexture[layers];
+			wraps = new Wrap[layers];
+			
+			for (int layer = 0; layer < layers; layer++) {
+				TextureData textureData = textureDataList.get(layer);
+				textures[layer] = getTexture(textureData.file, textureMap);
+				wraps[layer] = textureData.wrap;
+			}
+			
+			/* calculate the colors like the fixed-function pipeline of OpenGL */
+			
+			Color ambientColor, diffuseColor;
+			
+			if (layers == 0 || textureDataList.get(0).colorable) {
+				ambientColor = material.ambientColor();
+				diffuseColor = material.diffuseColor();
+			} else {
+				ambientColor = Material.multiplyColor(
+						Color.WHITE, material.getAmbientFactor());
+				diffuseColor = Material.multiplyColor(
+						Color.WHITE, material.getDiffuseFactor());
+			}
+			
+			if (lighting == null) {
+				
+				/* unlit: the material's color is used as it is */
+				
+				material.getColor().getRGBColorComponents(ambient);
+				
+				if (layers > 0 && !textureDataList.get(0).colorable) {
+					Arrays.fill(ambient, 1);
+				}
+				
+				lightDirection = null;
+			
+			} else {
+				
+				float[] light = new float[3];
+				
+				ambientColor.getRGBColorComponents(ambient);
+				lighting.globalAmbientColor.getRGBColorComponents(light);
+				for (int c = 0; c < 3; c++) {
+					ambient[c] *= light[c];
+				}
+				
+				diffuseColor.getRGBColorComponents(diffuse);
+				lighting.lightColorDiffuse.getRGBColorComponents(light);
+				for (int c = 0; c < 3; c++) {
+					diffuse[c] *= light[c];
+				}
+				
+				lightDirection = (lighting.lightFromDirection == null)
+						? null : lighting.lightFromDirection.normalize();
+				
+			}
+			
+		}
+		
+		/**
+		 * calculates the lit color of a vertex
+		 *
+		 * @param result  array receiving red, green and blue
+		 */
+		void calculateColor(VectorXYZ normal, float[] result) {
+			
+			double intensity = 0;
+			
+			if (lightDirection != null) {
+				intensity = max(0, normal.dot(lightDirection));
+			}
+			
+			for (int c = 0; c < 3; c++) {
+				result[c] = (float)min(1, ambient[c] + diffuse[c] * intensity);
+			}
+			
+		}
+		
+		private static SoftwareTexture getTexture(File file,
+				Map<File, SoftwareTexture> textureMap) {
+			
+			if (file == null) return null;
+			
+			if (!textureMap.containsKey(file)) {
+				
+				SoftwareTexture texture = null;
+				
+				try {
+					texture = SoftwareTexture.load(file);
+				} catch (IOException e) {
+					System.err.println("cannot load texture " + file + ": " + e);
+				}
+				
+				textureMap.put(file, texture);
+				
+			}
+			
+			return textureMap.get(file);
+			
+		}
+		
+	}
+	
+	/**
+	 * a group of separate triangles with the same material
+	 */
+	private static final class TriangleBlock {
+		
+		/** position of this block in {@link SoftwareRenderer#blocks} */
+		final int index;
+		
+		final MaterialInfo material;
+		
+		final int size;
+		
+		/** x, y and z for each vertex */
+		final double[] positions;
+		
+		/** red, green and blue after lighting for each vertex */
+		final float[] colors;
+		
+		/** s and t of each texture layer for each vertex */
+		final float[] texCoords;
+		
+		/** minimum x, y, z and maximum x, y, z of the positions */
+		final double[] bounds;
+		
+		TriangleBlock(int index, MaterialInfo material, double[] positions,
+				float[] colors, float[] texCoords) {
+			
+			this.index = index;
+			this.material = material;
+			this.size = positions.length / 9;
+			this.positions = positions;
+			this.colors = colors;
+			this.texCoords = texCoords;
+			
+			bounds = new double[] {
+					Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+					Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+			
+			for (int i = 0; i < positions.length; i++) {
+				bounds[i % 3] = min(bounds[i % 3], positions[i]);
+				bounds[3 + i % 3] = max(bounds[3 + i % 3], positions[i]);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * collects the vertex data of a {@link TriangleBlock} during construction
+	 */
+	private static final class BlockBuilder {
+		final TDoubleArrayList positions = new TDoubleArrayList();
+		final TFloatArrayList colors = new TFloatArrayList();
+		final TFloatArrayList texCoords = new TFloatArrayList();
+	}
+	
+	/**
+	 * the blocks with triangles that have their centers
+	 * in the same cell of a {@link Grid}
+	 */
+	private static final class Cell {
+		
+		final List<TriangleBlock> blocks = new ArrayList<TriangleBlock>();
+		
+		/** bounds of all blocks, same layout as {@link TriangleBlock#bounds} */
+		final double[] bounds = new double[] {
+				Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		
+		void add(TriangleBlock block) {
+			
+			blocks.add(block);
+			
+			for (int i = 0; i < 3; i++) {
+				bounds[i] = min(bounds[i], block.bounds[i]);
+				bounds[3 + i] = max(bounds[3 + i], block.bounds[3 + i]);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * regular grid of square cells on the xz plane
+	 */
+	private static final class Grid {
+		
+		private final double minX, minZ;
+		private final double cellSize;
+		private final int columns, rows;
+		
+		/** the cells, row by row; null for cells that haven't been used */
+		final Cell[] cells;
+		
+		Grid(double minX, double minZ, double cellSize, int columns, int rows) {
+			this.minX = minX;
+			this.minZ = minZ;
+			this.cellSize = cellSize;
+			this.columns = columns;
+			this.rows = rows;
+			this.cells = new Cell[columns * rows];
+		}
+		
+		int cellIndex(double x, double z) {
+			int column = (int)min(max(0, floor((x - minX) / cellSize)), columns - 1);
+			int row = (int)min(max(0, floor((z - minZ) / cellSize)), rows - 1);
+			return row * columns + column;
+		}
+		
+		Cell getCell(int cellIndex) {
+			if (cells[cellIndex] == null) {
+				cells[cellIndex] = new Cell();
+			}
+			return cells[cellIndex];
+		}
+		
+	}
+	
+	/**
+	 * triangles of a {@link TriangleBlock} after transformation to
+	 * screen coordinates, clipping and backface culling.
+	 * For each vertex, the values are: x and y in pixels, depth,
+	 * 1/w and then the color and texture coordinates multiplied with 1/w
+	 * (which allows perspective-correct interpolation).
+	 * Triangles are counterclockwise on screen (i.e. with y pointing down).
+	 */
+	private static final class ScreenTriangles {
+		
+		final MaterialInfo material;
+		
+		/** number of values per vertex */
+		final int stride;
+		
+		final float[] data;
+		
+		final int size;
+		
+		ScreenTriangles(MaterialInfo material, int stride, float[] data) {
+			this.material = material;
+			this.stride = stride;
+			this.data = data;
+			this.size = data.length / (3 * stride);
+		}
+		
+	}
+	
+	/**
+	 * reference to a triangle within {@link ScreenTriangles}
+	 * for sorting by depth
+	 */
+	private static final class BlendedTriangle {
+		
+		final ScreenTriangles triangles;
+		final int index;
+		final float depth;
+		
+		BlendedTriangle(ScreenTriangles triangles, int index) {
+			
+			this.triangles = triangles;
+			this.index = index;
+			
+			int offset = index * 3 * triangles.stride;
+			
+			depth = triangles.data[offset + 2]
+					+ triangles.data[offset + triangles.stride + 2]
+					+ triangles.data[offset + 2 * triangles.stride + 2];
+			
+		}
+		
+	}
+	
+	/**
+	 * converts triangles to screen coordinates, like the OpenGL matrices
+	 * set by JOGLTarget for a {@link Camera} and {@link Projection}
+	 */
+	private static final class ViewTransform {
+		
+		private final boolean orthographic;
+		
+		private final double near, far;
+		
+		/* camera position and axes, with negated z as in JOGLTarget */
+		
+		private final double eyeX, eyeY, eyeZ;
+		private final double sideX, sideY, sideZ;
+		private final double upX, upY, upZ;
+		private final double forwardX, forwardY, forwardZ;
+		
+		/**
+		 * factors from eye coordinates to normalized device coordinates.
+		 * For perspective projections, the result still needs to be
+		 * divided by the distance along the view direction.
+		 */
+		private final double scaleX, scaleY;
+		
+		/** the part of normalized device coordinates covered by the image */
+		private final double minNdcX, maxNdcX, minNdcY, maxNdcY;
+		
+		private final int width, height;
+		
+		ViewTransform(Camera camera, Projection projection,
+				double xStart, double xEnd, double yStart, double yEnd,
+				int width, int height) {
+			
+			orthographic = projection.isOrthographic();
+			near = projection.getNearClippingDistance();
+			far = projection.getFarClippingDistance();
+			
+			/* calculate the axes the same way as gluLookAt */
+			
+			VectorXYZ pos = camera.getPos();
+			VectorXYZ lookAt = camera.getLookAt();
+			VectorXYZ up = camera.getUp();
+			
+			eyeX = pos.x;
+			eyeY = pos.y;
+			eyeZ = -pos.z;
+			
+			VectorXYZ forward = new VectorXYZ(
+					lookAt.x - pos.x, lookAt.y - pos.y, -(lookAt.z - pos.z)).normalize();
+			VectorXYZ side = forward.cross(new VectorXYZ(up.x, up.y, -up.z)).normalize();
+			VectorXYZ trueUp = side.cross(forward);
+			
+			forwardX = forward.x; forwardY = forward.y; forwardZ = forward.z;
+			sideX = side.x; sideY = side.y; sideZ = side.z;
+			upX = trueUp.x; upY = trueUp.y; upZ = trueUp.z;
+			
+			if (orthographic) {
+				double volumeWidth = projection.getAspectRatio() * projection.getVolumeHeight();
+				scaleX = 2 / volumeWidth;
+				scaleY = 2 / projection.getVolumeHeight();
+			} else {
+				double tan = tan(toRadians(projection.getVertAngle()) / 2);
+				scaleX = 1 / (tan * projection.getAspectRatio());
+				scaleY = 1 / tan;
+			}
+			
+			minNdcX = -1 + 2 * xStart;
+			maxNdcX = -1 + 2 * xEnd;
+			minNdcY = -1 + 2 * yStart;
+			maxNdcY = -1 + 2 * yEnd;
+			
+			this.width = width;
+			this.height = height;
+			
+		}
+		
+		/**
+		 * checks whether an axis-aligned box can be (partially) visible.
+		 * This is conservative, i.e. it may return true for boxes
+		 * that are actually outside the view.
+		 *
+		 * @param bounds  minimum x, y, z and maximum x, y, z of the box
+		 */
+		boolean isVisible(double[] bounds) {
+			
+			boolean allBeforeNear = true, allBehindFar = true;
+			
+			double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+			
+			for (int corner = 0; corner < 8; corner++) {
+				
+				double x = bounds[(corner & 1) == 0 ? 0 : 3] - eyeX;
+				double y = bounds[(corner & 2) == 0 ? 1 : 4] - eyeY;
+				double z = -bounds[(corner & 4) == 0 ? 2 : 5] - eyeZ;
+				
+				double ex = sideX * x + sideY * y + sideZ * z;
+				double ey = upX * x + upY * y + upZ * z;
+				double ez = -(forwardX * x + forwardY * y + forwardZ * z);
+				
+				allBeforeNear &= ez > -near;
+				allBehindFar &= ez < -far;
+				
+				double ndcX, ndcY;
+				
+				if (orthographic) {
+					ndcX = scaleX * ex;
+					ndcY = scaleY * ey;
+				} else if (ez < 0) {
+					ndcX = scaleX * ex / -ez;
+					ndcY = scaleY * ey / -ez;
+				} else {
+					/* corners behind the camera can end up anywhere after clipping */
+					ndcX = ndcY = 0;
+					minX = minY = Double.NEGATIVE_INFINITY;
+					maxX = maxY = Double.POSITIVE_INFINITY;
+				}
+				
+				minX = min(minX, ndcX);
+				maxX = max(maxX, ndcX);
+				minY = min(minY, ndcY);
+				maxY = max(maxY, ndcY);
+				
+			}
+			
+			return !allBeforeNear && !allBehindFar
+					&& maxX >= minNdcX && minX <= maxNdcX
+					&& maxY >= minNdcY && minY <= maxNdcY;
+			
+		}
+		
+		/**
+		 * transforms the triangles of a block, clips them against the near
+		 * and far planes and removes triangles that face away or
+		 * don't cover any pixel centers
+		 */
+		ScreenTriangles project(TriangleBlock block) {
+			
+			int layers = block.material.textures.length;
+			
+			/* values per vertex: eye coordinates, color, texture coordinates */
+			int clipStride = 6 + 2 * layers;
+			int screenStride = 7 + 2 * layers;
+			
+			double[] polygon = new double[MAX_CLIPPED_VERTICES * clipStride];
+			double[] temp = new double[MAX_CLIPPED_VERTICES * clipStride];
+			double[] screen = new double[MAX_CLIPPED_VERTICES * screenStride];
+			
+			TFloatArrayList result = new TFloatArrayList();
+			
+			for (int t = 0; t < block.size; t++) {
+				
+				/* transform to eye coordinates */
+				
+				boolean clipNear = false, clipFar = false;
+				boolean allBeforeNear = true, allBehindFar = true;
+				
+				for (int k = 0; k < 3; k++) {
+					
+					int v = 3 * t + k;
+					int o = k * clipStride;
+					
+					double x = block.positions[3 * v] - eyeX;
+					double y = block.positions[3 * v + 1] - eyeY;
+					double z = -block.positions[3 * v + 2] - eyeZ;
+					
+					polygon[o] = sideX * x + sideY * y + sideZ * z;
+					polygon[o + 1] = upX * x + upY * y + upZ * z;
+					polygon[o + 2] = -(forwardX * x + forwardY * y + forwardZ * z);
+					
+					polygon[o + 3] = block.colors[3 * v];
+					polygon[o + 4] = block.colors[3 * v + 1];
+					polygon[o + 5] = block.colors[3 * v + 2];
+					
+					for (int i = 0; i < 2 * layers; i++) {
+						polygon[o + 6 + i] = block.texCoords[2 * layers * v + i];
+					}
+					
+					clipNear |= polygon[o + 2] > -near;
+					clipFar |= polygon[o + 2] < -far;
+					allBeforeNear &= polygon[o + 2] > -near;
+					allBehindFar &= polygon[o + 2] < -far;
+					
+				}
+				
+				if (allBeforeNear || allBehindFar) continue;
+				
+				/* clip against the near and far plane */
+				
+				int count = 3;
+				
+				if (clipNear) {
+					count = clip(polygon, count, temp, clipStride, -near, true);
+					double[] swap = polygon; polygon = temp; temp = swap;
+				}
+				
+				if (clipFar && count >= 3) {
+					count = clip(polygon, count, temp, clipStride, -far, false);
+					double[] swap = polygon; polygon = temp; temp = swap;
+				}
+				
+				if (count < 3) continue;
+				
+				/* project to screen coordinates */
+				
+				for (int k = 0; k < count; k++) {
+					
+					int o = k * clipStride;
+					int s = k * screenStride;
+					
+					double ex = polygon[o], ey = polygon[o + 1], ez = polygon[o + 2];
+					
+					double ndcX, ndcY, ndcZ, invW;
+					
+					if (orthographic) {
+						invW = 1;
+						ndcX = scaleX * ex;
+						ndcY = scaleY * ey;
+						ndcZ = (-2 * ez - (far + near)) / (far - near);
+					} else {
+						invW = 1 / -ez;
+						ndcX = scaleX * ex * invW;
+						ndcY = scaleY * ey * invW;
+						ndcZ = ((far + near) * ez + 2 * far * near)
+								/ (near - far) * invW;
+					}
+					
+					screen[s] = (ndcX - minNdcX) / (maxNdcX - minNdcX) * width;
+					screen[s + 1] = (maxNdcY - ndcY) / (maxNdcY - minNdcY) * height;
+					screen[s + 2] = ndcZ;
+					screen[s + 3] = invW;
+					
+					for (int i = 3; i < clipStride; i++) {
+						screen[s + i + 1] = polygon[o + i] * invW;
+					}
+					
+				}
+				
+				/* add the triangles of the (convex) polygon */
+				
+				for (int k = 1; k + 1 < count; k++) {
+					
+					int s0 = 0;
+					int s1 = k * screenStride;
+					int s2 = (k + 1) * screenStride;
+					
+					double area = (screen[s1] - screen[s0]) * (screen[s2 + 1] - screen[s0 + 1])
+							- (screen[s1 + 1] - screen[s0 + 1]) * (screen[s2] - screen[s0]);
+					
+					// counterclockwise in OpenGL is clockwise with y pointing down
+					if (!(area < 0)) continue;
+					
+					if (!coversPixels(screen, s0, s1, s2)) continue;
+					
+					for (int s : new int[] {s0, s2, s1}) {
+						for (int i = 0; i < screenStride; i++) {
+							result.add((float)screen[s + i]);
+						}
+					}
+					
+				}
+				
+			}
+			
+			return new ScreenTriangles(block.material, screenStride, result.toArray());
+			
+		}
+		
+		/**
+		 * checks whether a triangle's bounding box contains pixel centers
+		 */
+		private boolean coversPixels(double[] screen, int s0, int s1, int s2) {
+			
+			double minX = min(screen[s0], min(screen[s1], screen[s2]));
+			double maxX = max(screen[s0], max(screen[s1], screen[s2]));
+			double minY = min(screen[s0 + 1], min(screen[s1 + 1], screen[s2 + 1]));
+			double maxY = max(screen[s0 + 1], max(screen[s1 + 1], screen[s2 + 1]));
+			
+			return max(ceil(minX - 0.5), 0) <= min(floor(maxX - 0.5), width - 1)
+					&& max(ceil(minY - 0.5), 0) <= min(floor(maxY - 0.5), height - 1);
+			
+		}
+		
+		/**
+		 * clips a convex polygon in eye coordinates against a plane
+		 * of constant z (Sutherland-Hodgman algorithm)
+		 *
+		 * @param keepBelow  whether the part with z below the limit is kept
+		 * @return  number of vertices written to the output array
+		 */
+		private static int clip(double[] input, int count, double[] output,
+				int stride, double limit, boolean keepBelow) {
+			
+			int resultCount = 0;
+			
+			for (int i = 0; i < count; i++) {
+				
+				int a = i * stride;
+				int b = ((i + 1) % count) * stride;
+				
+				double zA = input[a + 2];
+				double zB = input[b + 2];
+				
+				boolean insideA = keepBelow ? zA <= limit : zA >= limit;
+				boolean insideB = keepBelow ? zB <= limit : zB >= limit;
+				
+				if (insideA) {
+					System.arraycopy(input, a, output, resultCount * stride, stride);
+					resultCount ++;
+				}
+				
+				if (insideA != insideB) {
+					
+					double f = (limit - zA) / (zB - zA);
+					int o = resultCount * stride;
+					
+					for (int i2 = 0; i2 < stride; i2++) {
+						output[o + i2] = input[a + i2] + f * (input[b + i2] - input[a + i2]);
+					}
+					
+					output[o + 2] = limit;
+					
+					resultCount ++;
+					
+				}
+				
+			}
+			
+			return resultCount;
+			
+		}
+		
+	}
+	
+	/**
+	 * draws triangles into a band of rows of an image.
+	 * Each band has its own depth buffer.
+	 */
+	private static final class Rasterizer {
+		
+		private final int[] pixels;
+		private final int width;
+		
+		/** first row of the band */
+		private final int startRow;
+		
+		/** first row after the band */
+		private final int endRow;
+		
+		private final float[] depthBuffer;
+		
+		private final float[] texel = new float[4];
+		
+		Rasterizer(int[] pixels, int width, int startRow, int endRow) {
+			
+			this.pixels = pixels;
+			this.width = width;
+			this.startRow = startRow;
+			this.endRow = endRow;
+			
+			depthBuffer = new float[width * (endRow - startRow)];
+			Arrays.fill(depthBuffer, Float.POSITIVE_INFINITY);
+			
+		}
+		
+		void draw(ScreenTriangles triangles, int index) {
+			
+			float[] d = triangles.data;
+			int stride = triangles.stride;
+			
+			int o0 = index * 3 * stride;
+			int o1 = o0 + stride;
+			int o2 = o1 + stride;
+			
+			double x0 = d[o0], y0 = d[o0 + 1];
+			double x1 = d[o1], y1 = d[o1 + 1];
+			double x2 = d[o2], y2 = d[o2 + 1];
+			
+			/* determine the pixels with centers in the bounding box */
+			
+			int minRow = max(startRow, (int)ceil(min(y0, min(y1, y2)) - 0.5));
+			int maxRow = min(endRow - 1, (int)floor(max(y0, max(y1, y2)) - 0.5));
+			int minColumn = max(0, (int)ceil(min(x0, min(x1, x2)) - 0.5));
+			int maxColumn = min(width - 1, (int)floor(max(x0, max(x1, x2)) - 0.5));
+			
+			if (minRow > maxRow || minColumn > maxColumn) return;
+			
+			double area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+			
+			if (!(area > 0)) return;
+			
+			/* pixels on an edge shared by two triangles are only
+			 * drawn by one of them, based on the edge's direction */
+			
+			boolean owns12 = y2 > y1 || (y2 == y1 && x2 < x1);
+			boolean owns20 = y0 > y2 || (y0 == y2 && x0 < x2);
+			boolean owns01 = y1 > y0 || (y1 == y0 && x1 < x0);
+			
+			MaterialInfo material = triangles.material;
+			int layers = material.textures.length;
+			
+			for (int row = minRow; row <= maxRow; row++) {
+				
+				double cy = row + 0.5;
+				double cx = minColumn + 0.5;
+				
+				/* edge functions, proportional to the barycentric coordinates */
+				
+				double e12 = (x2 - x1) * (cy - y1) - (y2 - y1) * (cx - x1);
+				double e20 = (x0 - x2) * (cy - y2) - (y0 - y2) * (cx - x2);
+				double e01 = (x1 - x0) * (cy - y0) - (y1 - y0) * (cx - x0);
+				
+				for (int column = minColumn; column <= maxColumn; column++,
+						e12 -= y2 - y1, e20 -= y0 - y2, e01 -= y1 - y0) {
+					
+					if (e12 < 0 || e20 < 0 || e01 < 0
+							|| (e12 == 0 && !owns12)
+							|| (e20 == 0 && !owns20)
+							|| (e01 == 0 && !owns01)) {
+						continue;
+					}
+					
+					float w0 = (float)(e12 / area);
+					float w1 = (float)(e20 / area);
+					float w2 = (float)(e01 / area);
+					
+					/* depth test */
+					
+					float z = w0 * d[o0 + 2] + w1 * d[o1 + 2] + w2 * d[o2 + 2];
+					
+					int depthIndex = (row - startRow) * width + column;
+					
+					if (!(z < depthBuffer[depthIndex])) continue;
+					
+					/* interpolate the color */
+					
+					float w = 1 / (w0 * d[o0 + 3] + w1 * d[o1 + 3] + w2 * d[o2 + 3]);
+					
+					float r = w * (w0 * d[o0 + 4] + w1 * d[o1 + 4] + w2 * d[o2 + 4]);
+					float g = w * (w0 * d[o0 + 5] + w1 * d[o1 + 5] + w2 * d[o2 + 5]);
+					float b = w * (w0 * d[o0 + 6] + w1 * d[o1 + 6] + w2 * d[o2 + 6]);
+					float alpha = 1;
+					
+					/* apply the texture layers */
+					
+					for (int layer = 0; layer < layers; layer++) {
+						
+						SoftwareTexture texture = material.textures[layer];
+						
+						if (texture == null) continue;
+						
+						int a = 7 + 2 * layer;
+						
+						float s = w * (w0 * d[o0 + a] + w1 * d[o1 + a] + w2 * d[o2 + a]);
+						float t = w * (w0 * d[o0 + a + 1] + w1 * d[o1 + a + 1] + w2 * d[o2 + a + 1]);
+						
+						texture.sample(s, t, material.wraps[layer], texel);
+						
+						if (layer == 0) {
+							
+							/* modulate */
+							
+							r *= texel[0];
+							g *= texel[1];
+							b *= texel[2];
+						
+						} else {
+							
+							/* interpolate using the texture's alpha */
+							
+							r = texel[0] * texel[3] + r * (1 - texel[3]);
+							g = texel[1] * texel[3] + g * (1 - texel[3]);
+							b = texel[2] * texel[3] + b * (1 - texel[3]);
+							
+						}
+						
+						alpha *= texel[3];
+						
+					}
+					
+					/* write the pixel */
+					
+					if (material.transparency == Transparency.BINARY
+							&& !(alpha > ALPHA_THRESHOLD)) {
+						continue;
+					}
+					
+					depthBuffer[depthIndex] = z;
+					
+					int pixelIndex = row * width + column;
+					
+					if (material.transparency == Transparency.TRUE && alpha < 1) {
+						
+						int previous = pixels[pixelIndex];
+						
+						r = r * alpha + (1 - alpha) * ((previous >> 16) & 0xFF) / 255f;
+						g = g * alpha + (1 - alpha) * ((previous >> 8) & 0xFF) / 255f;
+						b = b * alpha + (1 - alpha) * (previous & 0xFF) / 255f;
+						
+					}
+					
+					pixels[pixelIndex] = 0xFF000000
+							| toByte(r) << 16 | toByte(g) << 8 | toByte(b);
+					
+				}
+				
+			}
+			
+		}
+		
+		private static int toByte(float value) {
+			return (int)(min(max(value, 0), 1) * 255 + 0.5f);
+		}
+		
+	}
+
+}
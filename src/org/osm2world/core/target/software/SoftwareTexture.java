@@ -0,0 +1,125 @@
+package org.osm2world.core.target.software;
+
+import static java.lang.Math.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.osm2world.core.target.common.TextureData.Wrap;
+
+/**
+ * a texture image used by {@link SoftwareRenderer}.
+ * Lookups use bilinear filtering and the same wrap behavior
+ * and border color as textures in JOGLTarget.
+ *
+ * Rows are stored bottom-up, so a t coordinate of 0 refers to the bottom
+ * of the image file. This matches the textures loaded by JOGLTextureManager.
+ */
+final class SoftwareTexture {
+	
+	/** transparent white, the border color used by JOGLTarget */
+	private static final int BORDER_COLOR = 0x00FFFFFF;
+	
+	private final int width;
+	private final int height;
+	
+	/** ARGB values, bottom row first */
+	private final int[] texels;
+	
+	SoftwareTexture(BufferedImage image) {
+		
+		width = image.getWidth();
+		height = image.getHeight();
+		
+		texels = new int[width * height];
+		
+		for (int row = 0; row < height; row++) {
+			image.getRGB(0, height - 1 - row, width, 1, texels, row * width, width);
+		}
+		
+	}
+	
+	static SoftwareTexture load(File file) throws IOException {
+		
+		BufferedImage image = ImageIO.read(file);
+		
+		if (image == null) {
+			throw new IOException("unsupported image format: " + file);
+		}
+		
+		return new SoftwareTexture(image);
+		
+	}
+	
+	/**
+	 * looks up the filtered color at a texture coordinate
+	 *
+	 * @param result  array receiving red, green, blue and alpha (0 to 1)
+	 */
+	void sample(double s, double t, Wrap wrap, float[] result) {
+		
+		double fx = s * width - 0.5;
+		double fy = t * height - 0.5;
+		
+		double floorX = floor(fx);
+		double floorY = floor(fy);
+		
+		float ax = (float)(fx - floorX);
+		float ay = (float)(fy - floorY);
+		
+		long x = (long)floorX;
+		long y = (long)floorY;
+		
+		int c00 = getTexel(x, y, wrap);
+		int c10 = getTexel(x + 1, y, wrap);
+		int c01 = getTexel(x, y + 1, wrap);
+		int c11 = getTexel(x + 1, y + 1, wrap);
+		
+		float w00 = (1 - ax) * (1 - ay);
+		float w10 = ax * (1 - ay);
+		float w01 = (1 - ax) * ay;
+		float w11 = ax * ay;
+		
+		for (int channel = 0; channel < 4; channel++) {
+			
+			int shift = (channel == 3) ? 24 : 16 - 8 * channel;
+			
+			result[channel] = (w00 * ((c00 >>> shift) & 0xFF)
+					+ w10 * ((c10 >>> shift) & 0xFF)
+					+ w01 * ((c01 >>> shift) & 0xFF)
+					+ w11 * ((c11 >>> shift) & 0xFF)) / 255f;
+			
+		}
+		
+	}
+	
+	private int getTexel(long x, long y, Wrap wrap) {
+		
+		switch (wrap) {
+		
+		case REPEAT:
+			x = ((x % width) + width) % width;
+			y = ((y % height) + height) % height;
+			break;
+		
+		case CLAMP:
+			x = min(max(x, 0), width - 1);
+			y = min(max(y, 0), height - 1);
+			break;
+		
+		case CLAMP_TO_BORDER:
+			if (x < 0 || x >= width || y < 0 || y >= height) {
+				return BORDER_COLOR;
+			}
+			break;
+			
+		}
+		
+		return texels[(int)y * width + (int)x];
+		
+	}
+
+}
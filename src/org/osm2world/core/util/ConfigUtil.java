@@ -14,6 +14,8 @@ final public class ConfigUtil {
 	public static final String BG_COLOR_KEY = "backgroundColor";
 	public static final String BG_IMAGE_KEY = "backgroundImage";
 	public static final String CANVAS_LIMIT_KEY = "canvasLimit";
+	public static final String THREAD_COUNT_KEY = "threadCount";
+	public static final String SOFTWARE_RENDERING_KEY = "softwareRendering";
 	
 	public static final Color parseColor(String colorString) {
 		
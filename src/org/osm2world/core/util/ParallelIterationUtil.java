@@ -0,0 +1,159 @@
+package org.osm2world.core.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.configuration.Configuration;
+import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+
+/**
+ * utility class for applying an {@link Operation} to all elements
+ * of a collection using a {@link ForkJoinPool}.
+ *
+ * The operation must be safe to perform for different elements
+ * at the same time. The order in which elements are processed
+ * is not defined.
+ */
+final public class ParallelIterationUtil {
+	
+	private ParallelIterationUtil() { }
+	
+	/**
+	 * number of tasks per worker thread that a collection is split into.
+	 * Higher values improve load balancing if the cost per element varies.
+	 */
+	private static final int TASKS_PER_THREAD = 8;
+	
+	/**
+	 * creates a pool based on the {@link ConfigUtil#THREAD_COUNT_KEY}
+	 * configuration property. A value of 0 selects the number of
+	 * available processors.
+	 *
+	 * @return  the new pool; null if only a single thread is to be used
+	 */
+	public static final ForkJoinPool createPool(Configuration config) {
+		
+		int threadCount = config.getInt(ConfigUtil.THREAD_COUNT_KEY, 1);
+		
+		if (threadCount == 0) {
+			threadCount = Runtime.getRuntime().availableProcessors();
+		}
+		
+		if (threadCount > 1) {
+			return new ForkJoinPool(threadCount);
+		} else {
+			return null;
+		}
+		
+	}
+	
+	/**
+	 * performs an operation for each element of a collection.
+	 * Blocks until the operation has been performed for all elements.
+	 *
+	 * @param pool  the pool that will perform the operation;
+	 *              null to perform it sequentially in the current thread
+	 */
+	public static final <T> void iterate(ForkJoinPool pool,
+			Collection<? extends T> collection, Operation<T> operation) {
+		
+		if (pool == null || collection.size() < 2) {
+			
+			for (T input : collection) {
+				operation.perform(input);
+			}
+		
+		} else {
+			
+			List<? extends T> list = (collection instanceof List<?>
+					&& collection instanceof RandomAccess)
+					? (List<? extends T>)collection
+					: new ArrayList<T>(collection);
+			
+			int tasks = pool.getParallelism() * TASKS_PER_THREAD;
+			int threshold = Math.max(1, list.size() / tasks);
+			
+			pool.invoke(new IterationTask<T>(
+					list, 0, list.size(), threshold, operation));
+			
+		}
+		
+	}
+	
+	/**
+	 * splits a list into consecutive sublists which can be processed
+	 * by separate tasks. The number of sublists is chosen based on the
+	 * pool's parallelism.
+	 *
+	 * @param pool  the pool that will process the sublists;
+	 *              null to get the entire list as the only sublist
+	 */
+	public static final <T> List<List<T>> partition(ForkJoinPool pool,
+			List<T> list) {
+		
+		int parts = (pool == null) ? 1 : pool.getParallelism() * TASKS_PER_THREAD;
+		parts = Math.max(1, Math.min(parts, list.size()));
+		
+		List<List<T>> result = new ArrayList<List<T>>(parts);
+		
+		for (int i = 0; i < parts; i++) {
+			result.add(list.subList(
+					(int)((long)list.size() * i / parts),
+					(int)((long)list.size() * (i + 1) / parts)));
+		}
+		
+		return result;
+		
+	}
+	
+	/**
+	 * performs the operation for a range of list elements,
+	 * splits the range recursively until it is below a threshold
+	 */
+	private static final class IterationTask<T> extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final List<? extends T> list;
+		private final int start;
+		private final int end;
+		private final int threshold;
+		private final Operation<T> operation;
+		
+		IterationTask(List<? extends T> list, int start, int end,
+				int threshold, Operation<T> operation) {
+			this.list = list;
+			this.start = start;
+			this.end = end;
+			this.threshold = threshold;
+			this.operation = operation;
+		}
+		
+		@Override
+		protected void compute() {
+			
+			if (end - start <= threshold) {
+				
+				for (int i = start; i < end; i++) {
+					operation.perform(list.get(i));
+				}
+			
+			} else {
+				
+				int middle = (start + end) >>> 1;
+				
+				invokeAll(
+						new IterationTask<T>(list, start, middle, threshold, operation),
+						new IterationTask<T>(list, middle, end, threshold, operation));
+				
+			}
+			
+		}
+		
+	}
+
+}
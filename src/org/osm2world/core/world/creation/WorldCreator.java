@@ -3,29 +3,56 @@ package org.osm2world.core.world.creation;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.configuration.Configuration;
 import org.osm2world.core.map_data.data.MapData;
+import org.osm2world.core.util.ConfigUtil;
+import org.osm2world.core.util.ParallelIterationUtil;
+import org.osm2world.core.world.modules.common.AbstractModule;
 
 public class WorldCreator {
 
 	private Collection<WorldModule> modules;
-		
+	
+	private Configuration config;
+	
 	public WorldCreator(Configuration config, WorldModule... modules) {
 		this(config, Arrays.asList(modules));
 	}
 	
 	public WorldCreator(Configuration config, List<WorldModule> modules) {
 		this.modules = modules;
+		this.config = config;
 		for (WorldModule module : modules) {
 			module.setConfiguration(config);
 		}
 	}
 	
+	/**
+	 * applies all modules to the map data, one after another.
+	 * 
+	 * {@link AbstractModule}s are applied to the individual elements in
+	 * parallel if the {@link ConfigUtil#THREAD_COUNT_KEY} property is set.
+	 */
 	public void addRepresentationsTo(MapData mapData) {
 		
-		for (WorldModule module : modules) {
-			module.applyTo(mapData);
+		ForkJoinPool pool = ParallelIterationUtil.createPool(config);
+		
+		try {
+			
+			for (WorldModule module : modules) {
+				if (module instanceof AbstractModule) {
+					((AbstractModule)module).applyTo(mapData, pool);
+				} else {
+					module.applyTo(mapData);
+				}
+			}
+			
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
 		}
 		
 		NetworkCalculator.calculateNetworkInformationInGrid(mapData);
@@ -1,10 +1,14 @@
 package org.osm2world.core.world.modules.common;
 
+import java.util.concurrent.ForkJoinPool;
+
 import org.osm2world.core.map_data.data.MapArea;
 import org.osm2world.core.map_data.data.MapData;
 import org.osm2world.core.map_data.data.MapElement;
 import org.osm2world.core.map_data.data.MapNode;
 import org.osm2world.core.map_data.data.MapWaySegment;
+import org.osm2world.core.util.FaultTolerantIterationUtil.Operation;
+import org.osm2world.core.util.ParallelIterationUtil;
 import org.osm2world.core.world.creation.WorldModule;
 import org.osm2world.core.world.data.WorldObject;
 
@@ -13,24 +17,53 @@ import org.osm2world.core.world.data.WorldObject;
  * 
  * Subclasses need to be able to create {@link WorldObject}s
  * for each {@link MapElement} in isolation.
- * This can make parallel application of the module possible.
+ * This makes parallel application of the module possible,
+ * see {@link #applyTo(MapData, ForkJoinPool)}.
+ * 
+ * Representations of other elements that are created by the same pass
+ * may or may not be visible yet. Inspecting neighbours' representations
+ * is therefore only reliable for earlier passes and modules,
+ * or lazily after world creation has finished.
  */
 public abstract class AbstractModule extends ConfigurableWorldModule {
 		
 	@Override
 	public final void applyTo(MapData grid) {
+		applyTo(grid, null);
+	}
+	
+	/**
+	 * variant of {@link #applyTo(MapData)} that distributes the work
+	 * across the threads of a {@link ForkJoinPool}.
+	 * 
+	 * Nodes, way segments and areas are still handled one after another,
+	 * so objects for way segments can rely on the objects for nodes
+	 * being complete, and so on.
+	 * 
+	 * @param pool  pool to use; null for sequential application
+	 */
+	public final void applyTo(MapData grid, ForkJoinPool pool) {
 		
-		for (MapNode node : grid.getMapNodes()) {
-			applyToNode(node);
-		}
-
-		for (MapWaySegment segment : grid.getMapWaySegments()) {
-			applyToWaySegment(segment);
-		}
-
-		for (MapArea area : grid.getMapAreas()) {
-			applyToArea(area);
-		}
+		ParallelIterationUtil.iterate(pool, grid.getMapNodes(),
+				new Operation<MapNode>() {
+			@Override public void perform(MapNode node) {
+				applyToNode(node);
+			}
+		});
+		
+		ParallelIterationUtil.iterate(pool, grid.getMapWaySegments(),
+				new Operation<MapWaySegment>() {
+			@Override public void perform(MapWaySegment segment) {
+				applyToWaySegment(segment);
+			}
+		});
+		
+		ParallelIterationUtil.iterate(pool, grid.getMapAreas(),
+				new Operation<MapArea>() {
+			@Override public void perform(MapArea area) {
+				applyToArea(area);
+			}
+		});
 		
 	}
 
@@ -6,7 +6,6 @@ import static java.util.Arrays.asList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
 import org.osm2world.core.map_elevation.data.GroundState;
@@ -15,6 +14,7 @@ import org.osm2world.core.math.InvalidGeometryException;
 import org.osm2world.core.math.SimplePolygonXZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.math.datastructures.PolygonIndex;
 import org.osm2world.core.world.creation.WorldModule;
 import org.osm2world.core.world.data.WorldObject;
 import org.osm2world.core.world.data.WorldObjectWithOutline;
@@ -286,19 +286,22 @@ public final class WorldModuleGeometryUtil {
 		
 		/* perform filtering of positions */
 		
-		Iterator<VectorXZ> positionIterator = positions.iterator();
+		PolygonIndex filterIndex = new PolygonIndex(filterPolygons);
 		
-		while (positionIterator.hasNext()) {
-			
-			VectorXZ pos = positionIterator.next();
-			
-			for (SimplePolygonXZ filterPolygon : filterPolygons) {
-				if (filterPolygon.contains(pos)) {
-					positionIterator.remove();
-					break;
-				}
+		List<VectorXZ> remainingPositions = new ArrayList<VectorXZ>(positions.size());
+		
+		for (VectorXZ pos : positions) {
+			if (!filterIndex.anyPolygonContains(pos)) {
+				remainingPositions.add(pos);
 			}
-			
+		}
+		
+		/* replace the contents at once, removing individual elements
+		 * from a list would be slow for large numbers of positions */
+		
+		if (remainingPositions.size() < positions.size()) {
+			positions.clear();
+			positions.addAll(remainingPositions);
 		}
 		
 	}
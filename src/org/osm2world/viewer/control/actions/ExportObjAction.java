@@ -40,7 +40,8 @@ public class ExportObjAction extends AbstractExportAction {
 					file,
 					data.getConversionResults().getMapData(),
 					data.getConversionResults().getMapProjection(),
-					null, renderOptions.projection);
+					null, renderOptions.projection,
+					data.getConfig());
 
 			messageManager.addMessage("exported Wavefront .obj file " + file);
 
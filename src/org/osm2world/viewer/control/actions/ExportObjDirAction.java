@@ -49,7 +49,7 @@ public class ExportObjDirAction extends AbstractExportAction {
 					data.getConversionResults().getMapData(),
 					data.getConversionResults().getMapProjection(),
 					null, renderOptions.projection,
-					primitiveThresholdPerFile);
+					data.getConfig(), primitiveThresholdPerFile);
 
 			messageManager.addMessage("exported Wavefront .obj file " + file);
 
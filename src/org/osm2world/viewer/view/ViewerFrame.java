@@ -19,6 +19,7 @@ import javax.swing.JRadioButtonMenuItem;
 import org.apache.commons.configuration.Configuration;
 import org.osm2world.core.map_elevation.creation.EleConstraintEnforcer;
 import org.osm2world.core.map_elevation.creation.InverseDistanceWeightingInterpolator;
+import org.osm2world.core.map_elevation.creation.IterativeEleConstraintEnforcer;
 import org.osm2world.core.map_elevation.creation.LPEleConstraintEnforcer;
 import org.osm2world.core.map_elevation.creation.LeastSquaresInterpolator;
 import org.osm2world.core.map_elevation.creation.LinearInterpolator;
@@ -290,7 +291,8 @@ public class ViewerFrame extends JFrame{
 			List<Class<? extends EleConstraintEnforcer>> enforcerClasses = asList(
 					NoneEleConstraintEnforcer.class,
 					SimpleEleConstraintEnforcer.class,
-					LPEleConstraintEnforcer.class);
+					LPEleConstraintEnforcer.class,
+					IterativeEleConstraintEnforcer.class);
 			
 			for (Class<? extends EleConstraintEnforcer> c : enforcerClasses) {
 				
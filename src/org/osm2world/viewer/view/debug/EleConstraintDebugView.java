@@ -5,6 +5,7 @@ import static org.osm2world.core.math.GeometryUtil.interpolateBetween;
 
 import java.awt.Color;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.osm2world.core.map_elevation.creation.EleConstraintEnforcer;
 import org.osm2world.core.map_elevation.data.EleConnector;
@@ -146,6 +147,11 @@ public class EleConstraintDebugView extends DebugView {
 			
 		}
 		
+		@Override
+		public void enforceConstraints(ForkJoinPool pool) {
+			
+		}
+		
 	}
 	
 }
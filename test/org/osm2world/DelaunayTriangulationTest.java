@@ -5,12 +5,15 @@ import static org.junit.Assert.*;
 import static org.osm2world.core.test.TestUtil.assertAlmostEquals;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import org.junit.Test;
 import org.osm2world.core.map_elevation.creation.DelaunayTriangulation;
 import org.osm2world.core.map_elevation.creation.DelaunayTriangulation.DelaunayTriangle;
+import org.osm2world.core.map_elevation.creation.DelaunayTriangulation.NaturalNeighbors;
 import org.osm2world.core.math.AxisAlignedBoundingBoxXZ;
 import org.osm2world.core.math.VectorXYZ;
 import org.osm2world.core.math.VectorXZ;
@@ -69,6 +72,113 @@ public class DelaunayTriangulationTest {
 		
 	}
 	
+	@Test
+	public void testInsertAll() {
+		
+		Random random = new Random(42);
+		
+		AxisAlignedBoundingBoxXZ bounds = new AxisAlignedBoundingBoxXZ(
+				-SIZE, -SIZE, +SIZE, +SIZE);
+		
+		List<VectorXYZ> points = new ArrayList<VectorXYZ>();
+		
+		for (int i = 0; i < 500; i++) {
+			points.add(new VectorXYZ(
+					(random.nextDouble() * 2 * SIZE) - SIZE, 0,
+					(random.nextDouble() * 2 * SIZE) - SIZE));
+		}
+		
+		DelaunayTriangulation triangulation = new DelaunayTriangulation(bounds);
+		triangulation.insertAll(points);
+		
+		assertTriangulationProperties(triangulation, points);
+		
+		/* the result must not depend on the insertion order
+		 * (apart from the choice of each triangle's first vertex) */
+		
+		DelaunayTriangulation triangulation2 = new DelaunayTriangulation(bounds);
+		
+		for (VectorXYZ point : points) {
+			triangulation2.insert(point);
+		}
+		
+		assertEquals(getVertexSets(triangulation),
+				getVertexSets(triangulation2));
+		
+	}
+	
+	@Test
+	public void testProbe() {
+		
+		Random random = new Random(42);
+		
+		AxisAlignedBoundingBoxXZ bounds = new AxisAlignedBoundingBoxXZ(
+				-SIZE, -SIZE, +SIZE, +SIZE);
+		
+		List<VectorXYZ> points = new ArrayList<VectorXYZ>();
+		
+		for (int i = 0; i < 200; i++) {
+			points.add(new VectorXYZ(
+					(random.nextDouble() * 2 * SIZE) - SIZE, 0,
+					(random.nextDouble() * 2 * SIZE) - SIZE));
+		}
+		
+		DelaunayTriangulation triangulation = new DelaunayTriangulation(bounds);
+		triangulation.insertAll(points);
+		
+		Set<Set<VectorXYZ>> trianglesBefore = getVertexSets(triangulation);
+		
+		for (int i = 0; i < 200; i++) {
+			
+			VectorXZ pos = new VectorXZ(
+					(random.nextDouble() * 1.8 * SIZE) - 0.9 * SIZE,
+					(random.nextDouble() * 1.8 * SIZE) - 0.9 * SIZE);
+			
+			NaturalNeighbors nn = triangulation.probe(pos);
+			
+			/* weights sum up to 1 and reproduce the position */
+			
+			double weightSum = 0;
+			VectorXZ weightedPos = VectorXZ.NULL_VECTOR;
+			
+			for (int n = 0; n < nn.neighbors.length; n++) {
+				assertTrue(nn.relativeWeights[n] >= 0);
+				weightSum += nn.relativeWeights[n];
+				weightedPos = weightedPos.add(
+						nn.neighbors[n].xz().mult(nn.relativeWeights[n]));
+			}
+			
+			assertAlmostEquals(1, weightSum);
+			assertAlmostEquals(pos.x, weightedPos.x);
+			assertAlmostEquals(pos.z, weightedPos.z);
+			
+		}
+		
+		/* probing a known point only returns that point */
+		
+		NaturalNeighbors nn = triangulation.probe(points.get(0).xz());
+		assertEquals(1, nn.neighbors.length);
+		assertSame(points.get(0), nn.neighbors[0]);
+		
+		/* probing doesn't modify the triangulation */
+		
+		assertEquals(trianglesBefore, getVertexSets(triangulation));
+		
+	}
+	
+	private static Set<Set<VectorXYZ>> getVertexSets(
+			DelaunayTriangulation triangulation) {
+		
+		Set<Set<VectorXYZ>> result = new HashSet<Set<VectorXYZ>>();
+		
+		for (DelaunayTriangle t : triangulation.getTriangles()) {
+			result.add(new HashSet<VectorXYZ>(asList(t.p0, t.p1, t.p2)));
+		}
+		
+		return result;
+		
+	}
+	
 	/**
 	 * asserts that two triangulations are equal
 	 */
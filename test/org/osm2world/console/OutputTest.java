@@ -0,0 +1,30 @@
+package org.osm2world.console;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Test;
+import org.osm2world.core.target.common.rendering.TileNumber;
+
+public class OutputTest {
+	
+	@Test
+	public void testFileForTile() {
+		
+		TileNumber tile = new TileNumber(16, 34000, 22001);
+		
+		File dir = new File("out").getAbsoluteFile();
+		
+		assertEquals(new File(dir, "scene_16_34000_22001.obj"),
+				Output.fileForTile(new File(dir, "scene.obj"), tile));
+		
+		assertEquals(new File(dir, "scene.v2_16_34000_22001.glb"),
+				Output.fileForTile(new File(dir, "scene.v2.glb"), tile));
+		
+		assertEquals(new File(dir, "scene_16_34000_22001"),
+				Output.fileForTile(new File(dir, "scene"), tile));
+		
+	}
+
+}
@@ -0,0 +1,145 @@
+package org.osm2world.core;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.EMPTY_LIST;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.junit.Test;
+import org.openstreetmap.josm.plugins.graphview.core.data.MapBasedTagGroup;
+import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.osm2world.core.ConversionFacade.Results;
+import org.osm2world.core.TiledConversion.TileOutput;
+import org.osm2world.core.osm.data.OSMData;
+import org.osm2world.core.osm.data.OSMNode;
+import org.osm2world.core.osm.data.OSMWay;
+import org.osm2world.core.target.common.rendering.TileNumber;
+import org.osm2world.core.util.ConfigUtil;
+import org.osm2world.core.util.functions.Factory;
+
+import com.google.common.collect.Iterables;
+
+public class TiledConversionTest {
+	
+	private static final int ZOOM = 16;
+	
+	private static final TileNumber TILE_A = new TileNumber(ZOOM, 34000, 22000);
+	private static final TileNumber TILE_B = new TileNumber(ZOOM, 34001, 22000);
+	private static final TileNumber TILE_C = new TileNumber(ZOOM, 34003, 22000);
+	
+	/**
+	 * a road from the center of tile A to the center of tile B,
+	 * and a tree in the center of tile C
+	 */
+	@SuppressWarnings("unchecked")
+	private static OSMData createTestData() {
+		
+		OSMNode nodeA = nodeAtTileCenter(TILE_A, new MapBasedTagGroup(), 1);
+		OSMNode nodeB = nodeAtTileCenter(TILE_B, new MapBasedTagGroup(), 2);
+		OSMNode nodeC = nodeAtTileCenter(TILE_C,
+				new MapBasedTagGroup(new Tag("natural", "tree")), 3);
+		
+		OSMWay road = new OSMWay(
+				new MapBasedTagGroup(new Tag("highway", "residential")),
+				4, asList(nodeA, nodeB));
+		
+		return new OSMData(EMPTY_LIST, asList(nodeA, nodeB, nodeC),
+				asList(road), EMPTY_LIST);
+		
+	}
+	
+	private static OSMNode nodeAtTileCenter(TileNumber tile,
+			MapBasedTagGroup tags, long id) {
+		return new OSMNode(
+				TileNumber.latForTileY(tile.y + 0.5, tile.zoom),
+				TileNumber.lonForTileX(tile.x + 0.5, tile.zoom),
+				tags, id);
+	}
+	
+	@Test
+	public void testSplitIntoTiles() {
+		
+		TiledConversion tiledConversion =
+				new TiledConversion(null, null, ZOOM, 0.1);
+		
+		Map<TileNumber, OSMData> tileMap =
+				tiledConversion.splitIntoTiles(createTestData());
+		
+		assertEquals(asList(TILE_A, TILE_B, TILE_C),
+				new ArrayList<TileNumber>(tileMap.keySet()));
+		
+		/* the road is included in both tiles, with all of its nodes */
+		
+		for (TileNumber tile : asList(TILE_A, TILE_B)) {
+			OSMData tileData = tileMap.get(tile);
+			assertEquals(1, tileData.getWays().size());
+			assertEquals(2, tileData.getNodes().size());
+		}
+		
+		OSMData tileDataC = tileMap.get(TILE_C);
+		assertEquals(0, tileDataC.getWays().size());
+		assertEquals(1, tileDataC.getNodes().size());
+		assertEquals(3, tileDataC.getNodes().iterator().next().id);
+		
+		/* the bound is the tile extended by the overlap */
+		
+		Bound bound = tileDataC.getBounds().iterator().next();
+		
+		assertEquals(TileNumber.lonForTileX(TILE_C.x - 0.1, ZOOM),
+				bound.getLeft(), 1e-9);
+		assertEquals(TileNumber.lonForTileX(TILE_C.x + 1.1, ZOOM),
+				bound.getRight(), 1e-9);
+		assertEquals(TileNumber.latForTileY(TILE_C.y - 0.1, ZOOM),
+				bound.getTop(), 1e-9);
+		assertEquals(TileNumber.latForTileY(TILE_C.y + 1.1, ZOOM),
+				bound.getBottom(), 1e-9);
+		
+	}
+	
+	@Test
+	public void testParallelConversion() {
+		
+		final AtomicInteger facadeCount = new AtomicInteger();
+		
+		Factory<ConversionFacade> facadeFactory = new Factory<ConversionFacade>() {
+			@Override public ConversionFacade make() {
+				facadeCount.incrementAndGet();
+				return new ConversionFacade();
+			}
+		};
+		
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty(ConfigUtil.THREAD_COUNT_KEY, 3);
+		
+		final List<TileNumber> convertedTiles =
+				Collections.synchronizedList(new ArrayList<TileNumber>());
+		
+		new TiledConversion(facadeFactory, config, ZOOM, 0.1).convert(
+				createTestData(), new TileOutput() {
+			@Override public void writeTile(TileNumber tile, Results results) {
+				if (!Iterables.isEmpty(results.getMapData().getWorldObjects())) {
+					convertedTiles.add(tile);
+				}
+			}
+		});
+		
+		Collections.sort(convertedTiles, new Comparator<TileNumber>() {
+			@Override public int compare(TileNumber t1, TileNumber t2) {
+				return t1.x - t2.x;
+			}
+		});
+		
+		assertEquals(asList(TILE_A, TILE_B, TILE_C), convertedTiles);
+		assertEquals(3, facadeCount.get());
+		
+	}
+
+}
@@ -9,14 +9,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.osm2world.core.map_data.data.MapArea;
 import org.osm2world.core.map_data.data.MapData;
+import org.osm2world.core.map_data.data.MapElement;
 import org.osm2world.core.map_data.data.MapNode;
+import org.osm2world.core.map_data.data.overlaps.MapOverlap;
 import org.osm2world.core.math.VectorXZ;
 import org.osm2world.core.osm.creation.OsmosisReader;
 import org.osm2world.core.osm.data.OSMData;
+import org.osm2world.core.util.ConfigUtil;
 
 public class OSMToMapDataConverterTest {
 
@@ -24,6 +28,15 @@ public class OSMToMapDataConverterTest {
 	 * loads {@link MapData} from a file in the test files directory
 	 */
 	private static MapData loadMapData(String filename) throws IOException {
+		return loadMapData(filename, new BaseConfiguration());
+	}
+	
+	/**
+	 * loads {@link MapData} from a file in the test files directory
+	 * using a specific configuration
+	 */
+	private static MapData loadMapData(String filename, Configuration config)
+			throws IOException {
 		
 		File testFile = new File("test"+File.separator+"files"
 				+File.separator+filename);
@@ -32,7 +45,7 @@ public class OSMToMapDataConverterTest {
 		OriginMapProjection mapProjection = new MetricMapProjection();
 		mapProjection.setOrigin(osmData);
 		
-		OSMToMapDataConverter converter = new OSMToMapDataConverter(mapProjection, new BaseConfiguration());
+		OSMToMapDataConverter converter = new OSMToMapDataConverter(mapProjection, config);
 		return converter.createMapData(osmData);
 		
 	}
@@ -210,4 +223,41 @@ public class OSMToMapDataConverterTest {
 		
 	}
 	
+	/**
+	 * checks that parallel intersection calculation
+	 * produces the same overlaps, in the same order, as the serial variant
+	 */
+	@Test
+	public void testParallelIntersections() throws IOException {
+		
+		BaseConfiguration parallelConfig = new BaseConfiguration();
+		parallelConfig.setProperty(ConfigUtil.THREAD_COUNT_KEY, 4);
+		
+		for (String filename : asList("coastline_islands_and_coast.osm",
+				"mp_two_holes_advanced.osm", "self_intersection.osm")) {
+			
+			MapData serialData = loadMapData(filename);
+			MapData parallelData = loadMapData(filename, parallelConfig);
+			
+			assertEquals(describeOverlaps(serialData),
+					describeOverlaps(parallelData));
+			
+		}
+		
+	}
+	
+	private static List<String> describeOverlaps(MapData mapData) {
+		
+		List<String> result = new ArrayList<String>();
+		
+		for (MapElement element : mapData.getMapElements()) {
+			for (MapOverlap<?, ?> overlap : element.getOverlaps()) {
+				result.add(element + ": " + overlap + " " + overlap.type);
+			}
+		}
+		
+		return result;
+		
+	}
+	
 }
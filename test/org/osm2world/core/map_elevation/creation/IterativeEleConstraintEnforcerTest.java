@@ -0,0 +1,118 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.lang.Math.abs;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static org.osm2world.core.map_elevation.creation.EleConstraintEnforcer.ConstraintType.*;
+import static org.osm2world.core.map_elevation.data.GroundState.*;
+
+import org.junit.Test;
+import org.osm2world.core.map_elevation.data.EleConnector;
+import org.osm2world.core.map_elevation.data.GroundState;
+import org.osm2world.core.math.VectorXZ;
+
+public class IterativeEleConstraintEnforcerTest {
+	
+	private static final double DELTA = 1e-3;
+	
+	private static EleConnector createConnector(double x,
+			GroundState groundState, double ele) {
+		
+		EleConnector c = new EleConnector(new VectorXZ(x, 0), null, groundState);
+		c.setPosXYZ(c.pos.xyz(ele));
+		return c;
+		
+	}
+	
+	@Test
+	public void testSameEle() {
+		
+		EleConnector c1 = createConnector(0, ON, 10);
+		EleConnector c2 = createConnector(1, ON, 20);
+		EleConnector c3 = createConnector(2, ON, 30);
+		
+		IterativeEleConstraintEnforcer enforcer = new IterativeEleConstraintEnforcer();
+		enforcer.addConnectors(asList(c1, c2, c3));
+		enforcer.requireSameEle(asList(c1, c2, c3));
+		enforcer.enforceConstraints();
+		
+		/* the least squares solution is the average */
+		
+		for (EleConnector c : asList(c1, c2, c3)) {
+			assertEquals(20, c.getPosXYZ().y, DELTA);
+		}
+		
+	}
+	
+	@Test
+	public void testVerticalDistance() {
+		
+		/* a bridge connector which must be at least 5m above the road below */
+		
+		EleConnector bridge = createConnector(0, ABOVE, 100);
+		EleConnector road = createConnector(0, ON, 100);
+		
+		EleConnector unaffected = createConnector(10, ON, 50);
+		
+		IterativeEleConstraintEnforcer enforcer = new IterativeEleConstraintEnforcer();
+		enforcer.addConnectors(asList(bridge, road, unaffected));
+		enforcer.requireVerticalDistance(MIN, 5, bridge, road);
+		enforcer.requireVerticalDistance(MAX, 10, bridge, road);
+		enforcer.enforceConstraints();
+		
+		double distance = bridge.getPosXYZ().y - road.getPosXYZ().y;
+		
+		assertTrue(distance >= 5 - DELTA && distance <= 10 + DELTA);
+		
+		// the connector above the ground should be moved much more
+		assertTrue(road.getPosXYZ().y < 100 && road.getPosXYZ().y > 99.9);
+		
+		assertEquals(50, unaffected.getPosXYZ().y, 0);
+		
+	}
+	
+	@Test
+	public void testIncline() {
+		
+		EleConnector c1 = createConnector(0, ON, 0);
+		EleConnector c2 = createConnector(10, ON, 10);
+		EleConnector c3 = createConnector(20, ON, 0);
+		EleConnector c4 = createConnector(30, ON, 10);
+		
+		IterativeEleConstraintEnforcer enforcer = new IterativeEleConstraintEnforcer();
+		enforcer.addConnectors(asList(c1, c2, c3, c4));
+		enforcer.requireIncline(MAX, 0.1, asList(c1, c2, c3, c4));
+		enforcer.requireIncline(MIN, -0.1, asList(c1, c2, c3, c4));
+		enforcer.enforceConstraints();
+		
+		EleConnector[] cs = {c1, c2, c3, c4};
+		
+		for (int i = 0; i + 1 < cs.length; i++) {
+			double diff = cs[i+1].getPosXYZ().y - cs[i].getPosXYZ().y;
+			assertTrue(abs(diff) <= 1 + DELTA);
+		}
+		
+	}
+	
+	@Test
+	public void testJoinedConnectors() {
+		
+		Object reference = new Object();
+		
+		EleConnector c1 = new EleConnector(new VectorXZ(0, 0), reference, ABOVE);
+		c1.setPosXYZ(c1.pos.xyz(10));
+		EleConnector c2 = new EleConnector(new VectorXZ(0, 0), reference, ABOVE);
+		c2.setPosXYZ(c2.pos.xyz(10));
+		EleConnector ground = createConnector(0, ON, 10);
+		
+		IterativeEleConstraintEnforcer enforcer = new IterativeEleConstraintEnforcer();
+		enforcer.addConnectors(asList(c1, c2, ground));
+		enforcer.requireVerticalDistance(MIN, 3, c2, ground);
+		enforcer.enforceConstraints();
+		
+		assertEquals(c1.getPosXYZ().y, c2.getPosXYZ().y, 0);
+		assertTrue(c1.getPosXYZ().y - ground.getPosXYZ().y >= 3 - DELTA);
+		
+	}
+	
+}
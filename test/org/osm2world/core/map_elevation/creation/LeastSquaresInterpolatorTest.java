@@ -0,0 +1,120 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.osm2world.core.map_elevation.creation.LeastSquaresInterpolator.SiteWithPolynomial;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+public class LeastSquaresInterpolatorTest {
+	
+	private static final double OFFSET_X = 3000;
+	private static final double OFFSET_Z = -2000;
+	
+	private static double quadraticEle(double x, double z) {
+		x -= OFFSET_X;
+		z -= OFFSET_Z;
+		return 300 + 0.1 * x - 0.05 * z + 2e-4 * x*x - 1e-4 * x*z + 3e-4 * z*z;
+	}
+	
+	/**
+	 * creates sites on a quadratic surface, both scattered randomly
+	 * and on a regular raster. The sites are far from the origin
+	 * to test the numerical stability
+	 * (but close enough to keep the coefficients plausible).
+	 */
+	private static List<VectorXYZ> createSites() {
+		
+		Random random = new Random(42);
+		
+		List<VectorXYZ> sites = new ArrayList<VectorXYZ>();
+		
+		for (int i = 0; i < 1000; i++) {
+			double x = OFFSET_X + random.nextDouble() * 500;
+			double z = OFFSET_Z + random.nextDouble() * 500;
+			sites.add(new VectorXYZ(x, quadraticEle(x, z), z));
+		}
+		
+		for (int i = 0; i < 20; i++) {
+			for (int j = 0; j < 20; j++) {
+				double x = OFFSET_X + 600 + 30 * i;
+				double z = OFFSET_Z + 30 * j;
+				sites.add(new VectorXYZ(x, quadraticEle(x, z), z));
+			}
+		}
+		
+		return sites;
+		
+	}
+	
+	@Test
+	public void testQuadraticSurface() {
+		
+		LeastSquaresInterpolator interpolator = new LeastSquaresInterpolator();
+		interpolator.setKnownSites(createSites());
+		
+		/* every site's polynomial should reproduce the surface */
+		
+		for (SiteWithPolynomial site : interpolator.getSitesWithPolynomials()) {
+			
+			assertNotNull(site.getPolynomial());
+			
+			double x = site.pos.x + 10;
+			double z = site.pos.z - 10;
+			
+			assertEquals(quadraticEle(x, z),
+					site.getPolynomial().evaluateAt(x, z), 1e-4);
+			
+		}
+		
+		Random random = new Random(42);
+		
+		for (int i = 0; i < 100; i++) {
+			VectorXZ pos = new VectorXZ(
+					OFFSET_X + random.nextDouble() * 1100,
+					OFFSET_Z + random.nextDouble() * 500);
+			assertEquals(quadraticEle(pos.x, pos.z),
+					interpolator.interpolateEle(pos).y, 1e-4);
+		}
+		
+	}
+	
+	@Test
+	public void testParallelFitting() {
+		
+		List<VectorXYZ> sites = createSites();
+		
+		LeastSquaresInterpolator serialInterpolator = new LeastSquaresInterpolator();
+		serialInterpolator.setKnownSites(sites);
+		
+		ForkJoinPool pool = new ForkJoinPool(4);
+		
+		LeastSquaresInterpolator parallelInterpolator = new LeastSquaresInterpolator();
+		parallelInterpolator.setKnownSites(sites, pool);
+		
+		pool.shutdown();
+		
+		Iterator<SiteWithPolynomial> parallelSites =
+				parallelInterpolator.getSitesWithPolynomials().iterator();
+		
+		for (SiteWithPolynomial serialSite :
+				serialInterpolator.getSitesWithPolynomials()) {
+			
+			SiteWithPolynomial parallelSite = parallelSites.next();
+			
+			assertEquals(serialSite.pos, parallelSite.pos);
+			assertEquals(String.valueOf(serialSite.getPolynomial()),
+					String.valueOf(parallelSite.getPolynomial()));
+			
+		}
+		
+	}
+
+}
@@ -0,0 +1,110 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.Test;
+import org.osm2world.core.map_data.creation.LatLon;
+import org.osm2world.core.map_data.creation.MetricMapProjection;
+import org.osm2world.core.map_data.data.MapData;
+import org.osm2world.core.map_elevation.creation.RasterInterpolator.Method;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+
+public class RasterInterpolatorTest {
+	
+	private static final int SAMPLES = 11;
+	
+	/**
+	 * raster data where the elevation is a linear function of lat and lon.
+	 * Tiles south of the equator are missing.
+	 */
+	private static class LinearRasterData implements RasterTerrainElevationData {
+		
+		static double eleAt(double lat, double lon) {
+			return 1000 * lat - 500 * lon;
+		}
+		
+		@Override
+		public RasterTile getTile(final int tileLon, final int tileLat) {
+			
+			if (tileLat < 0) return null;
+			
+			return new RasterTile() {
+				
+				@Override
+				public int getSamples() {
+					return SAMPLES;
+				}
+				
+				@Override
+				public double getEle(int x, int y) {
+					return eleAt(tileLat + y / (double)(SAMPLES - 1),
+							tileLon + x / (double)(SAMPLES - 1));
+				}
+			
+			};
+			
+		}
+		
+		@Override
+		public Collection<VectorXYZ> getSites(double minLon, double minLat,
+				double maxLon, double maxLat) {
+			return emptyList();
+		}
+		
+		@Override
+		public Collection<VectorXYZ> getSites(MapData mapData) {
+			return emptyList();
+		}
+		
+	}
+	
+	private static void testLinearRaster(Method method) {
+		
+		MetricMapProjection projection = new MetricMapProjection();
+		projection.setOrigin(new LatLon(1, 1));
+		
+		RasterInterpolator interpolator = new RasterInterpolator(
+				new LinearRasterData(), projection, method);
+		
+		Random random = new Random(42);
+		
+		for (int i = 0; i < 1000; i++) {
+			
+			// positions on both sides of the tile borders at lat/lon 1
+			double lat = 0.5 + 1.5 * random.nextDouble();
+			double lon = 0.5 + 1.5 * random.nextDouble();
+			
+			VectorXZ pos = projection.calcPos(lat, lon);
+			VectorXYZ result = interpolator.interpolateEle(pos);
+			
+			assertEquals(pos.x, result.x, 0);
+			assertEquals(pos.z, result.z, 0);
+			assertEquals(LinearRasterData.eleAt(
+					projection.calcLat(pos), projection.calcLon(pos)),
+					result.y, 1e-6);
+			
+		}
+		
+		/* missing tiles */
+		
+		assertEquals(0, interpolator.interpolateEle(
+				projection.calcPos(-0.5, 1)).y, 0);
+		
+	}
+	
+	@Test
+	public void testBilinear() {
+		testLinearRaster(Method.BILINEAR);
+	}
+	
+	@Test
+	public void testBicubic() {
+		testLinearRaster(Method.BICUBIC);
+	}
+
+}
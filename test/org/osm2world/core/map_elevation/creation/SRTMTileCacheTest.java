@@ -0,0 +1,126 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.osm2world.core.map_data.creation.LatLon;
+import org.osm2world.core.map_data.creation.MetricMapProjection;
+
+public class SRTMTileCacheTest {
+	
+	/**
+	 * writes a tile file where each value is (x + y) modulo 1000
+	 */
+	private static File createTileFile(File directory, String name,
+			int pixels) throws IOException {
+		
+		File file = new File(directory, name);
+		file.deleteOnExit();
+		
+		DataOutputStream out = new DataOutputStream(
+				new FileOutputStream(file));
+		
+		try {
+			for (int row = 0; row < pixels; row++) {
+				int y = pixels - 1 - row;
+				for (int x = 0; x < pixels; x++) {
+					out.writeShort((x + y) % 1000);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		
+		return file;
+		
+	}
+	
+	private static File createTempDirectory() throws IOException {
+		
+		File directory = File.createTempFile("srtm", "");
+		directory.delete();
+		directory.mkdir();
+		directory.deleteOnExit();
+		
+		return directory;
+		
+	}
+	
+	@Test
+	public void testTileResolutions() throws IOException {
+		
+		File directory = createTempDirectory();
+		
+		SRTMTile tile3 = new SRTMTile(
+				createTileFile(directory, "N00E000.hgt", SRTMTile.PIXELS));
+		SRTMTile tile1 = new SRTMTile(
+				createTileFile(directory, "N00E001.hgt", SRTMTile.PIXELS_1_ARCSECOND));
+		
+		assertEquals(1201, tile3.pixels);
+		assertEquals(3601, tile1.pixels);
+		
+		assertEquals(0, tile3.getData(0, 0));
+		assertEquals(201, tile3.getData(1200, 1));
+		assertEquals(3, tile1.getData(1, 2));
+		assertEquals(200, tile1.getData(3600, 3600));
+		
+	}
+	
+	@Test
+	public void testEviction() throws IOException {
+		
+		File directory = createTempDirectory();
+		
+		File fileA = createTileFile(directory, "N00E000.hgt", SRTMTile.PIXELS);
+		File fileB = createTileFile(directory, "N00E001.hgt", SRTMTile.PIXELS);
+		File fileC = createTileFile(directory, "N00E002.hgt", SRTMTile.PIXELS);
+		
+		SRTMTileCache cache = new SRTMTileCache(2);
+		
+		SRTMTile tileA = cache.getTile(fileA);
+		cache.getTile(fileB);
+		assertSame(tileA, cache.getTile(fileA));
+		
+		/* B is the least recently used tile and will be evicted */
+		
+		cache.getTile(fileC);
+		
+		assertEquals(2, cache.size());
+		assertSame(tileA, cache.getTile(fileA));
+		
+		cache.setCapacity(1);
+		assertEquals(1, cache.size());
+		
+		assertNull(cache.getTile(new File(directory, "N00E003.hgt")));
+		
+	}
+	
+	@Test
+	public void testSharedCache() throws IOException {
+		
+		File directory = createTempDirectory();
+		createTileFile(directory, "N00E000.hgt", SRTMTile.PIXELS);
+		
+		SRTMTileCache cache = new SRTMTileCache(4);
+		
+		MetricMapProjection projection = new MetricMapProjection();
+		projection.setOrigin(new LatLon(0.15, 0.15));
+		
+		SRTMData data1 = new SRTMData(directory, projection, cache);
+		SRTMData data2 = new SRTMData(directory, projection, cache);
+		
+		assertEquals(0, cache.size());
+		
+		assertFalse(data1.getSites(0.1, 0.1, 0.2, 0.2).isEmpty());
+		assertFalse(data2.getSites(0.1, 0.1, 0.2, 0.2).isEmpty());
+		
+		assertEquals(1, cache.size());
+		
+	}
+
+}
@@ -0,0 +1,73 @@
+package org.osm2world.core.map_elevation.creation;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static org.osm2world.core.map_elevation.data.GroundState.*;
+
+import org.junit.Test;
+import org.osm2world.core.map_elevation.data.EleConnector;
+import org.osm2world.core.math.VectorXZ;
+
+public class SimpleEleConstraintEnforcerTest {
+	
+	private static EleConnector createConnector(double x, double z,
+			Object reference, double ele) {
+		
+		EleConnector c = new EleConnector(new VectorXZ(x, z), reference, ON);
+		c.setPosXYZ(c.pos.xyz(ele));
+		return c;
+		
+	}
+	
+	@Test
+	public void testConnectorsAtSamePosition() {
+		
+		Object reference = new Object();
+		
+		EleConnector c1 = createConnector(0, 0, reference, 1);
+		EleConnector c2 = createConnector(0, 0, reference, 3);
+		EleConnector c3 = createConnector(0, 0, null, 8);
+		EleConnector c4 = createConnector(5, 0, null, 10);
+		EleConnector above = new EleConnector(new VectorXZ(0, 0), null, ABOVE);
+		above.setPosXYZ(above.pos.xyz(100));
+		
+		SimpleEleConstraintEnforcer enforcer = new SimpleEleConstraintEnforcer();
+		enforcer.addConnectors(asList(c1, c2));
+		enforcer.addConnectors(asList(c3, c4, above));
+		enforcer.enforceConstraints();
+		
+		assertEquals(4, c1.getPosXYZ().y, 1e-10);
+		assertEquals(4, c2.getPosXYZ().y, 1e-10);
+		assertEquals(4, c3.getPosXYZ().y, 1e-10);
+		assertEquals(10, c4.getPosXYZ().y, 1e-10);
+		assertEquals(105, above.getPosXYZ().y, 1e-10);
+		
+	}
+	
+	@Test
+	public void testRequireSameEle() {
+		
+		EleConnector c1 = createConnector(0, 0, null, 1);
+		EleConnector c2 = createConnector(1, 0, null, 2);
+		EleConnector c3 = createConnector(2, 0, null, 3);
+		EleConnector c4 = createConnector(3, 0, null, 4);
+		EleConnector c5 = createConnector(4, 0, null, 5);
+		
+		SimpleEleConstraintEnforcer enforcer = new SimpleEleConstraintEnforcer();
+		enforcer.addConnectors(asList(c1, c2, c3, c4, c5));
+		
+		enforcer.requireSameEle(c1, c2);
+		enforcer.requireSameEle(c4, c3);
+		enforcer.requireSameEle(asList(c2, c3, c1));
+		
+		enforcer.enforceConstraints();
+		
+		for (EleConnector c : asList(c1, c2, c3, c4)) {
+			assertEquals(2.5, c.getPosXYZ().y, 1e-10);
+		}
+		
+		assertEquals(5, c5.getPosXYZ().y, 1e-10);
+		
+	}
+	
+}
@@ -0,0 +1,110 @@
+package org.osm2world.core.math;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PreparedPolygonXZTest {
+	
+	/**
+	 * creates a star-shaped polygon with many vertices around a center
+	 */
+	private static SimplePolygonXZ createStar(VectorXZ center,
+			double radius, int vertexCount) {
+		
+		List<VectorXZ> vertexLoop = new ArrayList<VectorXZ>(vertexCount + 1);
+		
+		for (int i = 0; i < vertexCount; i++) {
+			double angle = 2 * Math.PI * i / vertexCount;
+			double r = radius * (i % 2 == 0 ? 1 : 0.7);
+			vertexLoop.add(center.add(new VectorXZ(
+					r * Math.sin(angle), r * Math.cos(angle))));
+		}
+		
+		vertexLoop.add(vertexLoop.get(0));
+		
+		return new SimplePolygonXZ(vertexLoop);
+		
+	}
+	
+	private final PolygonWithHolesXZ polygon = new PolygonWithHolesXZ(
+			createStar(VectorXZ.NULL_VECTOR, 10, 100),
+			asList(createStar(new VectorXZ(2, 1), 3, 40)));
+	
+	private final PreparedPolygonXZ prepared = new PreparedPolygonXZ(polygon);
+	
+	@Test
+	public void testContainsPoint() {
+		
+		Random random = new Random(42);
+		
+		for (int i = 0; i < 1000; i++) {
+			VectorXZ v = new VectorXZ(
+					random.nextDouble() * 24 - 12,
+					random.nextDouble() * 24 - 12);
+			assertEquals(polygon.contains(v), prepared.contains(v));
+		}
+		
+		for (VectorXZ v : polygon.getOuter().getVertices()) {
+			assertEquals(polygon.contains(v), prepared.contains(v));
+		}
+		
+	}
+	
+	@Test
+	public void testLineSegments() {
+		
+		Random random = new Random(42);
+		
+		for (int i = 0; i < 1000; i++) {
+			
+			LineSegmentXZ segment = new LineSegmentXZ(
+					new VectorXZ(random.nextDouble() * 24 - 12,
+							random.nextDouble() * 24 - 12),
+					new VectorXZ(random.nextDouble() * 24 - 12,
+							random.nextDouble() * 24 - 12));
+			
+			assertEquals(polygon.intersects(segment),
+					prepared.intersects(segment));
+			assertEquals(polygon.contains(segment),
+					prepared.contains(segment));
+			assertEquals(
+					new HashSet<VectorXZ>(polygon.intersectionPositions(segment)),
+					new HashSet<VectorXZ>(prepared.intersectionPositions(segment)));
+			
+		}
+		
+	}
+	
+	@Test
+	public void testPolygons() {
+		
+		for (VectorXZ center : asList(new VectorXZ(0, 0), new VectorXZ(2, 1),
+				new VectorXZ(9, 3), new VectorXZ(30, 30))) {
+			
+			SimplePolygonXZ other = createStar(center, 2, 30);
+			PreparedPolygonXZ preparedOther = new PreparedPolygonXZ(other);
+			
+			assertEquals(polygon.contains(other), prepared.contains(other));
+			assertEquals(polygon.intersects(other), prepared.intersects(other));
+			
+			assertEquals(
+					new HashSet<VectorXZ>(polygon.intersectionPositions(
+							other.asPolygonWithHolesXZ())),
+					new HashSet<VectorXZ>(prepared.intersectionPositions(
+							preparedOther)));
+			
+		}
+		
+		assertFalse(prepared.boundsOverlap(new PreparedPolygonXZ(
+				createStar(new VectorXZ(30, 30), 2, 30))));
+		
+	}
+
+}
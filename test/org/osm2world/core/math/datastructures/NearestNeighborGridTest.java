@@ -0,0 +1,107 @@
+package org.osm2world.core.math.datastructures;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.osm2world.core.math.datastructures.NearestNeighborGrid.Query;
+
+public class NearestNeighborGridTest {
+	
+	/**
+	 * compares the results of queries with a brute force search
+	 */
+	private static void assertCorrectResults(final double[] xs,
+			final double[] zs, Random random, int k) {
+		
+		NearestNeighborGrid grid = new NearestNeighborGrid(xs, zs);
+		Query query = new Query(k);
+		
+		for (int q = 0; q < 200; q++) {
+			
+			final double x = random.nextDouble() * 1200 - 100;
+			final double z = random.nextDouble() * 1200 - 100;
+			
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int i = 0; i < xs.length; i++) {
+				expected.add(i);
+			}
+			
+			Collections.sort(expected, new Comparator<Integer>() {
+				@Override public int compare(Integer i1, Integer i2) {
+					double d1 = (xs[i1] - x) * (xs[i1] - x) + (zs[i1] - z) * (zs[i1] - z);
+					double d2 = (xs[i2] - x) * (xs[i2] - x) + (zs[i2] - z) * (zs[i2] - z);
+					return d1 != d2 ? Double.compare(d1, d2) : i1 - i2;
+				}
+			});
+			
+			grid.findNearest(x, z, k, query);
+			
+			assertEquals(Math.min(k, xs.length), query.size());
+			
+			for (int i = 0; i < query.size(); i++) {
+				int index = expected.get(i);
+				assertEquals(index, query.getIndex(i));
+				assertEquals((xs[index] - x) * (xs[index] - x)
+						+ (zs[index] - z) * (zs[index] - z),
+						query.getDistanceSquared(i), 1e-9);
+			}
+			
+		}
+		
+	}
+	
+	@Test
+	public void testRandomPoints() {
+		
+		Random random = new Random(42);
+		
+		double[] xs = new double[2000];
+		double[] zs = new double[2000];
+		
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = random.nextDouble() * 1000;
+			zs[i] = random.nextDouble() * 1000;
+		}
+		
+		assertCorrectResults(xs, zs, random, 1);
+		assertCorrectResults(xs, zs, random, 9);
+		assertCorrectResults(xs, zs, random, 29);
+		
+	}
+	
+	@Test
+	public void testGridPoints() {
+		
+		/* regular grid with many points at equal distances */
+		
+		double[] xs = new double[900];
+		double[] zs = new double[900];
+		
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = 30 * (i % 30);
+			zs[i] = 30 * (i / 30);
+		}
+		
+		assertCorrectResults(xs, zs, new Random(42), 29);
+		
+	}
+	
+	@Test
+	public void testDegenerateInput() {
+		
+		Random random = new Random(42);
+		
+		assertCorrectResults(new double[0], new double[0], random, 5);
+		assertCorrectResults(new double[] {1}, new double[] {2}, random, 5);
+		assertCorrectResults(new double[] {0, 10, 20, 30},
+				new double[] {5, 5, 5, 5}, random, 3);
+		
+	}
+	
+}
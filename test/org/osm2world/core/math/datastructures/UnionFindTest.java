@@ -0,0 +1,60 @@
+package org.osm2world.core.math.datastructures;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class UnionFindTest {
+	
+	@Test
+	public void testUnion() {
+		
+		UnionFind unionFind = new UnionFind();
+		
+		for (int i = 0; i < 6; i++) {
+			assertEquals(i, unionFind.add());
+		}
+		
+		assertEquals(6, unionFind.size());
+		
+		assertTrue(unionFind.union(0, 1));
+		assertTrue(unionFind.union(2, 3));
+		assertTrue(unionFind.union(3, 4));
+		assertFalse(unionFind.union(2, 4));
+		
+		assertEquals(unionFind.find(0), unionFind.find(1));
+		assertEquals(unionFind.find(2), unionFind.find(4));
+		assertTrue(unionFind.find(0) != unionFind.find(2));
+		assertEquals(5, unionFind.find(5));
+		
+		assertEquals(2, unionFind.getSetSize(1));
+		assertEquals(3, unionFind.getSetSize(3));
+		assertEquals(1, unionFind.getSetSize(5));
+		
+		assertTrue(unionFind.union(1, 4));
+		
+		for (int i = 0; i < 5; i++) {
+			assertEquals(unionFind.find(0), unionFind.find(i));
+			assertEquals(5, unionFind.getSetSize(i));
+		}
+		
+	}
+	
+	@Test
+	public void testLongChain() {
+		
+		UnionFind unionFind = new UnionFind();
+		
+		for (int i = 0; i < 100000; i++) {
+			unionFind.add();
+			if (i > 0) {
+				unionFind.union(i, i - 1);
+			}
+		}
+		
+		assertEquals(100000, unionFind.getSetSize(0));
+		assertEquals(unionFind.find(0), unionFind.find(99999));
+		
+	}
+	
+}
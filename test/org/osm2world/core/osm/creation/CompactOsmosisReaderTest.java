@@ -0,0 +1,108 @@
+package org.osm2world.core.osm.creation;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
+import org.osm2world.core.osm.data.OSMData;
+import org.osm2world.core.osm.data.OSMElement;
+import org.osm2world.core.osm.data.OSMMember;
+import org.osm2world.core.osm.data.OSMNode;
+import org.osm2world.core.osm.data.OSMRelation;
+import org.osm2world.core.osm.data.OSMWay;
+
+
+public class CompactOsmosisReaderTest {
+	
+	@Test
+	public void testValidFile() throws IOException {
+		
+		OSMData osmData = new CompactOsmosisReader(
+				testFile("validFile.osm")).getData();
+		
+		assertSame(4, osmData.getNodes().size());
+		assertSame(1, osmData.getWays().size());
+		assertSame(1, osmData.getRelations().size());
+		
+		List<OSMNode> wayNodes = osmData.getWays().iterator().next().nodes;
+		assertSame(3, wayNodes.size());
+		
+		assertEquals("traffic_signals", wayNodes.get(1).tags.getValue("highway"));
+		assertEquals(48.57412203109322, wayNodes.get(1).lat, 1e-7);
+		assertEquals(13.465483398374973, wayNodes.get(1).lon, 1e-7);
+		
+		OSMRelation relation = osmData.getRelations().iterator().next();
+		assertEquals("associatedStreet", relation.tags.getValue("type"));
+		assertSame(2, relation.relationMembers.size());
+		assertSame(osmData.getWays().iterator().next(),
+				relation.relationMembers.get(0).member);
+		
+	}
+	
+	@Test
+	public void testSameResultAsOsmosisReader() throws IOException {
+		
+		for (String fileName : new String[] {"validFile.osm",
+				"mp_two_holes_advanced.osm", "coastline_islands.osm"}) {
+			
+			File file = testFile(fileName);
+			
+			OSMData expected = new OsmosisReader(file).getData();
+			OSMData actual = new CompactOsmosisReader(file).getData();
+			
+			assertEquals(describe(expected), describe(actual));
+			
+		}
+		
+	}
+	
+	private static File testFile(String fileName) {
+		return new File("test"+File.separator+"files"
+				+File.separator+fileName);
+	}
+	
+	/**
+	 * creates an order-independent description of the data
+	 */
+	private static List<String> describe(OSMData data) {
+		
+		List<String> result = new ArrayList<String>();
+		
+		for (OSMNode node : data.getNodes()) {
+			result.add(describe(node) + " " + node.lat + " " + node.lon);
+		}
+		
+		for (OSMWay way : data.getWays()) {
+			result.add(describe(way) + " " + way.nodes);
+		}
+		
+		for (OSMRelation relation : data.getRelations()) {
+			StringBuilder members = new StringBuilder();
+			for (OSMMember member : relation.relationMembers) {
+				members.append(member.role + "=" + member.member + " ");
+			}
+			result.add(describe(relation) + " " + members);
+		}
+		
+		Collections.sort(result);
+		
+		return result;
+		
+	}
+	
+	private static String describe(OSMElement element) {
+		List<String> tags = new ArrayList<String>();
+		for (Tag tag : element.tags) {
+			tags.add(tag.key + "=" + tag.value);
+		}
+		Collections.sort(tags);
+		return element + " " + tags;
+	}
+
+}
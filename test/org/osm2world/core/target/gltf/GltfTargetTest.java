@@ -0,0 +1,77 @@
+package org.osm2world.core.target.gltf;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.*;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.List;
+
+import org.junit.Test;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.common.material.ImmutableMaterial;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.Material.Lighting;
+
+public class GltfTargetTest {
+	
+	private static final Material MATERIAL_A =
+			new ImmutableMaterial(Lighting.SMOOTH, Color.RED);
+	private static final Material MATERIAL_B =
+			new ImmutableMaterial(Lighting.SMOOTH, Color.BLUE);
+	
+	@Test
+	public void testSharedVertices() {
+		
+		GltfTarget target = new GltfTarget();
+		
+		List<VectorXYZ> strip = asList(
+				new VectorXYZ(0, 0, 0), new VectorXYZ(1, 0, 0),
+				new VectorXYZ(0, 0, 1), new VectorXYZ(1, 0, 1));
+		
+		target.drawTriangleStrip(MATERIAL_A, strip,
+				emptyList());
+		
+		MaterialMesh mesh = target.getMesh(MATERIAL_A);
+		
+		assertEquals(4, mesh.getVertexCount());
+		assertEquals(6, mesh.indices.size());
+		
+		/* drawing the same strip again adds no further vertices */
+		
+		target.drawTriangleStrip(MATERIAL_A, strip,
+				emptyList());
+		
+		assertEquals(4, mesh.getVertexCount());
+		assertEquals(12, mesh.indices.size());
+		
+	}
+	
+	@Test
+	public void testMaterialGroups() {
+		
+		GltfTarget target = new GltfTarget();
+		
+		List<VectorXYZ> fan = asList(
+				new VectorXYZ(0, 0, 0), new VectorXYZ(1, 0, 0),
+				new VectorXYZ(1, 0, 1), new VectorXYZ(0, 0, 1));
+		
+		target.drawTriangleFan(MATERIAL_A, fan,
+				emptyList());
+		target.drawTriangleFan(MATERIAL_B, fan,
+				emptyList());
+		
+		assertEquals(asList(MATERIAL_A, MATERIAL_B),
+				asList(target.getMaterials().toArray()));
+		
+		for (Material material : target.getMaterials()) {
+			MaterialMesh mesh = target.getMesh(material);
+			assertEquals(4, mesh.getVertexCount());
+			assertEquals(6, mesh.indices.size());
+			assertEquals(-1.0f, mesh.vertexData.get(2 * MaterialMesh.STRIDE + 2), 0);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,143 @@
+package org.osm2world.core.target.gltf;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.osm2world.core.ConversionFacade;
+import org.osm2world.core.ConversionFacade.Results;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class GltfWriterTest {
+	
+	private static final Pattern OBJECT = Pattern.compile("\\{[^{}]*\\}");
+	
+	private static final Pattern PRIMITIVE = Pattern.compile(
+			"\"POSITION\":(\\d+)[^}]*\\},\"indices\":(\\d+)");
+	
+	@Test
+	public void testGlbFile() throws IOException {
+		
+		File osmFile = new File("test" + File.separator + "files"
+				+ File.separator + "validFile.osm");
+		
+		Results results = new ConversionFacade().createRepresentations(
+				osmFile, null, null, null);
+		
+		File glbFile = File.createTempFile("osm2world-test", ".glb");
+		glbFile.deleteOnExit();
+		
+		GltfWriter.writeGlbFile(glbFile, results.getMapData(),
+				results.getMapProjection(), null);
+		
+		ByteBuffer glb = ByteBuffer.wrap(Files.toByteArray(glbFile));
+		glb.order(ByteOrder.LITTLE_ENDIAN);
+		
+		/* header */
+		
+		assertEquals(0x46546C67, glb.getInt());
+		assertEquals(2, glb.getInt());
+		assertEquals(glbFile.length(), glb.getInt());
+		
+		/* JSON chunk */
+		
+		int jsonLength = glb.getInt();
+		assertEquals(0x4E4F534A, glb.getInt());
+		assertEquals(0, jsonLength % 4);
+		
+		byte[] jsonBytes = new byte[jsonLength];
+		glb.get(jsonBytes);
+		String json = new String(jsonBytes, Charsets.UTF_8);
+		
+		/* BIN chunk */
+		
+		int binLength = glb.getInt();
+		assertEquals(0x004E4942, glb.getInt());
+		assertEquals(0, binLength % 4);
+		assertEquals(glb.remaining(), binLength);
+		
+		ByteBuffer bin = glb.slice();
+		bin.order(ByteOrder.LITTLE_ENDIAN);
+		
+		assertTrue(json.contains("\"buffers\":[{\"byteLength\":" + binLength + "}]"));
+		
+		/* indices must refer to existing vertices */
+		
+		List<String> accessors = objectsInArray(json, "accessors");
+		List<String> bufferViews = objectsInArray(json, "bufferViews");
+		
+		Matcher primitive = PRIMITIVE.matcher(json);
+		int primitiveCount = 0;
+		
+		while (primitive.find()) {
+			
+			String positionAccessor = accessors.get(parseInt(primitive.group(1)));
+			String indexAccessor = accessors.get(parseInt(primitive.group(2)));
+			String indexView = bufferViews.get(intValue(indexAccessor, "bufferView"));
+			
+			int vertexCount = intValue(positionAccessor, "count");
+			int indexCount = intValue(indexAccessor, "count");
+			boolean shortIndices = intValue(indexAccessor, "componentType") == 5123;
+			int offset = intValue(indexView, "byteOffset");
+			
+			assertEquals(0, indexCount % 3);
+			assertEquals(0, offset % 4);
+			assertEquals(indexCount * (shortIndices ? 2 : 4),
+					intValue(indexView, "byteLength"));
+			
+			for (int i = 0; i < indexCount; i++) {
+				int index = shortIndices
+						? bin.getShort(offset + 2 * i) & 0xFFFF
+						: bin.getInt(offset + 4 * i);
+				assertTrue(index < vertexCount);
+			}
+			
+			primitiveCount ++;
+			
+		}
+		
+		assertTrue(primitiveCount > 0);
+		
+	}
+	
+	/**
+	 * returns the objects of a top-level JSON array.
+	 * Only works for arrays of objects without nested objects.
+	 */
+	private static List<String> objectsInArray(String json, String name) {
+		
+		int start = json.indexOf("\"" + name + "\":[");
+		String array = json.substring(start, json.indexOf("}]", start) + 1);
+		
+		List<String> result = new ArrayList<String>();
+		
+		Matcher matcher = OBJECT.matcher(array);
+		while (matcher.find()) {
+			result.add(matcher.group());
+		}
+		
+		return result;
+		
+	}
+	
+	private static int intValue(String object, String key) {
+		Matcher matcher = Pattern.compile("\"" + key + "\":(\\d+)").matcher(object);
+		assertTrue(matcher.find());
+		return parseInt(matcher.group(1));
+	}
+	
+	private static int parseInt(String string) {
+		return Integer.parseInt(string);
+	}
+
+}
@@ -0,0 +1,96 @@
+package org.osm2world.core.target.jogl;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.common.Primitive;
+import org.osm2world.core.target.common.Primitive.Type;
+import org.osm2world.core.target.common.TextureData;
+import org.osm2world.core.target.common.TextureData.Wrap;
+import org.osm2world.core.target.common.material.ImmutableMaterial;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.Material.Lighting;
+import org.osm2world.core.target.common.material.Material.Transparency;
+import org.osm2world.core.target.common.material.NamedTexCoordFunction;
+import org.osm2world.core.target.jogl.PackedPrimitiveBuffer.PackedPrimitives;
+
+public class PackedPrimitiveBufferTest {
+	
+	private static final Material PLAIN_MATERIAL =
+			new ImmutableMaterial(Lighting.FLAT, Color.RED);
+	
+	private static final Material TEXTURED_MATERIAL =
+			new ImmutableMaterial(Lighting.SMOOTH, Color.WHITE,
+					Transparency.FALSE, asList(new TextureData(
+							new File("test.png"), 1, 1, Wrap.REPEAT,
+							NamedTexCoordFunction.GLOBAL_X_Z, false)));
+	
+	private static final List<VectorXYZ> STRIP = asList(
+			new VectorXYZ(0, 0, 0), new VectorXYZ(1, 0, 0),
+			new VectorXYZ(0, 1, 0), new VectorXYZ(1, 1, 0));
+	
+	@Test
+	public void testRanges() {
+		
+		PackedPrimitiveBuffer buffer = new PackedPrimitiveBuffer();
+		
+		buffer.drawTriangleStrip(PLAIN_MATERIAL, STRIP, null);
+		buffer.drawTriangleFan(PLAIN_MATERIAL, STRIP.subList(0, 3), null);
+		
+		PackedPrimitives packed = buffer.getPackedPrimitives(PLAIN_MATERIAL);
+		
+		assertEquals(6, packed.getValuesPerVertex());
+		assertEquals(7, packed.getVertexCount());
+		assertEquals(2, packed.getPrimitiveCount());
+		
+		assertEquals(Type.TRIANGLE_STRIP, packed.getType(0));
+		assertEquals(0, packed.getFirstVertex(0));
+		assertEquals(4, packed.getVertexCount(0));
+		
+		assertEquals(Type.TRIANGLE_FAN, packed.getType(1));
+		assertEquals(4, packed.getFirstVertex(1));
+		assertEquals(3, packed.getVertexCount(1));
+		
+		assertEquals(1f, packed.getValue(6, packed.getPositionOffset() + 1), 0);
+		
+	}
+	
+	@Test
+	public void testGetPrimitives() {
+		
+		List<VectorXZ> texCoords = new ArrayList<VectorXZ>();
+		for (VectorXYZ v : STRIP) {
+			texCoords.add(new VectorXZ(v.x * 2, v.y));
+		}
+		
+		PrimitiveBuffer original = new PrimitiveBuffer();
+		PackedPrimitiveBuffer buffer = new PackedPrimitiveBuffer();
+		
+		original.drawTriangleStrip(TEXTURED_MATERIAL, STRIP, asList(texCoords));
+		buffer.drawTriangleStrip(TEXTURED_MATERIAL, STRIP, asList(texCoords));
+		
+		Primitive expected = original.getPrimitives(TEXTURED_MATERIAL).iterator().next();
+		Primitive actual = buffer.getPrimitives(TEXTURED_MATERIAL).iterator().next();
+		
+		assertEquals(expected.type, actual.type);
+		assertEquals(expected.vertices, actual.vertices);
+		assertEquals(expected.normals, actual.normals);
+		assertEquals(expected.texCoordLists, actual.texCoordLists);
+		
+		PackedPrimitives packed = PackedPrimitiveBuffer.pack(original)
+				.getPackedPrimitives(TEXTURED_MATERIAL);
+		
+		assertEquals(8, packed.getValuesPerVertex());
+		assertEquals(2f, packed.getValue(3, packed.getTexCoordOffset(0)), 0);
+		
+	}
+
+}
@@ -0,0 +1,74 @@
+package org.osm2world.core.target.obj;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.junit.Test;
+
+public class ObjBufferTest {
+	
+	private static String format(int precision, double... values)
+			throws IOException {
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ObjBuffer buffer = new ObjBuffer(Channels.newChannel(out), precision);
+		
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) buffer.append(' ');
+			buffer.appendQuantized(buffer.quantize(values[i]));
+		}
+		
+		buffer.close();
+		
+		return out.toString("UTF-8");
+		
+	}
+	
+	@Test
+	public void testAppendQuantized() throws IOException {
+		
+		assertEquals("0 1 -1 1.5 -0.25", format(6, 0, 1, -1, 1.5, -0.25));
+		assertEquals("0.000001 -0.000001", format(6, 1e-6, -1e-6));
+		assertEquals("123456.789", format(6, 123456.789));
+		assertEquals("0.12 3", format(2, 0.1234, 2.999));
+		assertEquals("0 2", format(0, -0.4, 1.5));
+		
+	}
+	
+	@Test
+	public void testAppend() throws IOException {
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ObjBuffer buffer = new ObjBuffer(Channels.newChannel(out), 6);
+		
+		buffer.append("f ").append(1).append('/').append(-20).newLine();
+		buffer.append("o Stra\u00dfe").newLine();
+		buffer.close();
+		
+		assertEquals("f 1/-20\no Stra\u00dfe\n", out.toString("UTF-8"));
+		
+	}
+	
+	@Test
+	public void testLargeOutput() throws IOException {
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ObjBuffer buffer = new ObjBuffer(Channels.newChannel(out), 3);
+		
+		StringBuilder expected = new StringBuilder();
+		
+		for (int i = 0; i < 500000; i++) {
+			buffer.appendQuantized(buffer.quantize(i / 8.0)).newLine();
+			expected.append(Double.toString(i / 8.0).replaceAll("\\.0$", "")).append('\n');
+		}
+		
+		buffer.close();
+		
+		assertEquals(expected.toString(), out.toString("UTF-8"));
+		
+	}
+	
+}
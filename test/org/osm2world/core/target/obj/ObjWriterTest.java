@@ -0,0 +1,227 @@
+package org.osm2world.core.target.obj;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.EMPTY_LIST;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.junit.Test;
+import org.openstreetmap.josm.plugins.graphview.core.data.MapBasedTagGroup;
+import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
+import org.osm2world.core.ConversionFacade;
+import org.osm2world.core.ConversionFacade.Results;
+import org.osm2world.core.osm.data.OSMData;
+import org.osm2world.core.osm.data.OSMNode;
+import org.osm2world.core.osm.data.OSMWay;
+import org.osm2world.core.util.ConfigUtil;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.io.Files;
+
+public class ObjWriterTest {
+	
+	/**
+	 * creates a grid of buildings and trees next to a road and a meadow
+	 */
+	@SuppressWarnings("unchecked")
+	private static Results createTestScene() throws IOException {
+		
+		List<OSMNode> nodes = new ArrayList<OSMNode>();
+		List<OSMWay> ways = new ArrayList<OSMWay>();
+		
+		long id = 1;
+		
+		for (int x = 0; x < 4; x++) {
+			for (int y = 0; y < 4; y++) {
+				
+				double lat = 0.0003 * y;
+				double lon = 0.0003 * x;
+				
+				List<OSMNode> outline = asList(
+						new OSMNode(lat, lon, new MapBasedTagGroup(), id++),
+						new OSMNode(lat, lon + 0.0001, new MapBasedTagGroup(), id++),
+						new OSMNode(lat + 0.0001, lon + 0.0001, new MapBasedTagGroup(), id++),
+						new OSMNode(lat + 0.0001, lon, new MapBasedTagGroup(), id++));
+				
+				nodes.addAll(outline);
+				
+				List<OSMNode> closedOutline = new ArrayList<OSMNode>(outline);
+				closedOutline.add(outline.get(0));
+				
+				ways.add(new OSMWay(new MapBasedTagGroup(new Tag("building", "yes")),
+						id++, closedOutline));
+				
+				nodes.add(new OSMNode(lat + 0.00015, lon + 0.00015,
+						new MapBasedTagGroup(new Tag("natural", "tree")), id++));
+				
+			}
+		}
+		
+		List<OSMNode> roadNodes = asList(
+				new OSMNode(-0.0001, 0, new MapBasedTagGroup(), id++),
+				new OSMNode(-0.0001, 0.0012, new MapBasedTagGroup(), id++));
+		nodes.addAll(roadNodes);
+		ways.add(new OSMWay(new MapBasedTagGroup(new Tag("highway", "residential")),
+				id++, roadNodes));
+		
+		List<OSMNode> meadowNodes = asList(
+				new OSMNode(-0.0005, 0, new MapBasedTagGroup(), id++),
+				new OSMNode(-0.0005, 0.0012, new MapBasedTagGroup(), id++),
+				new OSMNode(-0.0003, 0.0012, new MapBasedTagGroup(), id++),
+				new OSMNode(-0.0003, 0, new MapBasedTagGroup(), id++));
+		nodes.addAll(meadowNodes);
+		List<OSMNode> closedMeadow = new ArrayList<OSMNode>(meadowNodes);
+		closedMeadow.add(meadowNodes.get(0));
+		ways.add(new OSMWay(new MapBasedTagGroup(new Tag("landuse", "meadow")),
+				id++, closedMeadow));
+		
+		OSMData osmData = new OSMData(EMPTY_LIST, nodes, ways, EMPTY_LIST);
+		
+		return new ConversionFacade().createRepresentations(
+				osmData, null, null, null);
+		
+	}
+	
+	private static File createTempDirectory() throws IOException {
+		File dir = File.createTempFile("osm2world-test", "");
+		dir.delete();
+		dir.mkdir();
+		dir.deleteOnExit();
+		return dir;
+	}
+	
+	/**
+	 * adds the faces of an .obj file to a multiset. Each face is described
+	 * by its material and vertex coordinates, so faces from files
+	 * with different vertex numbering can be compared.
+	 */
+	private static void collectFaces(File objFile, Multiset<String> faces)
+			throws IOException {
+		
+		objFile.deleteOnExit();
+		
+		List<String> vertices = new ArrayList<String>();
+		String material = null;
+		
+		for (String line : Files.readLines(objFile, Charsets.UTF_8)) {
+			
+			if (line.startsWith("v ")) {
+				vertices.add(line.substring(2));
+			} else if (line.startsWith("usemtl ")) {
+				material = line.substring(7);
+			} else if (line.startsWith("f ")) {
+				
+				StringBuilder face = new StringBuilder(material);
+				
+				for (String vertex : line.substring(2).split(" ")) {
+					int index = Integer.parseInt(vertex.split("/")[0]);
+					face.append('|').append(vertices.get(index - 1));
+				}
+				
+				faces.add(face.toString());
+				
+			}
+			
+		}
+		
+	}
+	
+	private static List<File> partFiles(File objDirectory) {
+		
+		List<File> result = new ArrayList<File>();
+		
+		for (File file : objDirectory.listFiles()) {
+			file.deleteOnExit();
+			if (file.getName().endsWith(".obj")) {
+				result.add(file);
+			}
+		}
+		
+		return result;
+		
+	}
+	
+	@Test
+	public void testShardedOutputMatchesSerialOutput() throws IOException {
+		
+		Results results = createTestScene();
+		
+		/* serial output */
+		
+		File objFile = File.createTempFile("osm2world-test", ".obj");
+		new File(objFile.getAbsoluteFile() + ".mtl").deleteOnExit();
+		
+		ObjWriter.writeObjFile(objFile, results.getMapData(),
+				results.getMapProjection(), null, null);
+		
+		Multiset<String> serialFaces = HashMultiset.create();
+		collectFaces(objFile, serialFaces);
+		
+		assertFalse(serialFaces.isEmpty());
+		
+		/* sharded, parallel output */
+		
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty(ConfigUtil.THREAD_COUNT_KEY, 4);
+		
+		File objDirectory = createTempDirectory();
+		
+		ObjWriter.writeObjFiles(objDirectory, results.getMapData(),
+				results.getMapProjection(), null, null, config, 100);
+		
+		List<File> partFiles = partFiles(objDirectory);
+		
+		assertTrue(partFiles.size() > 1);
+		
+		Multiset<String> shardedFaces = HashMultiset.create();
+		for (File partFile : partFiles) {
+			collectFaces(partFile, shardedFaces);
+		}
+		
+		assertEquals(serialFaces, shardedFaces);
+		
+		/* each material is defined exactly once */
+		
+		Set<String> definedMaterials = new HashSet<String>();
+		
+		for (String line : Files.readLines(
+				new File(objDirectory, "materials.mtl"), Charsets.UTF_8)) {
+			if (line.startsWith("newmtl ")) {
+				assertTrue(line, definedMaterials.add(line.substring(7)));
+			}
+		}
+		
+		for (String face : shardedFaces.elementSet()) {
+			String material = face.substring(0, face.indexOf('|'));
+			assertTrue(material, definedMaterials.contains(material));
+		}
+		
+	}
+	
+	@Test
+	public void testShardsSplitWithReconstructedFaces() throws IOException {
+		
+		Results results = createTestScene();
+		
+		BaseConfiguration config = new BaseConfiguration();
+		config.setProperty("reconstructFaces", true);
+		
+		File objDirectory = createTempDirectory();
+		
+		ObjWriter.writeObjFiles(objDirectory, results.getMapData(),
+				results.getMapProjection(), null, null, config, 10);
+		
+		assertTrue(partFiles(objDirectory).size() > 1);
+		
+	}
+
+}
@@ -0,0 +1,47 @@
+package org.osm2world.core.target.obj;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class QuantizedIndexMapTest {
+	
+	@Test
+	public void testGetOrAdd() {
+		
+		QuantizedIndexMap map = new QuantizedIndexMap();
+		
+		assertEquals(0, map.getOrAdd(1, 2, 3));
+		assertEquals(1, map.getOrAdd(3, 2, 1));
+		assertEquals(0, map.getOrAdd(1, 2, 3));
+		assertEquals(2, map.getOrAdd(0, 0, 0));
+		assertEquals(3, map.size());
+		
+	}
+	
+	@Test
+	public void testGrowth() {
+		
+		QuantizedIndexMap map = new QuantizedIndexMap();
+		
+		long[][] keys = new long[100000][3];
+		Random random = new Random(42);
+		
+		for (int i = 0; i < keys.length; i++) {
+			keys[i][0] = i;
+			keys[i][1] = random.nextLong();
+			keys[i][2] = -i;
+			assertEquals(i, map.getOrAdd(keys[i][0], keys[i][1], keys[i][2]));
+		}
+		
+		for (int i = 0; i < keys.length; i++) {
+			assertEquals(i, map.getOrAdd(keys[i][0], keys[i][1], keys[i][2]));
+		}
+		
+		assertEquals(keys.length, map.size());
+		
+	}
+	
+}
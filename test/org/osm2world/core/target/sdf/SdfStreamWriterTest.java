@@ -0,0 +1,52 @@
+package org.osm2world.core.target.sdf;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class SdfStreamWriterTest {
+	
+	@Test
+	public void testNestedElements() throws IOException {
+		
+		File file = File.createTempFile("osm2world-test", ".sdf");
+		file.deleteOnExit();
+		
+		SdfStreamWriter writer = new SdfStreamWriter(file);
+		
+		writer.startElement("sdf");
+		writer.attribute("version", "1.5");
+		writer.startElement("world");
+		
+		assertEquals(2, writer.getDepth());
+		
+		writer.startElement("model");
+		writer.textElement("name", "a & b");
+		writer.startElement("link");
+		
+		writer.endElements(2);
+		
+		assertEquals(2, writer.getDepth());
+		
+		writer.close();
+		
+		String content = Files.toString(file, Charsets.UTF_8);
+		
+		assertTrue(content.endsWith("<sdf version=\"1.5\">\n"
+				+ "  <world>\n"
+				+ "    <model>\n"
+				+ "      <name>a &amp; b</name>\n"
+				+ "      <link></link>\n"
+				+ "    </model>\n"
+				+ "  </world>\n"
+				+ "</sdf>\n"));
+		
+	}
+	
+}
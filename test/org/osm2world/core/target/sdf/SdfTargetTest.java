@@ -0,0 +1,62 @@
+package org.osm2world.core.target.sdf;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.junit.Test;
+import org.osm2world.core.math.TriangleXYZ;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.math.VectorXZ;
+import org.osm2world.core.target.common.material.ImmutableMaterial;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.Material.Lighting;
+
+public class SdfTargetTest {
+	
+	@Test
+	public void testReconstructedFacesAreDrawnAtFinish() throws IOException {
+		
+		File file = File.createTempFile("osm2world-test", ".sdf");
+		file.deleteOnExit();
+		
+		SdfStreamWriter writer = new SdfStreamWriter(file);
+		writer.startElement("sdf");
+		writer.startElement("world");
+		
+		ByteArrayOutputStream mtl = new ByteArrayOutputStream();
+		PrintStream mtlStream = new PrintStream(mtl);
+		
+		BaseConfiguration config = new BaseConfiguration();
+		config.addProperty("reconstructFaces", true);
+		
+		SdfTarget target = new SdfTarget(writer, mtlStream);
+		target.setConfiguration(config);
+		
+		Material material = new ImmutableMaterial(Lighting.FLAT, Color.RED);
+		
+		target.drawTriangles(material, asList(new TriangleXYZ(
+				new VectorXYZ(0, 0, 0), new VectorXYZ(1, 0, 0),
+				new VectorXYZ(0, 0, 1))),
+				Collections.<List<VectorXZ>>emptyList());
+		
+		mtlStream.flush();
+		assertEquals(0, mtl.size());
+		
+		target.finish();
+		writer.close();
+		
+		mtlStream.flush();
+		assertTrue(mtl.toString().contains("newmtl "));
+		
+	}
+
+}
@@ -0,0 +1,292 @@
+package org.osm2world.core.target.software;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.osm2world.core.math.VectorXYZ;
+import org.osm2world.core.target.common.lighting.GlobalLightingParameters;
+import org.osm2world.core.target.common.material.ImmutableMaterial;
+import org.osm2world.core.target.common.material.Material;
+import org.osm2world.core.target.common.material.Material.Lighting;
+import org.osm2world.core.target.common.rendering.Camera;
+import org.osm2world.core.target.common.rendering.Projection;
+import org.osm2world.core.target.jogl.PrimitiveBuffer;
+
+public class SoftwareRendererTest {
+	
+	private static final int BACKGROUND = 0x0000FF;
+	
+	private static final Material RED = new ImmutableMaterial(Lighting.FLAT, Color.RED);
+	private static final Material GREEN = new ImmutableMaterial(Lighting.FLAT, Color.GREEN);
+	
+	/** camera above the origin, with north at the top of the image */
+	private static Camera createCamera() {
+		Camera camera = new Camera();
+		camera.setCamera(0, 100, 0, 0, 0, 0, 0, 0, 1);
+		return camera;
+	}
+	
+	/** orthographic projection showing the area from -2 to +2 */
+	private static Projection createProjection() {
+		return new Projection(true, 1, 0, 4, 1, 200);
+	}
+	
+	/** counterclockwise square from -size to +size, facing upwards */
+	private static List<VectorXYZ> square(double size, double y) {
+		return asList(
+				new VectorXYZ(-size, y, -size),
+				new VectorXYZ(+size, y, -size),
+				new VectorXYZ(+size, y, +size),
+				new VectorXYZ(-size, y, +size));
+	}
+	
+	private static BufferedImage createImage(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				image.setRGB(x, y, BACKGROUND);
+			}
+		}
+		return image;
+	}
+	
+	private static int rgb(BufferedImage image, int x, int y) {
+		return image.getRGB(x, y) & 0xFFFFFF;
+	}
+	
+	@Test
+	public void testUnlitSquare() {
+		
+		PrimitiveBuffer buffer = new PrimitiveBuffer();
+		buffer.drawConvexPolygon(RED, square(1, 0), null);
+		
+		BufferedImage image = createImage(40, 40);
+		new SoftwareRenderer(buffer, null).render(
+				createCamera(), createProjection(), image, null);
+		
+		assertEquals(0xFF0000, rgb(image, 20, 20));
+		assertEquals(0xFF0000, rgb(image, 10, 10));
+		assertEquals(0xFF0000, rgb(image, 29, 29));
+		assertEquals(BACKGROUND, rgb(image, 9, 20));
+		assertEquals(BACKGROUND, rgb(image, 30, 20));
+		assertEquals(BACKGROUND, rgb(image, 0, 0));
+		
+	}
+	
+	@Test
+	public void testBackfaceCulling() {
+		
+		List<VectorXYZ> vs = square(1, 0);
+		
+		PrimitiveBuffer buffer = new PrimitiveBuffer();
+		buffer.drawConvexPolygon(RED, asList(vs.get(3), vs.get(2), vs.get(1), vs.get(0)), null);
+		
+		BufferedImage image = createImage(40, 40);
+		new SoftwareRenderer(buffer, null).render(
+				createCamera(), createProjection(), image, null);
+		
+		assertEquals(BACKGROUND, rgb(image, 20, 20));
+		
+	}
+	
+	@Test
+	public void testLighting() {
+		
+		PrimitiveBuffer buffer = new PrimitiveBuffer();
+		buffer.drawConvexPolygon(RED, square(1, 0), null);
+		
+		BufferedImage image = createImage(40, 40);
+		new SoftwareRenderer(buffer, GlobalLightingParameters.DEFAULT).render(
+				createCamera(), createProjection(), image, null);
+		
+		/* ambient plus diffuse lighting, factors 0.5 each */
+		
+		VectorXYZ light = GlobalLightingParameters.DEFAULT.lightFromDirection.normalize();
+		double expected = 255 * (0.5 + 0.5 * light.y);
+		
+		Color color = new Color(image.getRGB(20, 20));
+		assertEquals(expected, color.getRed(), 1);
+		assertEquals(0, color.getGreen());
+		assertEquals(0, color.getBlue());
+		
+	}
+	
+	@Test
+	public void testDepth() {
+		
+		for (boolean higherFirst : new boolean[] {true, false}) {
+			
+			PrimitiveBuffer buffer = new PrimitiveBuffer();
+			
+			if (higherFirst) {
+				buffer.drawConvexPolygon(GREEN, square(0.5, 1), null);
+				buffer.drawConvexPolygon(RED, square(1, 0), null);
+			} else {
+				buffer.drawConvexPolygon(RED, square(1, 0), null);
+				buffer.drawConvexPolygon(GREEN, square(0.5, 1), null);
+			}
+			
+			BufferedImage image = createImage(40, 40);
+			new SoftwareRenderer(buffer, null).render(
+					createCamera(), createProjection(), image, null);
+			
+			assertEquals(0x00FF00, rgb(image, 20, 20));
+			assertEquals(0xFF0000, rgb(image, 12, 20));
+			
+		}
+		
+	}
+	
+	@Test
+	public void testRenderPart() {
+		
+		PrimitiveBuffer buffer = new PrimitiveBuffer();
+		buffer.drawConvexPolygon(RED, square(1, 0), null);
+		buffer.drawConvexPolygon(GREEN, asList(
+				new VectorXYZ(-1.5, 1, 0),
+				new VectorXYZ(0.3, 1, 0),
+				new VectorXYZ(-0.2, 1, 1.7)), null);
+		
+		SoftwareRenderer renderer = new SoftwareRenderer(buffer, null);
+		
+		BufferedImage fullImage = createImage(40, 40);
+		renderer.render(createCamera(), createProjection(), fullImage, null);
+		
+		/* render the image in four parts */
+		
+		for (int partX = 0; partX < 2; partX++) {
+			for (int partY = 0; partY < 2; partY++) {
+				
+				BufferedImage partImage = createImage(20, 20);
+				renderer.renderPart(createCamera(), createProjection(),
+						partX * 0.5, (partX + 1) * 0.5,
+						partY * 0.5, (partY + 1) * 0.5,
+						partImage, null);
+				
+				for (int x = 0; x < 20; x++) {
+					for (int y = 0; y < 20; y++) {
+						assertEquals(rgb(fullImage, partX * 20 + x, (1 - partY) * 20 + y),
+								rgb(partImage, x, y));
+					}
+				}
+				
+			}
+		}
+		
+	}
+	
+	@Test
+	public void testPerspective() {
+		
+		PrimitiveBuffer buffer = new PrimitiveBuffer();
+		buffer.drawConvexPolygon(RED, square(1, 0), null);
+		
+		Camera camera = new Camera();
+		camera.setCamera(0, 10, 0, 0, 0, 0, 0, 0, 1);
+		
+		BufferedImage image = createImage(40, 40);
+		new SoftwareRenderer(buffer, null).render(camera,
+				new Projection(false, 1, 45, 0, 1, 200), image, null);
+		
+		/* the square covers 2 / (2 * 10 * tan(22.5°)) of the image's width */
+		
+		assertEquals(0xFF0000, rgb(image, 20, 20));
+		assertEquals(0xFF0000, rgb(image, 16, 20));
+		assertEquals(0xFF0000, rgb(image, 23, 20));
+		assertEquals(BACKGROUND, rgb(image, 14, 20));
+		assertEquals(BACKGROUND, rgb(image, 25, 20));
+		
+	}
+	
+	@Test
+	public void testInvisibleScene() {
+		
+		PrimitiveBuffer buffer = new PrimitiveBuffer();
+		buffer.drawConvexPolygon(RED, square(1, 0), null);
+		
+		SoftwareRenderer renderer = new SoftwareRenderer(buffer, null);
+		
+		Camera camera = new Camera();
+		camera.setCamera(50, 100, 0, 50, 0, 0, 0, 0, 1);
+		
+		BufferedImage image = createImage(40, 40);
+		assertFalse(renderer.render(camera, createProjection(), image, null));
+		assertEquals(BACKGROUND, rgb(image, 20, 20));
+		
+		assertTrue(renderer.render(createCamera(), createProjection(), image, null));
+		assertEquals(0xFF0000, rgb(image, 20, 20));
+		
+	}
+	
+	@Test
+	public void testManyCells() {
+		
+		/* enough triangles to be distributed across several cells */
+		
+		PrimitiveBuffer buffer = new PrimitiveBuffer();
+		
+		for (int x = 0; x < 100; x++) {
+			for (int z = 0; z < 100; z++) {
+				buffer.drawConvexPolygon((x + z) % 2 == 0 ? RED : GREEN, asList(
+						new VectorXYZ(-2 + 0.04 * x, 0, -2 + 0.04 * z),
+						new VectorXYZ(-2 + 0.04 * (x + 1), 0, -2 + 0.04 * z),
+						new VectorXYZ(-2 + 0.04 * (x + 1), 0, -2 + 0.04 * (z + 1)),
+						new VectorXYZ(-2 + 0.04 * x, 0, -2 + 0.04 * (z + 1))), null);
+			}
+		}
+		
+		BufferedImage image = createImage(100, 100);
+		new SoftwareRenderer(buffer, null).render(
+				createCamera(), createProjection(), image, null);
+		
+		for (int x = 0; x < 100; x++) {
+			for (int y = 0; y < 100; y++) {
+				int expected = (x + (99 - y)) % 2 == 0 ? 0xFF0000 : 0x00FF00;
+				assertEquals(expected, rgb(image, x, y));
+			}
+		}
+		
+	}
+	
+	@Test
+	public void testParallelRendering() {
+		
+		PrimitiveBuffer buffer = new PrimitiveBuffer();
+		buffer.drawConvexPolygon(RED, square(1, 0), null);
+		buffer.drawConvexPolygon(GREEN, asList(
+				new VectorXYZ(-1.5, 1, 0),
+				new VectorXYZ(0.3, 1, 0),
+				new VectorXYZ(-0.2, 1, 1.7)), null);
+		
+		SoftwareRenderer renderer = new SoftwareRenderer(buffer,
+				GlobalLightingParameters.DEFAULT);
+		
+		BufferedImage serialImage = createImage(50, 30);
+		renderer.render(createCamera(), createProjection(), serialImage, null);
+		
+		ForkJoinPool pool = new ForkJoinPool(4);
+		
+		try {
+			
+			BufferedImage parallelImage = createImage(50, 30);
+			renderer.render(createCamera(), createProjection(), parallelImage, pool);
+			
+			for (int x = 0; x < 50; x++) {
+				for (int y = 0; y < 30; y++) {
+					assertEquals(rgb(serialImage, x, y), rgb(parallelImage, x, y));
+				}
+			}
+		
+		} finally {
+			pool.shutdown();
+		}
+		
+	}
+
+}